@@ -2,11 +2,14 @@ package com.seibel.distanthorizons.common;
 
 import com.mojang.brigadier.CommandDispatcher;
 import com.seibel.distanthorizons.api.enums.config.EDhApiRenderApi;
+import com.seibel.distanthorizons.api.methods.events.DhApiEventRegister;
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiAfterDhInitEvent;
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiBeforeDhInitEvent;
+import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiLevelLoadEvent;
 import com.seibel.distanthorizons.common.commands.CommandInitializer;
 import com.seibel.distanthorizons.common.wrappers.DependencySetup;
 import com.seibel.distanthorizons.common.wrappers.gui.DhDebugScreenEntry;
+import com.seibel.distanthorizons.common.wrappers.worldGeneration.NoiseSampledLodGenerator;
 import com.seibel.distanthorizons.common.wrappers.minecraft.MinecraftServerWrapper;
 import com.seibel.distanthorizons.core.api.internal.ClientApi;
 import com.seibel.distanthorizons.core.api.internal.SharedApi;
@@ -161,6 +164,9 @@ public abstract class AbstractModInitializer
 		DependencySetup.createSharedBindings();
 		SharedApi.init();
 		this.createInitialSharedBindings();
+		
+		// does nothing unless the noise sampled generator is enabled
+		DhApiEventRegister.on(DhApiLevelLoadEvent.class, new NoiseSampledLodGenerator.LevelLoadBinding());
 	}
 	
 	private void logBuildInfo()
@@ -1,6 +1,7 @@
 package com.seibel.distanthorizons.common.commands;
 
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.seibel.distanthorizons.common.render.arena.LodBufferArenaAllocator;
 import com.seibel.distanthorizons.core.logging.f3.F3Screen;
 import net.minecraft.commands.CommandSourceStack;
 
@@ -18,6 +19,7 @@ public class DebugCommand extends AbstractCommand
 				.executes(c -> {
 					List<String> lines = new ArrayList<>();
 					F3Screen.addStringToDisplay(lines);
+					LodBufferArenaAllocator.addStringsToDebugMenu(lines);
 					return this.sendSuccessResponse(c, String.join("\n", lines), false);
 				});
 	}
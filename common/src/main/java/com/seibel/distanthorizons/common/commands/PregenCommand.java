@@ -3,11 +3,10 @@ package com.seibel.distanthorizons.common.commands;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
-import com.seibel.distanthorizons.common.wrappers.world.ServerLevelWrapper;
 import com.seibel.distanthorizons.core.api.internal.SharedApi;
 import com.seibel.distanthorizons.core.generation.PregenManager;
-import com.seibel.distanthorizons.core.pos.blockPos.DhBlockPos2D;
 import com.seibel.distanthorizons.core.world.DhServerWorld;
+import org.jetbrains.annotations.Nullable;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.arguments.DimensionArgument;
 import net.minecraft.commands.arguments.coordinates.ColumnPosArgument;
@@ -18,6 +17,10 @@ import java.util.Objects;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 
+import static com.mojang.brigadier.arguments.BoolArgumentType.bool;
+import static com.mojang.brigadier.arguments.BoolArgumentType.getBool;
+import static com.mojang.brigadier.arguments.DoubleArgumentType.doubleArg;
+import static com.mojang.brigadier.arguments.DoubleArgumentType.getDouble;
 import static com.mojang.brigadier.arguments.IntegerArgumentType.getInteger;
 import static com.mojang.brigadier.arguments.IntegerArgumentType.integer;
 import static net.minecraft.commands.Commands.argument;
@@ -25,6 +28,12 @@ import static net.minecraft.commands.Commands.literal;
 
 public class PregenCommand extends AbstractCommand
 {
+	/** only one pregen can run at a time */
+	@Nullable
+	private static volatile PregenJob runningJob = null;
+	
+	
+	
 	private PregenManager getPregenManager()
 	{
 		DhServerWorld world = (DhServerWorld) Objects.requireNonNull(SharedApi.getAbstractDhWorld());
@@ -43,18 +52,43 @@ public class PregenCommand extends AbstractCommand
 								.then(argument("chunkRadius", integer(32))
 										.executes(this::pregenStart))));
 		
+		LiteralArgumentBuilder<CommandSourceStack> resumeCommand = literal("resume")
+				.then(argument("dimension", DimensionArgument.dimension())
+						.executes(this::pregenResume));
+		
 		LiteralArgumentBuilder<CommandSourceStack> stopCommand = literal("stop")
 				.executes(this::pregenStop);
 		
+		LiteralArgumentBuilder<CommandSourceStack> throttleCommand = literal("throttle")
+				.executes(this::pregenThrottleStatus)
+				.then(literal("pauseWhenPlayersOnline")
+						.then(argument("pause", bool())
+								.executes(this::pregenThrottlePauseWhenPlayersOnline)))
+				.then(literal("minTps")
+						// 0 disables the TPS check
+						.then(argument("minTps", doubleArg(0, 20))
+								.executes(this::pregenThrottleMinTps)))
+				.then(literal("tileChunkWidth")
+						.then(argument("tileChunkWidth", integer(PregenJob.MIN_TILE_CHUNK_WIDTH))
+								.executes(this::pregenThrottleTileChunkWidth)));
+		
 		return literal("pregen")
 				.then(statusCommand)
 				.then(startCommand)
-				.then(stopCommand);
+				.then(resumeCommand)
+				.then(stopCommand)
+				.then(throttleCommand);
 	}
 	
 	
 	private int pregenStatus(CommandContext<CommandSourceStack> c)
 	{
+		PregenJob job = runningJob;
+		if (job != null)
+		{
+			return this.sendSuccessResponse(c, job.getStatusString(), false);
+		}
+		
 		String statusString = this.getPregenManager().getStatusString();
 		//noinspection ReplaceNullCheck
 		if (statusString != null)
@@ -69,22 +103,60 @@ public class PregenCommand extends AbstractCommand
 	
 	private int pregenStart(CommandContext<CommandSourceStack> c) throws CommandSyntaxException
 	{
-		this.sendSuccessResponse(c, "Starting pregen. Progress will be in the server console.", true);
+		if (runningJob != null)
+		{
+			return this.sendFailureResponse(c, "Pregen is already running");
+		}
 		
 		ServerLevel level = DimensionArgument.getDimension(c, "dimension");
+		if (PregenJob.hasResumableCheckpoint(level))
+		{
+			// starting a new job would overwrite the existing progress
+			return this.sendFailureResponse(c, "Unfinished pregen progress exists for this dimension, use \"/dh pregen resume\" to continue it or delete ["+PregenJobCheckpoint.FILE_NAME+"] from the dimension's save folder to start a new pregen");
+		}
+		
 		ColumnPos origin = ColumnPosArgument.getColumnPos(c, "origin");
 		int chunkRadius = getInteger(c, "chunkRadius");
 		
-		CompletableFuture<Void> future = this.getPregenManager().startPregen(
-				ServerLevelWrapper.getWrapper(level),
-				new DhBlockPos2D(#if MC_VER >= MC_1_19_2 origin.x(), origin.z() #else origin.x, origin.z #endif),
+		PregenJob job = PregenJob.createNew(
+				level, this.getPregenManager(),
+				#if MC_VER >= MC_1_19_2 origin.x(), origin.z() #else origin.x, origin.z #endif,
 				chunkRadius
 		);
 		
-		future.whenComplete((result, throwable) -> {
+		this.sendSuccessResponse(c, "Starting pregen. Progress will be in the server console.", true);
+		this.runJob(c, job);
+		return 1;
+	}
+	
+	private int pregenResume(CommandContext<CommandSourceStack> c) throws CommandSyntaxException
+	{
+		if (runningJob != null)
+		{
+			return this.sendFailureResponse(c, "Pregen is already running");
+		}
+		
+		ServerLevel level = DimensionArgument.getDimension(c, "dimension");
+		PregenJob job = PregenJob.tryResume(level, this.getPregenManager());
+		if (job == null)
+		{
+			return this.sendFailureResponse(c, "No pregen progress found for this dimension");
+		}
+		
+		this.sendSuccessResponse(c, "Resuming pregen. Progress will be in the server console.\n" + job.getStatusString(), true);
+		this.runJob(c, job);
+		return 1;
+	}
+	
+	private void runJob(CommandContext<CommandSourceStack> c, PregenJob job)
+	{
+		runningJob = job;
+		job.future.whenComplete((result, throwable) -> {
+			runningJob = null;
+			
 			if (throwable instanceof CancellationException)
 			{
-				this.sendSuccessResponse(c, "Pregen is cancelled", true);
+				this.sendSuccessResponse(c, "Pregen is cancelled, use \"/dh pregen resume\" to continue it", true);
 				return;
 			}
 			else if (throwable != null)
@@ -95,12 +167,18 @@ public class PregenCommand extends AbstractCommand
 			
 			this.sendSuccessResponse(c, "Pregen is complete", true);
 		});
-		
-		return 1;
+		job.start();
 	}
 	
 	private int pregenStop(CommandContext<CommandSourceStack> c)
 	{
+		PregenJob job = runningJob;
+		if (job != null)
+		{
+			job.stop();
+			return 1;
+		}
+		
 		CompletableFuture<Void> runningPregen = this.getPregenManager().getRunningPregen();
 		if (runningPregen == null)
 		{
@@ -111,4 +189,44 @@ public class PregenCommand extends AbstractCommand
 		return 1;
 	}
 	
+	
+	
+	//===========//
+	// throttles //
+	//===========//
+	
+	private int pregenThrottleStatus(CommandContext<CommandSourceStack> c) { return this.sendSuccessResponse(c, "Pregen throttles: " + PregenJob.getDefaultSettingsString(), false); }
+	
+	private int pregenThrottlePauseWhenPlayersOnline(CommandContext<CommandSourceStack> c)
+	{
+		boolean pause = getBool(c, "pause");
+		PregenJob.setDefaultPauseWhenPlayersOnline(pause);
+		
+		PregenJob job = runningJob;
+		if (job != null)
+		{
+			job.setPauseWhenPlayersOnline(pause);
+		}
+		return this.sendSuccessResponse(c, "Pregen will " + (pause ? "" : "not ") + "pause when players are online", true);
+	}
+	
+	private int pregenThrottleMinTps(CommandContext<CommandSourceStack> c)
+	{
+		double minTps = getDouble(c, "minTps");
+		PregenJob.setDefaultMinTps(minTps);
+		
+		PregenJob job = runningJob;
+		if (job != null)
+		{
+			job.setMinTps(minTps);
+		}
+		return this.sendSuccessResponse(c, (minTps > 0) ? ("Pregen will pause while the TPS is below " + minTps) : "Pregen TPS check disabled", true);
+	}
+	
+	private int pregenThrottleTileChunkWidth(CommandContext<CommandSourceStack> c)
+	{
+		PregenJob.setDefaultTileChunkWidth(getInteger(c, "tileChunkWidth"));
+		return this.sendSuccessResponse(c, "Pregen throttles: " + PregenJob.getDefaultSettingsString() + "\nThe tile width will be used by the next new pregen.", true);
+	}
+	
 }
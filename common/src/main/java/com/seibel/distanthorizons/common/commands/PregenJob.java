@@ -0,0 +1,446 @@
+package com.seibel.distanthorizons.common.commands;
+
+import com.seibel.distanthorizons.common.wrappers.world.ServerLevelWrapper;
+import com.seibel.distanthorizons.core.generation.PregenManager;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.blockPos.DhBlockPos2D;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs a large pregen as a series of smaller square tiles
+ * so progress can be checkpointed and resumed after a stop, crash, or restart. <br><br>
+ *
+ * Tiles are generated in rings around the origin (center tile first),
+ * after each tile finishes the next ring/tile index is written to a {@link PregenJobCheckpoint}. <br>
+ * Throttles (pausing while players are online and a minimum TPS)
+ * are checked before each tile is started.
+ */
+public class PregenJob
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	/** how long to wait before re-checking the throttles while paused */
+	private static final long PAUSE_POLL_DELAY_MS = 5_000;
+	
+	/** MC's normal tick rate */
+	private static final double MAX_TPS = 20.0;
+	
+	
+	/** the smallest radius the pregen command allows, tiles are never made smaller than this */
+	public static final int MIN_TILE_CHUNK_RADIUS = 32;
+	/** default tile width, 64 chunks is the same size as the smallest pregen the command allows */
+	public static final int DEFAULT_TILE_CHUNK_WIDTH = MIN_TILE_CHUNK_RADIUS * 2;
+	public static final int MIN_TILE_CHUNK_WIDTH = MIN_TILE_CHUNK_RADIUS * 2;
+	
+	// defaults used by new jobs, running jobs can be changed via the throttle command
+	private static volatile boolean defaultPauseWhenPlayersOnline = false;
+	private static volatile double defaultMinTps = 0;
+	private static volatile int defaultTileChunkWidth = DEFAULT_TILE_CHUNK_WIDTH;
+	
+	
+	private final ServerLevel level;
+	private final PregenManager pregenManager;
+	private final File checkpointFile;
+	private final PregenJobCheckpoint checkpoint;
+	
+	/** the number of tile rings needed to cover the full radius */
+	private final int ringCount;
+	/** 
+	 * the radius used when generating each tile, 
+	 * tiles are placed this radius * 2 apart.
+	 */
+	private final int tileChunkRadius;
+	
+	/** completed once every tile has been generated, can be cancelled to stop the job */
+	public final CompletableFuture<Void> future = new CompletableFuture<>();
+	private final ScheduledExecutorService executor;
+	
+	@Nullable
+	private volatile CompletableFuture<Void> runningTileFuture = null;
+	/** null if the job isn't paused */
+	@Nullable
+	private volatile String pauseReason = null;
+	
+	/** used to calculate the generation rate for this session (resuming resets the rate) */
+	private final long sessionStartNanoTime = System.nanoTime();
+	private final long sessionStartChunkCount;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public static PregenJob createNew(ServerLevel level, PregenManager pregenManager, int originBlockX, int originBlockZ, int chunkRadius)
+	{
+		PregenJobCheckpoint checkpoint = new PregenJobCheckpoint(
+			ServerLevelWrapper.getWrapper(level).getDimensionName(),
+			originBlockX, originBlockZ,
+			chunkRadius, defaultTileChunkWidth,
+			defaultPauseWhenPlayersOnline, defaultMinTps);
+		return new PregenJob(level, pregenManager, checkpoint);
+	}
+	
+	/** @return null if the given level doesn't have a checkpoint to resume */
+	@Nullable
+	public static PregenJob tryResume(ServerLevel level, PregenManager pregenManager)
+	{
+		PregenJobCheckpoint checkpoint = PregenJobCheckpoint.tryLoad(getCheckpointFile(level));
+		if (checkpoint == null)
+		{
+			return null;
+		}
+		
+		return new PregenJob(level, pregenManager, checkpoint);
+	}
+	
+	private PregenJob(ServerLevel level, PregenManager pregenManager, PregenJobCheckpoint checkpoint)
+	{
+		this.level = level;
+		this.pregenManager = pregenManager;
+		this.checkpointFile = getCheckpointFile(level);
+		this.checkpoint = checkpoint;
+		this.sessionStartChunkCount = checkpoint.completedChunkCount;
+		
+		// Tiles are sized from the requested radius so the tile grid only overshoots the
+		// requested area by a few chunks, instead of adding whole tiles on each edge.
+		// The tile count per axis is always odd so the center tile sits on the origin.
+		int chunkWidth = checkpoint.chunkRadius * 2;
+		int tileCountPerAxis = roundUpToOdd((chunkWidth + checkpoint.tileChunkWidth - 1) / checkpoint.tileChunkWidth);
+		// don't split the area into tiles smaller than the command allows,
+		// tiles may end up slightly wider than the requested tile width because of this
+		int maxTileCountPerAxis = roundDownToOdd(Math.max(1, checkpoint.chunkRadius / MIN_TILE_CHUNK_RADIUS));
+		tileCountPerAxis = Math.min(tileCountPerAxis, maxTileCountPerAxis);
+		
+		this.ringCount = (tileCountPerAxis + 1) / 2;
+		this.tileChunkRadius = (checkpoint.chunkRadius + tileCountPerAxis - 1) / tileCountPerAxis;
+		
+		this.executor = Executors.newSingleThreadScheduledExecutor((runnable) ->
+		{
+			Thread thread = new Thread(runnable, "DH-Pregen Job");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		this.future.whenComplete((result, throwable) ->
+		{
+			if (this.runningTileFuture != null)
+			{
+				// the tile future wraps the pregen manager's future,
+				// so the manager's future needs to be cancelled directly
+				CompletableFuture<Void> runningPregen = this.pregenManager.getRunningPregen();
+				if (runningPregen != null)
+				{
+					runningPregen.cancel(true);
+				}
+			}
+			this.executor.shutdownNow();
+		});
+	}
+	
+	/** @return true if the given level has a valid checkpoint that {@link PregenJob#createNew} would overwrite */
+	public static boolean hasResumableCheckpoint(ServerLevel level) { return PregenJobCheckpoint.tryLoad(getCheckpointFile(level)) != null; }
+	
+	private static File getCheckpointFile(ServerLevel level) { return new File(ServerLevelWrapper.getWrapper(level).getMcSaveFolder(), PregenJobCheckpoint.FILE_NAME); }
+	
+	
+	
+	//=========//
+	// running //
+	//=========//
+	
+	public void start()
+	{
+		this.executor.execute(() ->
+		{
+			// save immediately so the job can be resumed even if the first tile never finishes
+			this.trySaveCheckpoint();
+			this.tryStartNextTile();
+		});
+	}
+	
+	/** Stops the job, the checkpoint is kept so the job can be resumed later. */
+	public void stop() { this.future.cancel(true); }
+	
+	private void tryStartNextTile()
+	{
+		if (this.future.isDone())
+		{
+			return;
+		}
+		
+		if (this.checkpoint.nextRingIndex >= this.ringCount)
+		{
+			PregenJobCheckpoint.delete(this.checkpointFile);
+			this.future.complete(null);
+			return;
+		}
+		
+		
+		// check throttles
+		this.pauseReason = this.getPauseReason();
+		if (this.pauseReason != null)
+		{
+			this.executor.schedule(this::tryStartNextTile, PAUSE_POLL_DELAY_MS, TimeUnit.MILLISECONDS);
+			return;
+		}
+		
+		
+		// tile positions are relative to the origin tile
+		int ringIndex = this.checkpoint.nextRingIndex;
+		int tileIndex = this.checkpoint.nextTileIndex;
+		int tileX = getTileOffsetX(ringIndex, tileIndex);
+		int tileZ = getTileOffsetZ(ringIndex, tileIndex);
+		int tileCenterBlockX = this.checkpoint.originBlockX + (tileX * this.tileChunkRadius * 2 * 16);
+		int tileCenterBlockZ = this.checkpoint.originBlockZ + (tileZ * this.tileChunkRadius * 2 * 16);
+		
+		// pregen needs to be started from the server thread, same as when run from the command
+		MinecraftServer server = this.level.getServer();
+		CompletableFuture<Void> tileFuture = CompletableFuture.supplyAsync(() ->
+				this.pregenManager.startPregen(
+					ServerLevelWrapper.getWrapper(this.level),
+					new DhBlockPos2D(tileCenterBlockX, tileCenterBlockZ),
+					this.tileChunkRadius),
+				server)
+			.thenCompose(Function.identity());
+		this.runningTileFuture = tileFuture;
+		
+		tileFuture.whenComplete((result, throwable) ->
+		{
+			this.runningTileFuture = null;
+			if (this.future.isDone())
+			{
+				return;
+			}
+			
+			Throwable actualThrowable = throwable;
+			while (actualThrowable instanceof CompletionException)
+			{
+				actualThrowable = actualThrowable.getCause();
+			}
+			
+			if (actualThrowable instanceof CancellationException)
+			{
+				// the tile was stopped outside this job (IE by the server shutting down)
+				this.future.cancel(true);
+				return;
+			}
+			else if (actualThrowable != null)
+			{
+				this.future.completeExceptionally(actualThrowable);
+				return;
+			}
+			
+			this.onTileComplete();
+			this.executor.execute(this::tryStartNextTile);
+		});
+	}
+	
+	private void onTileComplete()
+	{
+		this.checkpoint.completedChunkCount += this.getTileChunkCount();
+		this.checkpoint.nextTileIndex++;
+		if (this.checkpoint.nextTileIndex >= getTileCountInRing(this.checkpoint.nextRingIndex))
+		{
+			this.checkpoint.nextRingIndex++;
+			this.checkpoint.nextTileIndex = 0;
+		}
+		
+		this.trySaveCheckpoint();
+		LOGGER.info(this.getStatusString());
+	}
+	
+	private void trySaveCheckpoint()
+	{
+		try
+		{
+			this.checkpoint.save(this.checkpointFile);
+		}
+		catch (IOException e)
+		{
+			// not fatal, the job can continue, it just won't be able to resume from this point
+			LOGGER.warn("Unable to save pregen checkpoint ["+this.checkpointFile+"], error: ["+e.getMessage()+"].", e);
+		}
+	}
+	
+	/** @return null if the job can continue */
+	@Nullable
+	private String getPauseReason()
+	{
+		MinecraftServer server = this.level.getServer();
+		
+		if (this.checkpoint.pauseWhenPlayersOnline
+			&& server.getPlayerCount() > 0)
+		{
+			return "players online";
+		}
+		
+		if (this.checkpoint.minTps > 0)
+		{
+			double tps = getTps(server);
+			if (tps < this.checkpoint.minTps)
+			{
+				return "TPS ["+String.format("%.1f", tps)+"] below ["+this.checkpoint.minTps+"]";
+			}
+		}
+		
+		return null;
+	}
+	
+	private static double getTps(MinecraftServer server)
+	{
+		#if MC_VER <= MC_1_20_2
+		double averageTickMs = server.getAverageTickTime();
+		#else
+		double averageTickMs = server.getAverageTickTimeNanos() / 1_000_000.0;
+		#endif
+		
+		if (averageTickMs <= 0)
+		{
+			return MAX_TPS;
+		}
+		return Math.min(MAX_TPS, 1_000.0 / averageTickMs);
+	}
+	
+	
+	
+	//================//
+	// tile positions //
+	//================//
+	
+	private static int roundUpToOdd(int value) { return (value % 2 == 0) ? value + 1 : value; }
+	private static int roundDownToOdd(int value) { return (value % 2 == 0) ? value - 1 : value; }
+	
+	private static int getTileCountInRing(int ringIndex) { return (ringIndex == 0) ? 1 : (ringIndex * 8); }
+	
+	/**
+	 * Tiles are ordered clockwise around the ring,
+	 * starting at the ring's minimum corner.
+	 */
+	private static int getTileOffsetX(int ringIndex, int tileIndex)
+	{
+		if (ringIndex == 0)
+		{
+			return 0;
+		}
+		
+		int sideLength = ringIndex * 2;
+		int side = tileIndex / sideLength;
+		int offset = tileIndex % sideLength;
+		switch (side)
+		{
+			case 0: return -ringIndex + offset; // min Z edge
+			case 1: return ringIndex; // max X edge
+			case 2: return ringIndex - offset; // max Z edge
+			default: return -ringIndex; // min X edge
+		}
+	}
+	private static int getTileOffsetZ(int ringIndex, int tileIndex)
+	{
+		if (ringIndex == 0)
+		{
+			return 0;
+		}
+		
+		int sideLength = ringIndex * 2;
+		int side = tileIndex / sideLength;
+		int offset = tileIndex % sideLength;
+		switch (side)
+		{
+			case 0: return -ringIndex; // min Z edge
+			case 1: return -ringIndex + offset; // max X edge
+			case 2: return ringIndex; // max Z edge
+			default: return ringIndex - offset; // min X edge
+		}
+	}
+	
+	private long getTileChunkCount() { return (long) (this.tileChunkRadius * 2) * (this.tileChunkRadius * 2); }
+	
+	private long getTotalChunkCount()
+	{
+		// all rings together make up a square of tiles
+		long tileWidth = (this.ringCount * 2L) - 1;
+		return tileWidth * tileWidth * this.getTileChunkCount();
+	}
+	
+	
+	
+	//=================//
+	// getters/setters //
+	//=================//
+	
+	public void setPauseWhenPlayersOnline(boolean pause) { this.checkpoint.pauseWhenPlayersOnline = pause; }
+	public void setMinTps(double minTps) { this.checkpoint.minTps = minTps; }
+	
+	public static void setDefaultPauseWhenPlayersOnline(boolean pause) { defaultPauseWhenPlayersOnline = pause; }
+	public static void setDefaultMinTps(double minTps) { defaultMinTps = minTps; }
+	/** only affects new jobs, resumed jobs keep the tile width they were started with */
+	public static void setDefaultTileChunkWidth(int tileChunkWidth) { defaultTileChunkWidth = Math.max(MIN_TILE_CHUNK_WIDTH, tileChunkWidth); }
+	
+	public static String getDefaultSettingsString()
+	{
+		return "pause when players online: ["+defaultPauseWhenPlayersOnline+"], " +
+			"min TPS: ["+(defaultMinTps > 0 ? defaultMinTps : "disabled")+"], " +
+			"tile width: ["+defaultTileChunkWidth+"] chunks";
+	}
+	
+	public String getStatusString()
+	{
+		long totalChunkCount = this.getTotalChunkCount();
+		long completedChunkCount = this.checkpoint.completedChunkCount;
+		long remainingChunkCount = Math.max(0, totalChunkCount - completedChunkCount);
+		
+		double elapsedSeconds = (System.nanoTime() - this.sessionStartNanoTime) / 1_000_000_000.0;
+		long sessionChunkCount = completedChunkCount - this.sessionStartChunkCount;
+		double chunksPerSecond = (elapsedSeconds > 0) ? (sessionChunkCount / elapsedSeconds) : 0;
+		
+		String etaString = (chunksPerSecond > 0) ? formatDuration((long) (remainingChunkCount / chunksPerSecond)) : "unknown";
+		
+		int ringIndex = Math.min(this.checkpoint.nextRingIndex, this.ringCount - 1);
+		StringBuilder builder = new StringBuilder();
+		builder.append("Pregen [").append(this.checkpoint.dimensionName).append("]: ")
+			.append("ring [").append(this.checkpoint.nextRingIndex + 1).append("/").append(this.ringCount).append("], ")
+			.append("tile [").append(this.checkpoint.nextTileIndex + 1).append("/").append(getTileCountInRing(ringIndex)).append("], ")
+			.append("chunks [").append(completedChunkCount).append("/").append(totalChunkCount).append("] ")
+			.append(String.format("(%.1f%%)", (completedChunkCount * 100.0) / totalChunkCount)).append(", ")
+			.append(String.format("%.1f", chunksPerSecond)).append(" chunks/s, ")
+			.append("ETA [").append(etaString).append("], ")
+			.append("remaining [").append(remainingChunkCount).append("] chunks in [").append(this.ringCount - this.checkpoint.nextRingIndex).append("] rings");
+		
+		String pauseReason = this.pauseReason;
+		if (pauseReason != null)
+		{
+			builder.append("\nPaused: ").append(pauseReason);
+		}
+		
+		String tileStatus = this.pregenManager.getStatusString();
+		if (tileStatus != null)
+		{
+			builder.append("\nCurrent tile: ").append(tileStatus);
+		}
+		
+		return builder.toString();
+	}
+	
+	private static String formatDuration(long totalSeconds)
+	{
+		long hours = totalSeconds / 3_600;
+		long minutes = (totalSeconds % 3_600) / 60;
+		long seconds = totalSeconds % 60;
+		return String.format("%d:%02d:%02d", hours, minutes, seconds);
+	}
+	
+}
@@ -0,0 +1,185 @@
+package com.seibel.distanthorizons.common.commands;
+
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Small on-disk record of a {@link PregenJob}'s progress,
+ * stored in the dimension's data folder so a stopped/crashed
+ * pregen can be continued via "/dh pregen resume". <br><br>
+ *
+ * Jobs are processed one tile at a time in ring order,
+ * so the next ring/tile index is enough to describe everything that's been completed.
+ */
+public class PregenJobCheckpoint
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	public static final String FILE_NAME = "DistantHorizons-pregen.properties";
+	/** incremented if the file layout changes in a way that old checkpoints can't be read */
+	private static final int FORMAT_VERSION = 1;
+	
+	
+	public final String dimensionName;
+	public final int originBlockX;
+	public final int originBlockZ;
+	public final int chunkRadius;
+	/** width of each generated tile in chunks */
+	public final int tileChunkWidth;
+	
+	/** every ring before this index has been completed */
+	public int nextRingIndex = 0;
+	/** every tile in {@link PregenJobCheckpoint#nextRingIndex} before this index has been completed */
+	public int nextTileIndex = 0;
+	public long completedChunkCount = 0;
+	
+	// throttles can be changed by the command thread while the job's thread is reading them
+	public volatile boolean pauseWhenPlayersOnline;
+	/** 0 = disabled */
+	public volatile double minTps;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public PregenJobCheckpoint(
+		String dimensionName, int originBlockX, int originBlockZ,
+		int chunkRadius, int tileChunkWidth,
+		boolean pauseWhenPlayersOnline, double minTps)
+	{
+		this.dimensionName = dimensionName;
+		this.originBlockX = originBlockX;
+		this.originBlockZ = originBlockZ;
+		this.chunkRadius = chunkRadius;
+		this.tileChunkWidth = tileChunkWidth;
+		this.pauseWhenPlayersOnline = pauseWhenPlayersOnline;
+		this.minTps = minTps;
+	}
+	
+	
+	
+	//=============//
+	// file access //
+	//=============//
+	
+	/** @return null if no checkpoint exists or if the file couldn't be read or contains invalid values */
+	@Nullable
+	public static PregenJobCheckpoint tryLoad(File file)
+	{
+		if (!file.exists())
+		{
+			return null;
+		}
+		
+		Properties properties = new Properties();
+		try (InputStream inputStream = Files.newInputStream(file.toPath()))
+		{
+			properties.load(inputStream);
+			
+			int formatVersion = Integer.parseInt(properties.getProperty("formatVersion", "-1"));
+			if (formatVersion != FORMAT_VERSION)
+			{
+				LOGGER.warn("Unable to resume pregen, checkpoint ["+file+"] has unsupported format version ["+formatVersion+"].");
+				return null;
+			}
+			
+			PregenJobCheckpoint checkpoint = new PregenJobCheckpoint(
+				properties.getProperty("dimensionName"),
+				Integer.parseInt(properties.getProperty("originBlockX")),
+				Integer.parseInt(properties.getProperty("originBlockZ")),
+				Integer.parseInt(properties.getProperty("chunkRadius")),
+				Integer.parseInt(properties.getProperty("tileChunkWidth")),
+				Boolean.parseBoolean(properties.getProperty("pauseWhenPlayersOnline")),
+				Double.parseDouble(properties.getProperty("minTps"))
+			);
+			checkpoint.nextRingIndex = Integer.parseInt(properties.getProperty("nextRingIndex"));
+			checkpoint.nextTileIndex = Integer.parseInt(properties.getProperty("nextTileIndex"));
+			checkpoint.completedChunkCount = Long.parseLong(properties.getProperty("completedChunkCount"));
+			
+			// the job divides by the radius and tile width, so bad values can't be resumed
+			if (checkpoint.chunkRadius <= 0
+				|| checkpoint.tileChunkWidth <= 0
+				|| checkpoint.nextRingIndex < 0
+				|| checkpoint.nextTileIndex < 0
+				|| checkpoint.completedChunkCount < 0)
+			{
+				LOGGER.warn("Unable to resume pregen, checkpoint ["+file+"] contains invalid values, starting a new pregen will replace it.");
+				return null;
+			}
+			
+			return checkpoint;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// runtime exceptions include NumberFormat and NullPointer exceptions from missing/malformed fields
+			LOGGER.warn("Unable to read pregen checkpoint ["+file+"], error: ["+e.getMessage()+"].", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * The checkpoint is written to a temporary file first
+	 * so a crash mid-write won't corrupt the existing checkpoint.
+	 */
+	public void save(File file) throws IOException
+	{
+		Properties properties = new Properties();
+		properties.setProperty("formatVersion", Integer.toString(FORMAT_VERSION));
+		properties.setProperty("dimensionName", this.dimensionName);
+		properties.setProperty("originBlockX", Integer.toString(this.originBlockX));
+		properties.setProperty("originBlockZ", Integer.toString(this.originBlockZ));
+		properties.setProperty("chunkRadius", Integer.toString(this.chunkRadius));
+		properties.setProperty("tileChunkWidth", Integer.toString(this.tileChunkWidth));
+		properties.setProperty("nextRingIndex", Integer.toString(this.nextRingIndex));
+		properties.setProperty("nextTileIndex", Integer.toString(this.nextTileIndex));
+		properties.setProperty("completedChunkCount", Long.toString(this.completedChunkCount));
+		properties.setProperty("pauseWhenPlayersOnline", Boolean.toString(this.pauseWhenPlayersOnline));
+		properties.setProperty("minTps", Double.toString(this.minTps));
+		
+		File parentFolder = file.getParentFile();
+		if (parentFolder != null && !parentFolder.exists())
+		{
+			Files.createDirectories(parentFolder.toPath());
+		}
+		
+		File tempFile = new File(file.getPath() + ".tmp");
+		try (OutputStream outputStream = Files.newOutputStream(tempFile.toPath()))
+		{
+			properties.store(outputStream, "Distant Horizons pregen progress, delete this file to discard the progress.");
+		}
+		
+		try
+		{
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	public static void delete(File file)
+	{
+		try
+		{
+			Files.deleteIfExists(file.toPath());
+		}
+		catch (IOException e)
+		{
+			LOGGER.warn("Unable to delete pregen checkpoint ["+file+"], error: ["+e.getMessage()+"].", e);
+		}
+	}
+	
+}
@@ -0,0 +1,660 @@
+package com.seibel.distanthorizons.common.render.arena;
+
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bookkeeping for a GPU memory arena made up of a few large pages,
+ * used so LOD vertex buffers don't need to create and destroy
+ * their own GPU buffer every time they're rebuilt. <br>
+ * This class doesn't touch the GPU, creating/deleting the actual buffers
+ * is handled by the {@link IPageListener}, so it can be tested without a GPU. <br><br>
+ *
+ * Sizes and offsets are in "units", which are defined by the caller
+ * (IE vertices, so every offset can be used as a base vertex). <br><br>
+ *
+ * <strong>Small allocations</strong> are rounded up to a size class and placed in a slab,
+ * a fixed size range of a page split into equal blocks of a single size class. <br>
+ * Size classes step by quarter powers of 2 so at most ~20% of a block is wasted. <br><br>
+ *
+ * <strong>Large allocations</strong> (bigger than the largest size class) are carved directly
+ * out of a page's free list (first fit), adjacent free ranges are always merged. <br><br>
+ *
+ * <strong>Frees are deferred</strong> until {@link LodBufferArenaAllocator#framesBeforeReuse} frames
+ * after {@link LodBufferArenaAllocator#free(Allocation)} was called
+ * so the GPU is done with any draws using the old data before the range is re-written. <br><br>
+ *
+ * Not thread safe, should only be used on the render thread.
+ */
+public class LodBufferArenaAllocator
+{
+	/** every allocator that should be shown in the F3 menu */
+	private static final CopyOnWriteArrayList<LodBufferArenaAllocator> ACTIVE_ALLOCATORS = new CopyOnWriteArrayList<>();
+	
+	
+	public final String name;
+	
+	private final int pageUnitSize;
+	private final int slabUnitSize;
+	private final int maxPageCount;
+	private final int framesBeforeReuse;
+	/** only used for the F3 menu */
+	private final int bytesPerUnit;
+	private final IPageListener pageListener;
+	
+	/** ascending, the index of each size is its size class */
+	private final int[] sizeClassUnitSizes;
+	/** slabs that have at least one free block, indexed by size class */
+	private final ArrayList<ArrayList<Slab>> partialSlabsBySizeClass;
+	
+	/** null entries are page indices that can be re-used */
+	private final ArrayList<Page> pages = new ArrayList<>();
+	private final ArrayDeque<PendingFree> pendingFrees = new ArrayDeque<>();
+	private long frameIndex = 0;
+	
+	// stats //
+	private long requestedUnitCount = 0;
+	private long reservedUnitCount = 0;
+	private int allocationCount = 0;
+	private int failedAllocationCount = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	/**
+	 * @param pageUnitSize must be a multiple of slabUnitSize
+	 * @param slabUnitSize the largest size class will be a quarter of this
+	 * @param minBlockUnitSize the smallest size class
+	 * @param framesBeforeReuse how many {@link LodBufferArenaAllocator#onFrameStart()} calls are needed before a freed range can be re-used
+	 */
+	public LodBufferArenaAllocator(
+		String name,
+		int pageUnitSize, int slabUnitSize, int minBlockUnitSize,
+		int maxPageCount, int framesBeforeReuse, int bytesPerUnit,
+		IPageListener pageListener)
+	{
+		if (minBlockUnitSize <= 0
+			|| slabUnitSize < minBlockUnitSize * 4
+			|| pageUnitSize < slabUnitSize
+			|| pageUnitSize % slabUnitSize != 0)
+		{
+			throw new IllegalArgumentException("Invalid arena sizes, page: ["+pageUnitSize+"], slab: ["+slabUnitSize+"], min block: ["+minBlockUnitSize+"].");
+		}
+		
+		this.name = name;
+		this.pageUnitSize = pageUnitSize;
+		this.slabUnitSize = slabUnitSize;
+		this.maxPageCount = maxPageCount;
+		this.framesBeforeReuse = framesBeforeReuse;
+		this.bytesPerUnit = bytesPerUnit;
+		this.pageListener = pageListener;
+		
+		this.sizeClassUnitSizes = createSizeClasses(minBlockUnitSize, slabUnitSize / 4);
+		this.partialSlabsBySizeClass = new ArrayList<>(this.sizeClassUnitSizes.length);
+		for (int i = 0; i < this.sizeClassUnitSizes.length; i++)
+		{
+			this.partialSlabsBySizeClass.add(new ArrayList<>());
+		}
+	}
+	private static int[] createSizeClasses(int minSize, int maxSize)
+	{
+		ArrayList<Integer> sizeList = new ArrayList<>();
+		for (long powerOfTwo = minSize; powerOfTwo <= maxSize; powerOfTwo *= 2)
+		{
+			// 1, 1.25, 1.5, and 1.75 times each power of 2
+			for (int quarter = 4; quarter < 8; quarter++)
+			{
+				long size = (powerOfTwo * quarter) / 4;
+				if (size <= maxSize
+					&& (sizeList.isEmpty() || size > sizeList.get(sizeList.size() - 1)))
+				{
+					sizeList.add((int) size);
+				}
+			}
+		}
+		
+		int[] sizes = new int[sizeList.size()];
+		for (int i = 0; i < sizes.length; i++)
+		{
+			sizes[i] = sizeList.get(i);
+		}
+		return sizes;
+	}
+	
+	/** Adds this allocator's stats to the F3 menu. */
+	public void registerDebugMenu() { ACTIVE_ALLOCATORS.addIfAbsent(this); }
+	
+	//endregion
+	
+	
+	
+	//============//
+	// allocation //
+	//============//
+	//region
+	
+	/** @return null if the arena is full */
+	@Nullable
+	public Allocation allocate(int unitSize)
+	{
+		if (unitSize <= 0)
+		{
+			throw new IllegalArgumentException("Allocation size must be positive, given: ["+unitSize+"].");
+		}
+		
+		Allocation allocation;
+		int sizeClass = this.getSizeClass(unitSize);
+		if (sizeClass != -1)
+		{
+			allocation = this.allocateFromSlab(sizeClass, unitSize);
+		}
+		else
+		{
+			allocation = this.allocateLarge(unitSize);
+		}
+		
+		if (allocation == null)
+		{
+			this.failedAllocationCount++;
+			return null;
+		}
+		
+		this.requestedUnitCount += allocation.unitSize;
+		this.reservedUnitCount += allocation.reservedUnitSize;
+		this.allocationCount++;
+		return allocation;
+	}
+	@Nullable
+	private Allocation allocateFromSlab(int sizeClass, int unitSize)
+	{
+		ArrayList<Slab> partialSlabs = this.partialSlabsBySizeClass.get(sizeClass);
+		Slab slab;
+		if (!partialSlabs.isEmpty())
+		{
+			slab = partialSlabs.get(partialSlabs.size() - 1);
+		}
+		else
+		{
+			int[] pageAndOffset = this.allocateRange(this.slabUnitSize);
+			if (pageAndOffset == null)
+			{
+				return null;
+			}
+			
+			slab = new Slab(this.pages.get(pageAndOffset[0]), pageAndOffset[1], sizeClass, this.sizeClassUnitSizes[sizeClass], this.slabUnitSize);
+			partialSlabs.add(slab);
+		}
+		
+		int blockIndex = slab.popFreeBlock();
+		if (!slab.hasFreeBlock())
+		{
+			// always the last slab in the list
+			partialSlabs.remove(partialSlabs.size() - 1);
+		}
+		
+		int offset = slab.unitOffset + (blockIndex * slab.blockUnitSize);
+		return new Allocation(slab.page.index, offset, unitSize, slab.blockUnitSize, slab);
+	}
+	@Nullable
+	private Allocation allocateLarge(int unitSize)
+	{
+		// rounded so the free list doesn't fill up with tiny slivers
+		int reservedUnitSize = roundUp(unitSize, this.sizeClassUnitSizes[0]);
+		if (reservedUnitSize > this.pageUnitSize)
+		{
+			return null;
+		}
+		
+		int[] pageAndOffset = this.allocateRange(reservedUnitSize);
+		if (pageAndOffset == null)
+		{
+			return null;
+		}
+		
+		return new Allocation(pageAndOffset[0], pageAndOffset[1], unitSize, reservedUnitSize, null);
+	}
+	/** @return null if there's no room, otherwise [page index, unit offset] */
+	@Nullable
+	private int[] allocateRange(int unitSize)
+	{
+		for (int i = 0; i < this.pages.size(); i++)
+		{
+			Page page = this.pages.get(i);
+			if (page != null)
+			{
+				int offset = page.allocateRange(unitSize);
+				if (offset != -1)
+				{
+					return new int[]{ page.index, offset };
+				}
+			}
+		}
+		
+		
+		// no existing page has room
+		Page newPage = this.tryCreatePage();
+		if (newPage == null)
+		{
+			return null;
+		}
+		
+		int offset = newPage.allocateRange(unitSize);
+		return (offset != -1) ? new int[]{ newPage.index, offset } : null;
+	}
+	@Nullable
+	private Page tryCreatePage()
+	{
+		int pageIndex = this.pages.indexOf(null);
+		if (pageIndex == -1)
+		{
+			if (this.pages.size() >= this.maxPageCount)
+			{
+				return null;
+			}
+			
+			pageIndex = this.pages.size();
+			this.pages.add(null);
+		}
+		
+		Page page = new Page(pageIndex, this.pageUnitSize);
+		this.pages.set(pageIndex, page);
+		this.pageListener.onPageCreated(pageIndex, this.pageUnitSize);
+		return page;
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// freeing //
+	//=========//
+	//region
+	
+	/**
+	 * The allocation's range won't be re-used until enough frames have passed
+	 * for the GPU to finish any draws using it.
+	 */
+	public void free(Allocation allocation)
+	{
+		if (allocation.freed)
+		{
+			throw new IllegalStateException("Allocation ["+allocation+"] was freed twice.");
+		}
+		allocation.freed = true;
+		
+		this.requestedUnitCount -= allocation.unitSize;
+		this.allocationCount--;
+		
+		this.pendingFrees.addLast(new PendingFree(allocation, this.frameIndex + this.framesBeforeReuse));
+	}
+	
+	/** Should be called once per frame, releases any frees whose frames have completed. */
+	public void onFrameStart()
+	{
+		this.frameIndex++;
+		
+		// frees are queued in frame order, so only the head needs to be checked
+		while (!this.pendingFrees.isEmpty()
+			&& this.pendingFrees.peekFirst().releaseFrameIndex <= this.frameIndex)
+		{
+			this.release(this.pendingFrees.pollFirst().allocation);
+		}
+	}
+	
+	/** Immediately releases every pending free, should only be used once the GPU is idle. */
+	public void releaseAllPendingFrees()
+	{
+		while (!this.pendingFrees.isEmpty())
+		{
+			this.release(this.pendingFrees.pollFirst().allocation);
+		}
+	}
+	
+	private void release(Allocation allocation)
+	{
+		this.reservedUnitCount -= allocation.reservedUnitSize;
+		
+		Slab slab = allocation.slab;
+		Page page;
+		if (slab != null)
+		{
+			page = slab.page;
+			
+			boolean wasFull = !slab.hasFreeBlock();
+			slab.pushFreeBlock((allocation.unitOffset - slab.unitOffset) / slab.blockUnitSize);
+			
+			ArrayList<Slab> partialSlabs = this.partialSlabsBySizeClass.get(slab.sizeClass);
+			if (slab.isEmpty())
+			{
+				// return the whole slab to the page
+				if (!wasFull)
+				{
+					partialSlabs.remove(slab);
+				}
+				page.freeRange(slab.unitOffset, this.slabUnitSize);
+			}
+			else if (wasFull)
+			{
+				partialSlabs.add(slab);
+			}
+		}
+		else
+		{
+			page = this.pages.get(allocation.pageIndex);
+			page.freeRange(allocation.unitOffset, allocation.reservedUnitSize);
+		}
+		
+		
+		// empty pages are removed, except for the first since it will almost always be needed again
+		if (page.isEmpty()
+			&& page.index != 0)
+		{
+			this.pages.set(page.index, null);
+			this.pageListener.onPageRemoved(page.index);
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	/** @return -1 if the size is too large for a slab */
+	public int getSizeClass(int unitSize)
+	{
+		int index = Arrays.binarySearch(this.sizeClassUnitSizes, unitSize);
+		if (index < 0)
+		{
+			// insertion point, IE the first size class larger than the given size
+			index = -(index + 1);
+		}
+		return (index < this.sizeClassUnitSizes.length) ? index : -1;
+	}
+	public int getSizeClassCount() { return this.sizeClassUnitSizes.length; }
+	
+	public int getPageUnitSize() { return this.pageUnitSize; }
+	public int getPageCount()
+	{
+		int count = 0;
+		for (int i = 0; i < this.pages.size(); i++)
+		{
+			if (this.pages.get(i) != null)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+	public int getAllocationCount() { return this.allocationCount; }
+	public int getPendingFreeCount() { return this.pendingFrees.size(); }
+	
+	/** units requested by live allocations */
+	public long getRequestedUnitCount() { return this.requestedUnitCount; }
+	/** units that can't be handed out, includes size class rounding and pending frees */
+	public long getReservedUnitCount() { return this.reservedUnitCount; }
+	
+	/**
+	 * Each page's fragmentation is (1 - largest free range / free space in that page),
+	 * allocations can't span pages so free space in other pages doesn't make a page less fragmented. <br>
+	 * The pages are then averaged, weighted by how much free space each one has.
+	 * 
+	 * @return 0 if the free space in each page is a single range,
+	 *          approaching 1 as the free space is split into smaller pieces. <br>
+	 *          Free blocks inside partially used slabs aren't counted.
+	 */
+	public float getFragmentation()
+	{
+		long totalFree = 0;
+		// the weighted average of each page's fragmentation simplifies to
+		// 1 - (sum of each page's largest free range / total free)
+		long largestFreeSum = 0;
+		for (int i = 0; i < this.pages.size(); i++)
+		{
+			Page page = this.pages.get(i);
+			if (page != null)
+			{
+				totalFree += page.freeUnitCount;
+				largestFreeSum += page.getLargestFreeRange();
+			}
+		}
+		
+		return (totalFree == 0) ? 0.0f : 1.0f - ((float) largestFreeSum / totalFree);
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// F3 menu //
+	//=========//
+	//region
+	
+	public String getDebugMenuString()
+	{
+		long pageBytes = (long) this.pageUnitSize * this.bytesPerUnit;
+		return this.name + " arena: "
+			+ this.getPageCount() + "/" + this.maxPageCount + " pages, "
+			+ formatMb(this.requestedUnitCount * this.bytesPerUnit) + "/" + formatMb(this.reservedUnitCount * this.bytesPerUnit) + "/" + formatMb(this.getPageCount() * pageBytes) + " MB used/reserved/total, "
+			+ "frag: " + (int) (this.getFragmentation() * 100) + "%, "
+			+ "allocs: " + F3Screen.NUMBER_FORMAT.format(this.allocationCount) + ", "
+			+ "pending frees: " + F3Screen.NUMBER_FORMAT.format(this.pendingFrees.size()) + ", "
+			+ "failed: " + F3Screen.NUMBER_FORMAT.format(this.failedAllocationCount);
+	}
+	private static String formatMb(long byteCount) { return F3Screen.NUMBER_FORMAT.format(byteCount / (1024 * 1024)); }
+	
+	/** Adds a line for every registered allocator. */
+	public static void addStringsToDebugMenu(List<String> messageList)
+	{
+		for (LodBufferArenaAllocator allocator : ACTIVE_ALLOCATORS)
+		{
+			messageList.add(allocator.getDebugMenuString());
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	//region
+	
+	private static int roundUp(int value, int multiple) { return ((value + multiple - 1) / multiple) * multiple; }
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	/** Handles creating and deleting the GPU buffer backing each page. */
+	public interface IPageListener
+	{
+		void onPageCreated(int pageIndex, int unitSize);
+		/** The page's GPU buffer can be deleted, all frees in it have already passed their frame delay. */
+		void onPageRemoved(int pageIndex);
+	}
+	
+	/** A range of units inside a page. */
+	public static class Allocation
+	{
+		public final int pageIndex;
+		public final int unitOffset;
+		/** the requested size */
+		public final int unitSize;
+		/** the size actually taken from the page, includes size class rounding */
+		public final int reservedUnitSize;
+		
+		/** null for large allocations */
+		@Nullable
+		private final Slab slab;
+		private boolean freed = false;
+		
+		private Allocation(int pageIndex, int unitOffset, int unitSize, int reservedUnitSize, @Nullable Slab slab)
+		{
+			this.pageIndex = pageIndex;
+			this.unitOffset = unitOffset;
+			this.unitSize = unitSize;
+			this.reservedUnitSize = reservedUnitSize;
+			this.slab = slab;
+		}
+		
+		@Override
+		public String toString() { return "Allocation[page:" + this.pageIndex + ",offset:" + this.unitOffset + ",size:" + this.unitSize + "/" + this.reservedUnitSize + "]"; }
+		
+	}
+	
+	private static class Page
+	{
+		final int index;
+		final int unitSize;
+		/** offset -> size */
+		final TreeMap<Integer, Integer> freeRangeByOffset = new TreeMap<>();
+		int freeUnitCount;
+		
+		Page(int index, int unitSize)
+		{
+			this.index = index;
+			this.unitSize = unitSize;
+			this.freeRangeByOffset.put(0, unitSize);
+			this.freeUnitCount = unitSize;
+		}
+		
+		/** first fit, @return -1 if there isn't a large enough range */
+		int allocateRange(int unitSize)
+		{
+			for (Map.Entry<Integer, Integer> freeRange : this.freeRangeByOffset.entrySet())
+			{
+				int rangeOffset = freeRange.getKey();
+				int rangeSize = freeRange.getValue();
+				if (rangeSize < unitSize)
+				{
+					continue;
+				}
+				
+				// returning right after modifying the map, so iterating won't throw a ConcurrentModificationException
+				this.freeRangeByOffset.remove(rangeOffset);
+				if (rangeSize > unitSize)
+				{
+					this.freeRangeByOffset.put(rangeOffset + unitSize, rangeSize - unitSize);
+				}
+				
+				this.freeUnitCount -= unitSize;
+				return rangeOffset;
+			}
+			
+			return -1;
+		}
+		
+		void freeRange(int offset, int unitSize)
+		{
+			this.freeUnitCount += unitSize;
+			
+			// merge with the previous range if they touch
+			Map.Entry<Integer, Integer> previousRange = this.freeRangeByOffset.floorEntry(offset);
+			if (previousRange != null
+				&& previousRange.getKey() + previousRange.getValue() == offset)
+			{
+				this.freeRangeByOffset.remove(previousRange.getKey());
+				offset = previousRange.getKey();
+				unitSize += previousRange.getValue();
+			}
+			
+			// merge with the next range if they touch
+			Integer nextRangeSize = this.freeRangeByOffset.remove(offset + unitSize);
+			if (nextRangeSize != null)
+			{
+				unitSize += nextRangeSize;
+			}
+			
+			this.freeRangeByOffset.put(offset, unitSize);
+		}
+		
+		boolean isEmpty() { return this.freeUnitCount == this.unitSize; }
+		
+		int getLargestFreeRange()
+		{
+			int largest = 0;
+			for (int rangeSize : this.freeRangeByOffset.values())
+			{
+				largest = Math.max(largest, rangeSize);
+			}
+			return largest;
+		}
+	}
+	
+	/** A slab-sized range of a page, split into equal blocks of a single size class. */
+	private static class Slab
+	{
+		final Page page;
+		final int unitOffset;
+		final int sizeClass;
+		final int blockUnitSize;
+		
+		/** stack of free block indices */
+		final int[] freeBlocks;
+		int freeBlockCount;
+		
+		Slab(Page page, int unitOffset, int sizeClass, int blockUnitSize, int slabUnitSize)
+		{
+			this.page = page;
+			this.unitOffset = unitOffset;
+			this.sizeClass = sizeClass;
+			this.blockUnitSize = blockUnitSize;
+			
+			int blockCount = slabUnitSize / blockUnitSize;
+			this.freeBlocks = new int[blockCount];
+			// pushed in reverse so blocks are handed out from the start of the slab
+			for (int i = 0; i < blockCount; i++)
+			{
+				this.freeBlocks[i] = blockCount - 1 - i;
+			}
+			this.freeBlockCount = blockCount;
+		}
+		
+		boolean hasFreeBlock() { return this.freeBlockCount != 0; }
+		boolean isEmpty() { return this.freeBlockCount == this.freeBlocks.length; }
+		
+		int popFreeBlock() { return this.freeBlocks[--this.freeBlockCount]; }
+		void pushFreeBlock(int blockIndex) { this.freeBlocks[this.freeBlockCount++] = blockIndex; }
+	}
+	
+	private static class PendingFree
+	{
+		final Allocation allocation;
+		final long releaseFrameIndex;
+		
+		PendingFree(Allocation allocation, long releaseFrameIndex)
+		{
+			this.allocation = allocation;
+			this.releaseFrameIndex = releaseFrameIndex;
+		}
+	}
+	
+	//endregion
+	
+	
+	
+}
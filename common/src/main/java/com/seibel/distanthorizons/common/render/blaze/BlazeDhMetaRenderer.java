@@ -6,9 +6,12 @@ public class BlazeDhMetaRenderer {}
 #else
 
 import com.mojang.blaze3d.textures.GpuTexture;
+import com.seibel.distanthorizons.api.enums.rendering.EDhApiRenderPass;
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiAfterColorDepthTextureCreatedEvent;
 import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhApiTextureCreatedParam;
 import com.seibel.distanthorizons.common.render.blaze.apply.BlazeDhApplyRenderer;
+import com.seibel.distanthorizons.common.render.blaze.wrappers.buffer.BlazeVertexArena;
+import com.seibel.distanthorizons.common.render.blaze.wrappers.uniform.BlazeLodUniformPool;
 import com.seibel.distanthorizons.common.render.blaze.wrappers.texture.BlazeTextureWrapper;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.render.RenderParams;
@@ -60,6 +63,16 @@ public class BlazeDhMetaRenderer implements IDhMetaRenderer
 	@Override
 	public void runRenderPassSetup(RenderParams renderParams)
 	{
+		boolean firstPass =
+			(renderParams.renderPass == EDhApiRenderPass.OPAQUE
+			|| renderParams.renderPass == EDhApiRenderPass.OPAQUE_AND_TRANSPARENT);
+		if (firstPass)
+		{
+			// ranges freed a few frames ago are no longer in use by the GPU
+			BlazeVertexArena.INSTANCE.onFrameStart();
+			BlazeLodUniformPool.INSTANCE.onFrameStart();
+		}
+		
 		int oldWidth = this.dhDepthTextureWrapper.getWidth();
 		int oldHeight = this.dhDepthTextureWrapper.getHeight();
 		
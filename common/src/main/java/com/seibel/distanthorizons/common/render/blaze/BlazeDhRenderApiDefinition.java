@@ -11,6 +11,7 @@ import com.seibel.distanthorizons.common.render.blaze.postProcessing.BlazeDhFogR
 import com.seibel.distanthorizons.common.render.blaze.postProcessing.BlazeDhSsaoRenderer;
 import com.seibel.distanthorizons.common.render.blaze.postProcessing.BlazeVanillaFadeRenderer;
 import com.seibel.distanthorizons.common.render.blaze.test.BlazeDhTestTriangleRenderer;
+import com.seibel.distanthorizons.common.render.blaze.wrappers.buffer.BlazeVertexArena;
 import com.seibel.distanthorizons.common.render.blaze.wrappers.buffer.BlazeVertexBufferWrapper;
 import com.seibel.distanthorizons.common.render.blaze.wrappers.uniform.BlazeLodUniformBufferWrapper;
 import com.seibel.distanthorizons.core.render.renderer.AbstractDebugWireframeRenderer;
@@ -59,7 +60,7 @@ public class BlazeDhRenderApiDefinition extends AbstractDhRenderApiDefinition
 	
 	@Override public IDhGenericRenderer createGenericRenderer() { return new BlazeDhGenericObjectRenderer(); }
 	
-	@Override public IVertexBufferWrapper createVboWrapper(String name) { return new BlazeVertexBufferWrapper(name); }
+	@Override public IVertexBufferWrapper createVboWrapper(String name) { return new BlazeVertexBufferWrapper(name, BlazeVertexArena.isSupported()); }
 	@Override public ILodContainerUniformBufferWrapper createLodContainerUniformWrapper() { return new BlazeLodUniformBufferWrapper(); }
 	@Override public IDhGenericObjectVertexBufferContainer createGenericVboContainer() { return new BlazeGenericObjectVertexContainer(); }
 	
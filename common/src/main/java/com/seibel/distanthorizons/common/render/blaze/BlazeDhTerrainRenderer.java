@@ -20,10 +20,10 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.VertexFormat;
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiBeforeBufferRenderEvent;
 import com.seibel.distanthorizons.common.render.blaze.util.BlazeDhVertexFormatUtil;
-import com.seibel.distanthorizons.common.render.blaze.util.BlazeUniformUtil;
 import com.seibel.distanthorizons.common.render.blaze.wrappers.RenderPipelineBuilderWrapper;
 import com.seibel.distanthorizons.common.render.blaze.wrappers.texture.BlazeTextureViewWrapper;
 import com.seibel.distanthorizons.common.render.blaze.wrappers.uniform.BlazeLodUniformBufferWrapper;
+import com.seibel.distanthorizons.common.render.blaze.wrappers.uniform.BlazeUniformRing;
 import com.seibel.distanthorizons.common.render.blaze.wrappers.buffer.BlazeVertexBufferWrapper;
 import com.seibel.distanthorizons.common.wrappers.misc.LightMapWrapper;
 import com.seibel.distanthorizons.core.config.Config;
@@ -42,10 +42,8 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.render.renderPass.IDhTe
 import com.seibel.distanthorizons.core.wrapperInterfaces.render.objects.IVertexBufferWrapper;
 import com.seibel.distanthorizons.coreapi.DependencyInjection.ApiEventInjector;
 import net.minecraft.resources.Identifier;
-import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.OptionalDouble;
 import java.util.OptionalInt;
 
@@ -59,13 +57,37 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 	
 	public static final BlazeDhTerrainRenderer INSTANCE = new BlazeDhTerrainRenderer();
 	
+	private static final int VERT_SHARED_UNIFORM_BYTE_SIZE = new Std140SizeCalculator()
+		.putInt() // uIsWhiteWorld
+		
+		.putFloat() // uWorldYOffset
+		.putFloat() // uMircoOffset
+		.putFloat() // uEarthRadius
+		
+		.putVec3() // uCameraPos
+		.putMat4f() // uCombinedMatrix
+		.get();
+	
+	private static final int FRAG_UNIFORM_BYTE_SIZE = new Std140SizeCalculator()
+		.putFloat() // uClipDistance
+		.putFloat() // uNoiseIntensity
+		.putInt() // uNoiseSteps
+		.putInt() // uNoiseDropoff
+		.putInt() // uDitherDhRendering
+		.putInt() // uNoiseEnabled
+		.get();
+	
 	
 	private RenderPipeline opaquePipeline;
 	private RenderPipeline transparentPipeline;
 	private boolean init = false;
 	
-	private GpuBuffer fragUniformBuffer;
-	private GpuBuffer vertSharedUniformBuffer;
+	/**
+	 * The shared blocks are only re-uploaded when their contents change,
+	 * so the opaque and transparent passes in the same frame share the same upload.
+	 */
+	private BlazeUniformRing fragUniformRing;
+	private BlazeUniformRing vertSharedUniformRing;
 	
 	
 	
@@ -130,6 +152,9 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 			this.transparentPipeline = pipelineBuilder.build();
 		}
 		
+		this.fragUniformRing = new BlazeUniformRing("fragUniformBlock", FRAG_UNIFORM_BYTE_SIZE);
+		this.vertSharedUniformRing = new BlazeUniformRing("vertSharedUniformBlock", VERT_SHARED_UNIFORM_BYTE_SIZE);
+		
 		this.init = true;
 	}
 	
@@ -157,6 +182,9 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 			{
 				// create data //
 				
+				// each LOD's block is stored in a shared pool,
+				// so this only writes into the pool for new or changed LODs.
+				// Buffers can't be written to while a render pass is open, so this has to be done first.
 				for (int lodIndex = 0; lodIndex < bufferContainers.size(); lodIndex++)
 				{
 					LodBufferContainer bufferContainer = bufferContainers.get(lodIndex);
@@ -164,6 +192,7 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 				}
 			}
 			
+			GpuBufferSlice vertSharedUniformSlice;
 			profiler.popPush("vert share uniforms");
 			{
 				Mat4f combinedMatrix = new Mat4f(renderEventParam.dhProjectionMatrix);
@@ -183,19 +212,7 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 				
 				// upload data //
 				
-				int uniformBufferSize = new Std140SizeCalculator()
-					.putInt() // uIsWhiteWorld
-					
-					.putFloat() // uWorldYOffset
-					.putFloat() // uMircoOffset
-					.putFloat() // uEarthRadius
-					
-					.putVec3() // uCameraPos
-					.putMat4f() // uCombinedMatrix
-					.get();
-				
-				ByteBuffer buffer = MemoryUtil.memAlloc(uniformBufferSize);
-				buffer.order(ByteOrder.nativeOrder());
+				ByteBuffer buffer = this.vertSharedUniformRing.beginWrite();
 				Std140Builder.intoBuffer(buffer)
 					.putInt(0) // uIsWhiteWorld
 					
@@ -210,26 +227,12 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 					.putMat4f(combinedMatrix.createJomlMatrix()) // uCombinedMatrix
 					.get();
 				
-				this.vertSharedUniformBuffer = BlazeUniformUtil.createBuffer("vertSharedUniformBlock", uniformBufferSize, this.vertSharedUniformBuffer);
-				GpuBufferSlice bufferSlice = new GpuBufferSlice(this.vertSharedUniformBuffer, 0, uniformBufferSize);
-				
-				COMMAND_ENCODER.writeToBuffer(bufferSlice, buffer);
-				
-				MemoryUtil.memFree(buffer);
+				vertSharedUniformSlice = this.vertSharedUniformRing.endWrite();
 			}
 			
+			GpuBufferSlice fragUniformSlice;
 			profiler.popPush("set frag uniforms");
 			{
-				int uniformBufferSize = new Std140SizeCalculator()
-					.putFloat() // uClipDistance
-					.putFloat() // uNoiseIntensity
-					.putInt() // uNoiseSteps
-					.putInt() // uNoiseDropoff
-					.putInt() // uDitherDhRendering
-					.putInt() // uNoiseEnabled
-					.get();
-				
-				
 				// create data //
 				
 				float dhNearClipDistance = RenderUtil.getNearClipPlaneInBlocks();
@@ -242,9 +245,8 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 				
 				// upload data //
 				
-				ByteBuffer buffer = MemoryUtil.memAlloc(uniformBufferSize);
-				buffer.order(ByteOrder.nativeOrder());
-				buffer = Std140Builder.intoBuffer(buffer)
+				ByteBuffer buffer = this.fragUniformRing.beginWrite();
+				Std140Builder.intoBuffer(buffer)
 					.putFloat(dhNearClipDistance) // uClipDistance
 					.putFloat(Config.Client.Advanced.Graphics.NoiseTexture.noiseIntensity.get()) // uNoiseIntensity
 					.putInt(Config.Client.Advanced.Graphics.NoiseTexture.noiseSteps.get()) // uNoiseSteps
@@ -254,11 +256,7 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 					.get()
 				;
 				
-				this.fragUniformBuffer = BlazeUniformUtil.createBuffer("fragUniformBlock", uniformBufferSize, this.fragUniformBuffer);
-				GpuBufferSlice bufferSlice = new GpuBufferSlice(this.fragUniformBuffer, 0, uniformBufferSize);
-				
-				COMMAND_ENCODER.writeToBuffer(bufferSlice, buffer);
-				MemoryUtil.memFree(buffer);
+				fragUniformSlice = this.fragUniformRing.endWrite();
 			}
 			
 			
@@ -284,8 +282,8 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 					renderPass.setPipeline(opaquePass ? this.opaquePipeline : this.transparentPipeline);
 					
 					// shared uniforms
-					renderPass.setUniform("fragUniformBlock", this.fragUniformBuffer);
-					renderPass.setUniform("vertSharedUniformBlock", this.vertSharedUniformBuffer);
+					renderPass.setUniform("fragUniformBlock", fragUniformSlice);
+					renderPass.setUniform("vertSharedUniformBlock", vertSharedUniformSlice);
 					
 					
 					
@@ -309,7 +307,13 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 							}
 						}
 						
-						renderPass.setUniform("vertUniqueUniformBlock", uniformWrapper.gpuBuffer);
+						// bound by offset into the shared pool
+						GpuBufferSlice uniqueUniformSlice = uniformWrapper.getUniformSlice();
+						if (uniqueUniformSlice == null)
+						{
+							continue;
+						}
+						renderPass.setUniform("vertUniqueUniformBlock", uniqueUniformSlice);
 						
 						
 						
@@ -334,13 +338,20 @@ public class BlazeDhTerrainRenderer implements IDhTerrainRenderer
 								ApiEventInjector.INSTANCE.fireAllEvents(DhApiBeforeBufferRenderEvent.class, new DhApiBeforeBufferRenderEvent.EventParam(renderEventParam, modelPos));
 							}
 							
+							// arena backed buffers share a vertex buffer with other sections
+							GpuBuffer vertexGpuBuffer = bufferWrapper.getRenderVertexGpuBuffer();
+							if (vertexGpuBuffer == null)
+							{
+								continue;
+							}
+							
 							renderPass.setIndexBuffer(bufferWrapper.getIndexGpuBuffer(), VertexFormat.IndexType.INT);
-							renderPass.setVertexBuffer(0, bufferWrapper.vertexGpuBuffer); // vertex buffer can only be "0" lol
+							renderPass.setVertexBuffer(0, vertexGpuBuffer); // vertex buffer can only be "0" lol
 							
-							if (!bufferWrapper.vertexGpuBuffer.isClosed())
+							if (!vertexGpuBuffer.isClosed())
 							{
 								renderPass.drawIndexed(
-									/*indexStart*/ 0,
+									/*baseVertex*/ bufferWrapper.getBaseVertex(),
 									/*firstIndex*/0,
 									/*indexCount*/bufferWrapper.indexCount,
 									/*instanceCount*/1);
@@ -0,0 +1,235 @@
+package com.seibel.distanthorizons.common.render.blaze.wrappers.buffer;
+
+#if MC_VER <= MC_1_21_10
+public class BlazeVertexArena {}
+
+#else
+
+import com.mojang.blaze3d.buffers.GpuBuffer;
+import com.mojang.blaze3d.buffers.GpuBufferSlice;
+import com.mojang.blaze3d.systems.CommandEncoder;
+import com.mojang.blaze3d.systems.GpuDevice;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.seibel.distanthorizons.common.render.arena.LodBufferArenaAllocator;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.jar.EPlatform;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.wrapperInterfaces.render.AbstractDhRenderApiDefinition;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Blaze equivalent of the GL terrain vertex arena,
+ * suballocates LOD vertex data out of a few large {@link GpuBuffer}s
+ * instead of creating and closing a buffer every time a LOD is rebuilt. <br><br>
+ *
+ * Allocations are in whole vertices so their offset can be used as the base vertex
+ * when drawing with the global IBO. <br><br>
+ *
+ * Should only be accessed on the render thread.
+ *
+ * @see BlazeVertexBufferWrapper
+ * @see LodBufferArenaAllocator
+ */
+public class BlazeVertexArena implements LodBufferArenaAllocator.IPageListener
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	private static final AbstractDhRenderApiDefinition RENDER_DEF = SingletonInjector.INSTANCE.get(AbstractDhRenderApiDefinition.class);
+	
+	private static final GpuDevice GPU_DEVICE = RenderSystem.getDevice();
+	private static final CommandEncoder COMMAND_ENCODER = GPU_DEVICE.createCommandEncoder();
+	
+	public static final BlazeVertexArena INSTANCE = new BlazeVertexArena();
+	
+	/**
+	 * Pages are at least this large,
+	 * or the max size of a single LOD buffer, whichever is larger.
+	 */
+	private static final int MIN_PAGE_BYTE_SIZE = 64 * 1024 * 1024;
+	private static final int SLAB_BYTE_SIZE = 1024 * 1024;
+	private static final int MIN_BLOCK_BYTE_SIZE = 4 * 1024;
+	/** once this many pages exist, new buffers will fall back to using their own GPU buffer */
+	private static final int MAX_PAGE_COUNT = 16;
+	/** how many frames the GPU may still be reading a freed range */
+	private static final int FRAMES_BEFORE_REUSE = 3;
+	
+	/** Debug toggle, if false every new LOD buffer will use its own GPU buffer. */
+	private static final boolean ARENA_ENABLED = true;
+	
+	
+	/** created lazily since the page size depends on {@link LodQuadBuilder} */
+	private LodBufferArenaAllocator allocator = null;
+	/** indexed by the allocator's page index, null entries are unused */
+	private final ArrayList<GpuBuffer> pageByIndex = new ArrayList<>();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	private BlazeVertexArena() { }
+	
+	private LodBufferArenaAllocator getAllocator()
+	{
+		if (this.allocator == null)
+		{
+			int slabVertexCount = SLAB_BYTE_SIZE / LodQuadBuilder.BYTES_PER_VERTEX;
+			int pageVertexCount = Math.max(MIN_PAGE_BYTE_SIZE, LodQuadBuilder.getMaxBufferByteSize()) / LodQuadBuilder.BYTES_PER_VERTEX;
+			// the page must be a whole number of slabs
+			pageVertexCount = ((pageVertexCount + slabVertexCount - 1) / slabVertexCount) * slabVertexCount;
+			
+			this.allocator = new LodBufferArenaAllocator(
+				"Blaze LOD",
+				pageVertexCount, slabVertexCount, MIN_BLOCK_BYTE_SIZE / LodQuadBuilder.BYTES_PER_VERTEX,
+				MAX_PAGE_COUNT, FRAMES_BEFORE_REUSE, LodQuadBuilder.BYTES_PER_VERTEX,
+				this);
+			this.allocator.registerDebugMenu();
+		}
+		return this.allocator;
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	public static boolean isSupported()
+	{
+		return ARENA_ENABLED
+			// every section is drawn using the same IBO
+			&& RENDER_DEF.useSingleIbo()
+			// Mac may attempt to render everything allocated in a vertex buffer,
+			// which would render every section in a page
+			&& EPlatform.get() != EPlatform.MACOS;
+	}
+	
+	//endregion
+	
+	
+	
+	//============//
+	// allocation //
+	//============//
+	//region
+	
+	/**
+	 * Copies the given buffer into the arena.
+	 *
+	 * @return null if the arena is full or the buffer was empty,
+	 *          in which case the caller should use its own GPU buffer instead
+	 */
+	@Nullable
+	public Allocation tryUpload(ByteBuffer byteBuffer)
+	{
+		int byteSize = byteBuffer.limit() - byteBuffer.position();
+		if (byteSize <= 0
+			|| byteSize % LodQuadBuilder.BYTES_PER_VERTEX != 0)
+		{
+			return null;
+		}
+		
+		LodBufferArenaAllocator.Allocation arenaAllocation = this.getAllocator().allocate(byteSize / LodQuadBuilder.BYTES_PER_VERTEX);
+		if (arenaAllocation == null)
+		{
+			return null;
+		}
+		
+		Allocation allocation = new Allocation(this.pageByIndex.get(arenaAllocation.pageIndex), arenaAllocation);
+		
+		GpuBufferSlice bufferSlice = new GpuBufferSlice(allocation.pageGpuBuffer, allocation.arenaAllocation.unitOffset * LodQuadBuilder.BYTES_PER_VERTEX, byteSize);
+		COMMAND_ENCODER.writeToBuffer(bufferSlice, byteBuffer);
+		
+		return allocation;
+	}
+	
+	/** The range won't be re-used until the GPU is done with it. */
+	public void free(Allocation allocation) { this.getAllocator().free(allocation.arenaAllocation); }
+	
+	/** Should be called once per frame before any LODs are rendered. */
+	public void onFrameStart()
+	{
+		if (this.allocator != null)
+		{
+			this.allocator.onFrameStart();
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// page listening //
+	//================//
+	//region
+	
+	@Override
+	public void onPageCreated(int pageIndex, int vertexCount)
+	{
+		int usage = GpuBuffer.USAGE_COPY_DST
+			| GpuBuffer.USAGE_VERTEX;
+		GpuBuffer page = GPU_DEVICE.createBuffer(BlazeVertexArena::getPageName, usage, vertexCount * LodQuadBuilder.BYTES_PER_VERTEX);
+		
+		while (this.pageByIndex.size() <= pageIndex)
+		{
+			this.pageByIndex.add(null);
+		}
+		this.pageByIndex.set(pageIndex, page);
+		
+		LOGGER.info("Created LOD vertex arena page ["+pageIndex+"] with a size of ["+(vertexCount * LodQuadBuilder.BYTES_PER_VERTEX)+"] bytes.");
+	}
+	
+	@Override
+	public void onPageRemoved(int pageIndex)
+	{
+		GpuBuffer page = this.pageByIndex.get(pageIndex);
+		this.pageByIndex.set(pageIndex, null);
+		page.close();
+	}
+	
+	private static String getPageName() { return "distantHorizons:LodVertexArenaPage"; }
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	/** A range of vertices inside one of the arena's pages. */
+	public static class Allocation
+	{
+		public final GpuBuffer pageGpuBuffer;
+		
+		private final LodBufferArenaAllocator.Allocation arenaAllocation;
+		
+		private Allocation(GpuBuffer pageGpuBuffer, LodBufferArenaAllocator.Allocation arenaAllocation)
+		{
+			this.pageGpuBuffer = pageGpuBuffer;
+			this.arenaAllocation = arenaAllocation;
+		}
+		
+		/** the index of this allocation's first vertex in the page */
+		public int getBaseVertex() { return this.arenaAllocation.unitOffset; }
+		
+	}
+	
+	//endregion
+	
+	
+	
+}
+#endif
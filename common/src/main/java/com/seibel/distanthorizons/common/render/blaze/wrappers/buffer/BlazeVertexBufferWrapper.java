@@ -18,6 +18,7 @@ import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.render.RenderThreadTaskHandler;
 import com.seibel.distanthorizons.core.wrapperInterfaces.render.AbstractDhRenderApiDefinition;
 import com.seibel.distanthorizons.core.wrapperInterfaces.render.objects.IVertexBufferWrapper;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
@@ -38,8 +39,15 @@ public class BlazeVertexBufferWrapper implements IVertexBufferWrapper
 	public final String name;
 	public String getName() { return this.name; }
 	
+	/** null if this buffer's vertices are in the {@link BlazeVertexArena} */
 	public GpuBuffer vertexGpuBuffer = null;
 	
+	/** if true vertex data will be uploaded to the {@link BlazeVertexArena} when possible */
+	private final boolean useVertexArena;
+	/** null if the vertex data is in this wrapper's own {@link BlazeVertexBufferWrapper#vertexGpuBuffer} */
+	@Nullable
+	private BlazeVertexArena.Allocation arenaAllocation = null;
+	
 	public int vertexCount = -1;
 	public int indexCount = -1;
 	public boolean uploaded = false;
@@ -90,7 +98,29 @@ public class BlazeVertexBufferWrapper implements IVertexBufferWrapper
 		}
 	}
 	
-	public BlazeVertexBufferWrapper(String name) { this.name = name; }
+	public BlazeVertexBufferWrapper(String name) { this(name, false); }
+	/** @param useVertexArena should only be true for LOD terrain buffers */
+	public BlazeVertexBufferWrapper(String name, boolean useVertexArena)
+	{
+		this.name = name;
+		this.useVertexArena = useVertexArena;
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	/** @return the buffer that should be bound when rendering, may be shared with other wrappers */
+	@Nullable
+	public GpuBuffer getRenderVertexGpuBuffer() { return (this.arenaAllocation != null) ? this.arenaAllocation.pageGpuBuffer : this.vertexGpuBuffer; }
+	
+	/** @return the index of this wrapper's first vertex in {@link BlazeVertexBufferWrapper#getRenderVertexGpuBuffer()} */
+	public int getBaseVertex() { return (this.arenaAllocation != null) ? this.arenaAllocation.getBaseVertex() : 0; }
 	
 	//endregion
 	
@@ -113,6 +143,31 @@ public class BlazeVertexBufferWrapper implements IVertexBufferWrapper
 		
 		
 		
+		// the old range will be re-used once the GPU is done with it
+		if (this.arenaAllocation != null)
+		{
+			BlazeVertexArena.INSTANCE.free(this.arenaAllocation);
+			this.arenaAllocation = null;
+		}
+		
+		if (this.useVertexArena)
+		{
+			this.arenaAllocation = BlazeVertexArena.INSTANCE.tryUpload(vertexBuffer);
+			if (this.arenaAllocation != null)
+			{
+				// the standalone buffer is no longer needed
+				if (this.vertexGpuBuffer != null)
+				{
+					BUFFER_COUNT_REF.decrementAndGet();
+					this.vertexGpuBuffer.close();
+					this.vertexGpuBuffer = null;
+				}
+				return;
+			}
+		}
+		
+		
+		
 		if (this.vertexGpuBuffer == null
 			// recreating if the size changes is always necessary (even if we only need a smaller amount)
 			// due to a bug on Mac where it will attempt to render anything allocated in the buffer
@@ -191,6 +246,13 @@ public class BlazeVertexBufferWrapper implements IVertexBufferWrapper
 	@Override
 	public void close()
 	{
+		if (this.arenaAllocation != null)
+		{
+			final BlazeVertexArena.Allocation allocationToFree = this.arenaAllocation; // saving the allocation to a separate variable is necessary so it can be captured by the lambda
+			RenderThreadTaskHandler.INSTANCE.queueRunningOnRenderThread("BlazeVertexBufferWrapper arena free", () -> { BlazeVertexArena.INSTANCE.free(allocationToFree); });
+			this.arenaAllocation = null;
+		}
+		
 		if (this.vertexGpuBuffer != null)
 		{
 			BUFFER_COUNT_REF.decrementAndGet();
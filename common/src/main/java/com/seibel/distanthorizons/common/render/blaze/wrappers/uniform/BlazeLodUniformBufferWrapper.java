@@ -5,18 +5,26 @@ public class BlazeLodUniformBufferWrapper {}
 
 #else
 
+import com.mojang.blaze3d.buffers.GpuBufferSlice;
 import com.mojang.blaze3d.buffers.Std140Builder;
-import com.mojang.blaze3d.buffers.Std140SizeCalculator;
 import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodBufferContainer;
+import com.seibel.distanthorizons.core.render.RenderThreadTaskHandler;
 import com.seibel.distanthorizons.core.util.math.Vec3f;
 import com.seibel.distanthorizons.core.wrapperInterfaces.render.objects.ILodContainerUniformBufferWrapper;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.ByteBuffer;
 
+/**
+ * Stores its uniform block in a slot of the {@link BlazeLodUniformPool}
+ * instead of its own GPU buffer.
+ */
 public class BlazeLodUniformBufferWrapper extends BlazeUniformBufferWrapper implements ILodContainerUniformBufferWrapper
 {
 	
 	private boolean uploaded = false;
+	/** -1 if no slot has been allocated yet */
+	private int poolSlotIndex = -1;
 	
 	
 	
@@ -46,15 +54,14 @@ public class BlazeLodUniformBufferWrapper extends BlazeUniformBufferWrapper impl
 		
 		// upload data //
 		
-		int uniformBufferSize = new Std140SizeCalculator()
-			.putVec3() // uModelOffset
-			.get();
-		
-		ByteBuffer buffer = this.getOrCreateBuffer(uniformBufferSize);
+		ByteBuffer buffer = this.getOrCreateBuffer(BlazeLodUniformPool.BLOCK_BYTE_SIZE);
+		buffer.clear();
 		Std140Builder.intoBuffer(buffer)
 			.putVec3(modelOffset.x, modelOffset.y, modelOffset.z) // uModelOffset
 			.get();
 		
+		// the new data will need to be uploaded
+		this.uploaded = false;
 	}
 	
 	@Override
@@ -70,9 +77,67 @@ public class BlazeLodUniformBufferWrapper extends BlazeUniformBufferWrapper impl
 		this.uploaded = true;
 	}
 	
+	@Override
+	public void upload() throws IllegalStateException
+	{
+		ByteBuffer cpuBuffer = this.getCpuBuffer();
+		if (cpuBuffer == null)
+		{
+			throw new IllegalStateException("Upload called before buffer was created");
+		}
+		
+		if (this.poolSlotIndex == -1)
+		{
+			this.poolSlotIndex = BlazeLodUniformPool.INSTANCE.allocateSlot();
+		}
+		BlazeLodUniformPool.INSTANCE.write(this.poolSlotIndex, cpuBuffer);
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	/** @return null if this wrapper hasn't been uploaded yet */
+	@Nullable
+	public GpuBufferSlice getUniformSlice()
+	{
+		if (this.poolSlotIndex == -1)
+		{
+			return null;
+		}
+		return BlazeLodUniformPool.INSTANCE.getSlice(this.poolSlotIndex);
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	//region
+	
+	@Override
+	public void close()
+	{
+		super.close();
+		
+		if (this.poolSlotIndex != -1)
+		{
+			final int slotIndexToFree = this.poolSlotIndex; // saving the slot to a separate variable is necessary so it can be captured by the lambda
+			RenderThreadTaskHandler.INSTANCE.queueRunningOnRenderThread("BlazeLodUniformBufferWrapper slot free", () -> { BlazeLodUniformPool.INSTANCE.freeSlot(slotIndexToFree); });
+			this.poolSlotIndex = -1;
+		}
+	}
+	
 	//endregion
 	
 	
 	
 }
-#endif
\ No newline at end of file
+#endif
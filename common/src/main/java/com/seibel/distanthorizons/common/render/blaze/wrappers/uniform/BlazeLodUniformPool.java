@@ -0,0 +1,191 @@
+package com.seibel.distanthorizons.common.render.blaze.wrappers.uniform;
+
+#if MC_VER <= MC_1_21_10
+public class BlazeLodUniformPool {}
+
+#else
+
+import com.mojang.blaze3d.buffers.GpuBuffer;
+import com.mojang.blaze3d.buffers.GpuBufferSlice;
+import com.mojang.blaze3d.buffers.Std140SizeCalculator;
+import com.mojang.blaze3d.systems.CommandEncoder;
+import com.mojang.blaze3d.systems.GpuDevice;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Packs every LOD's unique uniform block into a few shared {@link GpuBuffer}s
+ * instead of creating a tiny GPU buffer per LOD. <br>
+ * Each LOD is given a slot aligned to the GPU's uniform offset alignment
+ * which is bound by offset when that LOD is drawn. <br><br>
+ *
+ * Freed slots aren't re-used until {@link BlazeLodUniformPool#FRAMES_BEFORE_REUSE} frames have passed
+ * so a draw that's still in flight won't read another LOD's offset. <br><br>
+ *
+ * Should only be accessed on the render thread.
+ *
+ * @see BlazeLodUniformBufferWrapper
+ */
+public class BlazeLodUniformPool
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	private static final GpuDevice GPU_DEVICE = RenderSystem.getDevice();
+	private static final CommandEncoder COMMAND_ENCODER = GPU_DEVICE.createCommandEncoder();
+	
+	public static final BlazeLodUniformPool INSTANCE = new BlazeLodUniformPool();
+	
+	/** the std140 size of "vertUniqueUniformBlock" */
+	public static final int BLOCK_BYTE_SIZE = new Std140SizeCalculator()
+		.putVec3() // uModelOffset
+		.get();
+	
+	private static final int SLOTS_PER_PAGE = 1024;
+	private static final int FRAMES_BEFORE_REUSE = 3;
+	
+	
+	/** created lazily since the alignment can only be queried once the device exists */
+	private int slotByteSize = -1;
+	
+	private final ArrayList<GpuBuffer> pages = new ArrayList<>();
+	/** slot indices are {@code pageIndex * SLOTS_PER_PAGE + slotInPage} */
+	private final IntArrayList freeSlots = new IntArrayList();
+	private final ArrayDeque<PendingFree> pendingFrees = new ArrayDeque<>();
+	private long frameIndex = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	private BlazeLodUniformPool() { }
+	
+	private int getSlotByteSize()
+	{
+		if (this.slotByteSize == -1)
+		{
+			int alignment = Math.max(1, GPU_DEVICE.getUniformOffsetAlignment());
+			this.slotByteSize = ((BLOCK_BYTE_SIZE + alignment - 1) / alignment) * alignment;
+		}
+		return this.slotByteSize;
+	}
+	
+	//endregion
+	
+	
+	
+	//============//
+	// allocation //
+	//============//
+	//region
+	
+	/** @return the index of a slot that can be written to */
+	public int allocateSlot()
+	{
+		if (this.freeSlots.isEmpty())
+		{
+			this.addPage();
+		}
+		return this.freeSlots.popInt();
+	}
+	
+	/** The slot won't be re-used until the GPU is done with it. */
+	public void freeSlot(int slotIndex) { this.pendingFrees.addLast(new PendingFree(slotIndex, this.frameIndex + FRAMES_BEFORE_REUSE)); }
+	
+	/** Should be called once per frame before any LODs are rendered. */
+	public void onFrameStart()
+	{
+		this.frameIndex++;
+		
+		// frees are queued in frame order, so only the head needs to be checked
+		while (!this.pendingFrees.isEmpty()
+			&& this.pendingFrees.peekFirst().releaseFrameIndex <= this.frameIndex)
+		{
+			this.freeSlots.add(this.pendingFrees.pollFirst().slotIndex);
+		}
+	}
+	
+	private void addPage()
+	{
+		int pageIndex = this.pages.size();
+		
+		int usage = GpuBuffer.USAGE_COPY_DST
+			| GpuBuffer.USAGE_UNIFORM;
+		GpuBuffer page = GPU_DEVICE.createBuffer(BlazeLodUniformPool::getPageName, usage, this.getSlotByteSize() * SLOTS_PER_PAGE);
+		this.pages.add(page);
+		
+		// added in reverse so the slots are handed out in order
+		for (int i = SLOTS_PER_PAGE - 1; i >= 0; i--)
+		{
+			this.freeSlots.add(pageIndex * SLOTS_PER_PAGE + i);
+		}
+		
+		LOGGER.debug("Created LOD uniform pool page ["+pageIndex+"] with ["+SLOTS_PER_PAGE+"] slots.");
+	}
+	private static String getPageName() { return "distantHorizons:LodUniformPoolPage"; }
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// uploads //
+	//=========//
+	//region
+	
+	public void write(int slotIndex, ByteBuffer byteBuffer)
+	{
+		GpuBufferSlice slice = this.getSlice(slotIndex);
+		if (slice.buffer().isClosed())
+		{
+			LOGGER.warn("Unable to upload LOD uniform slot ["+slotIndex+"], its page has already been closed.");
+			return;
+		}
+		
+		int byteSize = byteBuffer.limit() - byteBuffer.position();
+		COMMAND_ENCODER.writeToBuffer(new GpuBufferSlice(slice.buffer(), slice.offset(), byteSize), byteBuffer);
+	}
+	
+	/** @return the range that should be bound when drawing with the given slot */
+	public GpuBufferSlice getSlice(int slotIndex)
+	{
+		GpuBuffer page = this.pages.get(slotIndex / SLOTS_PER_PAGE);
+		int byteOffset = (slotIndex % SLOTS_PER_PAGE) * this.getSlotByteSize();
+		return new GpuBufferSlice(page, byteOffset, BLOCK_BYTE_SIZE);
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	private static class PendingFree
+	{
+		final int slotIndex;
+		final long releaseFrameIndex;
+		
+		PendingFree(int slotIndex, long releaseFrameIndex)
+		{
+			this.slotIndex = slotIndex;
+			this.releaseFrameIndex = releaseFrameIndex;
+		}
+	}
+	
+	//endregion
+	
+	
+	
+}
+#endif
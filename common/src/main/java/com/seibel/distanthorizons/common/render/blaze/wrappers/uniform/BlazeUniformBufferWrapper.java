@@ -64,6 +64,8 @@ public class BlazeUniformBufferWrapper implements IUniformBufferWrapper
 		
 		return this.cpuBuffer;
 	}
+	/** @return null if {@link BlazeUniformBufferWrapper#getOrCreateBuffer(int)} hasn't been called yet */
+	protected ByteBuffer getCpuBuffer() { return this.cpuBuffer; }
 	
 	@Override
 	public void upload() throws IllegalStateException
@@ -0,0 +1,160 @@
+package com.seibel.distanthorizons.common.render.blaze.wrappers.uniform;
+
+#if MC_VER <= MC_1_21_10
+public class BlazeUniformRing {}
+
+#else
+
+import com.mojang.blaze3d.buffers.GpuBuffer;
+import com.mojang.blaze3d.buffers.GpuBufferSlice;
+import com.mojang.blaze3d.systems.CommandEncoder;
+import com.mojang.blaze3d.systems.GpuDevice;
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Holds a uniform block that's shared by every draw call in a frame. <br><br>
+ *
+ * The GPU buffer and CPU staging buffer are allocated once and re-used every frame,
+ * and the block is only re-uploaded if its contents changed since the last frame. <br>
+ * Each upload goes to the next of {@link BlazeUniformRing#FRAME_COUNT} slots
+ * so the GPU can keep reading the previous frames' data while the new data is written. <br><br>
+ *
+ * Should only be accessed on the render thread.
+ */
+public class BlazeUniformRing implements AutoCloseable
+{
+	private static final GpuDevice GPU_DEVICE = RenderSystem.getDevice();
+	private static final CommandEncoder COMMAND_ENCODER = GPU_DEVICE.createCommandEncoder();
+	
+	public static final int FRAME_COUNT = 3;
+	
+	
+	private final String name;
+	/** the std140 size of the block */
+	private final int blockByteSize;
+	/** the block size rounded up to the GPU's uniform offset alignment */
+	private final int slotByteSize;
+	
+	private GpuBuffer gpuBuffer = null;
+	/** filled by the caller every frame */
+	private final ByteBuffer cpuBuffer;
+	/** a copy of the last uploaded data, used to skip identical uploads */
+	private final ByteBuffer lastUploadedBuffer;
+	private int lastUploadedByteSize = -1;
+	
+	private int slotIndex = 0;
+	private GpuBufferSlice currentSlice = null;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	/** @param blockByteSize should be calculated via {@link com.mojang.blaze3d.buffers.Std140SizeCalculator} */
+	public BlazeUniformRing(String name, int blockByteSize)
+	{
+		this.name = name;
+		this.blockByteSize = blockByteSize;
+		
+		int alignment = Math.max(1, GPU_DEVICE.getUniformOffsetAlignment());
+		this.slotByteSize = ((blockByteSize + alignment - 1) / alignment) * alignment;
+		
+		this.cpuBuffer = MemoryUtil.memAlloc(blockByteSize).order(ByteOrder.nativeOrder());
+		this.lastUploadedBuffer = MemoryUtil.memAlloc(blockByteSize).order(ByteOrder.nativeOrder());
+	}
+	
+	//endregion
+	
+	
+	
+	//===========//
+	// uploading //
+	//===========//
+	//region
+	
+	/** @return the cleared staging buffer that this frame's block should be written into */
+	public ByteBuffer beginWrite()
+	{
+		this.cpuBuffer.clear();
+		return this.cpuBuffer;
+	}
+	
+	/**
+	 * Uploads the data written since {@link BlazeUniformRing#beginWrite()}
+	 * if it's different from the last upload.
+	 *
+	 * @return the slice that should be bound for this frame
+	 */
+	public GpuBufferSlice endWrite()
+	{
+		// Std140Builder flips the buffer when done, but the caller may not have used it
+		if (this.cpuBuffer.position() != 0)
+		{
+			this.cpuBuffer.flip();
+		}
+		int byteSize = this.cpuBuffer.remaining();
+		
+		if (this.currentSlice != null
+			&& !this.gpuBuffer.isClosed()
+			&& byteSize == this.lastUploadedByteSize
+			&& this.cpuBuffer.equals(this.lastUploadedBuffer))
+		{
+			// nothing changed
+			return this.currentSlice;
+		}
+		
+		
+		if (this.gpuBuffer == null
+			|| this.gpuBuffer.isClosed())
+		{
+			int usage = GpuBuffer.USAGE_COPY_DST
+				| GpuBuffer.USAGE_UNIFORM;
+			this.gpuBuffer = GPU_DEVICE.createBuffer(this::getName, usage, this.slotByteSize * FRAME_COUNT);
+		}
+		
+		this.slotIndex = (this.slotIndex + 1) % FRAME_COUNT;
+		COMMAND_ENCODER.writeToBuffer(new GpuBufferSlice(this.gpuBuffer, this.slotIndex * this.slotByteSize, byteSize), this.cpuBuffer);
+		// the bound slice always covers the whole block, even if fewer bytes were written
+		this.currentSlice = new GpuBufferSlice(this.gpuBuffer, this.slotIndex * this.slotByteSize, this.blockByteSize);
+		
+		this.lastUploadedBuffer.clear();
+		this.lastUploadedBuffer.put(this.cpuBuffer.duplicate());
+		this.lastUploadedBuffer.flip();
+		this.lastUploadedByteSize = byteSize;
+		
+		return this.currentSlice;
+	}
+	
+	private String getName() { return this.name; }
+	
+	//endregion
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	//region
+	
+	@Override
+	public void close()
+	{
+		if (this.gpuBuffer != null)
+		{
+			this.gpuBuffer.close();
+		}
+		this.currentSlice = null;
+	}
+	
+	//endregion
+	
+	
+	
+}
+#endif
@@ -0,0 +1,164 @@
+package com.seibel.distanthorizons.common.render.culling;
+
+/**
+ * Tests axis aligned bounding boxes against a view frustum and a max distance. <br><br>
+ *
+ * Positions are expected to be relative to the camera,
+ * IE the same space the model view projection matrix expects. <br><br>
+ *
+ * Doesn't touch the GPU so it can be tested on its own.
+ */
+public class FrustumCuller
+{
+	public static final int OUTSIDE = 0;
+	public static final int INTERSECTS = 1;
+	public static final int INSIDE = 2;
+	
+	private static final int PLANE_COUNT = 6;
+	
+	/**
+	 * 4 values per plane (a, b, c, d),
+	 * a point is inside the plane if {@code a*x + b*y + c*z + d >= 0}
+	 */
+	private final double[] planes = new double[PLANE_COUNT * 4];
+	private double maxDistanceSquared = Double.POSITIVE_INFINITY;
+	
+	
+	
+	//=======//
+	// setup //
+	//=======//
+	//region
+	
+	/**
+	 * @param columnMajorMvpMatrix the combined projection and model view matrix in the order OpenGL expects
+	 * @param maxDistance boxes further than this from the camera are culled, can be {@link Double#POSITIVE_INFINITY}
+	 */
+	public void update(float[] columnMajorMvpMatrix, double maxDistance)
+	{
+		if (columnMajorMvpMatrix.length != 16)
+		{
+			throw new IllegalArgumentException("Expected a 4x4 matrix, got an array of length ["+columnMajorMvpMatrix.length+"].");
+		}
+		
+		// the planes are found by adding/subtracting the first 3 rows from the last row (Gribb/Hartmann)
+		for (int plane = 0; plane < PLANE_COUNT; plane++)
+		{
+			int row = plane / 2;
+			double sign = (plane % 2 == 0) ? 1 : -1;
+			
+			double a = getElement(columnMajorMvpMatrix, 3, 0) + sign * getElement(columnMajorMvpMatrix, row, 0);
+			double b = getElement(columnMajorMvpMatrix, 3, 1) + sign * getElement(columnMajorMvpMatrix, row, 1);
+			double c = getElement(columnMajorMvpMatrix, 3, 2) + sign * getElement(columnMajorMvpMatrix, row, 2);
+			double d = getElement(columnMajorMvpMatrix, 3, 3) + sign * getElement(columnMajorMvpMatrix, row, 3);
+			
+			// normalizing isn't required for the inside/outside test,
+			// but keeps the values in a reasonable range
+			double length = Math.sqrt(a * a + b * b + c * c);
+			if (length != 0)
+			{
+				a /= length;
+				b /= length;
+				c /= length;
+				d /= length;
+			}
+			
+			int planeIndex = plane * 4;
+			this.planes[planeIndex] = a;
+			this.planes[planeIndex + 1] = b;
+			this.planes[planeIndex + 2] = c;
+			this.planes[planeIndex + 3] = d;
+		}
+		
+		this.maxDistanceSquared = maxDistance * maxDistance;
+	}
+	private static double getElement(float[] columnMajorMatrix, int row, int column) { return columnMajorMatrix[column * 4 + row]; }
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// testing //
+	//=========//
+	//region
+	
+	/** @return true if any part of the box may be visible */
+	public boolean intersectsAabb(
+			double minX, double minY, double minZ,
+			double maxX, double maxY, double maxZ)
+	{
+		return this.testAabb(minX, minY, minZ, maxX, maxY, maxZ) != OUTSIDE;
+	}
+	
+	/**
+	 * Conservative, a box may be reported as {@link FrustumCuller#INTERSECTS}
+	 * when it is actually just outside one of the frustum's corners.
+	 *
+	 * @return {@link FrustumCuller#OUTSIDE}, {@link FrustumCuller#INTERSECTS}, or {@link FrustumCuller#INSIDE}
+	 */
+	public int testAabb(
+			double minX, double minY, double minZ,
+			double maxX, double maxY, double maxZ)
+	{
+		// distance culling uses the point in the box closest to the camera
+		double closestX = (minX > 0) ? minX : ((maxX < 0) ? maxX : 0);
+		double closestY = (minY > 0) ? minY : ((maxY < 0) ? maxY : 0);
+		double closestZ = (minZ > 0) ? minZ : ((maxZ < 0) ? maxZ : 0);
+		if (closestX * closestX + closestY * closestY + closestZ * closestZ > this.maxDistanceSquared)
+		{
+			return OUTSIDE;
+		}
+		
+		
+		boolean fullyInside = true;
+		for (int planeIndex = 0; planeIndex < this.planes.length; planeIndex += 4)
+		{
+			double a = this.planes[planeIndex];
+			double b = this.planes[planeIndex + 1];
+			double c = this.planes[planeIndex + 2];
+			double d = this.planes[planeIndex + 3];
+			
+			// the corner furthest along the plane's normal
+			double positiveDistance =
+				a * ((a >= 0) ? maxX : minX)
+				+ b * ((b >= 0) ? maxY : minY)
+				+ c * ((c >= 0) ? maxZ : minZ)
+				+ d;
+			if (positiveDistance < 0)
+			{
+				return OUTSIDE;
+			}
+			
+			// the corner furthest against the plane's normal
+			double negativeDistance =
+				a * ((a >= 0) ? minX : maxX)
+				+ b * ((b >= 0) ? minY : maxY)
+				+ c * ((c >= 0) ? minZ : maxZ)
+				+ d;
+			if (negativeDistance < 0)
+			{
+				fullyInside = false;
+			}
+		}
+		
+		if (fullyInside)
+		{
+			// the furthest corner also has to be in range
+			double furthestX = Math.max(Math.abs(minX), Math.abs(maxX));
+			double furthestY = Math.max(Math.abs(minY), Math.abs(maxY));
+			double furthestZ = Math.max(Math.abs(minZ), Math.abs(maxZ));
+			if (furthestX * furthestX + furthestY * furthestY + furthestZ * furthestZ > this.maxDistanceSquared)
+			{
+				fullyInside = false;
+			}
+		}
+		
+		return fullyInside ? INSIDE : INTERSECTS;
+	}
+	
+	//endregion
+	
+	
+	
+}
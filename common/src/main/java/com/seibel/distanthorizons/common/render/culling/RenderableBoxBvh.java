@@ -0,0 +1,268 @@
+package com.seibel.distanthorizons.common.render.culling;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * Bounding volume hierarchy over a group of boxes,
+ * used to find which of a group's boxes may be visible. <br><br>
+ *
+ * Building the tree reorders the boxes so every node covers a contiguous range,
+ * if instance data is uploaded in {@link RenderableBoxBvh#getOrderedBoxIndex(int)} order
+ * the visible boxes can be drawn as a few contiguous instance ranges. <br><br>
+ *
+ * Bounds are relative to the group's origin,
+ * the origin's offset from the camera is passed in when culling
+ * so moving a group doesn't require a rebuild. <br><br>
+ *
+ * The tree can't be changed after creation and doesn't touch the GPU,
+ * culling should only be done by one thread at a time.
+ */
+public class RenderableBoxBvh
+{
+	/** nodes with this many boxes or fewer won't be split */
+	public static final int MAX_LEAF_BOX_COUNT = 32;
+	/**
+	 * If culling produces more ranges than this they will be merged into a single range,
+	 * since drawing a few culled boxes is cheaper than a large number of draw calls.
+	 */
+	public static final int MAX_VISIBLE_RANGE_COUNT = 64;
+	
+	/** 6 values per box: min XYZ then max XYZ */
+	private static final int BOUNDS_STRIDE = 6;
+	
+	private final int boxCount;
+	/** the order boxes should be uploaded in */
+	private final int[] orderedBoxIndices;
+	
+	/** {@link RenderableBoxBvh#BOUNDS_STRIDE} values per node */
+	private final double[] nodeBounds;
+	/** the first ordered box index this node covers */
+	private final int[] nodeStart;
+	private final int[] nodeCount;
+	/** -1 for leaf nodes, the right child is always {@code leftChild + 1} */
+	private final int[] nodeLeftChild;
+	
+	/** re-used between culls to reduce GC pressure */
+	private final IntArrayList nodeStack = new IntArrayList();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	/**
+	 * @param boxBounds 6 values per box (min XYZ then max XYZ), relative to the group's origin
+	 * @param boxCount how many boxes are in the bounds array
+	 */
+	public RenderableBoxBvh(double[] boxBounds, int boxCount)
+	{
+		if (boxBounds.length < boxCount * BOUNDS_STRIDE)
+		{
+			throw new IllegalArgumentException("Bounds array length ["+boxBounds.length+"] is too small for ["+boxCount+"] boxes.");
+		}
+		
+		this.boxCount = boxCount;
+		this.orderedBoxIndices = new int[boxCount];
+		for (int i = 0; i < boxCount; i++)
+		{
+			this.orderedBoxIndices[i] = i;
+		}
+		
+		
+		DoubleArrayList boundsList = new DoubleArrayList();
+		IntArrayList startList = new IntArrayList();
+		IntArrayList countList = new IntArrayList();
+		IntArrayList leftChildList = new IntArrayList();
+		
+		// root
+		addNode(boundsList, startList, countList, leftChildList, boxBounds, this.orderedBoxIndices, 0, boxCount);
+		
+		// breadth first so both children of a node are always next to each other
+		for (int nodeIndex = 0; nodeIndex < startList.size(); nodeIndex++)
+		{
+			int start = startList.getInt(nodeIndex);
+			int count = countList.getInt(nodeIndex);
+			if (count <= MAX_LEAF_BOX_COUNT)
+			{
+				continue;
+			}
+			
+			// split along the longest axis at the median box center
+			int boundsIndex = nodeIndex * BOUNDS_STRIDE;
+			double sizeX = boundsList.getDouble(boundsIndex + 3) - boundsList.getDouble(boundsIndex);
+			double sizeY = boundsList.getDouble(boundsIndex + 4) - boundsList.getDouble(boundsIndex + 1);
+			double sizeZ = boundsList.getDouble(boundsIndex + 5) - boundsList.getDouble(boundsIndex + 2);
+			final int axis = (sizeX >= sizeY && sizeX >= sizeZ) ? 0 : ((sizeY >= sizeZ) ? 1 : 2);
+			
+			IntArrays.quickSort(this.orderedBoxIndices, start, start + count, (boxA, boxB) ->
+				Double.compare(
+					boxBounds[boxA * BOUNDS_STRIDE + axis] + boxBounds[boxA * BOUNDS_STRIDE + axis + 3],
+					boxBounds[boxB * BOUNDS_STRIDE + axis] + boxBounds[boxB * BOUNDS_STRIDE + axis + 3]));
+			
+			int leftCount = count / 2;
+			leftChildList.set(nodeIndex, startList.size());
+			addNode(boundsList, startList, countList, leftChildList, boxBounds, this.orderedBoxIndices, start, leftCount);
+			addNode(boundsList, startList, countList, leftChildList, boxBounds, this.orderedBoxIndices, start + leftCount, count - leftCount);
+		}
+		
+		this.nodeBounds = boundsList.toDoubleArray();
+		this.nodeStart = startList.toIntArray();
+		this.nodeCount = countList.toIntArray();
+		this.nodeLeftChild = leftChildList.toIntArray();
+	}
+	private static void addNode(
+			DoubleArrayList boundsList, IntArrayList startList, IntArrayList countList, IntArrayList leftChildList,
+			double[] boxBounds, int[] orderedBoxIndices, int start, int count)
+	{
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		for (int i = start; i < start + count; i++)
+		{
+			int boundsIndex = orderedBoxIndices[i] * BOUNDS_STRIDE;
+			minX = Math.min(minX, boxBounds[boundsIndex]);
+			minY = Math.min(minY, boxBounds[boundsIndex + 1]);
+			minZ = Math.min(minZ, boxBounds[boundsIndex + 2]);
+			maxX = Math.max(maxX, boxBounds[boundsIndex + 3]);
+			maxY = Math.max(maxY, boxBounds[boundsIndex + 4]);
+			maxZ = Math.max(maxZ, boxBounds[boundsIndex + 5]);
+		}
+		
+		boundsList.add(minX);
+		boundsList.add(minY);
+		boundsList.add(minZ);
+		boundsList.add(maxX);
+		boundsList.add(maxY);
+		boundsList.add(maxZ);
+		startList.add(start);
+		countList.add(count);
+		leftChildList.add(-1);
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	public int getBoxCount() { return this.boxCount; }
+	
+	/** @return the index (in the original box list) of the box that should be uploaded at the given position */
+	public int getOrderedBoxIndex(int orderedIndex) { return this.orderedBoxIndices[orderedIndex]; }
+	
+	public int getNodeCount() { return this.nodeStart.length; }
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// culling //
+	//=========//
+	//region
+	
+	/** @return true if any part of the group may be visible */
+	public boolean isAnyVisible(FrustumCuller culler, double originOffsetX, double originOffsetY, double originOffsetZ)
+	{
+		return this.boxCount != 0
+			&& this.testNode(0, culler, originOffsetX, originOffsetY, originOffsetZ) != FrustumCuller.OUTSIDE;
+	}
+	
+	/**
+	 * Fills the list with pairs of (first ordered index, count) for every box range that may be visible.
+	 * Adjacent ranges are merged.
+	 *
+	 * @param originOffsetX the group's origin minus the camera's position
+	 * @return the number of boxes in the visible ranges
+	 */
+	public int collectVisibleRanges(
+			FrustumCuller culler,
+			double originOffsetX, double originOffsetY, double originOffsetZ,
+			IntArrayList rangeList)
+	{
+		rangeList.clear();
+		if (this.boxCount == 0)
+		{
+			return 0;
+		}
+		
+		int visibleBoxCount = 0;
+		
+		// depth first so the ranges are added in order and can be merged as they're found
+		IntArrayList nodeStack = this.nodeStack;
+		nodeStack.clear();
+		nodeStack.push(0);
+		while (!nodeStack.isEmpty())
+		{
+			int nodeIndex = nodeStack.popInt();
+			int result = this.testNode(nodeIndex, culler, originOffsetX, originOffsetY, originOffsetZ);
+			if (result == FrustumCuller.OUTSIDE)
+			{
+				continue;
+			}
+			
+			int leftChild = this.nodeLeftChild[nodeIndex];
+			if (result == FrustumCuller.INTERSECTS
+				&& leftChild != -1)
+			{
+				// right is pushed first so the left child is handled first
+				nodeStack.push(leftChild + 1);
+				nodeStack.push(leftChild);
+				continue;
+			}
+			
+			int start = this.nodeStart[nodeIndex];
+			int count = this.nodeCount[nodeIndex];
+			visibleBoxCount += count;
+			
+			int rangeListSize = rangeList.size();
+			if (rangeListSize != 0
+				&& rangeList.getInt(rangeListSize - 2) + rangeList.getInt(rangeListSize - 1) == start)
+			{
+				rangeList.set(rangeListSize - 1, rangeList.getInt(rangeListSize - 1) + count);
+			}
+			else
+			{
+				rangeList.add(start);
+				rangeList.add(count);
+			}
+		}
+		
+		
+		if (rangeList.size() / 2 > MAX_VISIBLE_RANGE_COUNT)
+		{
+			// draw everything between the first and last visible box
+			int firstStart = rangeList.getInt(0);
+			int lastEnd = rangeList.getInt(rangeList.size() - 2) + rangeList.getInt(rangeList.size() - 1);
+			rangeList.clear();
+			rangeList.add(firstStart);
+			rangeList.add(lastEnd - firstStart);
+			visibleBoxCount = lastEnd - firstStart;
+		}
+		
+		return visibleBoxCount;
+	}
+	
+	private int testNode(int nodeIndex, FrustumCuller culler, double originOffsetX, double originOffsetY, double originOffsetZ)
+	{
+		int boundsIndex = nodeIndex * BOUNDS_STRIDE;
+		return culler.testAabb(
+			this.nodeBounds[boundsIndex] + originOffsetX,
+			this.nodeBounds[boundsIndex + 1] + originOffsetY,
+			this.nodeBounds[boundsIndex + 2] + originOffsetZ,
+			this.nodeBounds[boundsIndex + 3] + originOffsetX,
+			this.nodeBounds[boundsIndex + 4] + originOffsetY,
+			this.nodeBounds[boundsIndex + 5] + originOffsetZ);
+	}
+	
+	//endregion
+	
+	
+	
+}
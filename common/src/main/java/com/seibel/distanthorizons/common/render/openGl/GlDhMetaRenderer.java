@@ -8,6 +8,8 @@ import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhAp
 import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhApiTextureCreatedParam;
 import com.seibel.distanthorizons.common.render.openGl.glObject.GLProxy;
 import com.seibel.distanthorizons.common.render.openGl.glObject.GlDhFramebuffer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GlStagingRingBuffer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GlTerrainVertexArena;
 import com.seibel.distanthorizons.common.render.openGl.glObject.texture.*;
 import com.seibel.distanthorizons.common.render.openGl.postProcessing.apply.GlDhApplyShader;
 import com.seibel.distanthorizons.common.render.openGl.terrain.GlDhTerrainShaderProgram;
@@ -99,6 +101,13 @@ public class GlDhMetaRenderer implements IDhMetaRenderer
 			this.renderObjectsCreated = true;
 		}
 		
+		if (firstPass)
+		{
+			// ranges freed/staged a few frames ago are no longer in use by the GPU
+			GlTerrainVertexArena.INSTANCE.onFrameStart();
+			GlStagingRingBuffer.INSTANCE.onFrameStart();
+		}
+		
 		this.shaderProgramForThisFrame = GlDhTerrainRenderer.INSTANCE.getTerrainShaderProgram();
 		IDhApiShaderProgram lodShaderProgramOverride = OverrideInjector.INSTANCE.get(IDhApiShaderProgram.class);
 		if (lodShaderProgramOverride != null && this.shaderProgramForThisFrame.overrideThisFrame())
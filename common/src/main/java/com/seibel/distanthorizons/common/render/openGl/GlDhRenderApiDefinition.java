@@ -1,9 +1,12 @@
 package com.seibel.distanthorizons.common.render.openGl;
 
+import com.seibel.distanthorizons.api.enums.config.EDhApiGpuUploadMethod;
 import com.seibel.distanthorizons.common.render.openGl.generic.GlGenericObjectRenderer;
 import com.seibel.distanthorizons.common.render.openGl.generic.GlGenericObjectVertexContainer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.GLProxy;
 import com.seibel.distanthorizons.common.render.openGl.glObject.GlDummyUniformData;
 import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GLVertexBuffer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GlTerrainVertexArena;
 import com.seibel.distanthorizons.common.render.openGl.postProcessing.fade.GlDhFarFadeRenderer;
 import com.seibel.distanthorizons.common.render.openGl.postProcessing.fade.GlVanillaFadeRenderer;
 import com.seibel.distanthorizons.common.render.openGl.postProcessing.fog.GlDhFogRenderer;
@@ -56,7 +59,7 @@ public class GlDhRenderApiDefinition extends AbstractDhRenderApiDefinition
 	
 	@Override public IDhGenericRenderer createGenericRenderer() { return new GlGenericObjectRenderer(); }
 	
-	@Override public IVertexBufferWrapper createVboWrapper(String name) { return new GLVertexBuffer(); }
+	@Override public IVertexBufferWrapper createVboWrapper(String name) { return new GLVertexBuffer(GLProxy.getInstance().getGpuUploadMethod() == EDhApiGpuUploadMethod.BUFFER_STORAGE, GlTerrainVertexArena.isSupported()); }
 	@Override public ILodContainerUniformBufferWrapper createLodContainerUniformWrapper() { return new GlDummyUniformData(); }
 	@Override public IDhGenericObjectVertexBufferContainer createGenericVboContainer() { return new GlGenericObjectVertexContainer(); }
 	
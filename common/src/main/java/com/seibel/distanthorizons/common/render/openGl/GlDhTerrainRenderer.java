@@ -1,7 +1,11 @@
 package com.seibel.distanthorizons.common.render.openGl;
 
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GlTerrainVertexArena;
+import com.seibel.distanthorizons.common.render.openGl.terrain.GlDhTerrainMultiDrawShaderProgram;
 import com.seibel.distanthorizons.common.render.openGl.terrain.GlDhTerrainShaderProgram;
 import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodBufferContainer;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.render.RenderParams;
 import com.seibel.distanthorizons.core.util.objects.SortedArraySet;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IProfilerWrapper;
@@ -9,6 +13,8 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.render.renderPass.IDhTe
 
 public class GlDhTerrainRenderer implements IDhTerrainRenderer
 {
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
 	public static final GlDhTerrainRenderer INSTANCE = new GlDhTerrainRenderer();
 	
 	private GlDhTerrainShaderProgram terrainShaderProgram = null;
@@ -35,7 +41,25 @@ public class GlDhTerrainRenderer implements IDhTerrainRenderer
 	{
 		if (this.terrainShaderProgram == null)
 		{
-			this.terrainShaderProgram = new GlDhTerrainShaderProgram();
+			if (GlTerrainVertexArena.isMultiDrawSupported())
+			{
+				try
+				{
+					this.terrainShaderProgram = new GlDhTerrainMultiDrawShaderProgram();
+					LOGGER.info("Using multi draw indirect terrain rendering.");
+				}
+				catch (RuntimeException e)
+				{
+					LOGGER.warn("Unable to create the multi draw indirect terrain shader, falling back to one draw call per buffer. Error: ["+e.getMessage()+"].", e);
+					// buffers already in the arena will still render via the fallback path
+					GlTerrainVertexArena.onMultiDrawShaderFailed();
+				}
+			}
+			
+			if (this.terrainShaderProgram == null)
+			{
+				this.terrainShaderProgram = new GlDhTerrainShaderProgram();
+			}
 		}
 		
 		return this.terrainShaderProgram;
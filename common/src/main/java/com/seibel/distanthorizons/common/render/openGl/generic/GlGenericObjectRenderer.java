@@ -29,6 +29,8 @@ import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhAp
 import com.seibel.distanthorizons.api.objects.math.DhApiVec3d;
 import com.seibel.distanthorizons.api.objects.render.DhApiRenderableBox;
 import com.seibel.distanthorizons.api.objects.render.DhApiRenderableBoxGroupShading;
+import com.seibel.distanthorizons.common.render.culling.FrustumCuller;
+import com.seibel.distanthorizons.common.render.culling.RenderableBoxBvh;
 import com.seibel.distanthorizons.common.render.openGl.glObject.GLProxy;
 import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GLIndexBuffer;
 import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GLVertexBuffer;
@@ -43,6 +45,8 @@ import com.seibel.distanthorizons.core.render.RenderParams;
 import com.seibel.distanthorizons.core.render.renderer.GenericRenderObjectFactory;
 import com.seibel.distanthorizons.core.render.renderer.RenderableBoxGroup;
 import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.util.RenderUtil;
+import com.seibel.distanthorizons.core.util.math.Mat4f;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftRenderWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IProfilerWrapper;
 import com.seibel.distanthorizons.core.util.math.Vec3d;
@@ -50,13 +54,16 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.render.renderPass.IDhGe
 import com.seibel.distanthorizons.coreapi.DependencyInjection.ApiEventInjector;
 import com.seibel.distanthorizons.coreapi.DependencyInjection.OverrideInjector;
 import com.seibel.distanthorizons.coreapi.ModInfo;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.lwjgl.opengl.ARBInstancedArrays;
 import org.lwjgl.opengl.GL32;
 import org.lwjgl.opengl.GL33;
+import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 
 import java.awt.*;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -82,6 +89,9 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 	 */
 	public static final boolean RENDER_DEBUG_OBJECTS = false;
 	
+	/** Debug toggle, if false every active box group will render regardless of whether it's visible. */
+	private static final boolean CULLING_ENABLED = true;
+	
 	
 	// rendering setup
 	private boolean init = false;
@@ -99,6 +109,18 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 	
 	private final ConcurrentHashMap<Long, RenderableBoxGroup> boxGroupById = new ConcurrentHashMap<>();
 	
+	// culling
+	private final FrustumCuller frustumCuller = new FrustumCuller();
+	/** re-used each frame to reduce GC pressure */
+	private final float[] projectionMvmMatrixArray = new float[16];
+	/** re-used each frame to reduce GC pressure, see {@link RenderableBoxBvh#collectVisibleRanges} */
+	private final IntArrayList visibleRangeList = new IntArrayList();
+	
+	/** the number of groups culled during the last render pass, for the F3 menu */
+	private int culledGroupCount = 0;
+	/** the number of boxes culled during the last render pass, for the F3 menu */
+	private int culledBoxCount = 0;
+	
 	
 	
 	/** A box from 0,0,0 to 1,1,1 */
@@ -451,6 +473,10 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 			
 			Vec3d camPos = MC_RENDER.getCameraExactPosition();
 			
+			this.updateFrustumCuller(renderEventParam);
+			this.culledGroupCount = 0;
+			this.culledBoxCount = 0;
+			
 			
 			
 			// rendering //
@@ -481,6 +507,14 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 					continue;
 				}
 				
+				// skip groups that can't be seen before doing any event or GL work
+				if (!this.isBoxGroupVisible(boxGroup, camPos))
+				{
+					this.culledGroupCount++;
+					this.culledBoxCount += boxGroup.size();
+					continue;
+				}
+				
 				// allow API users to cancel this object's rendering
 				boolean cancelRendering = ApiEventInjector.INSTANCE.fireAllEvents(DhApiBeforeGenericObjectRenderEvent.class, new DhApiBeforeGenericObjectRenderEvent.EventParam(renderEventParam, boxGroup));
 				if (cancelRendering)
@@ -578,37 +612,46 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 			
 			GlGenericObjectVertexContainer container = (GlGenericObjectVertexContainer) (boxGroup.vertexBufferContainer);
 			
-			GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.color);
-			GL32.glEnableVertexAttribArray(1);
-			GL32.glVertexAttribPointer(1, 4, GL32.GL_FLOAT, false, 4 * Float.BYTES, 0);
-			this.vertexAttribDivisor(1, 1);
-			
-			GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.scale);
-			GL32.glEnableVertexAttribArray(2);
-			this.vertexAttribDivisor(2, 1);
-			GL32.glVertexAttribPointer(2, 3, GL32.GL_FLOAT, false, 3 * Float.BYTES, 0);
-			
-			GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.chunkPos);
-			GL32.glEnableVertexAttribArray(3);
-			this.vertexAttribDivisor(3, 1);
-			GL32.glVertexAttribIPointer(3, 3, GL32.GL_INT, 3 * Integer.BYTES, 0);
-			
-			GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.subChunkPos);
-			GL32.glEnableVertexAttribArray(4);
-			this.vertexAttribDivisor(4, 1);
-			GL32.glVertexAttribPointer(4, 3, GL32.GL_FLOAT, false, 3 * Float.BYTES, 0);
-			
-			GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.material);
-			GL32.glEnableVertexAttribArray(5);
-			this.vertexAttribDivisor(5, 1);
-			GL32.glVertexAttribIPointer(5, 1, GL32.GL_BYTE, Byte.BYTES, 0);
+			for (int attributeIndex = 1; attributeIndex <= 5; attributeIndex++)
+			{
+				GL32.glEnableVertexAttribArray(attributeIndex);
+				this.vertexAttribDivisor(attributeIndex, 1);
+			}
 			
 			
 			// Draw instanced
 			profiler.popPush("render");
 			if (container.uploadedBoxCount > 0)
 			{
-				GL32.glDrawElementsInstanced(GL32.GL_TRIANGLES, BOX_INDICES.length, GL32.GL_UNSIGNED_INT, 0, container.uploadedBoxCount);
+				RenderableBoxBvh bvh = container.getUploadedBvh();
+				if (!CULLING_ENABLED 
+					|| bvh == null 
+					|| bvh.getBoxCount() != container.uploadedBoxCount)
+				{
+					this.bindInstanceAttributes(container, 0);
+					GL32.glDrawElementsInstanced(GL32.GL_TRIANGLES, BOX_INDICES.length, GL32.GL_UNSIGNED_INT, 0, container.uploadedBoxCount);
+				}
+				else
+				{
+					// only draw the ranges of boxes that may be visible
+					DhApiVec3d originPos = boxGroup.getOriginBlockPos();
+					int visibleBoxCount = bvh.collectVisibleRanges(
+						this.frustumCuller,
+						originPos.x - camPos.x, originPos.y - camPos.y, originPos.z - camPos.z,
+						this.visibleRangeList);
+					this.culledBoxCount += container.uploadedBoxCount - visibleBoxCount;
+					
+					for (int i = 0; i < this.visibleRangeList.size(); i += 2)
+					{
+						int firstInstance = this.visibleRangeList.getInt(i);
+						int instanceCount = this.visibleRangeList.getInt(i + 1);
+						
+						// offsetting the attribute pointers is used instead of a base instance
+						// since base instances require GL 4.2
+						this.bindInstanceAttributes(container, firstInstance);
+						GL32.glDrawElementsInstanced(GL32.GL_TRIANGLES, BOX_INDICES.length, GL32.GL_UNSIGNED_INT, 0, instanceCount);
+					}
+				}
 			}
 			
 			
@@ -622,6 +665,24 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 			GL32.glDisableVertexAttribArray(5);
 		}
 	}
+	/** Points each instanced attribute at the given instance's data. */
+	private void bindInstanceAttributes(GlGenericObjectVertexContainer container, int firstInstance)
+	{
+		GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.color);
+		GL32.glVertexAttribPointer(1, 4, GL32.GL_FLOAT, false, 4 * Float.BYTES, (long) firstInstance * 4 * Float.BYTES);
+		
+		GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.scale);
+		GL32.glVertexAttribPointer(2, 3, GL32.GL_FLOAT, false, 3 * Float.BYTES, (long) firstInstance * 3 * Float.BYTES);
+		
+		GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.chunkPos);
+		GL32.glVertexAttribIPointer(3, 3, GL32.GL_INT, 3 * Integer.BYTES, (long) firstInstance * 3 * Integer.BYTES);
+		
+		GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.subChunkPos);
+		GL32.glVertexAttribPointer(4, 3, GL32.GL_FLOAT, false, 3 * Float.BYTES, (long) firstInstance * 3 * Float.BYTES);
+		
+		GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, container.material);
+		GL32.glVertexAttribIPointer(5, 1, GL32.GL_BYTE, Byte.BYTES, (long) firstInstance * Byte.BYTES);
+	}
 	/** 
 	 * Clean way to handle both {@link GL33#glVertexAttribDivisor} and {@link ARBInstancedArrays#glVertexAttribDivisorARB}
 	 * based on which one is supported.
@@ -666,6 +727,7 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 		
 		shaderProgram.fillSharedDirectUniformData(renderEventParam, shading, boxGroup, camPos);
 		
+		DhApiVec3d originPos = boxGroup.getOriginBlockPos();
 		for (int i = 0; i < boxGroup.size(); i++)
 		{
 			try
@@ -673,6 +735,15 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 				DhApiRenderableBox box = boxGroup.get(i);
 				if (box != null)
 				{
+					if (CULLING_ENABLED
+						&& !this.frustumCuller.intersectsAabb(
+							box.minPos.x + originPos.x - camPos.x, box.minPos.y + originPos.y - camPos.y, box.minPos.z + originPos.z - camPos.z,
+							box.maxPos.x + originPos.x - camPos.x, box.maxPos.y + originPos.y - camPos.y, box.maxPos.z + originPos.z - camPos.z))
+					{
+						this.culledBoxCount++;
+						continue;
+					}
+					
 					profiler.popPush("direct uniforms");
 					shaderProgram.fillDirectUniformData(renderEventParam, boxGroup, box, camPos);
 					
@@ -694,6 +765,55 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 	
 	
 	
+	//=========//
+	// culling //
+	//=========//
+	//region
+	
+	private void updateFrustumCuller(DhApiRenderParam renderEventParam)
+	{
+		Mat4f projectionMvmMatrix = new Mat4f(renderEventParam.dhProjectionMatrix);
+		projectionMvmMatrix.multiply(renderEventParam.dhModelViewMatrix);
+		
+		try (MemoryStack stack = MemoryStack.stackPush())
+		{
+			FloatBuffer buffer = stack.mallocFloat(4 * 4);
+			projectionMvmMatrix.store(buffer);
+			for (int i = 0; i < this.projectionMvmMatrixArray.length; i++)
+			{
+				this.projectionMvmMatrixArray[i] = buffer.get(i);
+			}
+		}
+		
+		this.frustumCuller.update(this.projectionMvmMatrixArray, RenderUtil.getFarClipPlaneDistanceInBlocks());
+	}
+	
+	/** 
+	 * Only uses the bounds of groups that have already been uploaded,
+	 * so groups being rendered directly or for the first time are always considered visible.
+	 */
+	private boolean isBoxGroupVisible(RenderableBoxGroup boxGroup, Vec3d camPos)
+	{
+		if (!CULLING_ENABLED
+			|| !(boxGroup.vertexBufferContainer instanceof GlGenericObjectVertexContainer))
+		{
+			return true;
+		}
+		
+		RenderableBoxBvh bvh = ((GlGenericObjectVertexContainer) boxGroup.vertexBufferContainer).getUploadedBvh();
+		if (bvh == null)
+		{
+			return true;
+		}
+		
+		DhApiVec3d originPos = boxGroup.getOriginBlockPos();
+		return bvh.isAnyVisible(this.frustumCuller, originPos.x - camPos.x, originPos.y - camPos.y, originPos.z - camPos.z);
+	}
+	
+	//endregion
+	
+	
+	
 	//=========//
 	// getters //
 	//=========//
@@ -741,7 +861,8 @@ public class GlGenericObjectRenderer implements IDhGenericRenderer
 		
 		
 		return "Generic Obj #: " + F3Screen.NUMBER_FORMAT.format(activeGroupCount) + "/" + F3Screen.NUMBER_FORMAT.format(totalGroupCount) + ", " +
-				"Cube #: " + F3Screen.NUMBER_FORMAT.format(activeBoxCount) + "/" + F3Screen.NUMBER_FORMAT.format(totalBoxCount);
+				"Cube #: " + F3Screen.NUMBER_FORMAT.format(activeBoxCount) + "/" + F3Screen.NUMBER_FORMAT.format(totalBoxCount) + ", " +
+				"Culled: " + F3Screen.NUMBER_FORMAT.format(this.culledGroupCount) + " obj/" + F3Screen.NUMBER_FORMAT.format(this.culledBoxCount) + " cube";
 	}
 	
 	//endregion
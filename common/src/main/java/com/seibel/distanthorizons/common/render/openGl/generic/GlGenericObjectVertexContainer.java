@@ -1,6 +1,7 @@
 package com.seibel.distanthorizons.common.render.openGl.generic;
 
 import com.seibel.distanthorizons.api.objects.render.DhApiRenderableBox;
+import com.seibel.distanthorizons.common.render.culling.RenderableBoxBvh;
 import com.seibel.distanthorizons.common.wrappers.minecraft.MinecraftGLWrapper;
 import com.seibel.distanthorizons.core.logging.DhLogger;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
@@ -39,6 +40,16 @@ public class GlGenericObjectVertexContainer implements IDhGenericObjectVertexBuf
 	
 	public int uploadedBoxCount = 0;
 	
+	/** 
+	 * Built alongside the vertex data and used by the render thread once that data has been uploaded. <br>
+	 * The instance data is stored in this BVH's order so visible boxes can be drawn in contiguous ranges.
+	 */
+	private volatile RenderableBoxBvh pendingBvh = null;
+	/** null until the first upload */
+	private RenderableBoxBvh uploadedBvh = null;
+	/** Only valid on the render thread. */
+	public RenderableBoxBvh getUploadedBvh() { return this.uploadedBvh; }
+	
 	private EState state = EState.NEW;
 	@Override 
 	public EState getState() { return this.state; }
@@ -71,11 +82,29 @@ public class GlGenericObjectVertexContainer implements IDhGenericObjectVertexBuf
 		}
 		
 		
-		// transformation / scaling //
+		// culling //
+		double[] boxBounds = new double[boxCount * 6];
 		for (int i = 0; i < boxCount; i++)
 		{
 			DhApiRenderableBox box = uploadBoxList.get(i);
 			
+			int boundsIndex = i * 6;
+			boxBounds[boundsIndex] = box.minPos.x;
+			boxBounds[boundsIndex + 1] = box.minPos.y;
+			boxBounds[boundsIndex + 2] = box.minPos.z;
+			boxBounds[boundsIndex + 3] = box.maxPos.x;
+			boxBounds[boundsIndex + 4] = box.maxPos.y;
+			boxBounds[boundsIndex + 5] = box.maxPos.z;
+		}
+		RenderableBoxBvh bvh = new RenderableBoxBvh(boxBounds, boxCount);
+		
+		
+		// transformation / scaling //
+		for (int i = 0; i < boxCount; i++)
+		{
+			// boxes are stored in BVH order
+			DhApiRenderableBox box = uploadBoxList.get(bvh.getOrderedBoxIndex(i));
+			
 			int dataIndex = i * 3;
 			
 			this.chunkPosData[dataIndex] = LodUtil.getChunkPosFromDouble(box.minPos.x);
@@ -95,7 +124,7 @@ public class GlGenericObjectVertexContainer implements IDhGenericObjectVertexBuf
 		// colors/materials //
 		for (int i = 0; i < boxCount; i++)
 		{
-			DhApiRenderableBox box = uploadBoxList.get(i);
+			DhApiRenderableBox box = uploadBoxList.get(bvh.getOrderedBoxIndex(i));
 			Color color = box.color;
 			int colorIndex = i * 4;
 			this.colorData[colorIndex] = color.getRed() / 255.0f;
@@ -105,6 +134,8 @@ public class GlGenericObjectVertexContainer implements IDhGenericObjectVertexBuf
 			
 			this.materialData[i] = box.material;
 		}
+		
+		this.pendingBvh = bvh;
 	}
 	
 	@Override
@@ -112,6 +143,8 @@ public class GlGenericObjectVertexContainer implements IDhGenericObjectVertexBuf
 	{
 		this.tryCreateBuffers();
 		
+		this.uploadedBvh = this.pendingBvh;
+		
 		// Upload transformation matrices
 		GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, this.chunkPos);
 		GL32.glBufferData(GL32.GL_ARRAY_BUFFER, this.chunkPosData, GL32.GL_DYNAMIC_DRAW);
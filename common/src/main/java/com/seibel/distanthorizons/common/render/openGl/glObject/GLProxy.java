@@ -88,6 +88,7 @@ public class GLProxy
 	public boolean namedObjectSupported = false; // ~OpenGL 4.5 (UNUSED CURRENTLY)
 	public boolean bufferStorageSupported = false; // ~OpenGL 4.4
 	public boolean vertexAttributeBufferBindingSupported = false; // ~OpenGL 4.3
+	public boolean multiDrawIndirectSupported = false; // ~OpenGL 4.3
 	public boolean instancedArraysSupported = false;
 	public boolean vertexAttribDivisorSupported = false; // OpenGL 3.3 or newer
 	
@@ -184,6 +185,9 @@ public class GLProxy
 		// Check if we can use the make-over version of Vertex Attribute, which is available in GL4.3 or after
 		this.vertexAttributeBufferBindingSupported = this.glCapabilities.glBindVertexBuffer != 0L; // Nullptr
 		
+		// Check if we can submit multiple draws with a single call, which is available in GL4.3 or after
+		this.multiDrawIndirectSupported = this.glCapabilities.glMultiDrawElementsIndirect != 0L; // Nullptr
+		
 		// used by instanced rendering
 		this.vertexAttribDivisorSupported = this.glCapabilities.OpenGL33;
 		// denotes if ARBInstancedArrays.glVertexAttribDivisorARB() is available or not
@@ -29,6 +29,7 @@ import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.render.RenderThreadTaskHandler;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.ThreadUtil;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL32;
 import org.lwjgl.opengl.GL44;
 
@@ -69,6 +70,8 @@ public class GLBuffer implements AutoCloseable
 	protected boolean bufferStorage;
 	public final boolean isBufferStorage() { return this.bufferStorage; }
 	protected boolean isMapped = false;
+	/** if true uploads will go through the {@link GlStagingRingBuffer} when possible */
+	protected boolean useStagingRing = false;
 	
 	
 	
@@ -249,7 +252,18 @@ public class GLBuffer implements AutoCloseable
 		int bbSize = bb.limit() - bb.position();
 		this.destroyOldAndCreate(true);
 		this.bind();
-		GL44.glBufferStorage(this.getBufferBindingTarget(), bb, 0);
+		
+		GlStagingRingBuffer.StagedRange stagedRange = this.tryStage(bb);
+		if (stagedRange != null)
+		{
+			// immutable storage can still be written to via copies
+			GL44.glBufferStorage(this.getBufferBindingTarget(), bbSize, 0);
+			GlStagingRingBuffer.INSTANCE.copyTo(stagedRange, this.id, 0);
+		}
+		else
+		{
+			GL44.glBufferStorage(this.getBufferBindingTarget(), bb, 0);
+		}
 		this.size = bbSize;
 	}
 	/** Requires the buffer to be bound */
@@ -258,7 +272,17 @@ public class GLBuffer implements AutoCloseable
 		LodUtil.assertTrue(!this.bufferStorage, "Buffer is bufferStorage but its trying to use bufferData upload method!");
 		
 		int bbSize = bb.limit() - bb.position();
-		GL32.glBufferData(this.getBufferBindingTarget(), bb, bufferDataHint);
+		
+		GlStagingRingBuffer.StagedRange stagedRange = this.tryStage(bb);
+		if (stagedRange != null)
+		{
+			GL32.glBufferData(this.getBufferBindingTarget(), bbSize, bufferDataHint);
+			GlStagingRingBuffer.INSTANCE.copyTo(stagedRange, this.id, 0);
+		}
+		else
+		{
+			GL32.glBufferData(this.getBufferBindingTarget(), bb, bufferDataHint);
+		}
 		this.size = bbSize;
 	}
 	/** Requires the buffer to be bound */
@@ -274,7 +298,28 @@ public class GLBuffer implements AutoCloseable
 			GL32.glBufferData(this.getBufferBindingTarget(), newSize, bufferDataHint);
 			this.size = newSize;
 		}
-		GL32.glBufferSubData(this.getBufferBindingTarget(), 0, bb);
+		
+		GlStagingRingBuffer.StagedRange stagedRange = this.tryStage(bb);
+		if (stagedRange != null)
+		{
+			GlStagingRingBuffer.INSTANCE.copyTo(stagedRange, this.id, 0);
+		}
+		else
+		{
+			GL32.glBufferSubData(this.getBufferBindingTarget(), 0, bb);
+		}
+	}
+	/** @return null if this upload should be done directly */
+	@Nullable
+	private GlStagingRingBuffer.StagedRange tryStage(ByteBuffer bb)
+	{
+		if (!this.useStagingRing
+			|| !GlStagingRingBuffer.isSupported())
+		{
+			return null;
+		}
+		
+		return GlStagingRingBuffer.INSTANCE.tryStage(bb);
 	}
 	
 	//endregion
@@ -28,6 +28,7 @@ import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.render.RenderThreadTaskHandler;
 import com.seibel.distanthorizons.core.wrapperInterfaces.render.AbstractDhRenderApiDefinition;
 import com.seibel.distanthorizons.core.wrapperInterfaces.render.objects.IVertexBufferWrapper;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL32;
 
 import com.seibel.distanthorizons.api.enums.config.EDhApiGpuUploadMethod;
@@ -52,8 +53,20 @@ public class GLVertexBuffer extends GLBuffer implements IVertexBufferWrapper
 	public int getVertexCount() { return this.vertexCount; }
 	
 	
+	/** if true vertex data will be uploaded to the {@link GlTerrainVertexArena} when possible */
+	private final boolean useVertexArena;
+	/** null if this buffer's vertices are in its own GL buffer */
+	@Nullable
+	private GlTerrainVertexArena.Allocation arenaAllocation = null;
+	/** @return null if this buffer's vertices are stored in this object's GL buffer */
+	@Nullable
+	public GlTerrainVertexArena.Allocation getArenaAllocation() { return this.arenaAllocation; }
+	
+	
 	private GlQuadIndexBuffer quadIBO = null;
 	private static GlQuadIndexBuffer GLOBAL_QUAD_IBO = null;
+	/** @return null if {@link AbstractDhRenderApiDefinition#useSingleIbo()} is false or the IBO hasn't been created yet */
+	public static GlQuadIndexBuffer getGlobalQuadIBO() { return GLOBAL_QUAD_IBO; }
 	public GlQuadIndexBuffer getQuadIBO()
 	{
 		if (RENDER_DEF.useSingleIbo())
@@ -93,7 +106,15 @@ public class GLVertexBuffer extends GLBuffer implements IVertexBufferWrapper
 	}
 	
 	public GLVertexBuffer() { this(GLProxy.getInstance().getGpuUploadMethod() == EDhApiGpuUploadMethod.BUFFER_STORAGE); }
-	public GLVertexBuffer(boolean isBufferStorage) { super(isBufferStorage); }
+	public GLVertexBuffer(boolean isBufferStorage) { this(isBufferStorage, false); }
+	/** @param useVertexArena should only be true for LOD terrain buffers */
+	public GLVertexBuffer(boolean isBufferStorage, boolean useVertexArena)
+	{
+		super(isBufferStorage);
+		this.useVertexArena = useVertexArena;
+		// only LOD terrain is uploaded often enough to benefit from staging
+		this.useStagingRing = useVertexArena;
+	}
 	
 	//endregion
 	
@@ -127,8 +148,21 @@ public class GLVertexBuffer extends GLBuffer implements IVertexBufferWrapper
 			throw new IllegalArgumentException("vertexCount is negative!");
 		}
 		
+		this.freeArenaAllocation();
+		if (this.useVertexArena)
+		{
+			this.arenaAllocation = GlTerrainVertexArena.INSTANCE.tryUpload(byteBuffer);
+			if (this.arenaAllocation != null)
+			{
+				// the standalone buffer is no longer needed,
+				// a new one will be created if a later upload doesn't fit in the arena
+				super.destroyAsync();
+			}
+		}
+		
 		// If size is zero, just ignore it.
-		if (byteBuffer.limit() - byteBuffer.position() != 0)
+		if (this.arenaAllocation == null
+			&& byteBuffer.limit() - byteBuffer.position() != 0)
 		{
 			super.uploadBuffer(byteBuffer, uploadMethod, maxExpansionSize, uploadMethod.useBufferStorage ? 0 : GL32.GL_STATIC_DRAW);
 		}
@@ -165,6 +199,16 @@ public class GLVertexBuffer extends GLBuffer implements IVertexBufferWrapper
 		this.quadIBO.upload(buffer, quadCount);
 	}
 	
+	/** Must be called on the render thread */
+	private void freeArenaAllocation()
+	{
+		if (this.arenaAllocation != null)
+		{
+			GlTerrainVertexArena.INSTANCE.free(this.arenaAllocation);
+			this.arenaAllocation = null;
+		}
+	}
+	
 	//endregion
 	
 	
@@ -180,6 +224,14 @@ public class GLVertexBuffer extends GLBuffer implements IVertexBufferWrapper
 	public void destroyAsync()
 	{
 		super.destroyAsync();
+		
+		if (this.arenaAllocation != null)
+		{
+			final GlTerrainVertexArena.Allocation allocationToFree = this.arenaAllocation; // saving the allocation to a separate variable is necessary so it can be captured by the lambda
+			RenderThreadTaskHandler.INSTANCE.queueRunningOnRenderThread("GLVertexBuffer arena free", () -> { GlTerrainVertexArena.INSTANCE.free(allocationToFree); });
+			this.arenaAllocation = null;
+		}
+		
 		if (this.quadIBO != null)
 		{
 			this.quadIBO.destroyAsync();
@@ -0,0 +1,365 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.common.render.openGl.glObject.buffer;
+
+import com.seibel.distanthorizons.common.render.openGl.glObject.GLProxy;
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A persistently and coherently mapped buffer used to stage LOD geometry uploads. <br><br>
+ *
+ * Uploading via {@code glBufferData}/{@code glBufferSubData}/{@code glBufferStorage}
+ * requires the driver to copy the whole buffer before the call returns,
+ * and may stall if the destination is still in use by the GPU. <br>
+ * Instead the data is copied straight into mapped memory
+ * and the GPU copies it into the destination buffer via {@code glCopyBufferSubData}. <br>
+ * Each copy is followed by a fence so that range of the ring isn't overwritten
+ * until the GPU has finished reading it. <br><br>
+ *
+ * The ring never waits on a fence, if there isn't enough free space
+ * (or this frame's byte budget has been used up) the caller should fall back to a regular upload. <br><br>
+ *
+ * Should only be accessed on the render thread.
+ *
+ * @see GLBuffer
+ */
+public class GlStagingRingBuffer
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder()
+			.fileLevelConfig(Config.Common.Logging.logRendererGLEventToFile)
+			.chatLevelConfig(Config.Common.Logging.logRendererGLEventToChat)
+			.build();
+	
+	public static final GlStagingRingBuffer INSTANCE = new GlStagingRingBuffer();
+	
+	private static final int RING_BYTE_SIZE = 64 * 1024 * 1024;
+	/** keeps each staged range aligned for the memcpy */
+	private static final int ALIGNMENT = 16;
+	private static final int MAP_FLAGS = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+	
+	/** Debug toggle, if false everything will be uploaded directly. */
+	private static final boolean STAGING_ENABLED = true;
+	/**
+	 * The max number of bytes that can be staged each frame. <br>
+	 * Limiting this prevents a burst of uploads (IE after teleporting)
+	 * from filling the ring with copies the GPU hasn't reached yet.
+	 */
+	private static final int FRAME_BYTE_BUDGET = 16 * 1024 * 1024;
+	
+	
+	/** 0 until the ring has been created */
+	private int id = 0;
+	private long mappedAddress = 0;
+	/** set if the ring couldn't be created so we don't try again every upload */
+	private boolean creationFailed = false;
+	
+	/** where the next range will be staged */
+	private int headOffset = 0;
+	/** ordered oldest to newest */
+	private final ArrayDeque<InFlightRange> inFlightRanges = new ArrayDeque<>();
+	private int stagedBytesThisFrame = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	private GlStagingRingBuffer() { }
+	
+	/** @return true if the ring was created */
+	private boolean tryCreate()
+	{
+		if (this.id != 0)
+		{
+			return true;
+		}
+		else if (this.creationFailed)
+		{
+			return false;
+		}
+		
+		
+		int previousBoundBuffer = GL32.glGetInteger(GL32.GL_COPY_READ_BUFFER_BINDING);
+		try
+		{
+			this.id = GL32.glGenBuffers();
+			GL32.glBindBuffer(GL32.GL_COPY_READ_BUFFER, this.id);
+			GL44.glBufferStorage(GL32.GL_COPY_READ_BUFFER, RING_BYTE_SIZE, MAP_FLAGS);
+			
+			ByteBuffer mappedBuffer = GL30.glMapBufferRange(GL32.GL_COPY_READ_BUFFER, 0, RING_BYTE_SIZE, MAP_FLAGS);
+			if (mappedBuffer == null)
+			{
+				throw new IllegalStateException("glMapBufferRange returned null, GL error: ["+GL32.glGetError()+"].");
+			}
+			this.mappedAddress = MemoryUtil.memAddress(mappedBuffer);
+			
+			LOGGER.info("Created persistent staging ring buffer with a size of ["+RING_BYTE_SIZE+"] bytes.");
+			return true;
+		}
+		catch (RuntimeException e)
+		{
+			LOGGER.warn("Unable to create persistent staging ring buffer, LOD uploads will be done directly. Error: ["+e.getMessage()+"].", e);
+			this.creationFailed = true;
+			
+			if (this.id != 0)
+			{
+				GL32.glDeleteBuffers(this.id);
+				this.id = 0;
+			}
+			this.mappedAddress = 0;
+			return false;
+		}
+		finally
+		{
+			GL32.glBindBuffer(GL32.GL_COPY_READ_BUFFER, previousBoundBuffer);
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	/**
+	 * Requires the {@link GLProxy} to have been created. <br>
+	 * Persistent mapping is part of OpenGL 4.4.
+	 */
+	public static boolean isSupported()
+	{
+		return STAGING_ENABLED
+			&& GLProxy.hasInstance()
+			&& GLProxy.getInstance().bufferStorageSupported;
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// staging //
+	//=========//
+	//region
+	
+	/**
+	 * Copies the given buffer into mapped memory,
+	 * the returned range must be passed to {@link GlStagingRingBuffer#copyTo}
+	 * before any other ranges are staged. <br>
+	 * The buffer's position isn't changed.
+	 *
+	 * @return null if the buffer can't be staged this frame,
+	 *          in which case the caller should upload it directly
+	 */
+	@Nullable
+	public StagedRange tryStage(ByteBuffer byteBuffer)
+	{
+		if (!GLProxy.runningOnRenderThread())
+		{
+			LodUtil.assertNotReach("Thread ["+Thread.currentThread()+"] tried to stage an upload outside the MC render thread.");
+		}
+		
+		int byteSize = byteBuffer.limit() - byteBuffer.position();
+		if (byteSize <= 0
+			|| byteSize > RING_BYTE_SIZE
+			|| !byteBuffer.isDirect())
+		{
+			return null;
+		}
+		
+		// always allow at least one upload per frame so large LODs can still be staged
+		if (this.stagedBytesThisFrame != 0
+			&& this.stagedBytesThisFrame + byteSize > FRAME_BYTE_BUDGET)
+		{
+			return null;
+		}
+		
+		if (!this.tryCreate())
+		{
+			return null;
+		}
+		
+		this.retireCompletedRanges();
+		int startOffset = this.findFreeOffset(byteSize);
+		if (startOffset == -1)
+		{
+			return null;
+		}
+		
+		
+		MemoryUtil.memCopy(MemoryUtil.memAddress(byteBuffer), this.mappedAddress + startOffset, byteSize);
+		
+		this.headOffset = alignUp(startOffset + byteSize);
+		this.stagedBytesThisFrame += byteSize;
+		return new StagedRange(startOffset, byteSize);
+	}
+	
+	/**
+	 * Has the GPU copy the staged data into the given buffer
+	 * and fences the staged range so it won't be overwritten before the copy finishes.
+	 */
+	public void copyTo(StagedRange stagedRange, int destinationBufferId, long destinationByteOffset)
+	{
+		// the copy read/write targets are used so the array buffer binding MC relies on isn't changed
+		int previousReadBuffer = GL32.glGetInteger(GL32.GL_COPY_READ_BUFFER_BINDING);
+		int previousWriteBuffer = GL32.glGetInteger(GL32.GL_COPY_WRITE_BUFFER_BINDING);
+		
+		GL32.glBindBuffer(GL32.GL_COPY_READ_BUFFER, this.id);
+		GL32.glBindBuffer(GL32.GL_COPY_WRITE_BUFFER, destinationBufferId);
+		GL32.glCopyBufferSubData(GL32.GL_COPY_READ_BUFFER, GL32.GL_COPY_WRITE_BUFFER, stagedRange.byteOffset, destinationByteOffset, stagedRange.byteSize);
+		
+		GL32.glBindBuffer(GL32.GL_COPY_READ_BUFFER, previousReadBuffer);
+		GL32.glBindBuffer(GL32.GL_COPY_WRITE_BUFFER, previousWriteBuffer);
+		
+		long fence = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+		this.inFlightRanges.addLast(new InFlightRange(stagedRange.byteOffset, fence));
+	}
+	
+	/** Should be called once per frame before any LODs are uploaded. */
+	public void onFrameStart()
+	{
+		this.stagedBytesThisFrame = 0;
+		if (this.id != 0)
+		{
+			this.retireCompletedRanges();
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	//region
+	
+	/** removes every range the GPU has finished copying */
+	private void retireCompletedRanges()
+	{
+		while (!this.inFlightRanges.isEmpty())
+		{
+			InFlightRange oldestRange = this.inFlightRanges.peekFirst();
+			int waitResult = GL32.glClientWaitSync(oldestRange.fence, 0, 0);
+			if (waitResult != GL32.GL_ALREADY_SIGNALED
+				&& waitResult != GL32.GL_CONDITION_SATISFIED)
+			{
+				// fences complete in order, so nothing newer will be done either
+				break;
+			}
+			
+			GL32.glDeleteSync(oldestRange.fence);
+			this.inFlightRanges.removeFirst();
+		}
+		
+		if (this.inFlightRanges.isEmpty())
+		{
+			this.headOffset = 0;
+		}
+	}
+	
+	/** @return -1 if there isn't a large enough free range */
+	private int findFreeOffset(int byteSize)
+	{
+		if (this.inFlightRanges.isEmpty())
+		{
+			return (this.headOffset + byteSize <= RING_BYTE_SIZE) ? this.headOffset : 0;
+		}
+		
+		int tailOffset = this.inFlightRanges.peekFirst().byteOffset;
+		if (this.headOffset > tailOffset)
+		{
+			// free space is [head, end) and [0, tail)
+			if (this.headOffset + byteSize <= RING_BYTE_SIZE)
+			{
+				return this.headOffset;
+			}
+			else if (byteSize <= tailOffset)
+			{
+				// wrap around, the space at the end is skipped
+				return 0;
+			}
+		}
+		else if (this.headOffset + byteSize <= tailOffset)
+		{
+			// free space is [head, tail),
+			// if the head and tail are equal the ring is full
+			return this.headOffset;
+		}
+		
+		return -1;
+	}
+	
+	private static int alignUp(int offset) { return (offset + ALIGNMENT - 1) & -ALIGNMENT; }
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	/** A range of the ring that has been written to but not yet copied. */
+	public static class StagedRange
+	{
+		public final int byteOffset;
+		public final int byteSize;
+		
+		private StagedRange(int byteOffset, int byteSize)
+		{
+			this.byteOffset = byteOffset;
+			this.byteSize = byteSize;
+		}
+	}
+	
+	private static class InFlightRange
+	{
+		public final int byteOffset;
+		public final long fence;
+		
+		public InFlightRange(int byteOffset, long fence)
+		{
+			this.byteOffset = byteOffset;
+			this.fence = fence;
+		}
+	}
+	
+	//endregion
+	
+	
+	
+}
@@ -0,0 +1,350 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.common.render.openGl.glObject.buffer;
+
+import com.seibel.distanthorizons.common.render.arena.LodBufferArenaAllocator;
+import com.seibel.distanthorizons.common.render.openGl.glObject.GLProxy;
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodQuadBuilder;
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.jar.EPlatform;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.render.AbstractDhRenderApiDefinition;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Suballocates LOD vertex data out of a few large, long-lived GL buffers (pages)
+ * instead of giving every {@link GLVertexBuffer} its own buffer,
+ * which prevents the constant buffer create/destroy churn as LODs are rebuilt. <br>
+ * Since every section in a page shares the same vertex buffer,
+ * all of a page's sections can be drawn with a single {@code glMultiDrawElementsIndirect}. <br><br>
+ *
+ * The allocator works in whole vertices so every allocation's offset can be passed as a base vertex,
+ * which lets every section share the global quad IBO. <br><br>
+ *
+ * Should only be accessed on the render thread.
+ *
+ * @see GLVertexBuffer
+ * @see LodBufferArenaAllocator
+ */
+public class GlTerrainVertexArena implements LodBufferArenaAllocator.IPageListener
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder()
+			.fileLevelConfig(Config.Common.Logging.logRendererGLEventToFile)
+			.chatLevelConfig(Config.Common.Logging.logRendererGLEventToChat)
+			.build();
+	
+	private static final AbstractDhRenderApiDefinition RENDER_DEF = SingletonInjector.INSTANCE.get(AbstractDhRenderApiDefinition.class);
+	
+	public static final GlTerrainVertexArena INSTANCE = new GlTerrainVertexArena();
+	
+	/**
+	 * Pages are at least this large,
+	 * or the max size of a single LOD buffer, whichever is larger.
+	 */
+	private static final int MIN_PAGE_BYTE_SIZE = 64 * 1024 * 1024;
+	private static final int SLAB_BYTE_SIZE = 1024 * 1024;
+	private static final int MIN_BLOCK_BYTE_SIZE = 4 * 1024;
+	/** once this many pages exist, new buffers will fall back to using their own GL buffer */
+	private static final int MAX_PAGE_COUNT = 16;
+	/** how many frames the driver may still be using a freed range */
+	private static final int FRAMES_BEFORE_REUSE = 3;
+	
+	/** Debug toggle, if false every new LOD buffer will use its own GL buffer. */
+	private static final boolean ARENA_ENABLED = true;
+	/**
+	 * Debug toggle, if false each buffer will be rendered with its own draw call,
+	 * IE the pre GL 4.3 path.
+	 */
+	private static final boolean MULTI_DRAW_ENABLED = true;
+	/** set if the multi draw shader couldn't be created, in which case the per-buffer path is used instead */
+	private static volatile boolean multiDrawShaderFailed = false;
+	
+	
+	/** created lazily since the page size depends on {@link LodQuadBuilder} */
+	private LodBufferArenaAllocator allocator = null;
+	/** indexed by the allocator's page index, null entries are unused */
+	private final ArrayList<Page> pageByIndex = new ArrayList<>();
+	/** every page that currently exists */
+	private final ArrayList<Page> pages = new ArrayList<>();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	private GlTerrainVertexArena() { }
+	
+	private LodBufferArenaAllocator getAllocator()
+	{
+		if (this.allocator == null)
+		{
+			int slabVertexCount = SLAB_BYTE_SIZE / LodQuadBuilder.BYTES_PER_VERTEX;
+			int pageVertexCount = Math.max(MIN_PAGE_BYTE_SIZE, LodQuadBuilder.getMaxBufferByteSize()) / LodQuadBuilder.BYTES_PER_VERTEX;
+			// the page must be a whole number of slabs
+			pageVertexCount = ((pageVertexCount + slabVertexCount - 1) / slabVertexCount) * slabVertexCount;
+			
+			this.allocator = new LodBufferArenaAllocator(
+				"GL LOD",
+				pageVertexCount, slabVertexCount, MIN_BLOCK_BYTE_SIZE / LodQuadBuilder.BYTES_PER_VERTEX,
+				MAX_PAGE_COUNT, FRAMES_BEFORE_REUSE, LodQuadBuilder.BYTES_PER_VERTEX,
+				this);
+			this.allocator.registerDebugMenu();
+		}
+		return this.allocator;
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	/**
+	 * Requires the {@link GLProxy} to have been created. <br>
+	 * Base vertex draws are part of OpenGL 3.2, so this is true for most GPUs.
+	 */
+	public static boolean isSupported()
+	{
+		return ARENA_ENABLED
+			&& GLProxy.hasInstance()
+			// every section is drawn using the same IBO
+			&& RENDER_DEF.useSingleIbo()
+			// Mac may attempt to render everything allocated in a vertex buffer,
+			// which would render every section in a page
+			&& EPlatform.get() != EPlatform.MACOS;
+	}
+	
+	/**
+	 * Requires the {@link GLProxy} to have been created. <br>
+	 * Everything needed is part of OpenGL 4.4, so this should also be true when running on Mesa's llvmpipe.
+	 */
+	public static boolean isMultiDrawSupported()
+	{
+		if (!MULTI_DRAW_ENABLED
+			|| multiDrawShaderFailed
+			|| !isSupported())
+		{
+			return false;
+		}
+		
+		GLProxy glProxy = GLProxy.getInstance();
+		return glProxy.multiDrawIndirectSupported
+			&& glProxy.vertexAttributeBufferBindingSupported
+			&& glProxy.bufferStorageSupported;
+	}
+	
+	/** Should be called if the multi draw shader can't be created so the per-buffer draw path is used instead. */
+	public static void onMultiDrawShaderFailed() { multiDrawShaderFailed = true; }
+	
+	/**
+	 * Pages may be added or removed whenever a frame starts,
+	 * so the returned list shouldn't be held between frames.
+	 */
+	public ArrayList<Page> getPages() { return this.pages; }
+	
+	//endregion
+	
+	
+	
+	//============//
+	// allocation //
+	//============//
+	//region
+	
+	/**
+	 * Copies the given buffer into the arena.
+	 *
+	 * @return null if the arena is full or the buffer was empty,
+	 *          in which case the caller should use its own GL buffer instead
+	 */
+	@Nullable
+	public Allocation tryUpload(ByteBuffer byteBuffer)
+	{
+		if (!GLProxy.runningOnRenderThread())
+		{
+			LodUtil.assertNotReach("Thread ["+Thread.currentThread()+"] tried to upload to the terrain vertex arena outside the MC render thread.");
+		}
+		
+		int byteSize = byteBuffer.limit() - byteBuffer.position();
+		if (byteSize <= 0
+			|| byteSize % LodQuadBuilder.BYTES_PER_VERTEX != 0)
+		{
+			return null;
+		}
+		
+		LodBufferArenaAllocator.Allocation arenaAllocation = this.getAllocator().allocate(byteSize / LodQuadBuilder.BYTES_PER_VERTEX);
+		if (arenaAllocation == null)
+		{
+			return null;
+		}
+		
+		Allocation allocation = new Allocation(this.pageByIndex.get(arenaAllocation.pageIndex), arenaAllocation);
+		
+		GlStagingRingBuffer.StagedRange stagedRange = GlStagingRingBuffer.isSupported() ? GlStagingRingBuffer.INSTANCE.tryStage(byteBuffer) : null;
+		if (stagedRange != null)
+		{
+			GlStagingRingBuffer.INSTANCE.copyTo(stagedRange, allocation.page.id, allocation.byteOffset);
+			return allocation;
+		}
+		
+		// the copy write target is used so the array buffer binding MC relies on isn't changed
+		int previousBoundBuffer = GL32.glGetInteger(GL32.GL_COPY_WRITE_BUFFER_BINDING);
+		GL32.glBindBuffer(GL32.GL_COPY_WRITE_BUFFER, allocation.page.id);
+		GL32.glBufferSubData(GL32.GL_COPY_WRITE_BUFFER, allocation.byteOffset, byteBuffer);
+		GL32.glBindBuffer(GL32.GL_COPY_WRITE_BUFFER, previousBoundBuffer);
+		
+		return allocation;
+	}
+	
+	/** The range won't be re-used until the GPU is done with it. */
+	public void free(Allocation allocation)
+	{
+		if (!GLProxy.runningOnRenderThread())
+		{
+			LodUtil.assertNotReach("Thread ["+Thread.currentThread()+"] tried to free from the terrain vertex arena outside the MC render thread.");
+		}
+		
+		this.getAllocator().free(allocation.arenaAllocation);
+	}
+	
+	/** Should be called once per frame before any LODs are rendered. */
+	public void onFrameStart()
+	{
+		if (this.allocator != null)
+		{
+			this.allocator.onFrameStart();
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// page listening //
+	//================//
+	//region
+	
+	@Override
+	public void onPageCreated(int pageIndex, int vertexCount)
+	{
+		Page page = new Page(vertexCount * LodQuadBuilder.BYTES_PER_VERTEX);
+		while (this.pageByIndex.size() <= pageIndex)
+		{
+			this.pageByIndex.add(null);
+		}
+		this.pageByIndex.set(pageIndex, page);
+		this.pages.add(page);
+		
+		LOGGER.info("Created terrain vertex arena page ["+this.pages.size()+"/"+MAX_PAGE_COUNT+"] with a size of ["+page.byteSize+"] bytes.");
+	}
+	
+	@Override
+	public void onPageRemoved(int pageIndex)
+	{
+		Page page = this.pageByIndex.get(pageIndex);
+		this.pageByIndex.set(pageIndex, null);
+		this.pages.remove(page);
+		
+		GL32.glDeleteBuffers(page.id);
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	/** A single GL buffer that's split up between many LOD sections. */
+	public static class Page
+	{
+		/** the GL buffer ID */
+		public final int id;
+		public final int byteSize;
+		
+		
+		
+		private Page(int byteSize)
+		{
+			this.byteSize = byteSize;
+			this.id = GL32.glGenBuffers();
+			
+			int previousBoundBuffer = GL32.glGetInteger(GL32.GL_COPY_WRITE_BUFFER_BINDING);
+			GL32.glBindBuffer(GL32.GL_COPY_WRITE_BUFFER, this.id);
+			if (GLProxy.getInstance().bufferStorageSupported)
+			{
+				// dynamic storage is required for glBufferSubData
+				GL44.glBufferStorage(GL32.GL_COPY_WRITE_BUFFER, byteSize, GL44.GL_DYNAMIC_STORAGE_BIT);
+			}
+			else
+			{
+				GL32.glBufferData(GL32.GL_COPY_WRITE_BUFFER, byteSize, GL32.GL_STATIC_DRAW);
+			}
+			GL32.glBindBuffer(GL32.GL_COPY_WRITE_BUFFER, previousBoundBuffer);
+		}
+		
+		@Override
+		public String toString() { return "Page[id:" + this.id + ",size:" + this.byteSize + "]"; }
+		
+	}
+	
+	/** A range of vertices inside a {@link Page}. */
+	public static class Allocation
+	{
+		public final Page page;
+		public final int byteOffset;
+		public final int byteSize;
+		
+		private final LodBufferArenaAllocator.Allocation arenaAllocation;
+		
+		private Allocation(Page page, LodBufferArenaAllocator.Allocation arenaAllocation)
+		{
+			this.page = page;
+			this.arenaAllocation = arenaAllocation;
+			this.byteOffset = arenaAllocation.unitOffset * LodQuadBuilder.BYTES_PER_VERTEX;
+			this.byteSize = arenaAllocation.unitSize * LodQuadBuilder.BYTES_PER_VERTEX;
+		}
+		
+		/** the index of this allocation's first vertex in the page */
+		public int getBaseVertex() { return this.arenaAllocation.unitOffset; }
+		
+	}
+	
+	//endregion
+	
+	
+	
+}
@@ -54,26 +54,34 @@ public class GlShaderProgram
 	 * @param fragResourcePath the relative path the fragment shader should be found 
 	 */
 	public GlShaderProgram(String vertResourcePath, String fragResourcePath, String[] attributes)
+	{
+		this(
+			new GlShader(GL32.GL_VERTEX_SHADER, GlShader.loadFile(vertResourcePath, false)),
+			new GlShader(GL32.GL_FRAGMENT_SHADER, GlShader.loadFile(fragResourcePath, false)),
+			attributes);
+	}
+	/**
+	 * Can be used if a shader's source needs to be modified before compiling. <br>
+	 * Both shaders will be freed once they've been attached.
+	 * 
+	 * @param attributes each attribute is bound to the location matching its index, null entries are skipped
+	 */
+	public GlShaderProgram(GlShader vertShader, GlShader fragShader, String[] attributes)
 	{
 		this.id = GL32.glCreateProgram();
 		
-		{
-			String shaderString = GlShader.loadFile(vertResourcePath, false);
-			GlShader vertShader = new GlShader(GL32.GL_VERTEX_SHADER, shaderString);
-			GL32.glAttachShader(this.id, vertShader.id);
-			vertShader.free();
-		}
+		GL32.glAttachShader(this.id, vertShader.id);
+		vertShader.free();
 		
-		{
-			String shaderString = GlShader.loadFile(fragResourcePath, false);
-			GlShader fragShader = new GlShader(GL32.GL_FRAGMENT_SHADER, shaderString);
-			GL32.glAttachShader(this.id, fragShader.id);
-			fragShader.free();
-		}
+		GL32.glAttachShader(this.id, fragShader.id);
+		fragShader.free();
 		
 		for (int i = 0; i < attributes.length; i++)
 		{
-			GL32.glBindAttribLocation(this.id, i, attributes[i]);
+			if (attributes[i] != null)
+			{
+				GL32.glBindAttribLocation(this.id, i, attributes[i]);
+			}
 		}
 		GL32.glLinkProgram(this.id);
 		
@@ -0,0 +1,403 @@
+package com.seibel.distanthorizons.common.render.openGl.terrain;
+
+import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiBeforeBufferRenderEvent;
+import com.seibel.distanthorizons.api.objects.math.DhApiVec3f;
+import com.seibel.distanthorizons.common.render.openGl.GlDhMetaRenderer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GLVertexBuffer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GlQuadIndexBuffer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GlTerrainVertexArena;
+import com.seibel.distanthorizons.common.render.openGl.glObject.shader.GlShader;
+import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.LodBufferContainer;
+import com.seibel.distanthorizons.core.render.RenderParams;
+import com.seibel.distanthorizons.core.util.math.Vec3d;
+import com.seibel.distanthorizons.core.util.objects.SortedArraySet;
+import com.seibel.distanthorizons.core.wrapperInterfaces.render.objects.IVertexBufferWrapper;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL43;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Variant of {@link GlDhTerrainShaderProgram} that draws every LOD buffer in a
+ * {@link GlTerrainVertexArena} page with a single {@code glMultiDrawElementsIndirect} (OpenGL 4.3). <br><br>
+ *
+ * Since the model offset can't be changed between draws in a multi draw,
+ * the standard vertex shader is modified so {@code uModelOffset} is a per-instance vertex attribute
+ * instead of a uniform. Each indirect command's base instance is its draw index,
+ * so every draw reads its own offset from a buffer that's re-written each pass. <br>
+ * Per-instance attributes were used instead of an SSBO indexed by {@code gl_DrawID}
+ * since they don't require changing the standard shader's GLSL version or any extensions. <br><br>
+ *
+ * Buffers that aren't in the arena (IE if the arena was full) are still drawn individually,
+ * and if the shader program is overridden (IE by Iris) the {@link GlDhTerrainShaderProgram} path is used instead. <br>
+ * The {@link GlDhTerrainShaderProgram} path is also used if any {@link DhApiBeforeBufferRenderEvent} listeners are registered,
+ * since they expect the event to fire directly before each buffer is drawn.
+ */
+public class GlDhTerrainMultiDrawShaderProgram extends GlDhTerrainShaderProgram
+{
+	/** high enough that it won't collide with any of the standard shader's attributes */
+	private static final int MODEL_OFFSET_ATTRIBUTE_INDEX = 8;
+	/** the vertex data uses binding point 0 */
+	private static final int MODEL_OFFSET_BINDING_POINT = 1;
+	private static final int MODEL_OFFSET_BYTE_SIZE = 3 * Float.BYTES;
+	
+	/** count, instance count, first index, base vertex, base instance */
+	private static final int DRAW_COMMAND_BYTE_SIZE = 5 * Integer.BYTES;
+	
+	private static final Pattern MODEL_OFFSET_UNIFORM_PATTERN = Pattern.compile("uniform\\s+vec3\\s+uModelOffset\\s*;");
+	
+	
+	private final int drawCommandBufferId;
+	private final int modelOffsetBufferId;
+	
+	/** CPU side copies of the GL buffers, re-used between frames */
+	private ByteBuffer drawCommandByteBuffer = MemoryUtil.memAlloc(256 * DRAW_COMMAND_BYTE_SIZE);
+	private ByteBuffer modelOffsetByteBuffer = MemoryUtil.memAlloc(256 * MODEL_OFFSET_BYTE_SIZE);
+	
+	/** x, y, z model offset for each buffer container this pass */
+	private float[] containerModelOffsets = new float[0];
+	private int[] pageFirstDrawIndex = new int[0];
+	private int[] pageDrawCount = new int[0];
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	/** @throws RuntimeException if the standard shader couldn't be modified or compiled */
+	public GlDhTerrainMultiDrawShaderProgram()
+	{
+		super(
+			new GlShader(GL32.GL_VERTEX_SHADER, createVertexShaderSource()),
+			new GlShader(GL32.GL_FRAGMENT_SHADER, GlShader.loadFile(FRAGMENT_SHADER_PATH, false)),
+			createAttributeNames()
+		);
+		
+		this.drawCommandBufferId = GL32.glGenBuffers();
+		this.modelOffsetBufferId = GL32.glGenBuffers();
+	}
+	private static String createVertexShaderSource()
+	{
+		String source = GlShader.loadFile(VERTEX_SHADER_PATH, false);
+		Matcher matcher = MODEL_OFFSET_UNIFORM_PATTERN.matcher(source);
+		if (!matcher.find())
+		{
+			throw new IllegalStateException("Unable to find the uModelOffset uniform in [" + VERTEX_SHADER_PATH + "].");
+		}
+		
+		// the name is kept so the rest of the shader doesn't need to change
+		return matcher.replaceFirst("in vec3 uModelOffset;");
+	}
+	private static String[] createAttributeNames()
+	{
+		String[] attributes = new String[MODEL_OFFSET_ATTRIBUTE_INDEX + 1];
+		attributes[0] = "vPosition";
+		attributes[1] = "color";
+		attributes[MODEL_OFFSET_ATTRIBUTE_INDEX] = "uModelOffset";
+		return attributes;
+	}
+	
+	@Override
+	protected void setupAdditionalVertexAttributes()
+	{
+		GL43.glVertexAttribFormat(MODEL_OFFSET_ATTRIBUTE_INDEX, 3, GL32.GL_FLOAT, false, 0);
+		GL43.glVertexAttribBinding(MODEL_OFFSET_ATTRIBUTE_INDEX, MODEL_OFFSET_BINDING_POINT);
+		// advance once per draw instead of once per vertex
+		GL43.glVertexBindingDivisor(MODEL_OFFSET_BINDING_POINT, 1);
+		
+		// the attribute array is only enabled during multi draws,
+		// otherwise the constant value set by setModelOffsetPos() is used
+		GL32.glDisableVertexAttribArray(MODEL_OFFSET_ATTRIBUTE_INDEX);
+	}
+	
+	//endregion
+	
+	
+	
+	//=============//
+	// API methods //
+	//=============//
+	//region
+	
+	@Override
+	public void free()
+	{
+		GL32.glDeleteBuffers(this.drawCommandBufferId);
+		GL32.glDeleteBuffers(this.modelOffsetBufferId);
+		MemoryUtil.memFree(this.drawCommandByteBuffer);
+		MemoryUtil.memFree(this.modelOffsetByteBuffer);
+		
+		super.free();
+	}
+	
+	/** Sets the constant attribute value used when the model offset attribute array is disabled. */
+	@Override
+	public void setModelOffsetPos(DhApiVec3f modelOffsetPos) { GL32.glVertexAttrib3f(MODEL_OFFSET_ATTRIBUTE_INDEX, modelOffsetPos.x, modelOffsetPos.y, modelOffsetPos.z); }
+	
+	//endregion
+	
+	
+	
+	//===========//
+	// rendering //
+	//===========//
+	//region
+	
+	@Override
+	protected void renderBufferContainers(RenderParams renderEventParam, boolean opaquePass, SortedArraySet<LodBufferContainer> bufferContainers)
+	{
+		GlQuadIndexBuffer quadIbo = GLVertexBuffer.getGlobalQuadIBO();
+		if (GlDhMetaRenderer.INSTANCE.shaderProgramForThisFrame != this
+			|| !GlTerrainVertexArena.isMultiDrawSupported()
+			|| quadIbo == null
+			|| hasBeforeBufferRenderListeners())
+		{
+			// overridden shader programs expect a model offset uniform
+			// and API listeners expect to be fired before each buffer is drawn
+			super.renderBufferContainers(renderEventParam, opaquePass, bufferContainers);
+			return;
+		}
+		
+		this.bind();
+		
+		
+		
+		//=========================//
+		// calculate model offsets //
+		//=========================//
+		
+		int containerCount = bufferContainers.size();
+		if (this.containerModelOffsets.length < containerCount * 3)
+		{
+			this.containerModelOffsets = new float[containerCount * 3];
+		}
+		
+		Vec3d camPos = renderEventParam.exactCameraPosition;
+		boolean anyBufferOutsideArena = false;
+		for (int lodIndex = 0; lodIndex < containerCount; lodIndex++)
+		{
+			LodBufferContainer bufferContainer = bufferContainers.get(lodIndex);
+			
+			this.containerModelOffsets[(lodIndex * 3)] = (float) (bufferContainer.minCornerBlockPos.getX() - camPos.x);
+			this.containerModelOffsets[(lodIndex * 3) + 1] = (float) (bufferContainer.minCornerBlockPos.getY() - camPos.y);
+			this.containerModelOffsets[(lodIndex * 3) + 2] = (float) (bufferContainer.minCornerBlockPos.getZ() - camPos.z);
+			
+			IVertexBufferWrapper[] vertexBuffers = (opaquePass ? bufferContainer.vboOpaqueWrappers : bufferContainer.vboTransparentWrappers);
+			for (int vboIndex = 0; vboIndex < vertexBuffers.length; vboIndex++)
+			{
+				GLVertexBuffer vbo = (GLVertexBuffer) vertexBuffers[vboIndex];
+				if (vbo != null
+					&& vbo.getVertexCount() != 0
+					&& vbo.getArenaAllocation() == null)
+				{
+					anyBufferOutsideArena = true;
+				}
+			}
+		}
+		
+		
+		
+		//=====================//
+		// build draw commands //
+		//=====================//
+		
+		// commands are grouped by page so each page can be drawn with a single call
+		ArrayList<GlTerrainVertexArena.Page> pages = GlTerrainVertexArena.INSTANCE.getPages();
+		if (this.pageFirstDrawIndex.length < pages.size())
+		{
+			this.pageFirstDrawIndex = new int[pages.size()];
+			this.pageDrawCount = new int[pages.size()];
+		}
+		
+		this.drawCommandByteBuffer.clear();
+		this.modelOffsetByteBuffer.clear();
+		int drawIndex = 0;
+		for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++)
+		{
+			GlTerrainVertexArena.Page page = pages.get(pageIndex);
+			this.pageFirstDrawIndex[pageIndex] = drawIndex;
+			
+			for (int lodIndex = 0; lodIndex < containerCount; lodIndex++)
+			{
+				LodBufferContainer bufferContainer = bufferContainers.get(lodIndex);
+				IVertexBufferWrapper[] vertexBuffers = (opaquePass ? bufferContainer.vboOpaqueWrappers : bufferContainer.vboTransparentWrappers);
+				for (int vboIndex = 0; vboIndex < vertexBuffers.length; vboIndex++)
+				{
+					GLVertexBuffer vbo = (GLVertexBuffer) vertexBuffers[vboIndex];
+					if (vbo == null
+						|| vbo.getVertexCount() == 0)
+					{
+						continue;
+					}
+					
+					GlTerrainVertexArena.Allocation allocation = vbo.getArenaAllocation();
+					if (allocation == null
+						|| allocation.page != page)
+					{
+						continue;
+					}
+					
+					this.ensureDrawCapacity(drawIndex + 1);
+					
+					// 4 vertices per face, but 6 indices (IE 2 triangles) per face, aka need to multiply by 1.5
+					int indexCount = (int)(vbo.getVertexCount() * 1.5);
+					this.drawCommandByteBuffer.putInt(indexCount);
+					this.drawCommandByteBuffer.putInt(1); // instance count
+					this.drawCommandByteBuffer.putInt(0); // first index
+					this.drawCommandByteBuffer.putInt(allocation.getBaseVertex());
+					this.drawCommandByteBuffer.putInt(drawIndex); // base instance, used to read this draw's model offset
+					
+					this.modelOffsetByteBuffer.putFloat(this.containerModelOffsets[(lodIndex * 3)]);
+					this.modelOffsetByteBuffer.putFloat(this.containerModelOffsets[(lodIndex * 3) + 1]);
+					this.modelOffsetByteBuffer.putFloat(this.containerModelOffsets[(lodIndex * 3) + 2]);
+					
+					drawIndex++;
+				}
+			}
+			
+			this.pageDrawCount[pageIndex] = drawIndex - this.pageFirstDrawIndex[pageIndex];
+		}
+		
+		
+		
+		//=========//
+		// drawing //
+		//=========//
+		
+		if (drawIndex != 0)
+		{
+			this.drawCommandByteBuffer.flip();
+			this.modelOffsetByteBuffer.flip();
+			
+			// the buffers are re-specified each pass so the driver can orphan the old storage
+			// instead of waiting on any draws still using it
+			GL32.glBindBuffer(GL43.GL_DRAW_INDIRECT_BUFFER, this.drawCommandBufferId);
+			GL32.glBufferData(GL43.GL_DRAW_INDIRECT_BUFFER, this.drawCommandByteBuffer, GL32.GL_STREAM_DRAW);
+			
+			GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, this.modelOffsetBufferId);
+			GL32.glBufferData(GL32.GL_ARRAY_BUFFER, this.modelOffsetByteBuffer, GL32.GL_STREAM_DRAW);
+			GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, 0);
+			
+			quadIbo.bind();
+			GL43.glBindVertexBuffer(MODEL_OFFSET_BINDING_POINT, this.modelOffsetBufferId, 0, MODEL_OFFSET_BYTE_SIZE);
+			GL32.glEnableVertexAttribArray(MODEL_OFFSET_ATTRIBUTE_INDEX);
+			
+			for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++)
+			{
+				int drawCount = this.pageDrawCount[pageIndex];
+				if (drawCount == 0)
+				{
+					continue;
+				}
+				
+				this.bindVertexBuffer(pages.get(pageIndex).id);
+				GL43.glMultiDrawElementsIndirect(
+					GL32.GL_TRIANGLES,
+					quadIbo.getGlType(),
+					(long) this.pageFirstDrawIndex[pageIndex] * DRAW_COMMAND_BYTE_SIZE,
+					drawCount, 0);
+			}
+			
+			GL32.glDisableVertexAttribArray(MODEL_OFFSET_ATTRIBUTE_INDEX);
+			GL43.glBindVertexBuffer(MODEL_OFFSET_BINDING_POINT, 0, 0, 0);
+			GL32.glBindBuffer(GL43.GL_DRAW_INDIRECT_BUFFER, 0);
+			quadIbo.unbind();
+		}
+		
+		
+		
+		//==============================//
+		// buffers outside of the arena //
+		//==============================//
+		
+		if (anyBufferOutsideArena)
+		{
+			this.renderBuffersOutsideArena(opaquePass, bufferContainers);
+		}
+	}
+	/**
+	 * Draws each buffer that isn't in the {@link GlTerrainVertexArena} with its own draw call. <br>
+	 * Events aren't fired since this path is only used when there aren't any listeners.
+	 */
+	private void renderBuffersOutsideArena(boolean opaquePass, SortedArraySet<LodBufferContainer> bufferContainers)
+	{
+		for (int lodIndex = 0; lodIndex < bufferContainers.size(); lodIndex++)
+		{
+			LodBufferContainer bufferContainer = bufferContainers.get(lodIndex);
+			boolean modelOffsetSet = false;
+			
+			IVertexBufferWrapper[] vertexBuffers = (opaquePass ? bufferContainer.vboOpaqueWrappers : bufferContainer.vboTransparentWrappers);
+			for (int vboIndex = 0; vboIndex < vertexBuffers.length; vboIndex++)
+			{
+				GLVertexBuffer vbo = (GLVertexBuffer) vertexBuffers[vboIndex];
+				if (vbo == null
+					|| vbo.getVertexCount() == 0
+					|| vbo.getArenaAllocation() != null)
+				{
+					continue;
+				}
+				
+				if (!modelOffsetSet)
+				{
+					GL32.glVertexAttrib3f(MODEL_OFFSET_ATTRIBUTE_INDEX,
+						this.containerModelOffsets[(lodIndex * 3)],
+						this.containerModelOffsets[(lodIndex * 3) + 1],
+						this.containerModelOffsets[(lodIndex * 3) + 2]);
+					modelOffsetSet = true;
+				}
+				
+				// 4 vertices per face, but 6 indices (IE 2 triangles) per face, aka need to multiply by 1.5
+				int indexCount = (int)(vbo.getVertexCount() * 1.5);
+				
+				vbo.bind();
+				vbo.getQuadIBO().bind();
+				
+				this.bindVertexBuffer(vbo.getId());
+				GL32.glDrawElements(
+					GL32.GL_TRIANGLES,
+					indexCount,
+					vbo.getQuadIBO().getGlType(), 0);
+				
+				vbo.unbind();
+				vbo.getQuadIBO().unbind();
+			}
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	//region
+	
+	/** grows the CPU side buffers if needed, keeping any data already written */
+	private void ensureDrawCapacity(int drawCount)
+	{
+		if (this.drawCommandByteBuffer.capacity() < drawCount * DRAW_COMMAND_BYTE_SIZE)
+		{
+			int newDrawCapacity = drawCount * 2;
+			int drawCommandPosition = this.drawCommandByteBuffer.position();
+			int modelOffsetPosition = this.modelOffsetByteBuffer.position();
+			
+			this.drawCommandByteBuffer = MemoryUtil.memRealloc(this.drawCommandByteBuffer, newDrawCapacity * DRAW_COMMAND_BYTE_SIZE);
+			this.modelOffsetByteBuffer = MemoryUtil.memRealloc(this.modelOffsetByteBuffer, newDrawCapacity * MODEL_OFFSET_BYTE_SIZE);
+			
+			this.drawCommandByteBuffer.position(drawCommandPosition);
+			this.modelOffsetByteBuffer.position(modelOffsetPosition);
+		}
+	}
+	
+	//endregion
+	
+	
+	
+}
@@ -7,6 +7,8 @@ import com.seibel.distanthorizons.api.objects.math.DhApiVec3f;
 import com.seibel.distanthorizons.common.render.openGl.GlDhMetaRenderer;
 import com.seibel.distanthorizons.common.render.openGl.glObject.GLProxy;
 import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GLVertexBuffer;
+import com.seibel.distanthorizons.common.render.openGl.glObject.buffer.GlTerrainVertexArena;
+import com.seibel.distanthorizons.common.render.openGl.glObject.shader.GlShader;
 import com.seibel.distanthorizons.common.render.openGl.glObject.shader.GlShaderProgram;
 import com.seibel.distanthorizons.common.render.openGl.glObject.vertexAttribute.GlAbstractVertexAttribute;
 import com.seibel.distanthorizons.common.render.openGl.glObject.vertexAttribute.GlVertexAttributePostGL43;
@@ -46,9 +48,15 @@ public class GlDhTerrainShaderProgram extends GlShaderProgram implements IDhApiS
 	private static final MinecraftGLWrapper GLMC = MinecraftGLWrapper.INSTANCE;
 	private static final IIrisAccessor IRIS_ACCESSOR = ModAccessorInjector.INSTANCE.get(IIrisAccessor.class);
 	
+	protected static final String VERTEX_SHADER_PATH = "assets/distanthorizons/shaders/shared/gl/standard.vert";
+	protected static final String FRAGMENT_SHADER_PATH = "assets/distanthorizons/shaders/shared/gl/flat_shaded.frag";
+	
 	
 	private boolean init = false;
 	
+	/** re-used between buffer containers to reduce GC pressure */
+	private final Vec3f modelOffsetPos = new Vec3f(0, 0, 0);
+	
 	public GlAbstractVertexAttribute vao;
 	
 	// uniforms //
@@ -87,11 +95,13 @@ public class GlDhTerrainShaderProgram extends GlShaderProgram implements IDhApiS
 	public GlDhTerrainShaderProgram()
 	{
 		super(
-			"assets/distanthorizons/shaders/shared/gl/standard.vert",
-			"assets/distanthorizons/shaders/shared/gl/flat_shaded.frag",
+			VERTEX_SHADER_PATH,
+			FRAGMENT_SHADER_PATH,
 			new String[]{"vPosition", "color"}
 		);
 	}
+	/** used by variants that need to modify the shader source before compiling */
+	protected GlDhTerrainShaderProgram(GlShader vertShader, GlShader fragShader, String[] attributes) { super(vertShader, fragShader, attributes); }
 	
 	public void tryInit()
 	{
@@ -102,7 +112,8 @@ public class GlDhTerrainShaderProgram extends GlShaderProgram implements IDhApiS
 		
 		
 		this.uCombinedMatrix = this.getUniformLocation("uCombinedMatrix");
-		this.uModelOffset = this.getUniformLocation("uModelOffset");
+		// will be -1 for variants that pass the model offset as a vertex attribute instead
+		this.uModelOffset = this.tryGetUniformLocation("uModelOffset");
 		this.uWorldYOffset = this.getUniformLocation("uWorldYOffset");
 		this.uDitherDhRendering = this.getUniformLocation("uDitherDhRendering");
 		this.uMircoOffset = this.getUniformLocation("uMircoOffset");
@@ -152,11 +163,18 @@ public class GlDhTerrainShaderProgram extends GlShaderProgram implements IDhApiS
 			throw e;
 		}
 		
+		this.setupAdditionalVertexAttributes();
+		
 		// unbinding here is necessary to fix an issue when running on Legacy GL
 		this.vao.unbind();
 		
 		this.init = true;
 	}
+	/** 
+	 * Called while the VAO is bound, after the standard LOD vertex attributes have been set. <br>
+	 * Does nothing by default.
+	 */
+	protected void setupAdditionalVertexAttributes() { }
 	
 	//endregion
 	
@@ -308,41 +326,70 @@ public class GlDhTerrainShaderProgram extends GlShaderProgram implements IDhApiS
 		
 		if (bufferContainers != null)
 		{
-			for (int lodIndex = 0; lodIndex < bufferContainers.size(); lodIndex++)
+			this.renderBufferContainers(renderEventParam, opaquePass, bufferContainers);
+		}
+		
+		
+		
+		//=========================//
+		// debug wireframe cleanup //
+		//=========================//
+		
+		if (renderWireframe)
+		{
+			// default back to GL_FILL since all other rendering uses it 
+			GL32.glPolygonMode(GL32.GL_FRONT_AND_BACK, GL32.GL_FILL);
+			GLMC.enableFaceCulling();
+		}
+		
+	}
+	
+	/** Draws each buffer with its own draw call. */
+	protected void renderBufferContainers(RenderParams renderEventParam, boolean opaquePass, SortedArraySet<LodBufferContainer> bufferContainers)
+	{
+		boolean fireBufferRenderEvents = hasBeforeBufferRenderListeners();
+		
+		for (int lodIndex = 0; lodIndex < bufferContainers.size(); lodIndex++)
+		{
+			LodBufferContainer bufferContainer = bufferContainers.get(lodIndex);
+			
+			// set uniforms and fire events
 			{
-				LodBufferContainer bufferContainer = bufferContainers.get(lodIndex);
+				Vec3d camPos = renderEventParam.exactCameraPosition;
+				Vec3f modelPos = this.modelOffsetPos;
+				modelPos.x = (float) (bufferContainer.minCornerBlockPos.getX() - camPos.x);
+				modelPos.y = (float) (bufferContainer.minCornerBlockPos.getY() - camPos.y);
+				modelPos.z = (float) (bufferContainer.minCornerBlockPos.getZ() - camPos.z);
 				
-				// set uniforms and fire events
+				GlDhMetaRenderer.INSTANCE.shaderProgramForThisFrame.bind();
+				GlDhMetaRenderer.INSTANCE.shaderProgramForThisFrame.setModelOffsetPos(modelPos);
+				
+				if (fireBufferRenderEvents)
 				{
-					Vec3d camPos = renderEventParam.exactCameraPosition;
-					Vec3f modelPos = new Vec3f(
-						(float) (bufferContainer.minCornerBlockPos.getX() - camPos.x),
-						(float) (bufferContainer.minCornerBlockPos.getY() - camPos.y),
-						(float) (bufferContainer.minCornerBlockPos.getZ() - camPos.z));
-					
-					GlDhMetaRenderer.INSTANCE.shaderProgramForThisFrame.bind();
-					GlDhMetaRenderer.INSTANCE.shaderProgramForThisFrame.setModelOffsetPos(modelPos);
-					
 					ApiEventInjector.INSTANCE.fireAllEvents(DhApiBeforeBufferRenderEvent.class, new DhApiBeforeBufferRenderEvent.EventParam(renderEventParam, modelPos));
 				}
+			}
+			
+			IVertexBufferWrapper[] vertexBuffers = (opaquePass ? bufferContainer.vboOpaqueWrappers : bufferContainer.vboTransparentWrappers);
+			for (int vboIndex = 0; vboIndex < vertexBuffers.length; vboIndex++)
+			{
+				GLVertexBuffer vbo = (GLVertexBuffer) vertexBuffers[vboIndex];
+				if (vbo == null)
+				{
+					continue;
+				}
 				
-				IVertexBufferWrapper[] vertexBuffers = (opaquePass ? bufferContainer.vboOpaqueWrappers : bufferContainer.vboTransparentWrappers);
-				for (int vboIndex = 0; vboIndex < vertexBuffers.length; vboIndex++)
+				if (vbo.getVertexCount() == 0)
+				{
+					continue;
+				}
+				
+				// 4 vertices per face, but 6 indices (IE 2 triangles) per face, aka need to multiply by 1.5
+				int indexCount = (int)(vbo.getVertexCount() * 1.5);
+				
+				GlTerrainVertexArena.Allocation arenaAllocation = vbo.getArenaAllocation();
+				if (arenaAllocation == null)
 				{
-					GLVertexBuffer vbo = (GLVertexBuffer) vertexBuffers[vboIndex];
-					if (vbo == null)
-					{
-						continue;
-					}
-					
-					if (vbo.getVertexCount() == 0)
-					{
-						continue;
-					}
-					
-					// 4 vertices per face, but 6 indices (IE 2 triangles) per face, aka need to multiply by 1.5
-					int indexCount = (int)(vbo.getVertexCount() * 1.5);
-					
 					vbo.bind();
 					vbo.getQuadIBO().bind();
 					
@@ -355,24 +402,33 @@ public class GlDhTerrainShaderProgram extends GlShaderProgram implements IDhApiS
 					vbo.unbind();
 					vbo.getQuadIBO().unbind();
 				}
+				else
+				{
+					// the vertices are in a shared arena page, 
+					// the base vertex offsets the shared IBO's indices to this buffer's vertices
+					GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, arenaAllocation.page.id);
+					vbo.getQuadIBO().bind();
+					
+					GlDhMetaRenderer.INSTANCE.shaderProgramForThisFrame.bindVertexBuffer(arenaAllocation.page.id);
+					GL32.glDrawElementsBaseVertex(
+						GL32.GL_TRIANGLES,
+						indexCount,
+						vbo.getQuadIBO().getGlType(), 0,
+						arenaAllocation.getBaseVertex());
+					
+					GL32.glBindBuffer(GL32.GL_ARRAY_BUFFER, 0);
+					vbo.getQuadIBO().unbind();
+				}
 			}
 		}
-		
-		
-		
-		//=========================//
-		// debug wireframe cleanup //
-		//=========================//
-		
-		if (renderWireframe)
-		{
-			// default back to GL_FILL since all other rendering uses it 
-			GL32.glPolygonMode(GL32.GL_FRONT_AND_BACK, GL32.GL_FILL);
-			GLMC.enableFaceCulling();
-		}
-		
 	}
 	
+	/** 
+	 * {@link DhApiBeforeBufferRenderEvent} must be fired directly before each buffer is drawn,
+	 * so renderers that batch draws should use the per-buffer path when this returns true.
+	 */
+	protected static boolean hasBeforeBufferRenderListeners() { return !ApiEventInjector.INSTANCE.getAll(DhApiBeforeBufferRenderEvent.class).isEmpty(); }
+	
 	//endregion
 	
 	
@@ -0,0 +1,393 @@
+package com.seibel.distanthorizons.common.util;
+
+import com.seibel.distanthorizons.common.wrappers.chunk.ChunkWrapper;
+import com.seibel.distanthorizons.core.api.internal.SharedApi;
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.util.TimerUtil;
+import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collapses client block edits (break/place) into a single chunk update per chunk. <br><br>
+ *
+ * Previously every click submitted its own task that re-built the whole chunk's LOD,
+ * so quickly breaking or placing blocks would queue one full update per click. <br>
+ * Instead edits are stored by level and packed chunk position and only submitted once
+ * no new edits have been made to that chunk for the configured debounce time
+ * (or {@link ClientChunkUpdateCoalescer#MAX_DELAY_MULTIPLIER} times that if edits keep coming). <br><br>
+ *
+ * The number of pending chunks and the number of updates running at once are both bounded,
+ * if too many updates are already running the remaining chunks just keep waiting
+ * (and coalescing) until there's room. <br><br>
+ * 
+ * Pending updates for a level are dropped when that level is unloaded
+ * (which also happens when disconnecting) via {@link ClientChunkUpdateCoalescer#removeLevel}.
+ */
+public class ClientChunkUpdateCoalescer
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	public static final ClientChunkUpdateCoalescer INSTANCE = new ClientChunkUpdateCoalescer();
+	
+	/** how often pending updates are checked */
+	private static final int TICK_MS = 50;
+	/** prevents a chunk that's constantly being edited from never being updated */
+	private static final int MAX_DELAY_MULTIPLIER = 4;
+	/** new chunks will be ignored once this many are waiting */
+	private static final int MAX_PENDING_COUNT = 256;
+	/** how many updates can be submitted to the executor at once */
+	private static final int MAX_RUNNING_COUNT = 4;
+	
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	/** guarded by {@link ClientChunkUpdateCoalescer#lock} */
+	private final HashMap<ILevelWrapper, LevelUpdates> levelUpdatesByLevelWrapper = new HashMap<>();
+	/** how many updates are pending across every level, guarded by {@link ClientChunkUpdateCoalescer#lock} */
+	private int pendingCount = 0;
+	private final AtomicInteger runningCount = new AtomicInteger(0);
+	
+	/** 
+	 * prevents logging every dropped edit while the pending map is full,
+	 * guarded by {@link ClientChunkUpdateCoalescer#lock} 
+	 */
+	private boolean droppedEditLogged = false;
+	
+	/** 
+	 * created lazily so the thread only exists while the client has pending edits
+	 * and cancelled once there aren't any left, guarded by {@link ClientChunkUpdateCoalescer#lock} 
+	 */
+	@Nullable
+	private Timer timer = null;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	private ClientChunkUpdateCoalescer() { }
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// methods //
+	//=========//
+	//region
+	
+	/** Should be called whenever a block is changed at the given position. */
+	public void queueUpdate(LevelAccessor level, ILevelWrapper levelWrapper, int blockX, int blockZ)
+	{
+		int chunkX = blockX >> 4;
+		int chunkZ = blockZ >> 4;
+		long packedPos = packPos(chunkX, chunkZ);
+		long nowMs = System.currentTimeMillis();
+		
+		this.lock.lock();
+		try
+		{
+			LevelUpdates levelUpdates = this.levelUpdatesByLevelWrapper.get(levelWrapper);
+			PendingUpdate pendingUpdate = (levelUpdates != null) ? levelUpdates.pendingUpdateByChunkPos.get(packedPos) : null;
+			if (pendingUpdate != null)
+			{
+				// push the update back so multiple edits are merged
+				pendingUpdate.lastEditMs = nowMs;
+				return;
+			}
+			
+			if (this.pendingCount >= MAX_PENDING_COUNT)
+			{
+				// clients don't save chunks, so the LOD won't be updated
+				// until the chunk is loaded again
+				if (!this.droppedEditLogged)
+				{
+					this.droppedEditLogged = true;
+					LOGGER.warn("Too many chunks are waiting for LOD updates ["+MAX_PENDING_COUNT+"], the edit to chunk ["+chunkX+","+chunkZ+"] won't be shown in its LOD until the chunk is reloaded. This message will only be logged once until the backlog clears.");
+				}
+				return;
+			}
+			
+			if (levelUpdates == null)
+			{
+				levelUpdates = new LevelUpdates(level, levelWrapper);
+				this.levelUpdatesByLevelWrapper.put(levelWrapper, levelUpdates);
+			}
+			levelUpdates.pendingUpdateByChunkPos.put(packedPos, new PendingUpdate(levelUpdates, chunkX, chunkZ, nowMs));
+			this.pendingCount++;
+			this.tryStartTimer();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	/** 
+	 * Drops every pending update for the given level 
+	 * and prevents any already submitted updates from running. <br>
+	 * Should be called when the level is unloaded.
+	 */
+	public void removeLevel(ILevelWrapper levelWrapper)
+	{
+		this.lock.lock();
+		try
+		{
+			LevelUpdates levelUpdates = this.levelUpdatesByLevelWrapper.remove(levelWrapper);
+			if (levelUpdates == null)
+			{
+				return;
+			}
+			
+			levelUpdates.unloaded = true;
+			this.pendingCount -= levelUpdates.pendingUpdateByChunkPos.size();
+			levelUpdates.pendingUpdateByChunkPos.clear();
+			this.tryStopTimer();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	/** must be called while holding the lock */
+	private void tryStartTimer()
+	{
+		if (this.timer != null)
+		{
+			return;
+		}
+		
+		this.timer = TimerUtil.CreateTimer("ClientChunkUpdateCoalescer");
+		this.timer.scheduleAtFixedRate(new TimerTask()
+		{
+			@Override
+			public void run() { ClientChunkUpdateCoalescer.this.tick(); }
+		}, TICK_MS, TICK_MS);
+	}
+	/** must be called while holding the lock */
+	private void tryStopTimer()
+	{
+		if (this.pendingCount != 0)
+		{
+			return;
+		}
+		
+		// there's room again, so the next dropped edit should be logged
+		this.droppedEditLogged = false;
+		
+		if (this.timer != null)
+		{
+			this.timer.cancel();
+			this.timer = null;
+		}
+	}
+	
+	/** submits every update that has finished waiting, as long as there's room in the executor */
+	private void tick()
+	{
+		AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
+		if (executor == null)
+		{
+			// the executor may not exist yet or may be shutting down, try again next tick
+			return;
+		}
+		
+		long nowMs = System.currentTimeMillis();
+		// how long a chunk must go without being edited before its update is submitted
+		int debounceMs = Math.max(0, Config.Common.LodBuilding.clientChunkUpdateDebounceMs.get());
+		ArrayList<PendingUpdate> readyUpdateList = null;
+		
+		this.lock.lock();
+		try
+		{
+			Iterator<LevelUpdates> levelIterator = this.levelUpdatesByLevelWrapper.values().iterator();
+			while (levelIterator.hasNext()
+				&& this.runningCount.get() < MAX_RUNNING_COUNT)
+			{
+				LevelUpdates levelUpdates = levelIterator.next();
+				
+				ObjectIterator<Long2ObjectMap.Entry<PendingUpdate>> iterator = levelUpdates.pendingUpdateByChunkPos.long2ObjectEntrySet().fastIterator();
+				while (iterator.hasNext()
+					&& this.runningCount.get() < MAX_RUNNING_COUNT)
+				{
+					PendingUpdate pendingUpdate = iterator.next().getValue();
+					if (nowMs - pendingUpdate.lastEditMs < debounceMs
+						&& nowMs - pendingUpdate.firstEditMs < (long) debounceMs * MAX_DELAY_MULTIPLIER)
+					{
+						continue;
+					}
+					
+					iterator.remove();
+					this.pendingCount--;
+					this.runningCount.incrementAndGet();
+					
+					if (readyUpdateList == null)
+					{
+						readyUpdateList = new ArrayList<>();
+					}
+					readyUpdateList.add(pendingUpdate);
+				}
+				
+				if (levelUpdates.pendingUpdateByChunkPos.isEmpty())
+				{
+					levelIterator.remove();
+				}
+			}
+			
+			this.tryStopTimer();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		if (readyUpdateList == null)
+		{
+			return;
+		}
+		
+		
+		// submitted outside the lock so queuing new edits isn't blocked by the executor
+		for (int i = 0; i < readyUpdateList.size(); i++) // regular for loop since enhanced for loops increase GC pressure slightly
+		{
+			PendingUpdate pendingUpdate = readyUpdateList.get(i);
+			try
+			{
+				executor.execute(() -> this.runUpdate(pendingUpdate));
+			}
+			catch (Exception e)
+			{
+				// timer threads die if an exception escapes
+				this.runningCount.decrementAndGet();
+				LOGGER.warn("Unable to submit chunk update for chunk ["+pendingUpdate.chunkX+","+pendingUpdate.chunkZ+"], error: ["+e.getMessage()+"].", e);
+			}
+		}
+	}
+	
+	private void runUpdate(PendingUpdate pendingUpdate)
+	{
+		try
+		{
+			LevelUpdates levelUpdates = pendingUpdate.levelUpdates;
+			if (levelUpdates.unloaded)
+			{
+				// the level was unloaded after this update was submitted
+				return;
+			}
+			
+			ChunkAccess chunk = levelUpdates.level.getChunk(pendingUpdate.chunkX, pendingUpdate.chunkZ);
+			if (chunk != null)
+			{
+				SharedApi.INSTANCE.applyChunkUpdate(new ChunkWrapper(chunk, levelUpdates.levelWrapper), levelUpdates.levelWrapper);
+			}
+		}
+		finally
+		{
+			this.runningCount.decrementAndGet();
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	//region
+	
+	/** @return how many chunks are waiting to be updated */
+	public int getPendingCount()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.pendingCount;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	//region
+	
+	/** same layout as MC's packed ChunkPos */
+	private static long packPos(int x, int z) { return (x & 0xFFFFFFFFL) | ((z & 0xFFFFFFFFL) << 32); }
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	private static class LevelUpdates
+	{
+		public final LevelAccessor level;
+		public final ILevelWrapper levelWrapper;
+		
+		/** packed chunk pos -> pending update, guarded by {@link ClientChunkUpdateCoalescer#lock} */
+		public final Long2ObjectOpenHashMap<PendingUpdate> pendingUpdateByChunkPos = new Long2ObjectOpenHashMap<>();
+		/** set once the level is unloaded so already submitted updates don't run */
+		public volatile boolean unloaded = false;
+		
+		public LevelUpdates(LevelAccessor level, ILevelWrapper levelWrapper)
+		{
+			this.level = level;
+			this.levelWrapper = levelWrapper;
+		}
+	}
+	
+	private static class PendingUpdate
+	{
+		public final LevelUpdates levelUpdates;
+		
+		public final int chunkX;
+		public final int chunkZ;
+		
+		public final long firstEditMs;
+		public long lastEditMs;
+		
+		public PendingUpdate(LevelUpdates levelUpdates, int chunkX, int chunkZ, long editMs)
+		{
+			this.levelUpdates = levelUpdates;
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+			this.firstEditMs = editMs;
+			this.lastEditMs = editMs;
+		}
+	}
+	
+	//endregion
+	
+	
+	
+}
@@ -1,7 +1,6 @@
 package com.seibel.distanthorizons.common.wrappers.block;
 
 import com.seibel.distanthorizons.core.config.Config;
-import com.seibel.distanthorizons.core.dataObjects.BlockBiomeWrapperPair;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
@@ -10,6 +9,7 @@ import com.seibel.distanthorizons.coreapi.util.ColorUtil;
 import com.seibel.distanthorizons.core.util.FullDataPointUtil;
 
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.IClientLevelWrapper;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.core.BlockPos;
@@ -44,10 +44,18 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 	private static final ConcurrentHashMap<String, Holder<Biome>> BIOME_BY_RESOURCE_STRING = new ConcurrentHashMap<>();
     #endif
 	
-	private static final ConcurrentHashMap<BlockBiomeWrapperPair, Integer> COLOR_BY_BLOCK_BIOME_PAIR = new ConcurrentHashMap<>();
 	/** returned if the color cache is incomplete */
 	public static final int INVALID_COLOR = -1;
 	
+	/** 
+	 * How many blended tiles are kept per thread, 
+	 * tiles are per block state and biome height band so a few are needed for uneven terrain.
+	 */
+	private static final int MAX_CACHED_BLEND_TILE_COUNT = 64;
+	
+	/** reused since MC's tint getter may call {@link AbstractDhTintGetter#getBlockTint} for every block it colors */
+	private static final ThreadLocal<DhBlockPosMutable> MUTABLE_BLOCK_POS_REF = ThreadLocal.withInitial(() -> new DhBlockPosMutable(0, 0, 0));
+	
 	
 	protected BiomeWrapper biomeWrapper;
 	protected BlockStateWrapper blockStateWrapper;
@@ -55,6 +63,17 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 	protected int smoothingRadiusInBlocks;
 	protected IClientLevelWrapper clientLevelWrapper;
 	
+	/** 
+	 * Recently blended tiles for the current data source, oldest first. <br>
+	 * Tint getters are thread local so this doesn't need to be thread safe.
+	 */
+	private final Long2ObjectLinkedOpenHashMap<BiomeBlendTile> blendTileByKey = new Long2ObjectLinkedOpenHashMap<>();
+	/** 
+	 * Data sources can be updated in place, 
+	 * so the cached tiles are also tied to the data source's last modified time.
+	 */
+	private long blendTileDataSourceModifiedTime = 0;
+	
 	
 	
 	//=============//
@@ -70,11 +89,29 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 	 */
 	public void update(BiomeWrapper biomeWrapper, BlockStateWrapper blockStateWrapper, FullDataSourceV2 fullDataSource, IClientLevelWrapper clientLevelWrapper)
 	{
+		int smoothingRadiusInBlocks = Config.Client.Advanced.Graphics.Quality.lodBiomeBlending.get();
+		
+		// blended tiles are only valid for the data source version and radius they were built with
+		if (this.fullDataSource != fullDataSource
+			|| this.blendTileDataSourceModifiedTime != fullDataSource.lastModifiedUnixDateTime
+			|| this.smoothingRadiusInBlocks != smoothingRadiusInBlocks)
+		{
+			this.clearBlendTileCache();
+			this.blendTileDataSourceModifiedTime = fullDataSource.lastModifiedUnixDateTime;
+		}
+		
 		this.biomeWrapper = biomeWrapper;
 		this.blockStateWrapper = blockStateWrapper;
 		this.fullDataSource = fullDataSource;
 		this.clientLevelWrapper = clientLevelWrapper;
-		this.smoothingRadiusInBlocks = Config.Client.Advanced.Graphics.Quality.lodBiomeBlending.get();
+		this.smoothingRadiusInBlocks = smoothingRadiusInBlocks;
+	}
+	private void clearBlendTileCache()
+	{
+		if (!this.blendTileByKey.isEmpty())
+		{
+			this.blendTileByKey.clear();
+		}
 	}
 	
 	//endregion
@@ -90,7 +127,10 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 	@Override
 	public int getBlockTint(@NotNull BlockPos blockPos, @NotNull ColorResolver colorResolver)
 	{
-		DhBlockPosMutable mutableBlockPos = new DhBlockPosMutable(blockPos.getX(), blockPos.getY(), blockPos.getZ());
+		DhBlockPosMutable mutableBlockPos = MUTABLE_BLOCK_POS_REF.get();
+		mutableBlockPos.setX(blockPos.getX());
+		mutableBlockPos.setY(blockPos.getY());
+		mutableBlockPos.setZ(blockPos.getZ());
 		return this.tryGetBlockTint(mutableBlockPos, colorResolver);
 	}
 	
@@ -124,6 +164,37 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 		}
 		
 		
+		int levelMinY = this.clientLevelWrapper.getMinHeight();
+		
+		// when no color resolver is present (IE the fast path) 
+		// use a pre-blended tile so each column doesn't need to re-average its whole box.
+		// Only done for block sized data points since larger ones 
+		// are only queried a few times per tile, making the tile more expensive than averaging directly
+		if (colorResolver == null
+			&& dataSourceLodWidthInBlocks == 1)
+		{
+			BiomeBlendTile blendTile = this.getOrCreateBlendTile(mutableBlockPos.getX(), mutableBlockPos.getY(), mutableBlockPos.getZ(), levelMinY);
+			if (blendTile.complete)
+			{
+				int relX = mutableBlockPos.getX() & (BiomeBlendTile.WIDTH - 1);
+				int relZ = mutableBlockPos.getZ() & (BiomeBlendTile.WIDTH - 1);
+				if (blendTile.hasColor(relX, relZ))
+				{
+					return blendTile.getBlendedColor(relX, relZ);
+				}
+				else
+				{
+					// if no data was present (rarely possible)
+					// just use the default center's color
+					return this.tryGetClientBiomeColor(null, this.biomeWrapper);
+				}
+			}
+			
+			// one or more colors in the tile haven't been cached yet,
+			// fall back to the per-column logic so only this column's neighbors are checked
+		}
+		
+		
 		// use a rolling average to calculate the color
 		int dataPointCount = 0;
 		int rollingRed = 0;
@@ -136,8 +207,6 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 		int zMin = mutableBlockPos.getZ() - this.smoothingRadiusInBlocks;
 		int zMax = mutableBlockPos.getZ() + this.smoothingRadiusInBlocks + 1;
 		
-		int levelMinY = this.clientLevelWrapper.getMinHeight();
-		
 		for (int x = xMin; x < xMax; x++)
 		{
 			for (int z = zMin; z < zMax; z++)
@@ -190,17 +259,87 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 		return colorInt;
 	}
 	
+	/**
+	 * @return an incomplete tile if any of the un-blended colors in the tile (or its border) haven't been cached yet.
+	 *          Incomplete tiles are cached as well so the tile isn't re-sampled for every column.
+	 */
+	private BiomeBlendTile getOrCreateBlendTile(int blockX, int blockY, int blockZ, int levelMinY)
+	{
+		int tileX = blockX >> BiomeBlendTile.WIDTH_POW;
+		int tileZ = blockZ >> BiomeBlendTile.WIDTH_POW;
+		// MC only stores one biome per band, so every Y level in the band shares a tile
+		// sampled at the band's bottom Y (see BiomeBlendTile for how that differs from per-column blending)
+		int biomeBand = BiomeBlendTile.getBiomeBand(blockY);
+		int sampleY = Math.max(BiomeBlendTile.getBiomeBandSampleY(biomeBand), levelMinY);
+		
+		// the key may collide for extremely large block state IDs, 
+		// so the tile's values are also checked
+		long key = ((long) (tileX & 0xFFFF))
+			| ((long) (tileZ & 0xFFFF) << 16)
+			| ((long) (biomeBand & 0xFFF) << 32)
+			| ((long) (this.blockStateWrapper.hashCode() & 0xFFFFF) << 44);
+		
+		BiomeBlendTile blendTile = this.blendTileByKey.getAndMoveToLast(key);
+		if (blendTile != null 
+			&& blendTile.matches(this.blockStateWrapper, tileX, tileZ, biomeBand))
+		{
+			return blendTile;
+		}
+		
+		
+		// get the un-blended color for every position in the tile and its border
+		int radius = this.smoothingRadiusInBlocks;
+		int cellWidth = BiomeBlendTile.getCellWidth(radius);
+		int[] cellColors = new int[cellWidth * cellWidth];
+		boolean[] cellHasColor = new boolean[cellWidth * cellWidth];
+		
+		int minCellBlockX = (tileX << BiomeBlendTile.WIDTH_POW) - radius;
+		int minCellBlockZ = (tileZ << BiomeBlendTile.WIDTH_POW) - radius;
+		for (int cellZ = 0; cellZ < cellWidth; cellZ++)
+		{
+			for (int cellX = 0; cellX < cellWidth; cellX++)
+			{
+				long dataPoint = this.fullDataSource.getDataPointAtBlockPos(minCellBlockX + cellX, sampleY, minCellBlockZ + cellZ, levelMinY);
+				if (dataPoint == FullDataPointUtil.EMPTY_DATA_POINT)
+				{
+					continue;
+				}
+				
+				int id = FullDataPointUtil.getId(dataPoint);
+				BiomeWrapper biomeWrapper = (BiomeWrapper) this.fullDataSource.mapping.getBiomeWrapper(id);
+				int color = this.tryGetClientBiomeColor(null, biomeWrapper);
+				if (color == INVALID_COLOR)
+				{
+					return this.cacheBlendTile(key, BiomeBlendTile.createIncomplete(this.blockStateWrapper, tileX, tileZ, biomeBand));
+				}
+				
+				int cellIndex = BiomeBlendTile.getCellIndex(cellX, cellZ, radius);
+				cellColors[cellIndex] = color;
+				cellHasColor[cellIndex] = true;
+			}
+		}
+		
+		return this.cacheBlendTile(key, new BiomeBlendTile(this.blockStateWrapper, tileX, tileZ, biomeBand, radius, cellColors, cellHasColor));
+	}
+	private BiomeBlendTile cacheBlendTile(long key, BiomeBlendTile blendTile)
+	{
+		this.blendTileByKey.putAndMoveToLast(key, blendTile);
+		if (this.blendTileByKey.size() > MAX_CACHED_BLEND_TILE_COUNT)
+		{
+			this.blendTileByKey.removeFirst();
+		}
+		return blendTile;
+	}
+	
 	/** 
 	 * If given a ColorResolver this will always succeed. <Br> 
 	 * If not it will attempt to use the cached color.
 	 */
 	private int tryGetClientBiomeColor(@Nullable ColorResolver colorResolver, BiomeWrapper biomeWrapper)
 	{
-		BlockBiomeWrapperPair pair = BlockBiomeWrapperPair.get(this.blockStateWrapper, biomeWrapper);
-		
 		// use the cached color if possible
-		Integer cachedColor = COLOR_BY_BLOCK_BIOME_PAIR.get(pair);
-		if (cachedColor != null)
+		int cachedColor = BlockBiomeTintCache.get(this.blockStateWrapper, biomeWrapper);
+		if (cachedColor != BlockBiomeTintCache.MISSING_COLOR)
 		{
 			return cachedColor;
 		}
@@ -215,7 +354,7 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 		
 		
 		int color = colorResolver.getColor(unwrapClientBiome(biomeWrapper), 0, 0);
-		COLOR_BY_BLOCK_BIOME_PAIR.put(pair, color);
+		BlockBiomeTintCache.put(this.blockStateWrapper, biomeWrapper, color);
 		return color;
 	}
 	
@@ -352,11 +491,8 @@ public abstract class AbstractDhTintGetter implements BlockAndTintGetter
 	 * can be used in newer MC versions
 	 * where the color getting logic is a bit more manual
 	 */
-	public static void setStaticColor(BlockStateWrapper blockStateWrapper, BiomeWrapper biomeWrapper, Integer colorInt)
-	{
-		BlockBiomeWrapperPair pair = BlockBiomeWrapperPair.get(blockStateWrapper, biomeWrapper);
-		COLOR_BY_BLOCK_BIOME_PAIR.put(pair, colorInt);
-	}
+	public static void setStaticColor(BlockStateWrapper blockStateWrapper, BiomeWrapper biomeWrapper, int colorInt)
+	{ BlockBiomeTintCache.put(blockStateWrapper, biomeWrapper, colorInt); }
 	
 	//endregion
 	
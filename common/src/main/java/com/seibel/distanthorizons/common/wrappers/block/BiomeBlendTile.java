@@ -0,0 +1,226 @@
+package com.seibel.distanthorizons.common.wrappers.block;
+
+import com.seibel.distanthorizons.coreapi.util.ColorUtil;
+
+/**
+ * Biome blended tint colors for a {@link BiomeBlendTile#WIDTH} x {@link BiomeBlendTile#WIDTH}
+ * block area covering one biome height band. <br>
+ * MC samples biomes once every {@link BiomeBlendTile#BIOME_BAND_HEIGHT} blocks vertically,
+ * so every Y level in a band shares one tile. <br><br>
+ *
+ * Instead of averaging a (2r+1) x (2r+1) box for every column,
+ * the un-blended colors for the tile and its border are blurred once using a
+ * separable running sum (first along X, then along Z),
+ * after which each column's blended color is a single array read. <br><br>
+ *
+ * Empty cells are ignored, so each column's result is the average of every non-empty position
+ * in its box, sampled at {@link BiomeBlendTile#getBiomeBandSampleY}. <br>
+ * The per-column fallback samples at the column's own Y instead, so the two can differ
+ * where a data column's biome changes partway through a band.
+ */
+public class BiomeBlendTile
+{
+	public static final int WIDTH_POW = 4;
+	public static final int WIDTH = 1 << WIDTH_POW;
+	
+	/** MC's biome quart size */
+	public static final int BIOME_BAND_HEIGHT_POW = 2;
+	public static final int BIOME_BAND_HEIGHT = 1 << BIOME_BAND_HEIGHT_POW;
+	
+	
+	public final BlockStateWrapper blockStateWrapper;
+	public final int tileX;
+	public final int tileZ;
+	public final int biomeBand;
+	
+	/** 
+	 * false if one or more un-blended colors weren't cached when this tile was created. <br>
+	 * Incomplete tiles are still cached so the whole tile isn't re-sampled for every column.
+	 */
+	public final boolean complete;
+	
+	/** null if the tile is incomplete */
+	private final int[] blendedColors;
+	/** false if every position in the column's box was empty, null if the tile is incomplete */
+	private final boolean[] hasColor;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/**
+	 * @param cellColors un-blended colors for the tile plus a border of radius blocks on every side,
+	 *                   indexed via {@link BiomeBlendTile#getCellIndex(int, int, int)}
+	 * @param cellHasColor false for empty cells, which won't be included in the average
+	 */
+	public BiomeBlendTile(
+		BlockStateWrapper blockStateWrapper, int tileX, int tileZ, int biomeBand,
+		int radius, int[] cellColors, boolean[] cellHasColor)
+	{
+		this.blockStateWrapper = blockStateWrapper;
+		this.tileX = tileX;
+		this.tileZ = tileZ;
+		this.biomeBand = biomeBand;
+		
+		this.complete = true;
+		this.blendedColors = new int[WIDTH * WIDTH];
+		this.hasColor = new boolean[WIDTH * WIDTH];
+		this.blur(radius, cellColors, cellHasColor);
+	}
+	
+	/** creates a tile that marks the given area as missing one or more un-blended colors */
+	public static BiomeBlendTile createIncomplete(BlockStateWrapper blockStateWrapper, int tileX, int tileZ, int biomeBand)
+	{ return new BiomeBlendTile(blockStateWrapper, tileX, tileZ, biomeBand); }
+	private BiomeBlendTile(BlockStateWrapper blockStateWrapper, int tileX, int tileZ, int biomeBand)
+	{
+		this.blockStateWrapper = blockStateWrapper;
+		this.tileX = tileX;
+		this.tileZ = tileZ;
+		this.biomeBand = biomeBand;
+		
+		this.complete = false;
+		this.blendedColors = null;
+		this.hasColor = null;
+	}
+	
+	private void blur(int radius, int[] cellColors, boolean[] cellHasColor)
+	{
+		int cellWidth = getCellWidth(radius);
+		int windowWidth = (radius * 2) + 1;
+		
+		
+		// horizontal pass,
+		// each row is reduced from cellWidth to WIDTH columns
+		int[] rowRed = new int[WIDTH * cellWidth];
+		int[] rowGreen = new int[WIDTH * cellWidth];
+		int[] rowBlue = new int[WIDTH * cellWidth];
+		int[] rowCount = new int[WIDTH * cellWidth];
+		
+		for (int cellZ = 0; cellZ < cellWidth; cellZ++)
+		{
+			int red = 0;
+			int green = 0;
+			int blue = 0;
+			int count = 0;
+			
+			for (int cellX = 0; cellX < cellWidth; cellX++)
+			{
+				// add the cell entering the window
+				int addIndex = cellX + (cellZ * cellWidth);
+				if (cellHasColor[addIndex])
+				{
+					int color = cellColors[addIndex];
+					red += ColorUtil.getRed(color);
+					green += ColorUtil.getGreen(color);
+					blue += ColorUtil.getBlue(color);
+					count++;
+				}
+				
+				// remove the cell leaving the window
+				int removeCellX = cellX - windowWidth;
+				if (removeCellX >= 0)
+				{
+					int removeIndex = removeCellX + (cellZ * cellWidth);
+					if (cellHasColor[removeIndex])
+					{
+						int color = cellColors[removeIndex];
+						red -= ColorUtil.getRed(color);
+						green -= ColorUtil.getGreen(color);
+						blue -= ColorUtil.getBlue(color);
+						count--;
+					}
+				}
+				
+				// once the window is full, store it for the column centered in the window
+				int outX = cellX - (windowWidth - 1);
+				if (outX >= 0)
+				{
+					int outIndex = outX + (cellZ * WIDTH);
+					rowRed[outIndex] = red;
+					rowGreen[outIndex] = green;
+					rowBlue[outIndex] = blue;
+					rowCount[outIndex] = count;
+				}
+			}
+		}
+		
+		
+		// vertical pass,
+		// each column is reduced from cellWidth to WIDTH rows
+		for (int x = 0; x < WIDTH; x++)
+		{
+			int red = 0;
+			int green = 0;
+			int blue = 0;
+			int count = 0;
+			
+			for (int cellZ = 0; cellZ < cellWidth; cellZ++)
+			{
+				int addIndex = x + (cellZ * WIDTH);
+				red += rowRed[addIndex];
+				green += rowGreen[addIndex];
+				blue += rowBlue[addIndex];
+				count += rowCount[addIndex];
+				
+				int removeCellZ = cellZ - windowWidth;
+				if (removeCellZ >= 0)
+				{
+					int removeIndex = x + (removeCellZ * WIDTH);
+					red -= rowRed[removeIndex];
+					green -= rowGreen[removeIndex];
+					blue -= rowBlue[removeIndex];
+					count -= rowCount[removeIndex];
+				}
+				
+				int outZ = cellZ - (windowWidth - 1);
+				if (outZ >= 0
+					&& count != 0)
+				{
+					int outIndex = x + (outZ * WIDTH);
+					this.hasColor[outIndex] = true;
+					this.blendedColors[outIndex] = ColorUtil.argbToInt(
+						255, // blending often ignores alpha, having it always 255 prevents multiplication issues later
+						red / count,
+						green / count,
+						blue / count);
+				}
+			}
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return false if every position around this column was empty */
+	public boolean hasColor(int relX, int relZ) { return this.hasColor[relX + (relZ * WIDTH)]; }
+	public int getBlendedColor(int relX, int relZ) { return this.blendedColors[relX + (relZ * WIDTH)]; }
+	
+	public boolean matches(BlockStateWrapper blockStateWrapper, int tileX, int tileZ, int biomeBand)
+	{
+		return this.blockStateWrapper == blockStateWrapper
+			&& this.tileX == tileX
+			&& this.tileZ == tileZ
+			&& this.biomeBand == biomeBand;
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	public static int getBiomeBand(int blockY) { return blockY >> BIOME_BAND_HEIGHT_POW; }
+	/** @return the Y level used to sample every column in the given band */
+	public static int getBiomeBandSampleY(int biomeBand) { return biomeBand << BIOME_BAND_HEIGHT_POW; }
+	
+	/** @return the width of the tile including its border */
+	public static int getCellWidth(int radius) { return WIDTH + (radius * 2); }
+	/** cell 0,0 is at the tile's min corner minus the radius */
+	public static int getCellIndex(int cellX, int cellZ, int radius) { return cellX + (cellZ * getCellWidth(radius)); }
+	
+}
@@ -25,6 +25,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
@@ -89,6 +90,13 @@ public class BiomeWrapper implements IBiomeWrapper
 	private static boolean emptyStringWarningLogged = false;
 	private static boolean emptyLevelSerializeFailLogged = false; 
 	
+	/** 
+	 * Tint cache IDs are shared by every wrapper with the same serial string
+	 * since biome tints are resolved using that string.
+	 */
+	private static final ConcurrentHashMap<String, Integer> TINT_CACHE_ID_BY_SERIAL_STRING = new ConcurrentHashMap<>();
+	private static final AtomicInteger NEXT_TINT_CACHE_ID = new AtomicInteger(0);
+	
 	
 	
 	// properties //
@@ -102,6 +110,8 @@ public class BiomeWrapper implements IBiomeWrapper
 	/** technically final, but since it requires a method call to generate it can't be marked as such */
 	private String serialString;
 	private final int hashCode;
+	/** lazily populated, -1 if not yet assigned */
+	private int tintCacheId = -1;
 	
 	
 	
@@ -182,6 +192,20 @@ public class BiomeWrapper implements IBiomeWrapper
 	@Override
 	public String getSerialString() { return this.serialString; }
 	
+	/** @return a small, dense ID used by {@link BlockBiomeTintCache} to key biomes without allocating */
+	public int getTintCacheId()
+	{
+		// racing threads will get the same ID from the map, so no synchronization is needed
+		int id = this.tintCacheId;
+		if (id == -1)
+		{
+			String serialString = (this.getSerialString() != null) ? this.getSerialString() : EMPTY_BIOME_STRING;
+			id = TINT_CACHE_ID_BY_SERIAL_STRING.computeIfAbsent(serialString, (newSerialString) -> NEXT_TINT_CACHE_ID.getAndIncrement());
+			this.tintCacheId = id;
+		}
+		return id;
+	}
+	
 	@Override
 	public Object getWrappedMcObject() { return this.biome; }
 	
@@ -0,0 +1,201 @@
+package com.seibel.distanthorizons.common.wrappers.block;
+
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Primitive (block state ID, biome ID) -> tint color cache
+ * used by {@link AbstractDhTintGetter}. <br><br>
+ *
+ * Biome blending queries this cache (2r+1)^2 times per LOD data point,
+ * so unlike a {@code ConcurrentHashMap<BlockBiomeWrapperPair, Integer>}
+ * lookups don't allocate a key or box the color. <br><br>
+ *
+ * Thread safety: <br>
+ * Reads are lock-free, writes are serialized via a lock. <br>
+ * Each entry's color is written before its key,
+ * and since keys are stored in an {@link AtomicLongArray} (volatile reads/writes)
+ * any reader that sees a key is guaranteed to see its color. <br>
+ * Resizing and clearing replace the whole table,
+ * readers holding the old table will just miss any newer entries.
+ */
+public class BlockBiomeTintCache
+{
+	/** returned if the color hasn't been cached */
+	public static final int MISSING_COLOR = AbstractDhTintGetter.INVALID_COLOR;
+	
+	/** 0 is never a valid key since the block state ID is offset by 1 */
+	private static final long EMPTY_KEY = 0;
+	private static final int INITIAL_CAPACITY = 1024;
+	/** the table is grown once it's half full to keep probe chains short */
+	private static final float MAX_LOAD_FACTOR = 0.5f;
+	
+	private static volatile Table table = new Table(INITIAL_CAPACITY);
+	private static final Object WRITE_LOCK = new Object();
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return {@link BlockBiomeTintCache#MISSING_COLOR} if no color has been cached for the given pair */
+	public static int get(BlockStateWrapper blockStateWrapper, BiomeWrapper biomeWrapper)
+	{
+		long key = createKey(blockStateWrapper, biomeWrapper);
+		if (key == EMPTY_KEY)
+		{
+			return MISSING_COLOR;
+		}
+		
+		Table table = BlockBiomeTintCache.table;
+		int mask = table.values.length - 1;
+		int index = (int) HashCommon.mix(key) & mask;
+		while (true)
+		{
+			long existingKey = table.keys.get(index);
+			if (existingKey == key)
+			{
+				return table.values[index];
+			}
+			else if (existingKey == EMPTY_KEY)
+			{
+				return MISSING_COLOR;
+			}
+			
+			index = (index + 1) & mask;
+		}
+	}
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	public static void put(BlockStateWrapper blockStateWrapper, BiomeWrapper biomeWrapper, int color)
+	{
+		long key = createKey(blockStateWrapper, biomeWrapper);
+		if (key == EMPTY_KEY)
+		{
+			return;
+		}
+		
+		synchronized (WRITE_LOCK)
+		{
+			Table table = BlockBiomeTintCache.table;
+			if (table.size + 1 > table.values.length * MAX_LOAD_FACTOR)
+			{
+				table = table.createResized(table.values.length * 2);
+				BlockBiomeTintCache.table = table;
+			}
+			
+			table.put(key, color);
+		}
+	}
+	
+	/**
+	 * Should be called whenever the level or resource packs change
+	 * since block state IDs and tint colors may be different afterward.
+	 */
+	public static void clear()
+	{
+		synchronized (WRITE_LOCK)
+		{
+			table = new Table(INITIAL_CAPACITY);
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** @return {@link BlockBiomeTintCache#EMPTY_KEY} if the pair can't be cached */
+	private static long createKey(BlockStateWrapper blockStateWrapper, BiomeWrapper biomeWrapper)
+	{
+		BlockState blockState = blockStateWrapper.blockState;
+		if (blockState == null)
+		{
+			return EMPTY_KEY;
+		}
+		
+		int blockStateId = Block.getId(blockState);
+		if (blockStateId < 0)
+		{
+			return EMPTY_KEY;
+		}
+		
+		// offset by 1 so the key is never 0
+		return ((long) (blockStateId + 1) << 32) | (biomeWrapper.getTintCacheId() & 0xFFFFFFFFL);
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	private static class Table
+	{
+		/** capacity is always a power of 2 */
+		final AtomicLongArray keys;
+		final int[] values;
+		/** only accessed while holding the write lock */
+		int size = 0;
+		
+		Table(int capacity)
+		{
+			this.keys = new AtomicLongArray(capacity);
+			this.values = new int[capacity];
+		}
+		
+		/** must be called while holding the write lock */
+		void put(long key, int color)
+		{
+			int mask = this.values.length - 1;
+			int index = (int) HashCommon.mix(key) & mask;
+			while (true)
+			{
+				long existingKey = this.keys.get(index);
+				if (existingKey == key)
+				{
+					// colors for a given pair are deterministic,
+					// so readers seeing the old or new color are both fine
+					this.values[index] = color;
+					return;
+				}
+				else if (existingKey == EMPTY_KEY)
+				{
+					// the color must be written before the key is published
+					this.values[index] = color;
+					this.keys.set(index, key);
+					this.size++;
+					return;
+				}
+				
+				index = (index + 1) & mask;
+			}
+		}
+		
+		/** must be called while holding the write lock */
+		Table createResized(int newCapacity)
+		{
+			Table newTable = new Table(newCapacity);
+			for (int i = 0; i < this.values.length; i++)
+			{
+				long key = this.keys.get(i);
+				if (key != EMPTY_KEY)
+				{
+					newTable.put(key, this.values[i]);
+				}
+			}
+			return newTable;
+		}
+	}
+	
+}
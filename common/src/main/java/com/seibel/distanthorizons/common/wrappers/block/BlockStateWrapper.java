@@ -38,6 +38,7 @@ import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.SoundType;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
 import com.seibel.distanthorizons.core.logging.DhLogger;
 
 import java.awt.*;
@@ -45,6 +46,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Stream;
 
 import org.jetbrains.annotations.Nullable;
@@ -70,6 +72,10 @@ import net.minecraft.world.level.EmptyBlockGetter;
 import net.minecraft.core.Holder;
 #endif
 
+#if MC_VER >= MC_1_18_2
+import net.minecraft.world.level.chunk.Palette;
+#endif
+
 #if MC_VER <= MC_1_21_10
 import net.minecraft.resources.ResourceLocation;
 #else
@@ -90,6 +96,27 @@ public class BlockStateWrapper implements IBlockStateWrapper
     public static final ConcurrentHashMap<BlockState, BlockStateWrapper> WRAPPER_BY_BLOCK_STATE = new ConcurrentHashMap<>();
     public static final ConcurrentHashMap<String, BlockStateWrapper> WRAPPER_BY_RESOURCE_LOCATION = new ConcurrentHashMap<>();
 	
+	/** 
+	 * Dense {@link Block#BLOCK_STATE_REGISTRY} ID -> wrapper lookup, 
+	 * used so the {@link BlockStateWrapper#fromBlockState} hot path is a single array load
+	 * instead of multiple hash probes into {@link BlockStateWrapper#WRAPPER_BY_BLOCK_STATE}. <br>
+	 * Slots are null until their block state is first wrapped. <br><br>
+	 * 
+	 * Replaced with a larger array if the registry grows,
+	 * each slot's block state is also checked on lookup so remapped IDs
+	 * (IE after joining a server with different registries) just cause a cache miss. <br>
+	 * An {@link AtomicReferenceArray} is used so wrappers are safely published
+	 * to other threads, since not all of the wrapper's fields are final.
+	 */
+	private static volatile AtomicReferenceArray<BlockStateWrapper> wrapperByBlockStateId = new AtomicReferenceArray<>(0);
+	private static final Object WRAPPER_TABLE_RESIZE_LOCK = new Object();
+	
+	/** 
+	 * MC switches sections to the global palette above 8 bits per block,
+	 * so any palette larger than this contains the whole block state registry.
+	 */
+	public static final int MAX_RESOLVED_PALETTE_SIZE = 256;
+	
 	public static final String AIR_STRING = "AIR";
 	public static final BlockStateWrapper AIR = new BlockStateWrapper(null, null, null);
 	
@@ -148,16 +175,66 @@ public class BlockStateWrapper implements IBlockStateWrapper
 		}
 		
 		
-		if (WRAPPER_BY_BLOCK_STATE.containsKey(blockState))
+		int id = Block.getId(blockState);
+		AtomicReferenceArray<BlockStateWrapper> wrapperTable = wrapperByBlockStateId;
+		if (id >= 0 && id < wrapperTable.length())
 		{
-			return WRAPPER_BY_BLOCK_STATE.get(blockState);
+			BlockStateWrapper wrapper = wrapperTable.get(id);
+			if (wrapper != null 
+				&& wrapper.blockState == blockState)
+			{
+				return wrapper;
+			}
 		}
-		else
+		
+		
+		// slow path, only hit the first time a block state is seen (or after the registry changes)
+		BlockStateWrapper wrapper = WRAPPER_BY_BLOCK_STATE.get(blockState);
+		if (wrapper == null)
 		{
 			BlockStateWrapper newWrapper = createNewWrapper(blockState, levelWrapper);
-			WRAPPER_BY_BLOCK_STATE.put(blockState, newWrapper);
-			return newWrapper;
+			
+			// if another thread created a wrapper first, use that one so there's only ever one wrapper per block state
+			BlockStateWrapper existingWrapper = WRAPPER_BY_BLOCK_STATE.putIfAbsent(blockState, newWrapper);
+			wrapper = (existingWrapper != null) ? existingWrapper : newWrapper;
 		}
+		
+		putInWrapperTable(id, wrapper);
+		return wrapper;
+	}
+	private static void putInWrapperTable(int id, BlockStateWrapper wrapper)
+	{
+		if (id < 0)
+		{
+			// shouldn't happen, but just in case a modded block state isn't in the registry
+			return;
+		}
+		
+		AtomicReferenceArray<BlockStateWrapper> wrapperTable = wrapperByBlockStateId;
+		if (id >= wrapperTable.length())
+		{
+			synchronized (WRAPPER_TABLE_RESIZE_LOCK)
+			{
+				wrapperTable = wrapperByBlockStateId;
+				if (id >= wrapperTable.length())
+				{
+					// size the table to fit the whole registry so it only needs to be rebuilt if the registry grows
+					int newLength = Math.max(id + 1, Block.BLOCK_STATE_REGISTRY.size());
+					AtomicReferenceArray<BlockStateWrapper> newWrapperTable = new AtomicReferenceArray<>(newLength);
+					for (int i = 0; i < wrapperTable.length(); i++)
+					{
+						newWrapperTable.set(i, wrapperTable.get(i));
+					}
+					
+					wrapperTable = newWrapperTable;
+					wrapperByBlockStateId = wrapperTable;
+				}
+			}
+		}
+		
+		// a write racing with a resize may be lost,
+		// but that just means the slot will be filled again on the next lookup
+		wrapperTable.set(id, wrapper);
 	}
 	
 	/** 
@@ -180,6 +257,53 @@ public class BlockStateWrapper implements IBlockStateWrapper
 		}
 	}
 	
+	/**
+	 * Wraps every entry in the given section block state container's palette at once,
+	 * so callers can check each distinct block state once per section
+	 * and then read the section's blocks by palette ID. <br><br>
+	 * 
+	 * Before MC 1.18 the palette and its bit storage are separate fields that are replaced
+	 * one after the other when the palette grows, so a matching pair can't be read
+	 * while the section may be modified and null is always returned.
+	 * 
+	 * @return null if the palette couldn't be read or is MC's global palette
+	 *          (which contains every registered block state and isn't worth wrapping up front),
+	 *          callers should read each block state directly in that case.
+	 */
+	@Nullable
+	public static SectionBlockStatePalette resolveSectionPalette(PalettedContainer<BlockState> blockStates, ILevelWrapper levelWrapper)
+	{
+		#if MC_VER < MC_1_18_2
+		return null;
+		#else
+		try
+		{
+			// the data object holds both the palette and storage,
+			// so reading it once gives a matching pair even if the section is resized afterward
+			PalettedContainer.Data<BlockState> data = blockStates.data;
+			Palette<BlockState> palette = data.palette();
+			
+			int paletteSize = palette.getSize();
+			if (paletteSize > MAX_RESOLVED_PALETTE_SIZE)
+			{
+				return null;
+			}
+			
+			BlockStateWrapper[] wrapperByPaletteId = new BlockStateWrapper[paletteSize];
+			for (int i = 0; i < paletteSize; i++)
+			{
+				wrapperByPaletteId[i] = fromBlockState(palette.valueFor(i), levelWrapper);
+			}
+			return new SectionBlockStatePalette(data.storage(), wrapperByPaletteId);
+		}
+		catch (Exception e)
+		{
+			// shouldn't happen, but just in case a mod changes how palettes are stored
+			return null;
+		}
+		#endif
+	}
+	
 	private static BlockStateWrapper createNewWrapper(@Nullable BlockState blockState, ILevelWrapper levelWrapper)
 	{
 		// create a wrapper specifically for the API event to use
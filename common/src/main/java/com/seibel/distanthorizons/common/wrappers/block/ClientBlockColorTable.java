@@ -0,0 +1,286 @@
+package com.seibel.distanthorizons.common.wrappers.block;
+
+import com.seibel.distanthorizons.common.wrappers.block.ClientBlockStateColorCache.ResolvedBlockColor;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.util.ThreadUtil;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable, block state ID indexed table of {@link ResolvedBlockColor}s. <br><br>
+ *
+ * Resolving a block's base color requires reading its model and averaging its texture,
+ * previously that was done the first time each block state was seen,
+ * on whichever LOD builder thread got there first. <br>
+ * Instead {@link ClientBlockColorTable#startWarmUpAsync()} resolves every registered block state
+ * in parallel once MC's models and texture atlas are ready,
+ * and publishes the results as a single array so lookups don't need any locking. <br><br>
+ * 
+ * The results are also saved to disk via {@link ClientBlockColorTableFile}
+ * so later sessions with the same resource packs and blocks can skip resolving entirely.
+ */
+public class ClientBlockColorTable
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	/** how many block states each warm up thread claims at a time */
+	private static final int BATCH_SIZE = 64;
+	
+	/** null until a warm up has finished */
+	@Nullable
+	private static volatile ResolvedBlockColor[] resolvedColorById = null;
+	/** incremented whenever the table is invalidated so stale warm ups don't publish their results */
+	private static final AtomicInteger GENERATION = new AtomicInteger(0);
+	/** 
+	 * true if a warm up is running or has finished for the current generation. <br>
+	 * Only written while holding {@link ClientBlockColorTable#LOCK}.
+	 */
+	private static volatile boolean warmUpStarted = false;
+	private static final Object LOCK = new Object();
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** 
+	 * If the table was cleared (IE after a level was unloaded)
+	 * this will also start a new warm up.
+	 * 
+	 * @return null if the warm up hasn't finished or if the block state couldn't be resolved 
+	 */
+	@Nullable
+	public static ResolvedBlockColor get(BlockState blockState)
+	{
+		ResolvedBlockColor[] table = resolvedColorById;
+		if (table == null)
+		{
+			// handles the case where the next level was created before the last one was unloaded
+			startWarmUpAsyncIfNeeded();
+			return null;
+		}
+		
+		int id = Block.getId(blockState);
+		return (id >= 0 && id < table.length) ? table[id] : null;
+	}
+	
+	
+	
+	//=========//
+	// warm up //
+	//=========//
+	
+	/**
+	 * Clears the existing table and resolves every registered block state on background threads. <br>
+	 * Should be called once MC's models and texture atlas are loaded (IE after a resource reload).
+	 */
+	public static void startWarmUpAsync()
+	{
+		ClientBlockColorTableFile.invalidateResourceFingerprint();
+		
+		int generation;
+		synchronized (LOCK)
+		{
+			generation = GENERATION.incrementAndGet();
+			resolvedColorById = null;
+			warmUpStarted = true;
+		}
+		
+		startWarmUpThread(generation);
+	}
+	private static void startWarmUpThread(int generation)
+	{
+		Thread warmUpThread = new Thread(() -> runWarmUp(generation));
+		warmUpThread.setName(ThreadUtil.THREAD_NAME_PREFIX + "Block Color Warm Up");
+		warmUpThread.setDaemon(true);
+		warmUpThread.start();
+	}
+	
+	/** 
+	 * Only starts a warm up if the table hasn't been (or isn't currently being) built. <br>
+	 * Can be called again after {@link ClientBlockColorTable#clear()}.
+	 */
+	public static void startWarmUpAsyncIfNeeded()
+	{
+		// checked outside the lock first since this is called whenever the table is missing
+		if (warmUpStarted)
+		{
+			return;
+		}
+		
+		int generation;
+		synchronized (LOCK)
+		{
+			if (warmUpStarted)
+			{
+				return;
+			}
+			
+			generation = GENERATION.incrementAndGet();
+			resolvedColorById = null;
+			warmUpStarted = true;
+		}
+		
+		startWarmUpThread(generation);
+	}
+	
+	/** 
+	 * Drops the table, any running warm up will be discarded. <br>
+	 * Block state IDs may change between levels (IE when joining a different server),
+	 * so this should be called whenever a level is unloaded.
+	 */
+	public static void clear()
+	{
+		synchronized (LOCK)
+		{
+			GENERATION.incrementAndGet();
+			resolvedColorById = null;
+			warmUpStarted = false;
+		}
+	}
+	
+	private static void runWarmUp(int generation)
+	{
+		long startMs = System.currentTimeMillis();
+		
+		ArrayList<BlockState> blockStateList = new ArrayList<>();
+		for (BlockState blockState : Block.BLOCK_STATE_REGISTRY)
+		{
+			blockStateList.add(blockState);
+		}
+		
+		// use the colors from the last session if nothing has changed since then
+		File cacheFile = ClientBlockColorTableFile.getFile();
+		Long fingerprint = null;
+		try
+		{
+			fingerprint = ClientBlockColorTableFile.createFingerprint();
+			ResolvedBlockColor[] cachedTable = ClientBlockColorTableFile.tryLoad(cacheFile, fingerprint, Block.BLOCK_STATE_REGISTRY.size());
+			if (cachedTable != null)
+			{
+				if (tryPublish(generation, cachedTable))
+				{
+					LOGGER.info("Loaded ["+cachedTable.length+"] block colors from ["+cacheFile+"] in ["+(System.currentTimeMillis() - startMs)+"]ms.");
+				}
+				return;
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.warn("Unable to check block color cache ["+cacheFile+"], colors will be resolved without it. Error: ["+e.getMessage()+"].", e);
+		}
+		
+		
+		ResolvedBlockColor[] table = new ResolvedBlockColor[Block.BLOCK_STATE_REGISTRY.size()];
+		AtomicInteger nextIndex = new AtomicInteger(0);
+		AtomicInteger failedCount = new AtomicInteger(0);
+		
+		int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, (runnable) ->
+		{
+			Thread thread = new Thread(runnable, ThreadUtil.THREAD_NAME_PREFIX + "Block Color Warm Up Worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		try
+		{
+			for (int i = 0; i < threadCount; i++)
+			{
+				executor.execute(() ->
+				{
+					// each thread claims batches until every block state has been resolved
+					int batchStart;
+					while ((batchStart = nextIndex.getAndAdd(BATCH_SIZE)) < blockStateList.size()
+						&& GENERATION.get() == generation)
+					{
+						int batchEnd = Math.min(batchStart + BATCH_SIZE, blockStateList.size());
+						for (int listIndex = batchStart; listIndex < batchEnd; listIndex++)
+						{
+							BlockState blockState = blockStateList.get(listIndex);
+							int id = Block.getId(blockState);
+							if (id < 0 || id >= table.length)
+							{
+								continue;
+							}
+							
+							try
+							{
+								table[id] = ClientBlockStateColorCache.resolveColors(blockState);
+							}
+							catch (Exception e)
+							{
+								// this block state will be resolved lazily instead
+								failedCount.incrementAndGet();
+							}
+						}
+					}
+				});
+			}
+			
+			executor.shutdown();
+			// awaitTermination provides the happens-before needed to safely read the table
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+			{
+				if (GENERATION.get() != generation)
+				{
+					executor.shutdownNow();
+					return;
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			executor.shutdownNow();
+			return;
+		}
+		
+		
+		if (!tryPublish(generation, table))
+		{
+			return;
+		}
+		LOGGER.info("Resolved ["+blockStateList.size()+"] block colors in ["+(System.currentTimeMillis() - startMs)+"]ms using ["+threadCount+"] threads, ["+failedCount.get()+"] failed and will be resolved when needed.");
+		
+		if (fingerprint != null)
+		{
+			try
+			{
+				ClientBlockColorTableFile.save(cacheFile, fingerprint, table);
+			}
+			catch (IOException e)
+			{
+				LOGGER.warn("Unable to save block color cache ["+cacheFile+"], error: ["+e.getMessage()+"].", e);
+			}
+		}
+	}
+	/** 
+	 * Only publishes if the table wasn't invalidated while it was being created.
+	 * @return true if the table was published 
+	 */
+	private static boolean tryPublish(int generation, ResolvedBlockColor[] table)
+	{
+		synchronized (LOCK)
+		{
+			if (GENERATION.get() != generation)
+			{
+				return false;
+			}
+			
+			resolvedColorById = table;
+			return true;
+		}
+	}
+	
+}
@@ -0,0 +1,318 @@
+package com.seibel.distanthorizons.common.wrappers.block;
+
+import com.seibel.distanthorizons.common.wrappers.block.ClientBlockStateColorCache.ResolvedBlockColor;
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.wrapperInterfaces.IVersionConstants;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary copy of a {@link ClientBlockColorTable} so block colors
+ * don't need to be re-resolved every session. <br><br>
+ *
+ * The file is keyed by a fingerprint of the MC version, active resource packs,
+ * installed mod/resource pack files and block state registry,
+ * if any of those change the file is ignored and overwritten. <br><br>
+ *
+ * Layout (big endian): <br>
+ * int magic, int format version, long fingerprint, int entry count, <br>
+ * then for each block state ID: int base color, int tint index, byte flags
+ */
+public class ClientBlockColorTableFile
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	public static final String FILE_NAME = "blockColorCache.bin";
+	/** 
+	 * Separate from the multiplayer LOD data folder since the colors 
+	 * are shared by every world and server the client joins.
+	 */
+	private static final String FOLDER_NAME = "Distant_Horizons_client_data";
+	
+	/** "DHBC" */
+	private static final int MAGIC = 0x44484243;
+	/** incremented if the layout, fingerprint, or color resolution logic changes */
+	private static final int FORMAT_VERSION = 2;
+	
+	private static final int HEADER_BYTE_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+	private static final int ENTRY_BYTE_SIZE = Integer.BYTES + Integer.BYTES + Byte.BYTES;
+	
+	private static final byte FLAG_PRESENT = 1;
+	private static final byte FLAG_NEED_POST_TINTING = 2;
+	
+	/** 
+	 * Hash of the resource packs and mod files, null until first needed. <br>
+	 * Walking those folders requires a lot of file IO,
+	 * so this is only recalculated after {@link ClientBlockColorTableFile#invalidateResourceFingerprint()}.
+	 */
+	@Nullable
+	private static Long resourceFingerprint = null;
+	private static final Object RESOURCE_FINGERPRINT_LOCK = new Object();
+	
+	
+	
+	//=============//
+	// file access //
+	//=============//
+	
+	public static File getFile() { return new File(new File(Minecraft.getInstance().gameDirectory, FOLDER_NAME), FILE_NAME); }
+	
+	/**
+	 * The file is read into a heap buffer instead of being memory mapped,
+	 * otherwise the mapping would keep the file locked on Windows
+	 * (there's no way to unmap a buffer in Java 8) and {@link ClientBlockColorTableFile#save} couldn't replace it.
+	 *
+	 * @return null if the file doesn't exist, is for a different fingerprint, or couldn't be read
+	 */
+	@Nullable
+	public static ResolvedBlockColor[] tryLoad(File file, long fingerprint, int blockStateCount)
+	{
+		if (!file.exists())
+		{
+			return null;
+		}
+		
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			long fileSize = channel.size();
+			if (fileSize < HEADER_BYTE_SIZE
+				|| fileSize != HEADER_BYTE_SIZE + ((long) blockStateCount * ENTRY_BYTE_SIZE))
+			{
+				return null;
+			}
+			
+			ByteBuffer buffer = ByteBuffer.allocate((int) fileSize);
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer) < 0)
+				{
+					return null;
+				}
+			}
+			buffer.flip();
+			
+			if (buffer.getInt() != MAGIC
+				|| buffer.getInt() != FORMAT_VERSION
+				|| buffer.getLong() != fingerprint)
+			{
+				return null;
+			}
+			
+			int entryCount = buffer.getInt();
+			if (entryCount != blockStateCount
+				|| fileSize != HEADER_BYTE_SIZE + ((long) entryCount * ENTRY_BYTE_SIZE))
+			{
+				return null;
+			}
+			
+			ResolvedBlockColor[] table = new ResolvedBlockColor[entryCount];
+			for (int id = 0; id < entryCount; id++)
+			{
+				int baseColor = buffer.getInt();
+				int tintIndex = buffer.getInt();
+				byte flags = buffer.get();
+				if ((flags & FLAG_PRESENT) != 0)
+				{
+					table[id] = new ResolvedBlockColor(baseColor, (flags & FLAG_NEED_POST_TINTING) != 0, tintIndex);
+				}
+			}
+			return table;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			LOGGER.warn("Unable to read block color cache ["+file+"], colors will be re-resolved. Error: ["+e.getMessage()+"].", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * The table is written to a temporary file first
+	 * so a crash mid-write won't leave a corrupt cache.
+	 */
+	public static void save(File file, long fingerprint, ResolvedBlockColor[] table) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTE_SIZE + (table.length * ENTRY_BYTE_SIZE));
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putLong(fingerprint);
+		buffer.putInt(table.length);
+		for (int id = 0; id < table.length; id++)
+		{
+			ResolvedBlockColor resolvedColor = table[id];
+			if (resolvedColor == null)
+			{
+				buffer.putInt(0);
+				buffer.putInt(0);
+				buffer.put((byte) 0);
+			}
+			else
+			{
+				buffer.putInt(resolvedColor.baseColor);
+				buffer.putInt(resolvedColor.tintIndex);
+				buffer.put((byte) (FLAG_PRESENT | (resolvedColor.needPostTinting ? FLAG_NEED_POST_TINTING : 0)));
+			}
+		}
+		buffer.flip();
+		
+		File parentFolder = file.getParentFile();
+		if (parentFolder != null && !parentFolder.exists())
+		{
+			Files.createDirectories(parentFolder.toPath());
+		}
+		
+		// unique name so overlapping warm ups (IE one started by a resource reload) don't write to the same file
+		Path tempFilePath = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), FILE_NAME, ".tmp");
+		try
+		{
+			try (FileChannel channel = FileChannel.open(tempFilePath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+			}
+			
+			try
+			{
+				Files.move(tempFilePath, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempFilePath, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			// only present if the write or move failed
+			Files.deleteIfExists(tempFilePath);
+		}
+	}
+	
+	
+	
+	//=============//
+	// fingerprint //
+	//=============//
+	
+	/**
+	 * @return a hash of everything that can change a block's resolved color:
+	 *      the MC version, the active resource packs (in order), 
+	 *      the installed mod and resource pack files, and every registered block state (in ID order)
+	 */
+	public static long createFingerprint() throws IOException
+	{
+		long hash = getResourceFingerprint();
+		
+		// the registry can change without a resource reload (IE when joining a different server),
+		// so it's always re-hashed
+		for (BlockState blockState : Block.BLOCK_STATE_REGISTRY)
+		{
+			hash = hashString(hash, Block.getId(blockState) + "=" + blockState);
+		}
+		
+		return hash;
+	}
+	
+	/** Should be called whenever MC's resources are reloaded, since the resource packs or their files may have changed. */
+	public static void invalidateResourceFingerprint()
+	{
+		synchronized (RESOURCE_FINGERPRINT_LOCK)
+		{
+			resourceFingerprint = null;
+		}
+	}
+	private static long getResourceFingerprint() throws IOException
+	{
+		// locked so an invalidation that happens while the folders are being walked 
+		// waits and isn't overwritten by the old value
+		synchronized (RESOURCE_FINGERPRINT_LOCK)
+		{
+			if (resourceFingerprint == null)
+			{
+				resourceFingerprint = createResourceFingerprint();
+			}
+			return resourceFingerprint;
+		}
+	}
+	private static long createResourceFingerprint() throws IOException
+	{
+		long hash = 0xcbf29ce484222325L; // FNV-1a offset basis
+		
+		hash = hashString(hash, Integer.toString(FORMAT_VERSION));
+		hash = hashString(hash, SingletonInjector.INSTANCE.get(IVersionConstants.class).getMinecraftVersion());
+		
+		for (String packId : Minecraft.getInstance().getResourcePackRepository().getSelectedIds())
+		{
+			hash = hashString(hash, packId);
+		}
+		
+		// pack and mod IDs stay the same when their contents change (IE updating a mod or editing a pack),
+		// so the files' sizes and modification times are included as well
+		File gameDirectory = Minecraft.getInstance().gameDirectory;
+		hash = hashFileStats(hash, new File(gameDirectory, "resourcepacks"));
+		hash = hashFileStats(hash, new File(gameDirectory, "mods"));
+		
+		return hash;
+	}
+	/** 
+	 * Hashes the relative path, size, and modification time of every file in the given folder (recursively). <br>
+	 * This is much cheaper than hashing the files' contents and will still change if any of them are replaced or edited.
+	 */
+	private static long hashFileStats(long hash, File folder) throws IOException
+	{
+		if (!folder.isDirectory())
+		{
+			return hash;
+		}
+		
+		Path folderPath = folder.toPath();
+		ArrayList<Path> filePathList = new ArrayList<>();
+		try (Stream<Path> pathStream = Files.walk(folderPath))
+		{
+			pathStream.filter(Files::isRegularFile).forEach(filePathList::add);
+		}
+		// the walk order isn't defined, sort so the hash is stable
+		filePathList.sort(null);
+		
+		for (int i = 0; i < filePathList.size(); i++) // regular for loop since enhanced for loops increase GC pressure slightly
+		{
+			Path filePath = filePathList.get(i);
+			hash = hashString(hash, folderPath.relativize(filePath).toString());
+			hash = hashString(hash, Long.toString(Files.size(filePath)));
+			hash = hashString(hash, Long.toString(Files.getLastModifiedTime(filePath).toMillis()));
+		}
+		return hash;
+	}
+	private static long hashString(long hash, String string)
+	{
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < bytes.length; i++)
+		{
+			hash ^= (bytes[i] & 0xFF);
+			hash *= 0x100000001b3L; // FNV-1a prime
+		}
+		
+		// separator so ["ab", "c"] and ["a", "bc"] hash differently
+		hash ^= 0xFF;
+		hash *= 0x100000001b3L;
+		return hash;
+	}
+	
+}
@@ -42,7 +42,6 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 
 #if MC_VER >= MC_1_19_2
 import net.minecraft.util.RandomSource;
@@ -78,16 +77,6 @@ public class ClientBlockStateColorCache
 	private static final HashSet<BlockState> BLOCK_STATES_THAT_NEED_LEVEL = new HashSet<>();
 	private static final HashSet<BlockState> BROKEN_BLOCK_STATES = new HashSet<>();
 	
-	/** 
-	 * Methods using MC's "RandomSource" object aren't thread safe <br>
-	 * so we need to put locks around that logic. <br>
-	 * specifically:
-	 * <code>
-	 * getBlockModel(this.blockState).getQuads(this.blockState, direction, RANDOM)
-	 * </code>
-	 */
-	private static final ReentrantLock RESOLVE_LOCK = new ReentrantLock();
-	
 	
 	/** This is the order each direction on a block is processed when attempting to get the texture/color */
 	private static final @Nullable Direction[] COLOR_RESOLUTION_DIRECTION_ORDER = 
@@ -105,21 +94,28 @@ public class ClientBlockStateColorCache
 	
 	
 	
+	/** 
+	 * MC's "RandomSource" object isn't thread safe,
+	 * so each thread gets its own, the same as MC's chunk section compile threads. <br>
+	 * This allows colors to be resolved in parallel without a global lock. <br>
+	 * Specifically for:
+	 * <code>
+	 * getBlockModel(blockState).getQuads(blockState, direction, random)
+	 * </code>
+	 */
 	#if MC_VER < MC_1_19_2
-	private static final Random RANDOM = new Random(0);
+	private static final ThreadLocal<Random> RANDOM_REF = ThreadLocal.withInitial(() -> new Random(0));
 	#else
-	/** Note: this object isn't thread safe and must be put in a lock */
-	private static final RandomSource RANDOM = RandomSource.create();
+	private static final ThreadLocal<RandomSource> RANDOM_REF = ThreadLocal.withInitial(RandomSource::create);
 	#endif
 	
 	private final IClientLevelWrapper clientLevelWrapper;
 	private final BlockState blockState;
 	private final BlockStateWrapper blockStateWrapper;
 	
-	private boolean isColorResolved = false;
-	private int baseColor = 0;
-	private boolean needPostTinting = false;
-	private int tintIndex = 0;
+	private final int baseColor;
+	private final boolean needPostTinting;
+	private final int tintIndex;
 	
 	
 	
@@ -194,6 +190,11 @@ public class ClientBlockStateColorCache
 	private static final ThreadLocal<TintWithoutLevelOverrider> TintWithoutLevelOverrideGetter = ThreadLocal.withInitial(TintWithoutLevelOverrider::new);
 	private static final ThreadLocal<TintGetterOverride> TintOverrideGetter = ThreadLocal.withInitial(TintGetterOverride::new);
 	private static final ThreadLocal<DhApiBlockColorOverrideEvent.EventParam> ColorOverrideEventParamGetter = ThreadLocal.withInitial(DhApiBlockColorOverrideEvent.EventParam::new);
+	/** 
+	 * reused to prevent allocating a new position for every color query, 
+	 * separate from {@link AbstractDhTintGetter}'s position since MC's color resolver may call back into the tint getter. 
+	 */
+	private static final ThreadLocal<DhBlockPosMutable> MUTABLE_TINT_POS_REF = ThreadLocal.withInitial(() -> new DhBlockPosMutable(0, 0, 0));
 	
 	//endregion
 	
@@ -210,7 +211,17 @@ public class ClientBlockStateColorCache
 		this.blockStateWrapper = BlockStateWrapper.fromBlockState(blockState, clientLevelWrapper);
 		this.clientLevelWrapper = clientLevelWrapper;
 		
-		this.resolveColors();
+		// use the pre-resolved colors if the warm up has finished,
+		// otherwise this block state was either added after the warm up or the warm up is still running
+		ResolvedBlockColor resolvedColor = ClientBlockColorTable.get(blockState);
+		if (resolvedColor == null)
+		{
+			resolvedColor = resolveColors(blockState);
+		}
+		
+		this.baseColor = resolvedColor.baseColor;
+		this.needPostTinting = resolvedColor.needPostTinting;
+		this.tintIndex = resolvedColor.tintIndex;
 	}
 	
 	//endregion
@@ -221,126 +232,124 @@ public class ClientBlockStateColorCache
 	// color calculation //
 	//===================//
 	
-	private void resolveColors()
+	/** 
+	 * Doesn't require any locking and can be called from any thread, 
+	 * as long as MC's models and texture atlas are loaded.
+	 */
+	public static ResolvedBlockColor resolveColors(BlockState blockState)
 	{
-		if (this.isColorResolved)
-		{
-			return;
-		}
+		int baseColor;
+		boolean needPostTinting;
+		int tintIndex;
 		
-		try
+		if (blockState.getFluidState().isEmpty())
 		{
-			// getQuads() isn't thread safe so we need to put this logic in a lock
-			RESOLVE_LOCK.lock();
-			
-			if (this.blockState.getFluidState().isEmpty())
+			// look for the first non-empty direction
+			List<BakedQuad> quads = null;
+			for (Direction direction : COLOR_RESOLUTION_DIRECTION_ORDER)
 			{
-				// look for the first non-empty direction
-				List<BakedQuad> quads = null;
-				for (Direction direction : COLOR_RESOLUTION_DIRECTION_ORDER)
-				{
-					quads = this.getQuadsForDirection(direction);
-					if (quads != null && !quads.isEmpty()
-						&& !(
-							this.blockState.getBlock() instanceof RotatedPillarBlock
-							&& direction == Direction.UP
-							)
+				quads = getQuadsForDirection(blockState, direction);
+				if (quads != null && !quads.isEmpty()
+					&& !(
+						blockState.getBlock() instanceof RotatedPillarBlock
+						&& direction == Direction.UP
 						)
-					{
-						break;
-					}
-				}
-				
-				if (quads == null || quads.isEmpty())
+					)
 				{
-					quads = this.getUnculledQuads();
+					break;
 				}
+			}
+			
+			if (quads == null || quads.isEmpty())
+			{
+				quads = getUnculledQuads(blockState);
+			}
+			
+			if (quads != null 
+				&& !quads.isEmpty() 
+				&& quads.get(0) != null)
+			{
+				BakedQuad firstQuad = quads.get(0);
 				
-				if (quads != null 
-					&& !quads.isEmpty() 
-					&& quads.get(0) != null)
-				{
-					BakedQuad firstQuad = quads.get(0);
-					
-					#if MC_VER <= MC_1_21_11
-					this.needPostTinting = firstQuad.isTinted();
-					#else
-					this.needPostTinting = firstQuad.materialInfo().isTinted();
-					#endif
-					
-					#if MC_VER <= MC_1_21_4
-					this.tintIndex = firstQuad.getTintIndex();
-					#elif MC_VER <= MC_1_21_11
-					this.tintIndex = firstQuad.tintIndex();
-					#else
-					this.tintIndex = firstQuad.materialInfo().tintIndex();
-					#endif
-					
-					#if MC_VER < MC_1_17_1
-					this.baseColor = calculateColorFromTexture(
-                        firstQuad.sprite,
-						EColorMode.getColorMode(this.blockState.getBlock()));
-					#elif MC_VER < MC_1_21_5
-					this.baseColor = calculateColorFromTexture(
-                        firstQuad.getSprite(),
-						EColorMode.getColorMode(this.blockState.getBlock()));
-					#elif MC_VER <= MC_1_21_11
-					this.baseColor = calculateColorFromTexture(
-						firstQuad.sprite(),
-						EColorMode.getColorMode(this.blockState.getBlock()));
-					#else
-					this.baseColor = calculateColorFromTexture(
-						firstQuad.materialInfo().sprite(),
-						EColorMode.getColorMode(this.blockState.getBlock()));
-					#endif
-				}
-				else
-				{
-					// Backup method.
-					this.needPostTinting = false;
-					this.tintIndex = 0;
-					this.baseColor = this.getParticleIconColor();
-				}
+				#if MC_VER <= MC_1_21_11
+				needPostTinting = firstQuad.isTinted();
+				#else
+				needPostTinting = firstQuad.materialInfo().isTinted();
+				#endif
+				
+				#if MC_VER <= MC_1_21_4
+				tintIndex = firstQuad.getTintIndex();
+				#elif MC_VER <= MC_1_21_11
+				tintIndex = firstQuad.tintIndex();
+				#else
+				tintIndex = firstQuad.materialInfo().tintIndex();
+				#endif
+				
+				#if MC_VER < MC_1_17_1
+				baseColor = calculateColorFromTexture(
+					firstQuad.sprite,
+					EColorMode.getColorMode(blockState.getBlock()));
+				#elif MC_VER < MC_1_21_5
+				baseColor = calculateColorFromTexture(
+					firstQuad.getSprite(),
+					EColorMode.getColorMode(blockState.getBlock()));
+				#elif MC_VER <= MC_1_21_11
+				baseColor = calculateColorFromTexture(
+					firstQuad.sprite(),
+					EColorMode.getColorMode(blockState.getBlock()));
+				#else
+				baseColor = calculateColorFromTexture(
+					firstQuad.materialInfo().sprite(),
+					EColorMode.getColorMode(blockState.getBlock()));
+				#endif
 			}
 			else
 			{
-				// Liquid Block
-				this.needPostTinting = true;
-				this.tintIndex = 0;
-				this.baseColor = this.getParticleIconColor();
+				// Backup method.
+				needPostTinting = false;
+				tintIndex = 0;
+				baseColor = getParticleIconColor(blockState);
 			}
-			
-			
-			this.isColorResolved = true;
 		}
-		finally
+		else
 		{
-			RESOLVE_LOCK.unlock();
+			// Liquid Block
+			needPostTinting = true;
+			tintIndex = 0;
+			baseColor = getParticleIconColor(blockState);
 		}
+		
+		return new ResolvedBlockColor(baseColor, needPostTinting, tintIndex);
 	}
 	
 	@Nullable
-	private List<BakedQuad> getUnculledQuads() { return this.getQuadsForDirection(null); }
+	private static List<BakedQuad> getUnculledQuads(BlockState blockState) { return getQuadsForDirection(blockState, null); }
 	@Nullable
-	private List<BakedQuad> getQuadsForDirection(@Nullable Direction direction)
+	private static List<BakedQuad> getQuadsForDirection(BlockState blockState, @Nullable Direction direction)
 	{
-		BlockState effectiveBlockState = this.blockState;
+		BlockState effectiveBlockState = blockState;
 		
 		// if this block is a slab, use it's double variant so we can get the top face,
 		// otherwise the color will use the side, which isn't as accurate
-		if (this.blockState.getBlock() instanceof SlabBlock)
+		if (blockState.getBlock() instanceof SlabBlock)
 		{
-			effectiveBlockState = this.blockState.setValue( SlabBlock.TYPE, SlabType.DOUBLE );
+			effectiveBlockState = blockState.setValue( SlabBlock.TYPE, SlabType.DOUBLE );
 		}
 		
+		#if MC_VER < MC_1_19_2
+		Random random = RANDOM_REF.get();
+		#else
+		RandomSource random = RANDOM_REF.get();
+		#endif
+		
 		List<BakedQuad> quads;
 		
 		#if MC_VER < MC_1_21_5
 		quads = MC.getModelManager().getBlockModelShaper().
-			getBlockModel(effectiveBlockState).getQuads(effectiveBlockState, direction, RANDOM);
+			getBlockModel(effectiveBlockState).getQuads(effectiveBlockState, direction, random);
 		#elif MC_VER <= MC_1_21_11
 		List<BlockModelPart> blockModelPartList = MC.getModelManager().getBlockModelShaper().
-			getBlockModel(effectiveBlockState).collectParts(RANDOM);
+			getBlockModel(effectiveBlockState).collectParts(random);
 		
 		quads = new ArrayList<>();
 		if (blockModelPartList != null)
@@ -354,7 +363,7 @@ public class ClientBlockStateColorCache
 		#else
 		List<BlockStateModelPart> blockModelPartList = new ArrayList<>();
 		MC.getModelManager().getBlockStateModelSet()
-			.get(effectiveBlockState).collectParts(RANDOM, blockModelPartList);
+			.get(effectiveBlockState).collectParts(random, blockModelPartList);
 		
 		quads = new ArrayList<>();
 		for (int i = 0; i < blockModelPartList.size(); i++)
@@ -499,15 +508,15 @@ public class ClientBlockStateColorCache
 		return (bias + (scale * t)) >>> 16;
 	}
 	
-	private int getParticleIconColor()
+	private static int getParticleIconColor(BlockState blockState)
 	{
 		return calculateColorFromTexture(
 			#if MC_VER <= MC_1_21_11
-			Minecraft.getInstance().getModelManager().getBlockModelShaper().getParticleIcon(this.blockState),
+			Minecraft.getInstance().getModelManager().getBlockModelShaper().getParticleIcon(blockState),
 			#else
-			Minecraft.getInstance().getModelManager().getBlockStateModelSet().get(this.blockState).particleMaterial().sprite(),
+			Minecraft.getInstance().getModelManager().getBlockStateModelSet().get(blockState).particleMaterial().sprite(),
 			#endif
-				EColorMode.getColorMode(this.blockState.getBlock()));
+				EColorMode.getColorMode(blockState.getBlock()));
 	}
 	
 	
@@ -516,6 +525,19 @@ public class ClientBlockStateColorCache
 	// public getter //
 	//===============//
 	
+	/** 
+	 * The tint getter mutates the position it's given while blending, 
+	 * so the position needs to be reset before each use.
+	 */
+	private static DhBlockPosMutable getMutableTintPos(DhBlockPos blockPos)
+	{
+		DhBlockPosMutable mutablePos = MUTABLE_TINT_POS_REF.get();
+		mutablePos.setX(blockPos.getX());
+		mutablePos.setY(blockPos.getY());
+		mutablePos.setZ(blockPos.getZ());
+		return mutablePos;
+	}
+	
 	public int getColor(BiomeWrapper biomeWrapper, FullDataSourceV2 fullDataSource, DhBlockPos blockPos)
 	{
 		// only get the tint if the block needs to be tinted
@@ -541,7 +563,7 @@ public class ClientBlockStateColorCache
 						tintOverride.update(biomeWrapper, this.blockStateWrapper, fullDataSource, this.clientLevelWrapper);
 						
 						// try using DH's cached tint values first if possible
-						tintColor = tintOverride.tryGetBlockTint(new DhBlockPosMutable(blockPos));
+						tintColor = tintOverride.tryGetBlockTint(getMutableTintPos(blockPos));
 						if (tintColor == AbstractDhTintGetter.INVALID_COLOR)
 						{
 							// one or more tint values weren't calculated,
@@ -579,7 +601,7 @@ public class ClientBlockStateColorCache
 							// save this color to speed up future queries
 							TintWithoutLevelOverrider.setStaticColor(this.blockStateWrapper, biomeWrapper, tintColor);
 							// try to get the blended color with this new information
-							tintColor = tintOverride.tryGetBlockTint(new DhBlockPosMutable(blockPos));
+							tintColor = tintOverride.tryGetBlockTint(getMutableTintPos(blockPos));
 						#endif
 						}
 					}
@@ -611,7 +633,7 @@ public class ClientBlockStateColorCache
 				TintGetterOverride tintOverride = TintOverrideGetter.get();
 				tintOverride.update(biomeWrapper, this.blockStateWrapper, fullDataSource, this.clientLevelWrapper);
 				
-				tintColor = tintOverride.tryGetBlockTint(new DhBlockPosMutable(blockPos));
+				tintColor = tintOverride.tryGetBlockTint(getMutableTintPos(blockPos));
 				if (tintColor == AbstractDhTintGetter.INVALID_COLOR)
 				{
 					tintColor = Minecraft.getInstance()
@@ -674,6 +696,21 @@ public class ClientBlockStateColorCache
 	//================//
 	//region
 	
+	/** immutable so it can be shared between threads and levels without locking */
+	public static final class ResolvedBlockColor
+	{
+		public final int baseColor;
+		public final boolean needPostTinting;
+		public final int tintIndex;
+		
+		public ResolvedBlockColor(int baseColor, boolean needPostTinting, int tintIndex)
+		{
+			this.baseColor = baseColor;
+			this.needPostTinting = needPostTinting;
+			this.tintIndex = tintIndex;
+		}
+	}
+	
 	private enum EColorMode
 	{
 		Default,
@@ -0,0 +1,47 @@
+package com.seibel.distanthorizons.common.wrappers.block;
+
+import net.minecraft.util.BitStorage;
+
+/**
+ * A chunk section's block state palette with every entry already wrapped. <br>
+ * Each block in the section can then be read as a palette ID
+ * (a single bit storage read) and looked up in {@link SectionBlockStatePalette#wrapperByPaletteId},
+ * instead of getting the block state and resolving its wrapper for every block. <br><br>
+ *
+ * Created via {@link BlockStateWrapper#resolveSectionPalette}.
+ */
+public class SectionBlockStatePalette
+{
+	private final BitStorage storage;
+	/** indexed by the palette IDs returned from {@link SectionBlockStatePalette#getPaletteId} */
+	public final BlockStateWrapper[] wrapperByPaletteId;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	SectionBlockStatePalette(BitStorage storage, BlockStateWrapper[] wrapperByPaletteId)
+	{
+		this.storage = storage;
+		this.wrapperByPaletteId = wrapperByPaletteId;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/**
+	 * Note: if the section was modified after the palette was resolved
+	 * the returned ID may be outside of {@link SectionBlockStatePalette#wrapperByPaletteId},
+	 * callers should read the block state directly in that case.
+	 */
+	public int getPaletteId(int relX, int relY, int relZ) { return this.storage.get(getIndex(relX, relY, relZ)); }
+	
+	/** MC stores section block states in YZX order in every supported version */
+	private static int getIndex(int relX, int relY, int relZ) { return (relY << 8) | (relZ << 4) | relX; }
+	
+}
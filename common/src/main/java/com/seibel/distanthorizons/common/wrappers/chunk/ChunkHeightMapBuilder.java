@@ -0,0 +1,202 @@
+package com.seibel.distanthorizons.common.wrappers.chunk;
+
+import com.seibel.distanthorizons.common.wrappers.block.BlockStateWrapper;
+import com.seibel.distanthorizons.common.wrappers.block.SectionBlockStatePalette;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import java.util.Arrays;
+
+/**
+ * Builds DH's solid and light blocking height maps
+ * by scanning a chunk's sections top-down. <br><br>
+ *
+ * Compared to walking each column via {@link ChunkWrapper#getBlockState(int, int, int)}: <br>
+ * - air-only sections are skipped entirely <br>
+ * - block states are read directly from each section, skipping the chunk level bounds checks <br>
+ * - the solid/light blocking flags are computed once per palette entry,
+ *      each block is then just a palette ID read and an array load <br>
+ * - sections whose palette doesn't contain any solid or light blocking blocks are skipped <br>
+ * - the scan stops as soon as every column has both values
+ */
+public class ChunkHeightMapBuilder
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	private static final byte FLAG_SOLID = 1;
+	private static final byte FLAG_LIGHT_BLOCKING = 2;
+	
+	public static final int COLUMN_COUNT = LodUtil.CHUNK_WIDTH * LodUtil.CHUNK_WIDTH;
+	
+	
+	
+	//=========//
+	// builder //
+	//=========//
+	
+	/**
+	 * Both arrays are indexed via {@link ChunkHeightMapBuilder#getColumnIndex(int, int)}
+	 * and will be filled with the Y value of the highest matching block in each column,
+	 * or the given min height if the column doesn't contain a matching block.
+	 *
+	 * @param chunkWrapper the sections are read from its snapshot if present, otherwise from the live chunk
+	 * @param minBuildHeight the inclusive min Y value of the bottom section
+	 * @param minHeight the value used if no matching block is found
+	 */
+	public static void build(
+		ChunkWrapper chunkWrapper, int minBuildHeight, int minHeight,
+		ILevelWrapper levelWrapper,
+		int[] solidHeightMap, int[] lightBlockingHeightMap)
+	{
+		Arrays.fill(solidHeightMap, minHeight);
+		Arrays.fill(lightBlockingHeightMap, minHeight);
+		
+		// tracks which columns still need to find each value
+		boolean[] solidFound = new boolean[COLUMN_COUNT];
+		boolean[] lightBlockingFound = new boolean[COLUMN_COUNT];
+		int remainingValueCount = COLUMN_COUNT * 2;
+		
+		// reused between sections
+		byte[] flagsByPaletteId = new byte[BlockStateWrapper.MAX_RESOLVED_PALETTE_SIZE];
+		
+		for (int sectionIndex = chunkWrapper.getSectionCount() - 1; sectionIndex >= 0 && remainingValueCount > 0; sectionIndex--)
+		{
+			PalettedContainer<BlockState> blockStates = chunkWrapper.getSectionBlockStates(sectionIndex);
+			if (blockStates == null)
+			{
+				// missing or air-only section
+				continue;
+			}
+			
+			// null if the palette couldn't be read, in that case each block state is read directly
+			SectionBlockStatePalette palette = BlockStateWrapper.resolveSectionPalette(blockStates, levelWrapper);
+			int paletteSize = 0;
+			if (palette != null)
+			{
+				paletteSize = palette.wrapperByPaletteId.length;
+				boolean paletteHasMatchingBlock = false;
+				for (int i = 0; i < paletteSize; i++)
+				{
+					flagsByPaletteId[i] = getFlags(palette.wrapperByPaletteId[i]);
+					paletteHasMatchingBlock |= (flagsByPaletteId[i] != 0);
+				}
+				
+				if (!paletteHasMatchingBlock)
+				{
+					// sections made up entirely of non-solid, transparent blocks (IE only grass and flowers)
+					// can't change either height map
+					continue;
+				}
+			}
+			
+			int sectionMinY = minBuildHeight + (sectionIndex * LodUtil.CHUNK_WIDTH);
+			for (int relY = LodUtil.CHUNK_WIDTH - 1; relY >= 0 && remainingValueCount > 0; relY--)
+			{
+				int y = sectionMinY + relY;
+				if (y < minHeight)
+				{
+					// anything below the min height would use the min height anyway
+					return;
+				}
+				
+				for (int relZ = 0; relZ < LodUtil.CHUNK_WIDTH; relZ++)
+				{
+					for (int relX = 0; relX < LodUtil.CHUNK_WIDTH; relX++)
+					{
+						int columnIndex = getColumnIndex(relX, relZ);
+						if (solidFound[columnIndex] && lightBlockingFound[columnIndex])
+						{
+							continue;
+						}
+						
+						byte flags;
+						int paletteId = (palette != null) ? palette.getPaletteId(relX, relY, relZ) : -1;
+						if (paletteId >= 0 && paletteId < paletteSize)
+						{
+							flags = flagsByPaletteId[paletteId];
+						}
+						else
+						{
+							// no palette, or the section gained a new palette entry after it was resolved
+							flags = getFlags(blockStates, relX, relY, relZ, levelWrapper);
+						}
+						
+						if (!solidFound[columnIndex]
+							&& (flags & FLAG_SOLID) != 0)
+						{
+							solidFound[columnIndex] = true;
+							solidHeightMap[columnIndex] = y;
+							remainingValueCount--;
+						}
+						
+						if (!lightBlockingFound[columnIndex]
+							&& (flags & FLAG_LIGHT_BLOCKING) != 0)
+						{
+							lightBlockingFound[columnIndex] = true;
+							lightBlockingHeightMap[columnIndex] = y;
+							remainingValueCount--;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	private static byte getFlags(
+		PalettedContainer<BlockState> blockStates, int relX, int relY, int relZ,
+		ILevelWrapper levelWrapper)
+	{
+		BlockState blockState;
+		try
+		{
+			blockState = blockStates.get(relX, relY, relZ);
+		}
+		catch (Exception e)
+		{
+			if (ChunkWrapper.LOGGED_BLOCK_GET_ERRORS.add(e.getMessage()))
+			{
+				LOGGER.warn("Failed to get block from chunk section at relative block pos ["+relX+","+relY+","+relZ+"], air will be used instead. This error message will only be logged once. error: ["+e.getMessage()+"].", e);
+			}
+			return 0;
+		}
+		
+		if (blockState == null
+			|| blockState.isAir())
+		{
+			return 0;
+		}
+		
+		return getFlags(BlockStateWrapper.fromBlockState(blockState, levelWrapper));
+	}
+	private static byte getFlags(BlockStateWrapper blockWrapper)
+	{
+		if (blockWrapper.isAir())
+		{
+			return 0;
+		}
+		
+		byte flags = 0;
+		if (blockWrapper.isSolid())
+		{
+			flags |= FLAG_SOLID;
+		}
+		if (blockWrapper.getOpacity() != LodUtil.BLOCK_FULLY_TRANSPARENT)
+		{
+			flags |= FLAG_LIGHT_BLOCKING;
+		}
+		return flags;
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	public static int getColumnIndex(int relX, int relZ) { return relX + (relZ * LodUtil.CHUNK_WIDTH); }
+	
+}
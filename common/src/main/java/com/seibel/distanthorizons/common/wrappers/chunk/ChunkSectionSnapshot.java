@@ -0,0 +1,79 @@
+package com.seibel.distanthorizons.common.wrappers.chunk;
+
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
+
+#if MC_VER >= MC_1_18_2
+import net.minecraft.core.Holder;
+import net.minecraft.world.level.biome.Biome;
+#endif
+
+/**
+ * Copies of a chunk section's block state and biome containers. <br><br>
+ *
+ * The containers are copied directly instead of creating a new {@link LevelChunkSection},
+ * since before MC 1.21.4 the section constructor re-counts every block in the section. <br>
+ * The copies are never modified so they can be read from any thread without locking.
+ *
+ * @see ChunkWrapper#createSnapshot
+ */
+class ChunkSectionSnapshot
+{
+	final PalettedContainer<BlockState> blockStates;
+	#if MC_VER >= MC_1_18_2
+	final PalettedContainer<Holder<Biome>> biomes;
+	#endif
+	/** copied from the live section's block count so the copy doesn't need to be re-counted */
+	final boolean hasOnlyAir;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	private ChunkSectionSnapshot(
+		PalettedContainer<BlockState> blockStates,
+		#if MC_VER >= MC_1_18_2
+		PalettedContainer<Holder<Biome>> biomes,
+		#endif
+		boolean hasOnlyAir)
+	{
+		this.blockStates = blockStates;
+		#if MC_VER >= MC_1_18_2
+		this.biomes = biomes;
+		#endif
+		this.hasOnlyAir = hasOnlyAir;
+	}
+	
+	#if MC_VER >= MC_1_18_2
+	/**
+	 * Should be called on the thread that modifies the section. <br>
+	 * Returns null if the section's biomes can't be copied.
+	 */
+	@Nullable
+	static ChunkSectionSnapshot create(LevelChunkSection section)
+	{
+		PalettedContainer<BlockState> blockStateCopy = section.getStates().copy();
+		
+		#if MC_VER <= MC_1_19_2
+		PalettedContainer<Holder<Biome>> biomeCopy = section.getBiomes().copy();
+		#else
+		// only the read-only interface is exposed
+		if (!(section.getBiomes() instanceof PalettedContainer))
+		{
+			// shouldn't happen, but just in case another mod replaced the container
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		PalettedContainer<Holder<Biome>> liveBiomes = (PalettedContainer<Holder<Biome>>) section.getBiomes();
+		PalettedContainer<Holder<Biome>> biomeCopy = liveBiomes.copy();
+		#endif
+		
+		return new ChunkSectionSnapshot(blockStateCopy, biomeCopy, ChunkWrapper.isChunkSectionEmpty(section));
+	}
+	#endif
+	
+}
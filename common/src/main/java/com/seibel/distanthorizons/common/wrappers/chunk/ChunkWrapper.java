@@ -34,11 +34,15 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
 
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
 import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.PalettedContainer;
 import net.minecraft.world.level.chunk.ProtoChunk;
 import net.minecraft.world.level.levelgen.Heightmap;
 
 import com.seibel.distanthorizons.core.logging.DhLogger;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -73,6 +77,13 @@ import net.minecraft.world.level.chunk.ChunkStatus;
 import net.minecraft.world.level.chunk.status.ChunkStatus;
 #endif
 
+#if MC_VER >= MC_1_18_2
+import net.minecraft.core.Holder;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.biome.Biome;
+#endif
+
 
 public class ChunkWrapper implements IChunkWrapper
 {
@@ -86,10 +97,22 @@ public class ChunkWrapper implements IChunkWrapper
 	
 	private static boolean heightmapThreadWarningLogged = false;
 	
+	/** Debug toggle, if false {@link ChunkWrapper#createSnapshot} will return wrappers that read the live chunk. */
+	private static final boolean SNAPSHOTS_ENABLED = true;
+	
 	
 	private final ChunkAccess chunk;
 	private final DhChunkPos chunkPos;
 	private final ILevelWrapper wrappedLevel;
+	/** 
+	 * Copies of the chunk's sections taken when this wrapper was created,
+	 * null if this wrapper reads from the live chunk. <br>
+	 * Individual sections will be null if they were missing from the live chunk.
+	 * 
+	 * @see ChunkWrapper#createSnapshot
+	 */
+	@Nullable
+	private final ChunkSectionSnapshot[] snapshotSections;
 	
 	private boolean isDhBlockLightCorrect = false;
 	private boolean isDhSkyLightCorrect = false;
@@ -102,10 +125,10 @@ public class ChunkWrapper implements IChunkWrapper
 	private int minNonEmptyHeight = Integer.MIN_VALUE;
 	private int maxNonEmptyHeight = Integer.MAX_VALUE;
 	
-	/** will be null if we are using MC heightmaps */
-	private int[][] solidHeightMap = null;
-	/** will be null if we are using MC heightmaps */
-	private int[][] lightBlockingHeightMap = null;
+	/** indexed via {@link ChunkHeightMapBuilder#getColumnIndex}, will be null if we are using MC heightmaps */
+	private int[] solidHeightMap = null;
+	/** indexed via {@link ChunkHeightMapBuilder#getColumnIndex}, will be null if we are using MC heightmaps */
+	private int[] lightBlockingHeightMap = null;
 	
 	
 	
@@ -118,10 +141,12 @@ public class ChunkWrapper implements IChunkWrapper
 	 * fast since it will be called frequently on the MC
 	 * server thread and a slow method will cause server lag.
 	 */
-	public ChunkWrapper(ChunkAccess chunk, ILevelWrapper wrappedLevel)
+	public ChunkWrapper(ChunkAccess chunk, ILevelWrapper wrappedLevel) { this(chunk, wrappedLevel, null); }
+	private ChunkWrapper(ChunkAccess chunk, ILevelWrapper wrappedLevel, @Nullable ChunkSectionSnapshot[] snapshotSections)
 	{
 		this.chunk = chunk;
 		this.wrappedLevel = wrappedLevel;
+		this.snapshotSections = snapshotSections;
 		
 		#if MC_VER <= MC_1_21_11
 		this.chunkPos = new DhChunkPos(chunk.getPos().x, chunk.getPos().z);
@@ -130,8 +155,54 @@ public class ChunkWrapper implements IChunkWrapper
 		#endif
 	}
 	
+	/**
+	 * Should be called on the thread that modifies the chunk (IE the server or render thread)
+	 * when the wrapper will be handed to a different thread. <br><br>
+	 * 
+	 * The block and biome palettes/storage of each section are copied,
+	 * so block state and biome reads won't see any changes made after this call,
+	 * and won't fail if the chunk is modified while they're being read. <br>
+	 * DH's height maps are built from the copies as well,
+	 * however if MC's height maps are used they're still read from the live chunk.
+	 * Light sources are read from the copies in MC 1.20.1 and newer. <br><br>
+	 * 
+	 * Sections can only be copied in MC 1.18.2 and newer,
+	 * older versions will return a wrapper that reads from the live chunk.
+	 */
+	public static ChunkWrapper createSnapshot(ChunkAccess chunk, ILevelWrapper wrappedLevel)
+	{
+		#if MC_VER < MC_1_18_2
+		return new ChunkWrapper(chunk, wrappedLevel);
+		#else
+		if (!SNAPSHOTS_ENABLED)
+		{
+			return new ChunkWrapper(chunk, wrappedLevel);
+		}
+		
+		LevelChunkSection[] sections = chunk.getSections();
+		ChunkSectionSnapshot[] sectionCopies = new ChunkSectionSnapshot[sections.length];
+		for (int i = 0; i < sections.length; i++)
+		{
+			LevelChunkSection section = sections[i];
+			if (section == null)
+			{
+				continue;
+			}
+			
+			sectionCopies[i] = ChunkSectionSnapshot.create(section);
+			if (sectionCopies[i] == null)
+			{
+				return new ChunkWrapper(chunk, wrappedLevel);
+			}
+		}
+		
+		return new ChunkWrapper(chunk, wrappedLevel, sectionCopies);
+		#endif
+	}
+	
+	/** Snapshots are immutable, so the copy shares the same sections. */
 	@Override
-	public ChunkWrapper copy() { return new ChunkWrapper(this.chunk, this.wrappedLevel); }
+	public ChunkWrapper copy() { return new ChunkWrapper(this.chunk, this.wrappedLevel, this.snapshotSections); }
 	
 	
 	
@@ -188,15 +259,10 @@ public class ChunkWrapper implements IChunkWrapper
 		this.minNonEmptyHeight = this.getInclusiveMinBuildHeight();
 		
 		// determine the lowest empty section (bottom up)
-		LevelChunkSection[] sections = this.chunk.getSections();
-		for (int index = 0; index < sections.length; index++)
+		int sectionCount = this.getSectionCount();
+		for (int index = 0; index < sectionCount; index++)
 		{
-			if (sections[index] == null)
-			{
-				continue;
-			}
-			
-			if (!isChunkSectionEmpty(sections[index]))
+			if (!this.isSectionEmpty(index))
 			{
 				this.minNonEmptyHeight = this.getChunkSectionMinHeight(index);
 				break;
@@ -220,18 +286,12 @@ public class ChunkWrapper implements IChunkWrapper
 		this.maxNonEmptyHeight = this.getExclusiveMaxBuildHeight();
 		
 		// determine the highest empty section (top down)
-		LevelChunkSection[] sections = this.chunk.getSections();
-		for (int index = sections.length-1; index >= 0; index--)
+		for (int index = this.getSectionCount()-1; index >= 0; index--)
 		{
 			// update at each position to fix using the max height if the chunk is empty
 			this.maxNonEmptyHeight = this.getChunkSectionMinHeight(index) + 16;
 			
-			if (sections[index] == null)
-			{
-				continue;
-			}
-			
-			if (!isChunkSectionEmpty(sections[index]))
+			if (!this.isSectionEmpty(index))
 			{
 				// non-empty section found
 				break;
@@ -240,7 +300,7 @@ public class ChunkWrapper implements IChunkWrapper
 		
 		return this.maxNonEmptyHeight;
 	}
-	private static boolean isChunkSectionEmpty(LevelChunkSection section)
+	static boolean isChunkSectionEmpty(LevelChunkSection section)
 	{
 		#if MC_VER == MC_1_16_5
 		return section.isEmpty();
@@ -252,6 +312,40 @@ public class ChunkWrapper implements IChunkWrapper
 	}
 	private int getChunkSectionMinHeight(int index) { return (index * 16) + this.getInclusiveMinBuildHeight(); }
 	
+	/** @return the number of sections in the snapshot if present, otherwise in the live chunk */
+	int getSectionCount() { return (this.snapshotSections != null) ? this.snapshotSections.length : this.chunk.getSections().length; }
+	/** @return true if the section is missing or only contains air */
+	private boolean isSectionEmpty(int index)
+	{
+		if (this.snapshotSections != null)
+		{
+			ChunkSectionSnapshot snapshot = this.snapshotSections[index];
+			return snapshot == null || snapshot.hasOnlyAir;
+		}
+		else
+		{
+			LevelChunkSection section = this.chunk.getSections()[index];
+			return section == null || isChunkSectionEmpty(section);
+		}
+	}
+	/** 
+	 * Reads from the snapshot if present, otherwise from the live chunk. 
+	 * @return null if the section is missing or only contains air 
+	 */
+	@Nullable
+	PalettedContainer<BlockState> getSectionBlockStates(int index)
+	{
+		if (this.isSectionEmpty(index))
+		{
+			return null;
+		}
+		
+		return (this.snapshotSections != null) ? this.snapshotSections[index].blockStates : this.chunk.getSections()[index].getStates();
+	}
+	
+	/** @return true if this wrapper reads from copied sections instead of the live chunk */
+	public boolean isSnapshot() { return this.snapshotSections != null; }
+	
 	@Override
 	public void createDhHeightMaps()
 	{
@@ -264,54 +358,18 @@ public class ChunkWrapper implements IChunkWrapper
 		
 		
 		
-		this.solidHeightMap = new int[LodUtil.CHUNK_WIDTH][LodUtil.CHUNK_WIDTH];
-		this.lightBlockingHeightMap = new int[LodUtil.CHUNK_WIDTH][LodUtil.CHUNK_WIDTH];
+		int[] solidHeightMap = new int[ChunkHeightMapBuilder.COLUMN_COUNT];
+		int[] lightBlockingHeightMap = new int[ChunkHeightMapBuilder.COLUMN_COUNT];
 		
-		for (int x = 0; x < LodUtil.CHUNK_WIDTH; x++)
-		{
-			for (int z = 0; z < LodUtil.CHUNK_WIDTH; z++)
-			{
-				int minInclusiveBuildHeight = this.getMinNonEmptyHeight();
-				// if no blocks are found the height map will be at the bottom of the world
-				int solidHeight = minInclusiveBuildHeight;
-				int lightBlockingHeight = minInclusiveBuildHeight;
-				
-				
-				int y = this.getMaxNonEmptyHeight(); //this.getExclusiveMaxBuildHeight();
-				IBlockStateWrapper block = this.getBlockState(x, y, z);
-				while (// go down until we reach the minimum build height
-						y > minInclusiveBuildHeight
-						// keep going until we find both height map values
-						&& 
-						(
-							solidHeight == minInclusiveBuildHeight 
-							|| lightBlockingHeight == minInclusiveBuildHeight
-						)
-					)
-				{
-					// is this block solid?
-					if (solidHeight == minInclusiveBuildHeight
-						&& block.isSolid())
-					{
-						solidHeight = y;
-					}
-					
-					// is this block light blocking?
-					if (lightBlockingHeight == minInclusiveBuildHeight
-						&& block.getOpacity() != LodUtil.BLOCK_FULLY_TRANSPARENT)
-					{
-						lightBlockingHeight = y;
-					}
-					
-					// get the next block down
-					y--;
-					block = this.getBlockState(x, y, z);
-				}
-				
-				this.solidHeightMap[x][z] = solidHeight;
-				this.lightBlockingHeightMap[x][z] = lightBlockingHeight;
-			}
-		}
+		// if no blocks are found the height map will be at the bottom of the world
+		ChunkHeightMapBuilder.build(
+			this, this.getInclusiveMinBuildHeight(), this.getMinNonEmptyHeight(),
+			this.wrappedLevel,
+			solidHeightMap, lightBlockingHeightMap);
+		
+		// only assigned once complete so the getters never see a half built height map
+		this.solidHeightMap = solidHeightMap;
+		this.lightBlockingHeightMap = lightBlockingHeightMap;
 	}
 	
 	@Override
@@ -326,7 +384,7 @@ public class ChunkWrapper implements IChunkWrapper
 		}
 		else
 		{
-			return this.solidHeightMap[xRel][zRel];
+			return this.solidHeightMap[ChunkHeightMapBuilder.getColumnIndex(xRel, zRel)];
 		}
 	}
 	
@@ -341,7 +399,7 @@ public class ChunkWrapper implements IChunkWrapper
 		}
 		else
 		{
-			return this.lightBlockingHeightMap[xRel][zRel];
+			return this.lightBlockingHeightMap[ChunkHeightMapBuilder.getColumnIndex(xRel, zRel)];
 		} 
 	}
 	
@@ -349,6 +407,17 @@ public class ChunkWrapper implements IChunkWrapper
 	@Override
 	public IBiomeWrapper getBiome(int relX, int relY, int relZ)
 	{
+		#if MC_VER >= MC_1_18_2
+		if (this.snapshotSections != null)
+		{
+			Holder<Biome> snapshotBiome = this.getSnapshotNoiseBiome(relX, relY, relZ);
+			if (snapshotBiome != null)
+			{
+				return BiomeWrapper.getBiomeWrapper(snapshotBiome, this.wrappedLevel);
+			}
+		}
+		#endif
+		
 		#if MC_VER < MC_1_17_1
 		return BiomeWrapper.getBiomeWrapper(this.chunk.getBiomes().getNoiseBiome(
 				relX >> 2, relY >> 2, relZ >> 2),
@@ -382,7 +451,8 @@ public class ChunkWrapper implements IChunkWrapper
 		
 		try
 		{
-			return BlockStateWrapper.fromBlockState(this.chunk.getBlockState(blockPos), this.wrappedLevel);
+			BlockState blockState = (this.snapshotSections != null) ? this.getSnapshotBlockState(relX, relY, relZ) : this.chunk.getBlockState(blockPos);
+			return BlockStateWrapper.fromBlockState(blockState, this.wrappedLevel);
 		}
 		catch (Exception e)
 		{
@@ -407,7 +477,8 @@ public class ChunkWrapper implements IChunkWrapper
 	
 		try
 		{
-			return BlockStateWrapper.fromBlockState(this.chunk.getBlockState(pos), this.wrappedLevel, guess);
+			BlockState blockState = (this.snapshotSections != null) ? this.getSnapshotBlockState(relX, relY, relZ) : this.chunk.getBlockState(pos);
+			return BlockStateWrapper.fromBlockState(blockState, this.wrappedLevel, guess);
 		}
 			catch (Exception e)
 		{
@@ -420,90 +491,52 @@ public class ChunkWrapper implements IChunkWrapper
 		}
 	}
 	
-	/**
-	
-	 // Commented out experimental LevelChunkSection cloning logic to fix extremely rare concurrency modification issue
-	 // James has only ever seen a report relating to LevelSection concurrent modification once,
-	 // the issue can cause DH lighting/LOD building to fail due to the chunk being modified on the server.
-	 // James has only heard of this issue once, so it isn't a high priority issue.
-	 // And from James' quick look at a few different MC versions it appears the LevelChunkSection object changes quite drastically between MC versions,
-	 // meaning any cloning logic would have to either be a new wrapper or very MC version dependent, either way a lot of additional work.
-	 // Due to the large time cost and extremely rare nature of the issue, this logic is commented out unless this issue pops up again in the future. 
-	
-	 // instance variable to hold the cloned sections
-	private final LevelChunkSection[] levelChunkSections;
-	
-	 // new constructor logic to clone the sections
-	public constructor(...)
+	/** Should only be called if {@link ChunkWrapper#snapshotSections} isn't null. */
+	private BlockState getSnapshotBlockState(int relX, int y, int relZ)
 	{
-		// other constructor logic //
+		int sectionIndex = (y - this.getInclusiveMinBuildHeight()) >> 4;
+		if (sectionIndex < 0 || sectionIndex >= this.snapshotSections.length)
+		{
+			return Blocks.AIR.defaultBlockState();
+		}
 		
-		LevelChunkSection[] sections = this.chunk.getSections();	 
-		this.levelChunkSections = new LevelChunkSection[sections.length];
-		for (int i = 0; i < sections.length; i++)
+		ChunkSectionSnapshot section = this.snapshotSections[sectionIndex];
+		if (section == null 
+			|| section.hasOnlyAir)
 		{
-			LevelChunkSection section = sections[i];
-			if (section != null)
-			{
-	            // Implementation notes:
-	            // implement section cloning for older MC versions, only 1.21.4 MC (and maybe other semi recent versions) have a clean way to handle this
-	            // we probably want a wrapper object instead
-	            
-				#if MC_VER < MC_1_21_4
-				this.levelChunkSections[i] = section;
-				#else
-				this.levelChunkSections[i] = section.copy();
-				#endif
-			}
+			return Blocks.AIR.defaultBlockState();
 		}
+		
+		return section.blockStates.get(relX & 15, y & 15, relZ & 15);
 	}
 	
-	 // replacement getters
-	@Override
-	public IBlockStateWrapper getBlockState(int relX, int relY, int relZ)
-	{
-		this.throwIndexOutOfBoundsIfRelativePosOutsideChunkBounds(relX, relY, relZ);
-		return this.getBlockStateInternal(relX, relY, relZ, null);
-	}
-	
-	@Override
-	public IBlockStateWrapper getBlockState(int relX, int relY, int relZ, IMutableBlockPosWrapper mcBlockPos, IBlockStateWrapper guess)
-	{
-		this.throwIndexOutOfBoundsIfRelativePosOutsideChunkBounds(relX, relY, relZ);
-		return this.getBlockStateInternal(relX, relY, relZ, guess);
-	}
-	
-	// internal getter logic
-	private IBlockStateWrapper getBlockStateInternal(int relX, int y, int relZ, @Nullable IBlockStateWrapper guess)
+	#if MC_VER >= MC_1_18_2
+	/** 
+	 * Mirrors {@link ChunkAccess#getNoiseBiome} but reads from the snapshot. <br>
+	 * Returns null if the section is missing, in which case the live chunk should be used. 
+	 */
+	@Nullable
+	private Holder<Biome> getSnapshotNoiseBiome(int relX, int y, int relZ)
 	{
-		try
+		int minQuartY = QuartPos.fromBlock(this.getInclusiveMinBuildHeight());
+		int maxQuartY = minQuartY + QuartPos.fromBlock(this.getHeight()) - 1;
+		int quartY = Mth.clamp(QuartPos.fromBlock(y), minQuartY, maxQuartY);
+		
+		int sectionIndex = (QuartPos.toBlock(quartY) - this.getInclusiveMinBuildHeight()) >> 4;
+		if (sectionIndex < 0 || sectionIndex >= this.snapshotSections.length)
 		{
-			// attempt to get the section for this position
-			int i = (y - this.getInclusiveMinBuildHeight()) / 16;
-			if (i >= 0 && i < this.levelChunkSections.length)
-			{
-				LevelChunkSection section = this.levelChunkSections[i];
-				if (!section.hasOnlyAir())
-				{
-					if (guess != null)
-					{
-						return BlockStateWrapper.fromBlockState(section.getBlockState(relX & 15, y & 15, relZ & 15), this.wrappedLevel, guess);
-					}
-					else
-					{
-						return BlockStateWrapper.fromBlockState(section.getBlockState(relX & 15, y & 15, relZ & 15), this.wrappedLevel);
-					}
-				}
-			}
-			
-			return BlockStateWrapper.AIR;
+			return null;
 		}
-		catch (Exception e)
+		
+		ChunkSectionSnapshot section = this.snapshotSections[sectionIndex];
+		if (section == null)
 		{
-			return BlockStateWrapper.AIR;
+			return null;
 		}
+		
+		return section.biomes.get(QuartPos.fromBlock(relX) & 3, quartY & 3, QuartPos.fromBlock(relZ) & 3);
 	}
-	 */
+	#endif
 	
 	
 	
@@ -636,6 +669,13 @@ public class ChunkWrapper implements IChunkWrapper
 				this.blockLightPosList.add(new DhBlockPos(blockPos.getX(), blockPos.getY(), blockPos.getZ()));
 			});
 			#else
+			
+			if (this.snapshotSections != null)
+			{
+				this.findSnapshotBlockLightSources();
+				return this.blockLightPosList;
+			}
+			
 			this.chunk.findBlockLightSources((blockPos, blockState) ->
 			{
 				DhBlockPos pos = new DhBlockPos(blockPos.getX(), blockPos.getY(), blockPos.getZ());
@@ -651,6 +691,39 @@ public class ChunkWrapper implements IChunkWrapper
 		
 		return this.blockLightPosList;
 	}
+	#if MC_VER >= MC_1_20_1
+	/** Mirrors {@link ChunkAccess#findBlockLightSources} but reads from the snapshot. */
+	private void findSnapshotBlockLightSources()
+	{
+		for (int sectionIndex = 0; sectionIndex < this.snapshotSections.length; sectionIndex++)
+		{
+			ChunkSectionSnapshot section = this.snapshotSections[sectionIndex];
+			if (section == null
+				|| section.hasOnlyAir
+				|| !section.blockStates.maybeHas((blockState) -> blockState.getLightEmission() != 0))
+			{
+				continue;
+			}
+			
+			int sectionMinX = SectionPos.sectionToBlockCoord(this.chunkPos.getX());
+			int sectionMinY = this.getChunkSectionMinHeight(sectionIndex);
+			int sectionMinZ = SectionPos.sectionToBlockCoord(this.chunkPos.getZ());
+			for (int y = 0; y < 16; y++)
+			{
+				for (int z = 0; z < 16; z++)
+				{
+					for (int x = 0; x < 16; x++)
+					{
+						if (section.blockStates.get(x, y, z).getLightEmission() != 0)
+						{
+							this.blockLightPosList.add(new DhBlockPos(sectionMinX + x, sectionMinY + y, sectionMinZ + z));
+						}
+					}
+				}
+			}
+		}
+	}
+	#endif
 	
 	
 	
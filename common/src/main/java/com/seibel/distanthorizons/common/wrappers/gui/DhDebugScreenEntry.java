@@ -4,6 +4,7 @@ package com.seibel.distanthorizons.common.wrappers.gui;
 // not supported for older MC versions
 #else
 
+import com.seibel.distanthorizons.common.render.arena.LodBufferArenaAllocator;
 import com.seibel.distanthorizons.core.logging.f3.F3Screen;
 import com.seibel.distanthorizons.coreapi.ModInfo;
 
@@ -73,6 +74,7 @@ public class DhDebugScreenEntry implements net.minecraft.client.gui.components.d
 	{
 		List<String> messageList = new ArrayList<>();
 		F3Screen.addStringToDisplay(messageList);
+		LodBufferArenaAllocator.addStringsToDebugMenu(messageList);
 		
 		for (String message : messageList)
 		{
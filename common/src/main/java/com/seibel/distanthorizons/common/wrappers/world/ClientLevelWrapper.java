@@ -2,8 +2,11 @@ package com.seibel.distanthorizons.common.wrappers.world;
 
 import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiLevelType;
 import com.seibel.distanthorizons.api.interfaces.render.IDhApiCustomRenderRegister;
+import com.seibel.distanthorizons.common.util.ClientChunkUpdateCoalescer;
 import com.seibel.distanthorizons.common.wrappers.block.BiomeWrapper;
 import com.seibel.distanthorizons.common.wrappers.block.BlockStateWrapper;
+import com.seibel.distanthorizons.common.wrappers.block.BlockBiomeTintCache;
+import com.seibel.distanthorizons.common.wrappers.block.ClientBlockColorTable;
 import com.seibel.distanthorizons.common.wrappers.block.ClientBlockStateColorCache;
 import com.seibel.distanthorizons.common.wrappers.chunk.ChunkWrapper;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
@@ -89,7 +92,13 @@ public class ClientLevelWrapper implements IClientLevelWrapper
 	//=============//
 	//region
 	
-	protected ClientLevelWrapper(ClientLevel level) { this.level = level; }
+	protected ClientLevelWrapper(ClientLevel level) 
+	{ 
+		this.level = level;
+		
+		// models and textures are loaded by the time a level exists
+		ClientBlockColorTable.startWarmUpAsyncIfNeeded();
+	}
 	
 	//endregion
 	
@@ -249,7 +258,14 @@ public class ClientLevelWrapper implements IClientLevelWrapper
 	}
 	
 	@Override 
-	public void clearBlockColorCache() { this.blockColorCacheByBlockState.clear(); }
+	public void clearBlockColorCache() 
+	{ 
+		this.blockColorCacheByBlockState.clear();
+		BlockBiomeTintCache.clear();
+		
+		// the resource packs may have changed, re-resolve every block's base color
+		ClientBlockColorTable.startWarmUpAsync();
+	}
 	
 	private IDimensionTypeWrapper dimensionTypeWrapper = null;
 	@Override
@@ -377,6 +393,14 @@ public class ClientLevelWrapper implements IClientLevelWrapper
 	{ 
 		LEVEL_WRAPPER_REF_BY_CLIENT_LEVEL.remove(this.level);
 		this.dhLevel = null;
+		
+		// block state IDs may be different in the next level (IE when joining a different server)
+		BlockBiomeTintCache.clear();
+		// the next level will re-warm the table
+		ClientBlockColorTable.clear();
+		
+		// don't apply any queued block edits to a level that no longer exists
+		ClientChunkUpdateCoalescer.INSTANCE.removeLevel(this);
 	}
 	
 	@Override
@@ -41,7 +41,6 @@ import com.seibel.distanthorizons.core.pos.DhChunkPos;
 import com.seibel.distanthorizons.core.sql.dto.BeaconBeamDTO;
 import com.seibel.distanthorizons.core.util.ExceptionUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
-import com.seibel.distanthorizons.core.util.TimerUtil;
 import com.seibel.distanthorizons.core.util.gridList.ArrayGridList;
 import com.seibel.distanthorizons.core.util.objects.UncheckedInterruptedException;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.ChunkLightStorage;
@@ -124,7 +123,8 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 	public final InternalServerGenerator internalServerGenerator;
 	public final ChunkFileReader chunkFileReader;
 	
-	private final Timer chunkSaveIgnoreTimer = TimerUtil.CreateTimer("ChunkSaveIgnoreTimer");
+	/** releases positions ignored by {@link BatchGenerationEnvironment#updateManager} once MC has had time to save them */
+	public final ChunkIgnoreExpiryWheel chunkIgnoreExpiryWheel;
 	
 	
 	
@@ -190,7 +190,8 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 		this.dhServerLevel = dhServerLevel;
 		this.updateManager = WorldChunkUpdateManager.INSTANCE.getByLevelWrapper(this.dhServerLevel.getServerLevelWrapper());
 		this.globalParams = new GlobalWorldGenParams(dhServerLevel);
-		this.internalServerGenerator = new InternalServerGenerator(this.globalParams, this.dhServerLevel);
+		this.chunkIgnoreExpiryWheel = new ChunkIgnoreExpiryWheel(this.updateManager, MS_TO_IGNORE_CHUNK_AFTER_COMPLETION);
+		this.internalServerGenerator = new InternalServerGenerator(this.globalParams, this.dhServerLevel, this.chunkIgnoreExpiryWheel);
 		this.chunkFileReader = new ChunkFileReader(this.globalParams);
 		
 		ChunkGenerator generator = ((ServerLevelWrapper) (dhServerLevel.getServerLevelWrapper())).getLevel().getChunkSource().getGenerator();
@@ -333,10 +334,13 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 		LightGetterAdaptor lightGetterAdaptor = new LightGetterAdaptor(this.globalParams.mcServerLevel);
 		DummyLightEngine dummyLightEngine = new DummyLightEngine(lightGetterAdaptor);
 		
+		// the extra radius of 8 is to account for structure references which need a chunk radius of 8
+		int borderChunkRadius = 8;
+		
 		// reused data between each offset
-		Map<DhChunkPos, ChunkLightStorage> chunkSkyLightingByDhPos = Collections.synchronizedMap(new HashMap<>());
-		Map<DhChunkPos, ChunkLightStorage> chunkBlockLightingByDhPos = Collections.synchronizedMap(new HashMap<>());
-		Map<DhChunkPos, ChunkWrapper> chunkWrappersByDhPos = Collections.synchronizedMap(new HashMap<>());
+		GenerationEventChunkGrid chunkGrid = new GenerationEventChunkGrid(
+			genEvent.minPos.getX(), genEvent.minPos.getZ(),
+			genEvent.widthInChunks, borderChunkRadius);
 		
 		
 		
@@ -344,32 +348,28 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 		// read existing chunks from file //
 		//================================//
 		
-		HashMap<DhChunkPos, CompletableFuture<ChunkWrapper>> readFutureByDhChunkPos = new HashMap<>();
+		ArrayList<CompletableFuture<ChunkWrapper>> readFutureList = new ArrayList<>(genEvent.widthInChunks * genEvent.widthInChunks);
 		
-		Iterator<ChunkPos> existingChunkPosIterator = ChunkPosGenStream.getIterator(
-			genEvent.minPos.getX(), genEvent.minPos.getZ(),
-			genEvent.widthInChunks,
-			// 0 radius -> only pull existing chunks from disk
-			0);
-		while (existingChunkPosIterator.hasNext())
+		// only pull chunks inside the generation area from disk
+		int eventMaxChunkX = genEvent.minPos.getX() + genEvent.widthInChunks;
+		int eventMaxChunkZ = genEvent.minPos.getZ() + genEvent.widthInChunks;
+		for (int chunkZ = genEvent.minPos.getZ(); chunkZ < eventMaxChunkZ; chunkZ++)
 		{
-			ChunkPos chunkPos = existingChunkPosIterator.next();
-			DhChunkPos dhChunkPos = McObjectConverter.Convert(chunkPos);
-			
-			CompletableFuture<ChunkWrapper> getExistingChunkFuture
-				// running async allows file IO to run in parallel when C2ME is present
-				= this.chunkFileReader.createEmptyOrPreExistingChunkWrapperAsync(
-					dhChunkPos.getX(), dhChunkPos.getZ(),
-					chunkSkyLightingByDhPos, chunkBlockLightingByDhPos, chunkWrappersByDhPos);
-			
-			readFutureByDhChunkPos.put(dhChunkPos, getExistingChunkFuture);
+			for (int chunkX = genEvent.minPos.getX(); chunkX < eventMaxChunkX; chunkX++)
+			{
+				CompletableFuture<ChunkWrapper> getExistingChunkFuture
+					// running async allows file IO to run in parallel when C2ME is present
+					= this.chunkFileReader.createEmptyOrPreExistingChunkWrapperAsync(chunkX, chunkZ, chunkGrid);
+				
+				readFutureList.add(getExistingChunkFuture);
+			}
 		}
 		
 		// normally DH will handle each of these futures serially
 		// but if C2ME is present these will be completed in parallel
-		for (CompletableFuture<ChunkWrapper> readChunkFuture : readFutureByDhChunkPos.values())
+		for (int i = 0; i < readFutureList.size(); i++) // regular for loop since enhanced for loops increase GC pressure slightly
 		{
-			readChunkFuture.join();
+			readFutureList.get(i).join();
 		}
 		
 		
@@ -381,18 +381,24 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 		Iterator<ChunkPos> emptyChunkPosIterator = ChunkPosGenStream.getIterator(
 			genEvent.minPos.getX(), genEvent.minPos.getZ(), 
 			genEvent.widthInChunks,
-			// the extra radius of 8 is to account for structure references which need a chunk radius of 8
-			8);
+			borderChunkRadius);
 		while (emptyChunkPosIterator.hasNext())
 		{
 			ChunkPos chunkPos = emptyChunkPosIterator.next();
-			DhChunkPos dhChunkPos = McObjectConverter.Convert(chunkPos);
+			#if MC_VER <= MC_1_21_11
+			int chunkX = chunkPos.x;
+			int chunkZ = chunkPos.z;
+			#else
+			int chunkX = chunkPos.x();
+			int chunkZ = chunkPos.z();
+			#endif
 			
-			// create empty chunks outside the generation radius
-			if (!readFutureByDhChunkPos.containsKey(dhChunkPos))
+			// create empty chunks outside the generation radius,
+			// every position inside the radius was populated by the read step
+			if (chunkGrid.getChunkWrapper(chunkX, chunkZ) == null)
 			{
 				ChunkWrapper chunkWrapper = this.chunkFileReader.CreateProtoChunkWrapper(this.globalParams.mcServerLevel, chunkPos);
-				chunkWrappersByDhPos.put(dhChunkPos, chunkWrapper);
+				chunkGrid.setChunkWrapper(chunkX, chunkZ, chunkWrapper);
 			}
 		}
 		
@@ -427,8 +433,8 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 					// get/create the list of chunks we're going to generate
 					IEmptyChunkRetrievalFunc fallbackChunkGetterFunc =
 						(chunkPosX, chunkPosZ) -> Objects.requireNonNull(
-							chunkWrappersByDhPos.get(new DhChunkPos(chunkPosX, chunkPosZ)).getChunk(),
-							() -> String.format("Requested chunk [%d, %d] unavailable during world generation", chunkPosX, chunkPosZ));
+							chunkGrid.getChunkWrapper(chunkPosX, chunkPosZ),
+							() -> String.format("Requested chunk [%d, %d] unavailable during world generation", chunkPosX, chunkPosZ)).getChunk();
 					
 					ArrayGridList<ChunkAccess> regionChunks = new ArrayGridList<>(
 							refSize,
@@ -468,12 +474,14 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 					{
 						// ArrayGridList's use relative positions and don't have a center position
 						// so we need to use the offsetFinal to select the correct position
-						DhChunkPos chunkPos = new DhChunkPos(relX + refPosX + xOffsetFinal, relZ + refPosZ + zOffsetFinal);
+						int chunkX = relX + refPosX + xOffsetFinal;
+						int chunkZ = relZ + refPosZ + zOffsetFinal;
 						ChunkAccess chunk = regionChunks.get(relX, relZ);
 						
-						if (chunkWrappersByDhPos.containsKey(chunkPos))
+						ChunkWrapper existingChunkWrapper = chunkGrid.getChunkWrapper(chunkX, chunkZ);
+						if (existingChunkWrapper != null)
 						{
-							chunkWrapperList.set(relX, relZ, chunkWrappersByDhPos.get(chunkPos));
+							chunkWrapperList.set(relX, relZ, existingChunkWrapper);
 						}
 						else if (chunk != null)
 						{
@@ -482,30 +490,28 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 							chunkWrapperList.set(relX, relZ, chunkWrapper);
 							
 							// try setting the wrapper's lighting
-							if (chunkBlockLightingByDhPos.containsKey(chunkWrapper.getChunkPos()))
+							
+							// block
+							ChunkLightStorage blockLightStorage = chunkGrid.getBlockLightStorage(chunkX, chunkZ);
+							// if the light storage is empty then we should try generating the lighting
+							// ourselves, the light data is probably missing
+							if (blockLightStorage != null
+								&& !blockLightStorage.isEmpty())
 							{
-								// block
-								ChunkLightStorage blockLightStorage = chunkBlockLightingByDhPos.get(chunkWrapper.getChunkPos());
-								// if the light storage is empty then we should try generating the lighting
-								// ourselves, the light data is probably missing
-								if (blockLightStorage != null
-									&& !blockLightStorage.isEmpty())
-								{
-									chunkWrapper.setBlockLightStorage(blockLightStorage);
-									chunkWrapper.setIsDhBlockLightCorrect(true);
-								}
-								
-								// sky
-								ChunkLightStorage skyLightStorage = chunkSkyLightingByDhPos.get(chunkWrapper.getChunkPos());
-								if (skyLightStorage != null
-									&& !skyLightStorage.isEmpty())
-								{
-									chunkWrapper.setSkyLightStorage(skyLightStorage);
-									chunkWrapper.setIsDhSkyLightCorrect(true);
-								}
+								chunkWrapper.setBlockLightStorage(blockLightStorage);
+								chunkWrapper.setIsDhBlockLightCorrect(true);
 							}
 							
-							chunkWrappersByDhPos.put(chunkPos, chunkWrapper);
+							// sky
+							ChunkLightStorage skyLightStorage = chunkGrid.getSkyLightStorage(chunkX, chunkZ);
+							if (skyLightStorage != null
+								&& !skyLightStorage.isEmpty())
+							{
+								chunkWrapper.setSkyLightStorage(skyLightStorage);
+								chunkWrapper.setIsDhSkyLightCorrect(true);
+							}
+							
+							chunkGrid.setChunkWrapper(chunkX, chunkZ, chunkWrapper);
 						}
 						else //if (chunk == null)
 						{
@@ -536,26 +542,26 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 			// submit generated chunks //
 			//=========================//
 			
-			Iterator<ChunkPos> iterator = ChunkPosGenStream.getIterator(genEvent.minPos.getX(), genEvent.minPos.getZ(), genEvent.widthInChunks, 0);
-			while (iterator.hasNext())
+			for (int chunkZ = genEvent.minPos.getZ(); chunkZ < eventMaxChunkZ; chunkZ++)
 			{
-				ChunkPos chunkPos = iterator.next();
-				DhChunkPos dhChunkPos = McObjectConverter.Convert(chunkPos);
-				ChunkWrapper wrappedChunk = chunkWrappersByDhPos.get(dhChunkPos);
-				
-				// only pass along chunks that have been generated up to BIOMES
-				// this is to prevent issues with generating existing
-				if (wrappedChunk.getStatus().isOrAfter(ChunkStatus.BIOMES))
+				for (int chunkX = genEvent.minPos.getX(); chunkX < eventMaxChunkX; chunkX++)
 				{
-					genEvent.resultConsumer.accept(wrappedChunk);
-				}
-				else
-				{
-					// this shouldn't happen, but if it does log it
-					if (!this.generatedChunkWithoutBiomeWarningLogged)
+					ChunkWrapper wrappedChunk = chunkGrid.getChunkWrapper(chunkX, chunkZ);
+					
+					// only pass along chunks that have been generated up to BIOMES
+					// this is to prevent issues with generating existing
+					if (wrappedChunk.getStatus().isOrAfter(ChunkStatus.BIOMES))
 					{
-						this.generatedChunkWithoutBiomeWarningLogged = true;
-						LOGGER.warn("Chunk [" + dhChunkPos + "] wasn't generated up to BIOMES, world gen may appear empty.");
+						genEvent.resultConsumer.accept(wrappedChunk);
+					}
+					else
+					{
+						// this shouldn't happen, but if it does log it
+						if (!this.generatedChunkWithoutBiomeWarningLogged)
+						{
+							this.generatedChunkWithoutBiomeWarningLogged = true;
+							LOGGER.warn("Chunk [" + wrappedChunk.getChunkPos() + "] wasn't generated up to BIOMES, world gen may appear empty.");
+						}
 					}
 				}
 			}
@@ -727,17 +733,7 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 				
 				// give MC a few seconds to save the chunk before
 				// we can process update events there again
-				this.chunkSaveIgnoreTimer.schedule(new TimerTask()
-				{
-					@Override
-					public void run() 
-					{
-						if (BatchGenerationEnvironment.this.updateManager != null)
-						{
-							BatchGenerationEnvironment.this.updateManager.removePosToIgnore(chunkWrapper.getChunkPos());
-						}
-					}
-				}, MS_TO_IGNORE_CHUNK_AFTER_COMPLETION);
+				this.chunkIgnoreExpiryWheel.scheduleRelease(chunkWrapper.getChunkPos());
 			}
 		}
 	}
@@ -785,6 +781,7 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 		
 		
 		this.chunkFileReader.close();
+		this.chunkIgnoreExpiryWheel.close();
 		
 	}
 	
@@ -794,6 +791,9 @@ public final class BatchGenerationEnvironment implements IBatchGeneratorEnvironm
 	// helper methods //
 	//================//
 	
+	/** @return how many chunk positions are waiting for MC to save them before their update events are handled again */
+	public int getIgnoredChunkPosCount() { return this.chunkIgnoreExpiryWheel.getIgnoredPosCount(); }
+	
 	/**
 	 * Called before code that may run for an extended period of time. <br>
 	 * This is necessary to allow canceling world gen since waiting
@@ -0,0 +1,285 @@
+package com.seibel.distanthorizons.common.wrappers.worldGeneration;
+
+import com.seibel.distanthorizons.core.api.internal.chunkUpdating.ChunkUpdateQueueManager;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhChunkPos;
+import com.seibel.distanthorizons.core.util.TimerUtil;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashed timing wheel used to stop ignoring chunk update events
+ * for a position a few seconds after DH finished generating it. <br><br>
+ *
+ * Previously every generated chunk scheduled its own {@link TimerTask},
+ * during pregen that could queue tens of thousands of tasks onto a single timer thread. <br>
+ * Instead positions are stored as packed longs in one of {@link ChunkIgnoreExpiryWheel#SLOT_COUNT} buckets
+ * based on their expiry time, a single repeating task then
+ * releases each bucket in a batch as the wheel turns. <br><br>
+ *
+ * If a position is scheduled again before it expires its expiry time is just
+ * pushed back, so each position is only ever tracked once.
+ */
+public class ChunkIgnoreExpiryWheel implements AutoCloseable
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	/** how often the wheel moves to the next slot */
+	public static final int TICK_MS = 250;
+	/**
+	 * 32 slots * 250ms = 8 seconds per rotation,
+	 * longer than the ignore time so positions generally only need one rotation.
+	 * Longer delays still work, positions that haven't expired yet are just re-slotted.
+	 */
+	public static final int SLOT_COUNT = 32;
+	
+	
+	@Nullable
+	private final ChunkUpdateQueueManager updateManager;
+	private final long expiryDelayMs;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	/** guarded by {@link ChunkIgnoreExpiryWheel#lock} */
+	private final LongArrayList[] slots = new LongArrayList[SLOT_COUNT];
+	/** packed chunk pos -> expiry time in MS, guarded by {@link ChunkIgnoreExpiryWheel#lock} */
+	private final Long2LongOpenHashMap expiryMsByChunkPos = new Long2LongOpenHashMap();
+	/** guarded by {@link ChunkIgnoreExpiryWheel#lock} */
+	private long lastTickIndex = System.currentTimeMillis() / TICK_MS;
+	
+	private final Timer timer = TimerUtil.CreateTimer("ChunkSaveIgnoreTimer");
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ChunkIgnoreExpiryWheel(@Nullable ChunkUpdateQueueManager updateManager, long expiryDelayMs)
+	{
+		this.updateManager = updateManager;
+		this.expiryDelayMs = expiryDelayMs;
+		
+		for (int i = 0; i < SLOT_COUNT; i++)
+		{
+			this.slots[i] = new LongArrayList();
+		}
+		
+		this.timer.scheduleAtFixedRate(new TimerTask()
+		{
+			@Override
+			public void run() { ChunkIgnoreExpiryWheel.this.tick(); }
+		}, TICK_MS, TICK_MS);
+	}
+	
+	
+	
+	//=========//
+	// methods //
+	//=========//
+	
+	/**
+	 * Should be called once DH is done with the given position,
+	 * the position will stop being ignored after the expiry delay.
+	 */
+	public void scheduleRelease(DhChunkPos chunkPos)
+	{
+		if (this.updateManager == null)
+		{
+			return;
+		}
+		
+		long packedPos = packPos(chunkPos.getX(), chunkPos.getZ());
+		long expiryMs = System.currentTimeMillis() + this.expiryDelayMs;
+		
+		this.lock.lock();
+		try
+		{
+			// if the position is already being tracked
+			// it's already in a slot and will be re-slotted when that slot is reached
+			if (this.expiryMsByChunkPos.put(packedPos, expiryMs) == this.expiryMsByChunkPos.defaultReturnValue())
+			{
+				this.slots[getSlotIndex(expiryMs)].add(packedPos);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	/** releases every expired position in the slots the wheel has passed since the last tick */
+	private void tick()
+	{
+		long nowMs = System.currentTimeMillis();
+		long nowTickIndex = nowMs / TICK_MS;
+		LongArrayList expiredPosList = new LongArrayList();
+		
+		this.lock.lock();
+		try
+		{
+			// timer ticks can be delayed, so make sure no slots are skipped
+			long firstTickIndex = Math.max(this.lastTickIndex + 1, nowTickIndex - (SLOT_COUNT - 1));
+			this.lastTickIndex = nowTickIndex;
+			
+			for (long tickIndex = firstTickIndex; tickIndex <= nowTickIndex; tickIndex++)
+			{
+				this.releaseSlot((int) (tickIndex % SLOT_COUNT), nowMs, expiredPosList);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		if (expiredPosList.isEmpty())
+		{
+			return;
+		}
+		
+		
+		// release outside the lock so scheduling isn't blocked by the update manager
+		try
+		{
+			for (int i = 0; i < expiredPosList.size(); i++)
+			{
+				long packedPos = expiredPosList.getLong(i);
+				this.updateManager.removePosToIgnore(new DhChunkPos(unpackX(packedPos), unpackZ(packedPos)));
+			}
+		}
+		catch (Exception e)
+		{
+			// timer threads die if an exception escapes
+			LOGGER.warn("Unexpected error releasing ignored chunk positions, error: ["+e.getMessage()+"].", e);
+		}
+	}
+	
+	
+	
+	/** must be called while holding the lock */
+	private void releaseSlot(int slotIndex, long nowMs, LongArrayList expiredPosList)
+	{
+		LongArrayList slot = this.slots[slotIndex];
+		if (slot.isEmpty())
+		{
+			return;
+		}
+		
+		LongArrayList pendingPosList = null;
+		for (int i = 0; i < slot.size(); i++) // regular for loop since enhanced for loops increase GC pressure slightly
+		{
+			long packedPos = slot.getLong(i);
+			if (this.expiryMsByChunkPos.get(packedPos) <= nowMs)
+			{
+				this.expiryMsByChunkPos.remove(packedPos);
+				expiredPosList.add(packedPos);
+			}
+			else
+			{
+				// the position was re-scheduled or needs another rotation
+				if (pendingPosList == null)
+				{
+					pendingPosList = new LongArrayList();
+				}
+				pendingPosList.add(packedPos);
+			}
+		}
+		slot.clear();
+		
+		if (pendingPosList != null)
+		{
+			for (int i = 0; i < pendingPosList.size(); i++)
+			{
+				long packedPos = pendingPosList.getLong(i);
+				int newSlotIndex = getSlotIndex(this.expiryMsByChunkPos.get(packedPos));
+				if (newSlotIndex == slotIndex)
+				{
+					// don't put the position back into the slot we're currently releasing,
+					// otherwise it'd wait a full extra rotation
+					newSlotIndex = (newSlotIndex + 1) % SLOT_COUNT;
+				}
+				this.slots[newSlotIndex].add(packedPos);
+			}
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return how many positions are currently ignored and waiting to be released */
+	public int getIgnoredPosCount()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.expiryMsByChunkPos.size();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static int getSlotIndex(long timeMs) { return (int) ((timeMs / TICK_MS) % SLOT_COUNT); }
+	
+	/** same layout as MC's packed ChunkPos */
+	private static long packPos(int x, int z) { return (x & 0xFFFFFFFFL) | ((z & 0xFFFFFFFFL) << 32); }
+	private static int unpackX(long packedPos) { return (int) packedPos; }
+	private static int unpackZ(long packedPos) { return (int) (packedPos >>> 32); }
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	/**
+	 * Stops the wheel and immediately releases every tracked position,
+	 * otherwise they'd be ignored until the level is reloaded.
+	 */
+	@Override
+	public void close()
+	{
+		this.timer.cancel();
+		
+		LongArrayList remainingPosList;
+		this.lock.lock();
+		try
+		{
+			remainingPosList = new LongArrayList(this.expiryMsByChunkPos.keySet());
+			this.expiryMsByChunkPos.clear();
+			for (LongArrayList slot : this.slots)
+			{
+				slot.clear();
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		if (this.updateManager != null)
+		{
+			for (int i = 0; i < remainingPosList.size(); i++)
+			{
+				long packedPos = remainingPosList.getLong(i);
+				this.updateManager.removePosToIgnore(new DhChunkPos(unpackX(packedPos), unpackZ(packedPos)));
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,129 @@
+package com.seibel.distanthorizons.common.wrappers.worldGeneration;
+
+import com.seibel.distanthorizons.common.wrappers.chunk.ChunkWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.ChunkLightStorage;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Flat, {@link GenerationEvent} scoped storage for the chunks
+ * and lighting used while generating that event. <br><br>
+ *
+ * Everything is indexed by the chunk's offset from {@link GenerationEventChunkGrid#minChunkX}/{@link GenerationEventChunkGrid#minChunkZ}
+ * so lookups don't need to allocate a position object or box anything. <br><br>
+ *
+ * Thread safety: <br>
+ * Each position is only written by a single task during the read phase
+ * (which may run in parallel if C2ME is present), and
+ * only the event's thread reads/writes after those tasks are joined,
+ * joining the read futures guarantees the written values are visible,
+ * so no locking is needed.
+ */
+public class GenerationEventChunkGrid
+{
+	public final int minChunkX;
+	public final int minChunkZ;
+	/** width of the grid in chunks */
+	public final int width;
+	
+	private final ChunkWrapper[] chunkWrappers;
+	private final ChunkLightStorage[] skyLightStorages;
+	private final ChunkLightStorage[] blockLightStorages;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/**
+	 * @param borderRadius how many chunks outside the generated area need to be stored,
+	 *                     IE the radius used for border/structure reference chunks
+	 */
+	public GenerationEventChunkGrid(int eventMinChunkX, int eventMinChunkZ, int eventWidthInChunks, int borderRadius)
+	{
+		this.minChunkX = eventMinChunkX - borderRadius;
+		this.minChunkZ = eventMinChunkZ - borderRadius;
+		this.width = eventWidthInChunks + (borderRadius * 2);
+		
+		int size = this.width * this.width;
+		this.chunkWrappers = new ChunkWrapper[size];
+		this.skyLightStorages = new ChunkLightStorage[size];
+		this.blockLightStorages = new ChunkLightStorage[size];
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return null if no chunk has been stored at the given position or if the position is out of bounds */
+	@Nullable
+	public ChunkWrapper getChunkWrapper(int chunkX, int chunkZ)
+	{
+		int index = this.getIndex(chunkX, chunkZ);
+		return (index != -1) ? this.chunkWrappers[index] : null;
+	}
+	
+	@Nullable
+	public ChunkLightStorage getSkyLightStorage(int chunkX, int chunkZ)
+	{
+		int index = this.getIndex(chunkX, chunkZ);
+		return (index != -1) ? this.skyLightStorages[index] : null;
+	}
+	
+	@Nullable
+	public ChunkLightStorage getBlockLightStorage(int chunkX, int chunkZ)
+	{
+		int index = this.getIndex(chunkX, chunkZ);
+		return (index != -1) ? this.blockLightStorages[index] : null;
+	}
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	/** @throws IndexOutOfBoundsException if the position is outside the grid */
+	public void setChunkWrapper(int chunkX, int chunkZ, ChunkWrapper chunkWrapper) { this.chunkWrappers[this.getIndexOrThrow(chunkX, chunkZ)] = chunkWrapper; }
+	
+	/** @throws IndexOutOfBoundsException if the position is outside the grid */
+	public void setLightStorage(int chunkX, int chunkZ, ChunkLightStorage skyLightStorage, ChunkLightStorage blockLightStorage)
+	{
+		int index = this.getIndexOrThrow(chunkX, chunkZ);
+		this.skyLightStorages[index] = skyLightStorage;
+		this.blockLightStorages[index] = blockLightStorage;
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** @return -1 if the position is out of bounds */
+	private int getIndex(int chunkX, int chunkZ)
+	{
+		int relX = chunkX - this.minChunkX;
+		int relZ = chunkZ - this.minChunkZ;
+		if (relX < 0 || relX >= this.width
+			|| relZ < 0 || relZ >= this.width)
+		{
+			return -1;
+		}
+		
+		return relX + (relZ * this.width);
+	}
+	
+	private int getIndexOrThrow(int chunkX, int chunkZ)
+	{
+		int index = this.getIndex(chunkX, chunkZ);
+		if (index == -1)
+		{
+			throw new IndexOutOfBoundsException("Chunk pos ["+chunkX+","+chunkZ+"] is outside the generation event grid with min pos ["+this.minChunkX+","+this.minChunkZ+"] and width ["+this.width+"].");
+		}
+		return index;
+	}
+	
+}
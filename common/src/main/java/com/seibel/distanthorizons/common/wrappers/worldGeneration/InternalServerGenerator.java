@@ -19,7 +19,6 @@ import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhChunkPos;
 import com.seibel.distanthorizons.core.util.ExceptionUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
-import com.seibel.distanthorizons.core.util.TimerUtil;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.modAccessor.IC2meAccessor;
 import com.seibel.distanthorizons.coreapi.ModInfo;
@@ -41,7 +40,6 @@ import net.minecraft.world.level.chunk.status.ChunkStatus;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.function.Function;
 
 public class InternalServerGenerator
 {
@@ -57,15 +55,6 @@ public class InternalServerGenerator
 	
 	private static final IC2meAccessor C2ME_ACCESSOR = ModAccessorInjector.INSTANCE.get(IC2meAccessor.class);
 	
-	/**
-	 * Used to revert the ignore logic in {@link SharedApi} so
-	 * that a given chunk pos can be handled again.
-	 * A timer is used so we don't have to inject into MC's code and it works sell enough
-	 * most of the time.
-	 * If a chunk does get through due the timeout not being long enough that isn't the end of the world.
-	 */
-	private static final int MS_TO_IGNORE_CHUNK_AFTER_COMPLETION = 5_000;
-	
 	#if MC_VER < MC_1_21_5
 	private static final TicketType<ChunkPos> DH_SERVER_GEN_TICKET = TicketType.create("dh_server_gen_ticket", Comparator.comparingLong(ChunkPos::toLong));
 	#elif MC_VER < MC_1_21_9
@@ -81,7 +70,7 @@ public class InternalServerGenerator
 	private final IDhServerLevel dhServerLevel;
 	@Nullable
 	private final ChunkUpdateQueueManager updateManager;
-	private final Timer chunkSaveIgnoreTimer = TimerUtil.CreateTimer("ChunkSaveIgnoreTimer");
+	private final ChunkIgnoreExpiryWheel chunkIgnoreExpiryWheel;
 	
 	
 	
@@ -89,11 +78,12 @@ public class InternalServerGenerator
 	// constructor //
 	//=============//
 	
-	public InternalServerGenerator(GlobalWorldGenParams params, IDhServerLevel dhServerLevel)
+	public InternalServerGenerator(GlobalWorldGenParams params, IDhServerLevel dhServerLevel, ChunkIgnoreExpiryWheel chunkIgnoreExpiryWheel)
 	{
 		this.params = params;
 		this.dhServerLevel = dhServerLevel;
 		this.updateManager = WorldChunkUpdateManager.INSTANCE.getByLevelWrapper(this.dhServerLevel.getServerLevelWrapper());
+		this.chunkIgnoreExpiryWheel = chunkIgnoreExpiryWheel;
 	}
 	
 	
@@ -112,15 +102,19 @@ public class InternalServerGenerator
 			// create gen requests //
 			//=====================//
 			
-			ArrayList<CompletableFuture<ChunkAccess>> getChunkFutureList = new ArrayList<>();
+			ArrayList<ChunkPos> chunkPosList = getChunkPosList(genEvent);
+			ArrayList<CompletableFuture<ChunkAccess>> getChunkFutureList = new ArrayList<>(chunkPosList.size());
+			
+			int batchSize = getChunkRequestBatchSize();
+			for (int batchStart = 0; batchStart < chunkPosList.size(); batchStart += batchSize)
 			{
-				Iterator<ChunkPos> chunkPosIterator = ChunkPosGenStream.getIterator(genEvent.minPos.getX(), genEvent.minPos.getZ(), genEvent.widthInChunks, 0);
-				while (chunkPosIterator.hasNext())
+				List<ChunkPos> batchPosList = chunkPosList.subList(batchStart, Math.min(batchStart + batchSize, chunkPosList.size()));
+				ArrayList<CompletableFuture<ChunkAccess>> batchFutureList = this.requestChunksFromServerAsync(batchPosList);
+				for (int i = 0; i < batchFutureList.size(); i++)
 				{
-					ChunkPos chunkPos = chunkPosIterator.next();
-					
+					ChunkPos chunkPos = batchPosList.get(i);
 					CompletableFuture<ChunkAccess> requestChunkFuture =
-						this.requestChunkFromServerAsync(chunkPos)
+						batchFutureList.get(i)
 							// log errors if necessary
 							.whenCompleteAsync(
 								(chunk, throwable) ->
@@ -196,11 +190,12 @@ public class InternalServerGenerator
 		finally
 		{
 			// release all chunks from the server to prevent out of memory issues
-			Iterator<ChunkPos> chunkPosIterator = ChunkPosGenStream.getIterator(genEvent.minPos.getX(), genEvent.minPos.getZ(), genEvent.widthInChunks, 0);
-			while (chunkPosIterator.hasNext())
+			ArrayList<ChunkPos> chunkPosList = getChunkPosList(genEvent);
+			int batchSize = getChunkRequestBatchSize();
+			for (int batchStart = 0; batchStart < chunkPosList.size(); batchStart += batchSize)
 			{
-				ChunkPos chunkPos = chunkPosIterator.next();
-				this.releaseChunkFromServer(this.params.mcServerLevel, this.params.dhServerLevel, chunkPos);
+				List<ChunkPos> batchPosList = chunkPosList.subList(batchStart, Math.min(batchStart + batchSize, chunkPosList.size()));
+				this.releaseChunksFromServer(this.params.mcServerLevel, batchPosList);
 			}
 		}
 	}
@@ -237,68 +232,133 @@ public class InternalServerGenerator
 			LOGGER.warn(c2meWarning);
 		}
 	}
-	private CompletableFuture<ChunkAccess> requestChunkFromServerAsync(ChunkPos chunkPos)
+	
+	/**
+	 * How many chunks are requested/released in each main thread task. <br>
+	 * Each main thread task has a fixed cost (ticket updates, chunk map ticks, etc.)
+	 * so batching reduces DH's impact on the server's MSPT.
+	 */
+	private static int getChunkRequestBatchSize() { return Math.max(1, Config.Common.WorldGenerator.internalServerChunkRequestBatchSize.get()); }
+	
+	private static ArrayList<ChunkPos> getChunkPosList(GenerationEvent genEvent)
 	{
-		return CompletableFuture.supplyAsync(() ->
+		ArrayList<ChunkPos> chunkPosList = new ArrayList<>(genEvent.widthInChunks * genEvent.widthInChunks);
+		Iterator<ChunkPos> chunkPosIterator = ChunkPosGenStream.getIterator(genEvent.minPos.getX(), genEvent.minPos.getZ(), genEvent.widthInChunks, 0);
+		while (chunkPosIterator.hasNext())
 		{
-			ServerLevel level = this.params.mcServerLevel;
-			
-			// ignore chunk update events for this position
-			if (this.updateManager != null)
+			chunkPosList.add(chunkPosIterator.next());
+		}
+		return chunkPosList;
+	}
+	
+	/**
+	 * Adds tickets for every chunk in a single main thread task,
+	 * then schedules their generation after a single ticket update.
+	 * 
+	 * @return a future for each given position, in the same order
+	 */
+	private ArrayList<CompletableFuture<ChunkAccess>> requestChunksFromServerAsync(List<ChunkPos> chunkPosList)
+	{
+		ServerLevel level = this.params.mcServerLevel;
+		
+		CompletableFuture<ArrayList<CompletableFuture<ChunkAccess>>> scheduleFuture = CompletableFuture.supplyAsync(() ->
+		{
+			for (int i = 0; i < chunkPosList.size(); i++) // regular for loop since enhanced for loops increase GC pressure slightly
 			{
-				this.updateManager.addPosToIgnore(McObjectConverter.Convert(chunkPos));
+				ChunkPos chunkPos = chunkPosList.get(i);
+				
+				// ignore chunk update events for this position
+				if (this.updateManager != null)
+				{
+					this.updateManager.addPosToIgnore(McObjectConverter.Convert(chunkPos));
+				}
+				
+				#if MC_VER < MC_1_21_5
+				int chunkLevel = 33; // 33 is equivalent to FULL Chunk
+				level.getChunkSource().distanceManager.addTicket(DH_SERVER_GEN_TICKET, chunkPos, chunkLevel, chunkPos);
+				#else
+				level.getChunkSource().addTicketWithRadius(DH_SERVER_GEN_TICKET, chunkPos, 0);
+				#endif
 			}
 			
-			#if MC_VER < MC_1_21_5
-			int chunkLevel = 33; // 33 is equivalent to FULL Chunk
-			level.getChunkSource().distanceManager.addTicket(DH_SERVER_GEN_TICKET, chunkPos, chunkLevel, chunkPos);
-			#else
-			level.getChunkSource().addTicketWithRadius(DH_SERVER_GEN_TICKET, chunkPos, 0);
-			#endif
-			
-			// probably not the most optimal to run updates here, but fast enough
+			// only needs to be run once for the whole batch
 			level.getChunkSource().distanceManager.runAllUpdates(level.getChunkSource().chunkMap);
 			
-			ChunkHolder chunkHolder = level.getChunkSource().chunkMap
-				.getUpdatingChunkIfPresent(
-					#if MC_VER <= MC_1_21_11 chunkPos.toLong() #else chunkPos.pack() #endif
-				);
-			if (chunkHolder == null)
+			ArrayList<CompletableFuture<ChunkAccess>> chunkFutureList = new ArrayList<>(chunkPosList.size());
+			for (int i = 0; i < chunkPosList.size(); i++)
 			{
-				throw new IllegalStateException("No chunk chunkHolder for pos ["+chunkPos+"] after ticket has been added.");
+				ChunkPos chunkPos = chunkPosList.get(i);
+				try
+				{
+					chunkFutureList.add(scheduleFeatureGeneration(level, chunkPos));
+				}
+				catch (Exception e)
+				{
+					// a single failed chunk shouldn't fail the rest of the batch
+					CompletableFuture<ChunkAccess> failedFuture = new CompletableFuture<>();
+					failedFuture.completeExceptionally(e);
+					chunkFutureList.add(failedFuture);
+				}
 			}
+			return chunkFutureList;
 			
-			#if MC_VER <= MC_1_20_4
-			return chunkHolder.getOrScheduleFuture(ChunkStatus.FEATURES, level.getChunkSource().chunkMap)
-					.thenApply(result -> result.left().orElseThrow(() -> new RuntimeException(result.right().get().toString()))); // can throw if the server is shutting down
-			#elif MC_VER <= MC_1_20_6
-			return chunkHolder.getOrScheduleFuture(ChunkStatus.FEATURES, level.getChunkSource().chunkMap)
-					.thenApply(result -> result.orElseThrow(() -> new RuntimeException(result.toString()))); // can throw if the server is shutting down
-			#else
-			return chunkHolder.scheduleChunkGenerationTask(ChunkStatus.FEATURES, level.getChunkSource().chunkMap)
-					.thenApply(result -> result.orElseThrow(() -> new RuntimeException(result.getError()))); // can throw if the server is shutting down
-			#endif
-			
-		}, this.params.mcServerLevel.getChunkSource().chunkMap.mainThreadExecutor)
-		.thenCompose(Function.identity());
+		}, level.getChunkSource().chunkMap.mainThreadExecutor);
+		
+		ArrayList<CompletableFuture<ChunkAccess>> resultFutureList = new ArrayList<>(chunkPosList.size());
+		for (int i = 0; i < chunkPosList.size(); i++)
+		{
+			final int index = i;
+			resultFutureList.add(scheduleFuture.thenCompose((chunkFutureList) -> chunkFutureList.get(index)));
+		}
+		return resultFutureList;
+	}
+	/** must be called on the server thread after the chunk's ticket has been added and updated */
+	private static CompletableFuture<ChunkAccess> scheduleFeatureGeneration(ServerLevel level, ChunkPos chunkPos)
+	{
+		ChunkHolder chunkHolder = level.getChunkSource().chunkMap
+			.getUpdatingChunkIfPresent(
+				#if MC_VER <= MC_1_21_11 chunkPos.toLong() #else chunkPos.pack() #endif
+			);
+		if (chunkHolder == null)
+		{
+			throw new IllegalStateException("No chunk chunkHolder for pos ["+chunkPos+"] after ticket has been added.");
+		}
+		
+		#if MC_VER <= MC_1_20_4
+		return chunkHolder.getOrScheduleFuture(ChunkStatus.FEATURES, level.getChunkSource().chunkMap)
+				.thenApply(result -> result.left().orElseThrow(() -> new RuntimeException(result.right().get().toString()))); // can throw if the server is shutting down
+		#elif MC_VER <= MC_1_20_6
+		return chunkHolder.getOrScheduleFuture(ChunkStatus.FEATURES, level.getChunkSource().chunkMap)
+				.thenApply(result -> result.orElseThrow(() -> new RuntimeException(result.toString()))); // can throw if the server is shutting down
+		#else
+		return chunkHolder.scheduleChunkGenerationTask(ChunkStatus.FEATURES, level.getChunkSource().chunkMap)
+				.thenApply(result -> result.orElseThrow(() -> new RuntimeException(result.getError()))); // can throw if the server is shutting down
+		#endif
 	}
 	/**
+	 * Removes the tickets for every given chunk in a single main thread task. <br>
 	 * mitigates out of memory issues in the vanilla chunk system. <br>
 	 * See: https://github.com/pop4959/Chunky/pull/383
 	 */
-	private void releaseChunkFromServer(ServerLevel level, IDhServerLevel dhLevel, ChunkPos chunkPos)
+	private void releaseChunksFromServer(ServerLevel level, List<ChunkPos> chunkPosList)
 	{
 		level.getChunkSource().chunkMap.mainThreadExecutor.execute(() ->
 		{
 			try
 			{
-				#if MC_VER < MC_1_21_5
-				int chunkLevel = 33; // 33 is equivalent to FULL Chunk
-				level.getChunkSource().distanceManager.removeTicket(DH_SERVER_GEN_TICKET, chunkPos, chunkLevel, chunkPos);
-				#else
-				level.getChunkSource().removeTicketWithRadius(DH_SERVER_GEN_TICKET, chunkPos, 0);
-				#endif
+				for (int i = 0; i < chunkPosList.size(); i++) // regular for loop since enhanced for loops increase GC pressure slightly
+				{
+					ChunkPos chunkPos = chunkPosList.get(i);
+					
+					#if MC_VER < MC_1_21_5
+					int chunkLevel = 33; // 33 is equivalent to FULL Chunk
+					level.getChunkSource().distanceManager.removeTicket(DH_SERVER_GEN_TICKET, chunkPos, chunkLevel, chunkPos);
+					#else
+					level.getChunkSource().removeTicketWithRadius(DH_SERVER_GEN_TICKET, chunkPos, 0);
+					#endif
+				}
 				
+				// only needs to be run once for the whole batch
 				level.getChunkSource().chunkMap.tick(() -> false);
 				
 				#if MC_VER > MC_1_16_5
@@ -306,24 +366,16 @@ public class InternalServerGenerator
 				#endif
 				
 				
-				// give MC a few seconds to save the chunk before
+				// give MC a few seconds to save the chunks before
 				// we can process update events there again
-				this.chunkSaveIgnoreTimer.schedule(new TimerTask()
+				for (int i = 0; i < chunkPosList.size(); i++)
 				{
-					@Override
-					public void run() 
-					{
-						if (InternalServerGenerator.this.updateManager != null)
-						{
-							InternalServerGenerator.this.updateManager.removePosToIgnore(McObjectConverter.Convert(chunkPos));
-						}
-					}
-				}, MS_TO_IGNORE_CHUNK_AFTER_COMPLETION);
-				
+					this.chunkIgnoreExpiryWheel.scheduleRelease(McObjectConverter.Convert(chunkPosList.get(i)));
+				}
 			}
 			catch (Exception e)
 			{
-				LOGGER.warn("Failed to release chunk back to internal server. Error: ["+e.getMessage()+"]", e);
+				LOGGER.warn("Failed to release chunks back to internal server. Error: ["+e.getMessage()+"]", e);
 			}
 		});
 	}
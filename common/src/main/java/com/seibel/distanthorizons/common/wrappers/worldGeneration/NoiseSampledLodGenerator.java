@@ -0,0 +1,369 @@
+package com.seibel.distanthorizons.common.wrappers.worldGeneration;
+
+import com.seibel.distanthorizons.api.DhApi;
+import com.seibel.distanthorizons.api.enums.EDhApiDetailLevel;
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiDistantGeneratorMode;
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGeneratorReturnType;
+import com.seibel.distanthorizons.api.interfaces.override.worldGenerator.IDhApiWorldGenerator;
+import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiLevelLoadEvent;
+import com.seibel.distanthorizons.api.methods.events.sharedParameterObjects.DhApiEventParam;
+import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
+import com.seibel.distanthorizons.api.objects.data.IDhApiFullDataSource;
+import com.seibel.distanthorizons.common.wrappers.block.BiomeWrapper;
+import com.seibel.distanthorizons.common.wrappers.block.BlockStateWrapper;
+import com.seibel.distanthorizons.common.wrappers.world.ServerLevelWrapper;
+import com.seibel.distanthorizons.common.wrappers.worldGeneration.params.GlobalWorldGenParams;
+import com.seibel.distanthorizons.core.api.internal.SharedApi;
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.level.IDhServerLevel;
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import com.seibel.distanthorizons.coreapi.ModInfo;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.levelgen.NoiseBasedChunkGenerator;
+import org.jetbrains.annotations.Nullable;
+
+#if MC_VER >= MC_1_19_2
+import net.minecraft.core.Holder;
+import net.minecraft.core.QuartPos;
+import net.minecraft.tags.BiomeTags;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.Biomes;
+import net.minecraft.world.level.biome.Climate;
+import net.minecraft.world.level.levelgen.Heightmap;
+#endif
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Generates far away LODs by sampling the chunk generator's noise directly
+ * at the LOD's data column spacing, instead of creating and stepping ProtoChunks. <br>
+ * Only the surface height, sea level and biome are sampled, so
+ * caves, structures, features and surface rules are skipped. <br><br>
+ *
+ * LODs with a detail level below {@link NoiseSampledLodGenerator#getMinSampledDetailLevel()}
+ * are still generated using the normal {@link BatchGenerationEnvironment} step pipeline. <br><br>
+ *
+ * Levels that don't use MC's noise generator or that have a ceiling (IE the nether)
+ * aren't bound and will use the normal world generator, 
+ * since their surface can't be found by sampling a height.
+ *
+ * @see LevelLoadBinding
+ */
+public class NoiseSampledLodGenerator implements IDhApiWorldGenerator
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	private static final byte LARGEST_DETAIL_LEVEL = (byte) (EDhApiDetailLevel.BLOCK.detailLevel + 12);
+	/** the normal pipeline always generates events of this width */
+	private static final int PIPELINE_EVENT_CHUNK_WIDTH = 4;
+	
+	
+	private final BatchGenerationEnvironment pipelineGenerator;
+	private final GlobalWorldGenParams globalParams;
+	private final ILevelWrapper levelWrapper;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	//region
+	
+	private NoiseSampledLodGenerator(IDhServerLevel dhServerLevel)
+	{
+		this.pipelineGenerator = new BatchGenerationEnvironment(dhServerLevel);
+		this.globalParams = this.pipelineGenerator.globalParams;
+		this.levelWrapper = dhServerLevel.getServerLevelWrapper();
+	}
+	
+	/** @return null if the given level's surface can't be found by sampling its noise */
+	@Nullable
+	public static NoiseSampledLodGenerator tryCreate(IDhServerLevel dhServerLevel)
+	{
+		#if MC_VER >= MC_1_19_2
+		ServerLevel level = ((ServerLevelWrapper) dhServerLevel.getServerLevelWrapper()).getLevel();
+		if (!(level.getChunkSource().getGenerator() instanceof NoiseBasedChunkGenerator)
+			|| level.dimensionType().hasCeiling())
+		{
+			return null;
+		}
+		
+		return new NoiseSampledLodGenerator(dhServerLevel);
+		#else
+		// random states are required to sample the noise outside of a chunk
+		return null;
+		#endif
+	}
+	
+	//endregion
+	
+	
+	
+	//============//
+	// properties //
+	//============//
+	//region
+	
+	@Override
+	public byte getSmallestDataDetailLevel() { return (byte) (EDhApiDetailLevel.BLOCK.detailLevel); }
+	@Override
+	public byte getLargestDataDetailLevel() { return LARGEST_DETAIL_LEVEL; }
+	
+	/** 
+	 * LODs at or above this detail level will be sampled from noise. <br>
+	 * Each LOD column is a single noise sample, 
+	 * so lower values are slower and don't add much detail.
+	 */
+	public static byte getMinSampledDetailLevel()
+	{
+		int minDetailLevel = Config.Common.WorldGenerator.noiseSampledGenerationMinDetailLevel.get();
+		return (byte) Math.max(EDhApiDetailLevel.BLOCK.detailLevel, Math.min(LARGEST_DETAIL_LEVEL, minDetailLevel));
+	}
+	
+	@Override
+	public EDhApiWorldGeneratorReturnType getReturnType() { return EDhApiWorldGeneratorReturnType.API_DATA_SOURCES; }
+	
+	/** the sampled data is built from known wrappers, so it only needs to be validated when debugging */
+	@Override
+	public boolean runApiValidation() { return ModInfo.IS_DEV_BUILD; }
+	
+	//endregion
+	
+	
+	
+	//================//
+	// LOD generation //
+	//================//
+	//region
+	
+	@Override
+	public CompletableFuture<Void> generateLod(
+			int chunkPosMinX, int chunkPosMinZ,
+			int posX, int posZ, byte detailLevel,
+			IDhApiFullDataSource pooledFullDataSource,
+			EDhApiDistantGeneratorMode generatorMode, ExecutorService worldGeneratorThreadPool,
+			Consumer<IDhApiFullDataSource> resultConsumer)
+	{
+		if (detailLevel < getMinSampledDetailLevel()
+			|| generatorMode == EDhApiDistantGeneratorMode.PRE_EXISTING_ONLY
+			|| generatorMode == EDhApiDistantGeneratorMode.INTERNAL_SERVER)
+		{
+			int chunkWidth = Math.max(1, (pooledFullDataSource.getWidthInDataColumns() << detailLevel) / 16);
+			return this.generateWithPipeline(chunkPosMinX, chunkPosMinZ, chunkWidth, generatorMode, worldGeneratorThreadPool);
+		}
+		
+		return CompletableFuture.runAsync(() ->
+			{
+				this.sampleNoise(chunkPosMinX, chunkPosMinZ, detailLevel, pooledFullDataSource);
+				resultConsumer.accept(pooledFullDataSource);
+			},
+			worldGeneratorThreadPool);
+	}
+	
+	/**
+	 * Generated chunks are submitted as normal chunk updates instead of being written
+	 * to the data source, since converting chunks into LOD data is handled by core. <br>
+	 * Because of that the data source is never passed to the result consumer.
+	 */
+	private CompletableFuture<Void> generateWithPipeline(
+			int chunkPosMinX, int chunkPosMinZ, int chunkWidth,
+			EDhApiDistantGeneratorMode generatorMode, ExecutorService worldGeneratorThreadPool)
+	{
+		EDhApiWorldGenerationStep targetStep = getTargetStep(generatorMode);
+		Consumer<IChunkWrapper> chunkConsumer =
+				(chunkWrapper) -> SharedApi.INSTANCE.applyChunkUpdate(chunkWrapper, this.levelWrapper);
+		
+		// the pipeline expects small even width events, so larger LODs are split up
+		int eventWidth = Math.min(PIPELINE_EVENT_CHUNK_WIDTH, chunkWidth + (chunkWidth % 2));
+		int eventCountPerAxis = (chunkWidth + eventWidth - 1) / eventWidth;
+		
+		CompletableFuture<?>[] eventFutures = new CompletableFuture<?>[eventCountPerAxis * eventCountPerAxis];
+		for (int x = 0; x < eventCountPerAxis; x++)
+		{
+			for (int z = 0; z < eventCountPerAxis; z++)
+			{
+				eventFutures[x * eventCountPerAxis + z] = this.pipelineGenerator.queueGenEvent(
+						chunkPosMinX + (x * eventWidth), chunkPosMinZ + (z * eventWidth), eventWidth,
+						generatorMode, targetStep,
+						worldGeneratorThreadPool, chunkConsumer);
+			}
+		}
+		return CompletableFuture.allOf(eventFutures);
+	}
+	private static EDhApiWorldGenerationStep getTargetStep(EDhApiDistantGeneratorMode generatorMode)
+	{
+		switch (generatorMode)
+		{
+			case PRE_EXISTING_ONLY:
+				return EDhApiWorldGenerationStep.EMPTY;
+			case SURFACE:
+				return EDhApiWorldGenerationStep.SURFACE;
+			default:
+				return EDhApiWorldGenerationStep.FEATURES;
+		}
+	}
+	
+	private void sampleNoise(int chunkPosMinX, int chunkPosMinZ, byte detailLevel, IDhApiFullDataSource dataSource)
+	{
+		#if MC_VER >= MC_1_19_2
+		
+		Climate.Sampler climateSampler = this.globalParams.randomState.sampler();
+		int seaLevel = this.globalParams.generator.getSeaLevel();
+		int minY = this.levelWrapper.getMinHeight();
+		int maxY = minY + this.levelWrapper.getMaxHeight();
+		
+		BlockStateWrapper stone = BlockStateWrapper.fromBlockState(Blocks.STONE.defaultBlockState(), this.levelWrapper);
+		BlockStateWrapper water = BlockStateWrapper.fromBlockState(Blocks.WATER.defaultBlockState(), this.levelWrapper);
+		
+		int columnBlockWidth = 1 << detailLevel;
+		int minBlockX = chunkPosMinX * 16;
+		int minBlockZ = chunkPosMinZ * 16;
+		
+		// re-used between columns to reduce GC pressure
+		ArrayList<DhApiTerrainDataPoint> dataPoints = new ArrayList<>(4);
+		
+		int width = dataSource.getWidthInDataColumns();
+		for (int x = 0; x < width; x++)
+		{
+			for (int z = 0; z < width; z++)
+			{
+				// sampling the center represents the column better than its corner
+				int blockX = minBlockX + (x * columnBlockWidth) + (columnBlockWidth / 2);
+				int blockZ = minBlockZ + (z * columnBlockWidth) + (columnBlockWidth / 2);
+				
+				// WORLD_SURFACE_WG includes fluids, so the ocean floor only needs to be sampled if the column could be underwater
+				int surfaceY = this.globalParams.generator.getBaseHeight(blockX, blockZ, Heightmap.Types.WORLD_SURFACE_WG, this.globalParams.mcServerLevel, this.globalParams.randomState);
+				int groundY = surfaceY;
+				if (surfaceY <= seaLevel)
+				{
+					groundY = this.globalParams.generator.getBaseHeight(blockX, blockZ, Heightmap.Types.OCEAN_FLOOR_WG, this.globalParams.mcServerLevel, this.globalParams.randomState);
+				}
+				groundY = Math.max(minY + 1, Math.min(groundY, maxY));
+				surfaceY = Math.max(groundY, Math.min(surfaceY, maxY));
+				
+				Holder<Biome> biome = this.globalParams.generator.getBiomeSource().getNoiseBiome(
+						QuartPos.fromBlock(blockX), QuartPos.fromBlock(groundY), QuartPos.fromBlock(blockZ),
+						climateSampler);
+				BiomeWrapper biomeWrapper = BiomeWrapper.getBiomeWrapper(biome, this.levelWrapper);
+				boolean underwater = surfaceY > groundY;
+				
+				
+				// sky lighting can be ignored since DH will light the LODs after they've been submitted
+				dataPoints.clear();
+				if (groundY - 1 > minY)
+				{
+					dataPoints.add(DhApiTerrainDataPoint.create((byte)0, 0, 0, minY, groundY - 1, stone, biomeWrapper));
+				}
+				dataPoints.add(DhApiTerrainDataPoint.create((byte)0, 0, 0, groundY - 1, groundY, this.getTopBlock(biome, underwater), biomeWrapper));
+				if (underwater)
+				{
+					dataPoints.add(DhApiTerrainDataPoint.create((byte)0, 0, 0, groundY, surfaceY, water, biomeWrapper));
+				}
+				if (surfaceY < maxY)
+				{
+					dataPoints.add(DhApiTerrainDataPoint.create((byte)0, 0, 15, surfaceY, maxY, BlockStateWrapper.AIR, biomeWrapper));
+				}
+				
+				dataSource.setApiDataPointColumn(x, z, dataPoints);
+			}
+		}
+		
+		#endif
+	}
+	
+	#if MC_VER >= MC_1_19_2
+	/**
+	 * Surface rules are too expensive to run per column,
+	 * so a rough approximation is picked based on the biome instead.
+	 */
+	private BlockStateWrapper getTopBlock(Holder<Biome> biome, boolean underwater)
+	{
+		if (underwater
+			|| biome.is(BiomeTags.IS_BEACH)
+			|| biome.is(Biomes.DESERT))
+		{
+			return BlockStateWrapper.fromBlockState(Blocks.SAND.defaultBlockState(), this.levelWrapper);
+		}
+		else if (biome.is(BiomeTags.IS_BADLANDS))
+		{
+			return BlockStateWrapper.fromBlockState(Blocks.RED_SAND.defaultBlockState(), this.levelWrapper);
+		}
+		else if (biome.value().getBaseTemperature() < 0.15f)
+		{
+			return BlockStateWrapper.fromBlockState(Blocks.SNOW_BLOCK.defaultBlockState(), this.levelWrapper);
+		}
+		else
+		{
+			return BlockStateWrapper.fromBlockState(Blocks.GRASS_BLOCK.defaultBlockState(), this.levelWrapper);
+		}
+	}
+	#endif
+	
+	/** core only maintains its own pipeline generator, so the one used here needs to be cleaned up manually */
+	@Override
+	public void preGeneratorTaskStart() { this.pipelineGenerator.updateAllFutures(); }
+	
+	//endregion
+	
+	
+	
+	//=========//
+	// cleanup //
+	//=========//
+	//region
+	
+	@Override
+	public void close() { this.pipelineGenerator.close(); }
+	
+	//endregion
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	/** Replaces the world generator for each supported server level that's loaded while noise sampled generation is enabled. */
+	public static class LevelLoadBinding extends DhApiLevelLoadEvent
+	{
+		@Override
+		public void onLevelLoad(DhApiEventParam<DhApiLevelLoadEvent.EventParam> event)
+		{
+			if (!Config.Common.WorldGenerator.enableNoiseSampledGeneration.get()
+				|| !(event.value.levelWrapper instanceof ServerLevelWrapper))
+			{
+				return;
+			}
+			
+			ServerLevelWrapper levelWrapper = (ServerLevelWrapper) event.value.levelWrapper;
+			if (!(levelWrapper.getDhLevel() instanceof IDhServerLevel))
+			{
+				LOGGER.warn("Unable to add noise sampled world generator to level ["+levelWrapper.getDhIdentifier()+"], no server level is loaded.");
+				return;
+			}
+			
+			NoiseSampledLodGenerator generator = tryCreate((IDhServerLevel) levelWrapper.getDhLevel());
+			if (generator == null)
+			{
+				LOGGER.info("Noise sampling isn't supported for level ["+levelWrapper.getDhIdentifier()+"], it will use the normal world generator.");
+				return;
+			}
+			
+			DhApi.worldGenOverrides.registerWorldGeneratorOverride(levelWrapper, generator);
+		}
+	}
+	
+	//endregion
+	
+	
+	
+}
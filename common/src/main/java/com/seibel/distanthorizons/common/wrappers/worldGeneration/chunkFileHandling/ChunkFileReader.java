@@ -1,15 +1,14 @@
 package com.seibel.distanthorizons.common.wrappers.worldGeneration.chunkFileHandling;
 
 import com.seibel.distanthorizons.common.wrappers.chunk.ChunkWrapper;
+import com.seibel.distanthorizons.common.wrappers.worldGeneration.GenerationEventChunkGrid;
 import com.seibel.distanthorizons.common.wrappers.worldGeneration.params.GlobalWorldGenParams;
 import com.seibel.distanthorizons.common.wrappers.worldGeneration.mimicObject.RegionFileStorageExternalCache;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.logging.DhLogger;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
-import com.seibel.distanthorizons.core.pos.DhChunkPos;
 import com.seibel.distanthorizons.core.util.ExceptionUtil;
-import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.ChunkLightStorage;
 import com.seibel.distanthorizons.core.wrapperInterfaces.modAccessor.IModChecker;
 
 import net.minecraft.nbt.CompoundTag;
@@ -23,7 +22,6 @@ import net.minecraft.world.level.chunk.storage.RegionFileStorage;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -119,18 +117,16 @@ public class ChunkFileReader implements AutoCloseable
 	 */
 	public CompletableFuture<ChunkWrapper> createEmptyOrPreExistingChunkWrapperAsync(
 		int chunkX, int chunkZ,
-		Map<DhChunkPos, ChunkLightStorage> chunkSkyLightingByDhPos,
-		Map<DhChunkPos, ChunkLightStorage> chunkBlockLightingByDhPos,
-		Map<DhChunkPos, ChunkWrapper> generatedChunkWrapperByDhPos)
+		GenerationEventChunkGrid chunkGrid)
 	{
-		ChunkPos chunkPos = new ChunkPos(chunkX, chunkZ);
-		DhChunkPos dhChunkPos = new DhChunkPos(chunkX, chunkZ);
-		
-		if (generatedChunkWrapperByDhPos.containsKey(dhChunkPos))
+		ChunkWrapper existingChunkWrapper = chunkGrid.getChunkWrapper(chunkX, chunkZ);
+		if (existingChunkWrapper != null)
 		{
-			return CompletableFuture.completedFuture(generatedChunkWrapperByDhPos.get(dhChunkPos));
+			return CompletableFuture.completedFuture(existingChunkWrapper);
 		}
 		
+		ChunkPos chunkPos = new ChunkPos(chunkX, chunkZ);
+		
 		return this.getChunkNbtDataAsync(chunkPos)
 			.thenApply((CompoundTag chunkData) ->
 			{
@@ -141,8 +137,7 @@ public class ChunkFileReader implements AutoCloseable
 				if (combinedLights != null)
 				{
 					// may be empty, empty checks are handled later
-					chunkSkyLightingByDhPos.put(dhChunkPos, combinedLights.skyLightStorage);
-					chunkBlockLightingByDhPos.put(dhChunkPos, combinedLights.blockLightStorage);
+					chunkGrid.setLightStorage(chunkX, chunkZ, combinedLights.skyLightStorage, combinedLights.blockLightStorage);
 				}
 				
 				return newChunkWrapper;
@@ -161,7 +156,7 @@ public class ChunkFileReader implements AutoCloseable
 			})
 			.thenApply((ChunkWrapper newChunkWrapper) ->
 			{
-				generatedChunkWrapperByDhPos.put(dhChunkPos, newChunkWrapper);
+				chunkGrid.setChunkWrapper(chunkX, chunkZ, newChunkWrapper);
 				return newChunkWrapper;
 			});
 	}
@@ -0,0 +1,331 @@
+package com.seibel.distanthorizons.common.wrappers.worldGeneration.chunkFileHandling;
+
+import net.minecraft.nbt.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Streaming alternative to {@link NbtIo#read} for chunk NBT data. <br><br>
+ *
+ * Only the root level fields DH uses ({@link ChunkNbtStreamReader#USED_ROOT_KEYS})
+ * are decoded into tags, everything else (entities, block entities, ticks, structures, etc.)
+ * is skipped directly in the stream without allocating anything. <br>
+ * On heavily built worlds most of a chunk's NBT data is entity/block entity data,
+ * so this significantly reduces the allocations and parse time needed to import a chunk. <br><br>
+ *
+ * The returned {@link CompoundTag} has the same layout as MC's,
+ * so {@link ChunkCompoundTagParser} can be used without any changes. <br><br>
+ *
+ * NBT format source: https://minecraft.wiki/w/NBT_format
+ */
+public class ChunkNbtStreamReader
+{
+	/**
+	 * Root level chunk fields used by {@link ChunkCompoundTagParser}. <br>
+	 * "Level" is used by MC 1.17 and older, which nest all chunk data in a "Level" compound.
+	 */
+	public static final Set<String> USED_ROOT_KEYS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+		"Level",
+		"DataVersion",
+		"xPos", "yPos", "zPos",
+		"Status",
+		"InhabitedTime",
+		"isLightOn",
+		"Heightmaps",
+		"sections", "Sections",
+		// MC 1.17 and older store biomes per chunk instead of per section
+		"Biomes"
+	)));
+	
+	/** same as MC's limit, prevents malformed data from causing a stack overflow */
+	private static final int MAX_DEPTH = 512;
+	
+	private static final byte TAG_END = 0;
+	private static final byte TAG_BYTE = 1;
+	private static final byte TAG_SHORT = 2;
+	private static final byte TAG_INT = 3;
+	private static final byte TAG_LONG = 4;
+	private static final byte TAG_FLOAT = 5;
+	private static final byte TAG_DOUBLE = 6;
+	private static final byte TAG_BYTE_ARRAY = 7;
+	private static final byte TAG_STRING = 8;
+	private static final byte TAG_LIST = 9;
+	private static final byte TAG_COMPOUND = 10;
+	private static final byte TAG_INT_ARRAY = 11;
+	private static final byte TAG_LONG_ARRAY = 12;
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
+	
+	/**
+	 * Reads a named root compound (IE the format written by MC's region files)
+	 * and only decodes the fields DH needs.
+	 *
+	 * @return null if the root tag isn't a compound
+	 */
+	@Nullable
+	public static CompoundTag readChunk(DataInput input) throws IOException
+	{
+		byte rootType = input.readByte();
+		if (rootType != TAG_COMPOUND)
+		{
+			return null;
+		}
+		
+		// the root name is always empty for chunk data
+		skipString(input);
+		return readFilteredCompound(input, USED_ROOT_KEYS, 0);
+	}
+	
+	/**
+	 * Reads a compound, only keeping the keys in the given set.
+	 * Compounds with a key of "Level" are filtered using the same key set.
+	 */
+	private static CompoundTag readFilteredCompound(DataInput input, Set<String> keysToKeep, int depth) throws IOException
+	{
+		CompoundTag compound = new CompoundTag();
+		
+		byte type;
+		while ((type = input.readByte()) != TAG_END)
+		{
+			String key = input.readUTF();
+			if (!keysToKeep.contains(key))
+			{
+				skipPayload(input, type, depth + 1);
+			}
+			else if (type == TAG_COMPOUND && key.equals("Level"))
+			{
+				compound.put(key, readFilteredCompound(input, keysToKeep, depth + 1));
+			}
+			else
+			{
+				compound.put(key, readPayload(input, type, depth + 1));
+			}
+		}
+		
+		return compound;
+	}
+	
+	/** Reads the full payload for the given tag type. */
+	private static Tag readPayload(DataInput input, byte type, int depth) throws IOException
+	{
+		if (depth > MAX_DEPTH)
+		{
+			throw new IOException("NBT data exceeded the max depth of ["+MAX_DEPTH+"].");
+		}
+		
+		switch (type)
+		{
+			case TAG_BYTE:
+				return ByteTag.valueOf(input.readByte());
+			case TAG_SHORT:
+				return ShortTag.valueOf(input.readShort());
+			case TAG_INT:
+				return IntTag.valueOf(input.readInt());
+			case TAG_LONG:
+				return LongTag.valueOf(input.readLong());
+			case TAG_FLOAT:
+				return FloatTag.valueOf(input.readFloat());
+			case TAG_DOUBLE:
+				return DoubleTag.valueOf(input.readDouble());
+			case TAG_BYTE_ARRAY:
+			{
+				byte[] array = new byte[readArrayLength(input)];
+				input.readFully(array);
+				return new ByteArrayTag(array);
+			}
+			case TAG_STRING:
+				return StringTag.valueOf(input.readUTF());
+			case TAG_LIST:
+			{
+				byte elementType = input.readByte();
+				int length = readArrayLength(input);
+				
+				ListTag list = new ListTag();
+				for (int i = 0; i < length; i++)
+				{
+					list.add(readPayload(input, elementType, depth + 1));
+				}
+				return list;
+			}
+			case TAG_COMPOUND:
+			{
+				CompoundTag compound = new CompoundTag();
+				byte childType;
+				while ((childType = input.readByte()) != TAG_END)
+				{
+					String key = input.readUTF();
+					compound.put(key, readPayload(input, childType, depth + 1));
+				}
+				return compound;
+			}
+			case TAG_INT_ARRAY:
+			{
+				int[] array = new int[readArrayLength(input)];
+				for (int i = 0; i < array.length; i++)
+				{
+					array[i] = input.readInt();
+				}
+				return new IntArrayTag(array);
+			}
+			case TAG_LONG_ARRAY:
+			{
+				long[] array = new long[readArrayLength(input)];
+				for (int i = 0; i < array.length; i++)
+				{
+					array[i] = input.readLong();
+				}
+				return new LongArrayTag(array);
+			}
+			default:
+				throw new IOException("Unknown NBT tag type: ["+type+"].");
+		}
+	}
+	
+	
+	
+	//==========//
+	// skipping //
+	//==========//
+	
+	/** Skips the payload for the given tag type without allocating anything. */
+	private static void skipPayload(DataInput input, byte type, int depth) throws IOException
+	{
+		if (depth > MAX_DEPTH)
+		{
+			throw new IOException("NBT data exceeded the max depth of ["+MAX_DEPTH+"].");
+		}
+		
+		switch (type)
+		{
+			case TAG_BYTE:
+				skipFully(input, 1);
+				break;
+			case TAG_SHORT:
+				skipFully(input, 2);
+				break;
+			case TAG_INT:
+			case TAG_FLOAT:
+				skipFully(input, 4);
+				break;
+			case TAG_LONG:
+			case TAG_DOUBLE:
+				skipFully(input, 8);
+				break;
+			case TAG_BYTE_ARRAY:
+				skipFully(input, readArrayLength(input));
+				break;
+			case TAG_STRING:
+				skipString(input);
+				break;
+			case TAG_LIST:
+			{
+				byte elementType = input.readByte();
+				int length = readArrayLength(input);
+				
+				int fixedSize = getFixedPayloadSize(elementType);
+				if (fixedSize != -1)
+				{
+					skipFully(input, (long) fixedSize * length);
+				}
+				else
+				{
+					for (int i = 0; i < length; i++)
+					{
+						skipPayload(input, elementType, depth + 1);
+					}
+				}
+				break;
+			}
+			case TAG_COMPOUND:
+			{
+				byte childType;
+				while ((childType = input.readByte()) != TAG_END)
+				{
+					skipString(input);
+					skipPayload(input, childType, depth + 1);
+				}
+				break;
+			}
+			case TAG_INT_ARRAY:
+				skipFully(input, 4L * readArrayLength(input));
+				break;
+			case TAG_LONG_ARRAY:
+				skipFully(input, 8L * readArrayLength(input));
+				break;
+			case TAG_END:
+				// empty lists use the end type
+				break;
+			default:
+				throw new IOException("Unknown NBT tag type: ["+type+"].");
+		}
+	}
+	
+	/** @return -1 if the given type doesn't have a fixed size */
+	private static int getFixedPayloadSize(byte type)
+	{
+		switch (type)
+		{
+			case TAG_END:
+				return 0;
+			case TAG_BYTE:
+				return 1;
+			case TAG_SHORT:
+				return 2;
+			case TAG_INT:
+			case TAG_FLOAT:
+				return 4;
+			case TAG_LONG:
+			case TAG_DOUBLE:
+				return 8;
+			default:
+				return -1;
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static int readArrayLength(DataInput input) throws IOException
+	{
+		int length = input.readInt();
+		if (length < 0)
+		{
+			throw new IOException("Negative NBT array length: ["+length+"].");
+		}
+		return length;
+	}
+	
+	/** strings are stored as an unsigned short length followed by modified UTF-8 bytes */
+	private static void skipString(DataInput input) throws IOException { skipFully(input, input.readUnsignedShort()); }
+	
+	/** {@link DataInput#skipBytes} isn't guaranteed to skip the full amount */
+	private static void skipFully(DataInput input, long byteCount) throws IOException
+	{
+		while (byteCount > 0)
+		{
+			int skipped = input.skipBytes((int) Math.min(byteCount, Integer.MAX_VALUE));
+			if (skipped <= 0)
+			{
+				// skipBytes can return 0 before the end of the stream
+				// (IE for some decompression streams), read a byte to make progress or throw EOF
+				input.readByte();
+				skipped = 1;
+			}
+			byteCount -= skipped;
+		}
+	}
+	
+}
@@ -0,0 +1,235 @@
+package com.seibel.distanthorizons.common.wrappers.worldGeneration.chunkFileHandling;
+
+import net.minecraft.world.level.ChunkPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a Minecraft region (.mca) file
+ * that uses positional {@link FileChannel} reads. <br><br>
+ *
+ * Unlike MC's {@link net.minecraft.world.level.chunk.storage.RegionFile}
+ * this doesn't require any locking, so any number of threads
+ * can pull chunk data from the same region at the same time. <br>
+ * Decompression is handled by the caller. <br><br>
+ *
+ * MC may write to the file or move a chunk to a different
+ * sector at any time.
+ * To handle that each lookup reads the chunk's location entry
+ * directly from the file instead of caching the table. <br><br>
+ *
+ * The channel must be closed once the reader is no longer needed,
+ * otherwise the file handle will stay open. <br><br>
+ *
+ * File format source: https://minecraft.wiki/w/Region_file_format
+ */
+public class RegionFileChannelReader implements Closeable
+{
+	public static final int SECTOR_BYTES = 4096;
+	/** 32x32 chunks per region, one int per chunk */
+	public static final int CHUNKS_PER_REGION = 1024;
+	/** the location table and timestamp table are each one sector long */
+	public static final int HEADER_BYTES = SECTOR_BYTES * 2;
+	
+	/** 4 bytes for the length, 1 byte for the compression type */
+	private static final int CHUNK_HEADER_BYTES = 5;
+	/** if this bit is set in the compression type the chunk is stored in a separate .mcc file */
+	private static final int EXTERNAL_STREAM_FLAG = 0x80;
+	
+	/** re-used per thread to reduce GC pressure when reading location entries and chunk headers */
+	private static final ThreadLocal<ByteBuffer> HEADER_BUFFER_REF = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.BIG_ENDIAN));
+	
+	
+	public final Path path;
+	/** positional reads don't change the channel's position, so it can be shared between threads */
+	private final FileChannel channel;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** @return null if the file doesn't exist or is too small to contain a header */
+	@Nullable
+	public static RegionFileChannelReader tryOpen(Path regionFilePath) throws IOException
+	{
+		if (!Files.exists(regionFilePath))
+		{
+			return null;
+		}
+		
+		FileChannel channel = FileChannel.open(regionFilePath, StandardOpenOption.READ);
+		try
+		{
+			if (channel.size() < HEADER_BYTES)
+			{
+				channel.close();
+				return null;
+			}
+			
+			return new RegionFileChannelReader(regionFilePath, channel);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+	
+	private RegionFileChannelReader(Path path, FileChannel channel)
+	{
+		this.path = path;
+		this.channel = channel;
+	}
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
+	
+	/**
+	 * @return null if the chunk isn't present in this region,
+	 *          is stored externally (.mcc file),
+	 *          or was being written while we read it.
+	 *          In the latter cases the caller should fall back to MC's reader.
+	 */
+	@Nullable
+	public ChunkPayload getChunkPayload(ChunkPos chunkPos) throws IOException
+	{
+		// (sectorOffset << 8) | sectorCount,
+		// 0 means the chunk isn't present
+		int offset = this.readInt((long) getOffsetIndex(chunkPos) * 4);
+		if (offset == 0)
+		{
+			return null;
+		}
+		
+		int sectorStart = offset >>> 8;
+		int sectorCount = offset & 0xFF;
+		long startByte = (long) sectorStart * SECTOR_BYTES;
+		long maxByte = startByte + ((long) sectorCount * SECTOR_BYTES);
+		if (sectorStart < 2) // the first 2 sectors are the header
+		{
+			return null;
+		}
+		
+		ByteBuffer headerBuffer = HEADER_BUFFER_REF.get();
+		headerBuffer.clear();
+		if (!this.readFully(headerBuffer, startByte))
+		{
+			return null;
+		}
+		
+		int length = headerBuffer.getInt(0);
+		if (length <= 0
+			|| startByte + 4 + length > maxByte)
+		{
+			// the chunk is either corrupt
+			// or was written while we were reading
+			return null;
+		}
+		
+		int compressionType = headerBuffer.get(4) & 0xFF;
+		if ((compressionType & EXTERNAL_STREAM_FLAG) != 0)
+		{
+			return null;
+		}
+		
+		// length includes the compression byte
+		byte[] data = new byte[length - 1];
+		if (!this.readFully(ByteBuffer.wrap(data), startByte + CHUNK_HEADER_BYTES))
+		{
+			return null;
+		}
+		return new ChunkPayload(compressionType, data);
+	}
+	
+	/** @return true if the region's header has an entry for the given chunk */
+	public boolean isChunkPresent(ChunkPos chunkPos) throws IOException { return this.readInt((long) getOffsetIndex(chunkPos) * 4) != 0; }
+	
+	/** @return the last time (in seconds since the epoch) MC wrote this chunk, 0 if the chunk isn't present */
+	public int getChunkTimestamp(ChunkPos chunkPos) throws IOException { return this.readInt(SECTOR_BYTES + ((long) getOffsetIndex(chunkPos) * 4)); }
+	
+	/** @return the index of the given chunk in the location/timestamp tables */
+	private static int getOffsetIndex(ChunkPos chunkPos)
+	{
+		#if MC_VER <= MC_1_21_11
+		return (chunkPos.x & 31) + ((chunkPos.z & 31) * 32);
+		#else
+		return (chunkPos.x() & 31) + ((chunkPos.z() & 31) * 32);
+		#endif
+	}
+	
+	private int readInt(long position) throws IOException
+	{
+		ByteBuffer buffer = HEADER_BUFFER_REF.get();
+		buffer.clear();
+		buffer.limit(4);
+		if (!this.readFully(buffer, position))
+		{
+			throw new EOFException("Unable to read int at ["+position+"] in region file ["+this.path+"].");
+		}
+		return buffer.getInt(0);
+	}
+	
+	/** @return false if the end of the file was reached before the buffer was filled */
+	private boolean readFully(ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int readCount = this.channel.read(buffer, position);
+			if (readCount < 0)
+			{
+				return false;
+			}
+			position += readCount;
+		}
+		return true;
+	}
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	@Override
+	public void close() throws IOException { this.channel.close(); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/** A chunk's compressed NBT data and the compression type needed to decompress it. */
+	public static class ChunkPayload
+	{
+		/** Minecraft's RegionFileVersion ID, IE 1 = GZip, 2 = Zlib, 3 = uncompressed, 4 = LZ4 */
+		public final int compressionType;
+		public final byte[] data;
+		
+		public ChunkPayload(int compressionType, byte[] data)
+		{
+			this.compressionType = compressionType;
+			this.data = data;
+		}
+		
+		public InputStream createInputStream() { return new ByteArrayInputStream(this.data); }
+		
+	}
+	
+}
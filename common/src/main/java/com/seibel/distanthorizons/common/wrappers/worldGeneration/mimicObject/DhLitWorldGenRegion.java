@@ -94,11 +94,25 @@ public class DhLitWorldGenRegion extends WorldGenRegion
 	
 	private final DhChunkPos firstPos;
 	private final List<ChunkAccess> cache;
+	/** 
+	 * Same order as {@link DhLitWorldGenRegion#cache}, 
+	 * but {@link LevelChunk}s are already wrapped in {@link ImposterProtoChunk}s. <br>
+	 * Wrapping once here means reads inside the region don't need to lock or allocate. 
+	 */
+	private final ChunkAccess[] wrappedCache;
+	/** only accessed while holding {@link DhLitWorldGenRegion#getChunkLock} */
 	private final Long2ObjectOpenHashMap<ChunkAccess> chunkMap = new Long2ObjectOpenHashMap<ChunkAccess>();
+	/** 
+	 * The last chunk returned from outside the region, 
+	 * feature placement tends to read the same chunk many times in a row 
+	 * so this lets repeated reads skip the lock.
+	 */
+	private volatile CachedChunk lastOutOfRegionChunk = null;
 	
 	/** 
 	 * Present to reduce the chance that we accidentally break underlying MC code that isn't thread safe, 
-	 * specifically: "it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap.getAndMoveToFirst()"
+	 * specifically: "it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap.getAndMoveToFirst()". <br>
+	 * Only needed when chunks outside the region are requested.
 	 */
 	private final ReentrantLock getChunkLock = new ReentrantLock();
 	
@@ -159,6 +173,12 @@ public class DhLitWorldGenRegion extends WorldGenRegion
 		this.writeRadius = writeRadius;
 		this.cache = chunkList;
 		this.size = Mth.floor(Math.sqrt(chunkList.size()));
+		
+		this.wrappedCache = new ChunkAccess[chunkList.size()];
+		for (int i = 0; i < chunkList.size(); i++)
+		{
+			this.wrappedCache[i] = wrapChunk(chunkList.get(i));
+		}
 	}
 	
 	
@@ -309,49 +329,69 @@ public class DhLitWorldGenRegion extends WorldGenRegion
 	// Override to ensure no other mod mixins cause skipping the overrided
 	// getChunk(...)
 	@Override
-	public @NotNull ChunkAccess getChunk(int chunkX, int chunkZ)
+	public @NotNull ChunkAccess getChunk(int chunkX, int chunkZ) { return this.getChunk(chunkX, chunkZ, ChunkStatus.EMPTY); }
+	
+	// Override to ensure no other mod mixins cause skipping the overrided
+	// getChunk(...)
+	@Override
+	public @NotNull ChunkAccess getChunk(int chunkX, int chunkZ, @NotNull ChunkStatus chunkStatus)
 	{
-		try
-		{
-			// lock is to prevent issues with underlying MC code that doesn't support multithreading
-			this.getChunkLock.lock();
-			return this.getChunk(chunkX, chunkZ, ChunkStatus.EMPTY);
-		}
-		finally
+		ChunkAccess chunk = this.getChunk(chunkX, chunkZ, chunkStatus, true);
+		if (chunk == null)
 		{
-			this.getChunkLock.unlock();
+			LodUtil.assertNotReach("getChunk shouldn't return null values");
 		}
+		return chunk;
 	}
 	
-	// Override to ensure no other mod mixins cause skipping the overrided
-	// getChunk(...)
+	/** Allows creating empty chunks even if they're outside the worldGenRegion */
 	@Override
-	public @NotNull ChunkAccess getChunk(int chunkX, int chunkZ, @NotNull ChunkStatus chunkStatus)
+	@Nullable
+	public ChunkAccess getChunk(int chunkX, int chunkZ, @NotNull ChunkStatus chunkStatus, boolean returnNonNull)
 	{
-		try
+		// fast path, chunks inside the region don't need a lock or allocation
+		if (this.superHasChunk(chunkX, chunkZ))
 		{
-			// lock is to prevent issues with underlying MC code that doesn't support multithreading
-			this.getChunkLock.lock();
-			
-			ChunkAccess chunk = this.getChunk(chunkX, chunkZ, chunkStatus, true);
-			if (chunk == null)
+			int index = this.getCacheIndex(chunkX, chunkZ);
+			ChunkAccess chunk = this.wrappedCache[index];
+			if (chunk != null)
 			{
-				LodUtil.assertNotReach("getChunk shouldn't return null values");
+				// if a non-null chunk is required the region's chunk is returned regardless of its status
+				if (returnNonNull 
+					|| ChunkWrapper.getStatus(this.cache.get(index)).isOrAfter(chunkStatus))
+				{
+					return chunk;
+				}
+				return null;
 			}
-			return chunk;
 		}
-		finally
+		
+		CachedChunk lastChunk = this.lastOutOfRegionChunk;
+		if (returnNonNull
+			&& lastChunk != null
+			&& lastChunk.chunkX == chunkX
+			&& lastChunk.chunkZ == chunkZ)
 		{
-			this.getChunkLock.unlock();
+			return lastChunk.chunk;
 		}
+		
+		
+		ChunkAccess chunk = wrapChunk(this.getChunkAccess(chunkX, chunkZ, chunkStatus, returnNonNull));
+		if (chunk != null 
+			&& !this.superHasChunk(chunkX, chunkZ))
+		{
+			this.lastOutOfRegionChunk = new CachedChunk(chunkX, chunkZ, chunk);
+		}
+		return chunk;
 	}
 	
-	/** Allows creating empty chunks even if they're outside the worldGenRegion */
-	@Override
+	/** 
+	 * MC expects {@link LevelChunk}s to be wrapped when used for world gen. <br>
+	 * Returns null if the given chunk is null.
+	 */
 	@Nullable
-	public ChunkAccess getChunk(int chunkX, int chunkZ, @NotNull ChunkStatus chunkStatus, boolean returnNonNull)
+	private static ChunkAccess wrapChunk(@Nullable ChunkAccess chunk)
 	{
-		ChunkAccess chunk = this.getChunkAccess(chunkX, chunkZ, chunkStatus, returnNonNull);
 		if (chunk instanceof LevelChunk)
 		{
 			chunk = new ImposterProtoChunk((LevelChunk) chunk #if MC_VER >= MC_1_18_2 ,/* allow writes */ false #endif );
@@ -389,16 +429,26 @@ public class DhLitWorldGenRegion extends WorldGenRegion
 			chunkPosAsLong = ChunkPos.pack(chunkX, chunkZ);
 			#endif
 			
-			chunk = this.chunkMap.get(chunkPosAsLong);
-			if (chunk == null)
+			try
 			{
-				// chunk isn't in memory, generate a new one
-				chunk = this.generator.getChunk(chunkX, chunkZ);
+				// lock is to prevent issues with underlying MC code that doesn't support multithreading
+				this.getChunkLock.lock();
+				
+				chunk = this.chunkMap.get(chunkPosAsLong);
 				if (chunk == null)
 				{
-					throw new NullPointerException("The provided generator should not return null!");
+					// chunk isn't in memory, generate a new one
+					chunk = this.generator.getChunk(chunkX, chunkZ);
+					if (chunk == null)
+					{
+						throw new NullPointerException("The provided generator should not return null!");
+					}
+					this.chunkMap.put(chunkPosAsLong, chunk);
 				}
-				this.chunkMap.put(chunkPosAsLong, chunk);
+			}
+			finally
+			{
+				this.getChunkLock.unlock();
 			}
 		}
 		
@@ -425,11 +475,14 @@ public class DhLitWorldGenRegion extends WorldGenRegion
 	}
 	
 	/** Use this instead of super.getChunk() to bypass C2ME concurrency checks */
-	private ChunkAccess superGetChunk(int x, int z)
+	private ChunkAccess superGetChunk(int x, int z) { return this.cache.get(this.getCacheIndex(x, z)); }
+	
+	/** expects the position to be inside the region, see {@link DhLitWorldGenRegion#superHasChunk} */
+	private int getCacheIndex(int x, int z)
 	{
 		int xOffset = x - this.firstPos.getX();
 		int zOffset = z - this.firstPos.getZ();
-		return this.cache.get(xOffset + zOffset * this.size);
+		return xOffset + zOffset * this.size;
 	}
 	
 	
@@ -488,4 +541,28 @@ public class DhLitWorldGenRegion extends WorldGenRegion
 		return (k / j & 0xFF) << 16 | (l / j & 0xFF) << 8 | m / j & 0xFF;
 	}
 	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	//region
+	
+	/** immutable so it can be swapped atomically between threads */
+	private static class CachedChunk
+	{
+		public final int chunkX;
+		public final int chunkZ;
+		public final ChunkAccess chunk;
+		
+		public CachedChunk(int chunkX, int chunkZ, ChunkAccess chunk)
+		{
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+			this.chunk = chunk;
+		}
+	}
+	
+	//endregion
+	
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package com.seibel.distanthorizons.common.wrappers.worldGeneration.mimicObject;
+
+import com.seibel.distanthorizons.core.logging.DhLogger;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded, least-recently-used cache for region file handles. <br><br>
+ *
+ * The cache is split into several stripes (each with their own lock)
+ * so threads working on different regions don't contend with each other. <br><br>
+ *
+ * Each handle is reference counted, evicting a handle only drops the cache's
+ * reference, the underlying file is closed once every thread using it
+ * has called {@link Handle#release()}.
+ * This prevents closing a file while another world gen thread is still reading from it.
+ *
+ * @param <T> the file type being cached, generally a MC RegionFile (which is only {@link AutoCloseable})
+ */
+public class RegionFileHandleCache<T extends AutoCloseable> implements Closeable
+{
+	private static final DhLogger LOGGER = new DhLoggerBuilder().build();
+	
+	public static final int DEFAULT_STRIPE_COUNT = 8;
+	
+	private final Stripe<T>[] stripes;
+	/** always (stripe count - 1), stripe count is always a power of 2 */
+	private final int stripeMask;
+	
+	public final int capacity;
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public RegionFileHandleCache(int capacity) { this(capacity, DEFAULT_STRIPE_COUNT); }
+	@SuppressWarnings("unchecked")
+	public RegionFileHandleCache(int capacity, int stripeCount)
+	{
+		if (capacity <= 0)
+		{
+			throw new IllegalArgumentException("Capacity must be greater than 0, given: ["+capacity+"].");
+		}
+		
+		// don't create more stripes than there are slots
+		// otherwise some stripes would never be able to hold anything
+		stripeCount = Math.max(1, Math.min(stripeCount, capacity));
+		stripeCount = HashCommon.nextPowerOfTwo(stripeCount);
+		if (stripeCount > capacity)
+		{
+			stripeCount >>= 1;
+		}
+		
+		this.capacity = capacity;
+		this.stripeMask = stripeCount - 1;
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++)
+		{
+			// distribute the remainder so the total capacity is exactly what was requested
+			int stripeCapacity = (capacity / stripeCount) + ((i < capacity % stripeCount) ? 1 : 0);
+			this.stripes[i] = new Stripe<>(stripeCapacity);
+		}
+	}
+	
+	
+	
+	//=========//
+	// methods //
+	//=========//
+	
+	/**
+	 * Returns the cached handle for the given key,
+	 * or creates a new one using the given loader. <br>
+	 * The returned handle must be released via {@link Handle#release()} once the caller is done with it.
+	 *
+	 * @return null if the loader returned null
+	 * @throws IOException if the loader threw an exception
+	 */
+	@Nullable
+	public Handle<T> acquire(long key, IFileLoader<T> loader) throws IOException
+	{
+		Stripe<T> stripe = this.getStripe(key);
+		
+		// closing evicted files is done outside the lock
+		// since closing a file may require IO
+		Handle<T> evictedHandle = null;
+		Handle<T> handle;
+		
+		stripe.lock.lock();
+		try
+		{
+			handle = stripe.handleByKey.getAndMoveToLast(key);
+			if (handle != null)
+			{
+				this.hitCount.increment();
+				handle.retain();
+				return handle;
+			}
+			
+			this.missCount.increment();
+			
+			// opening is done inside the lock so two threads
+			// won't open the same file at the same time
+			T file = loader.load();
+			if (file == null)
+			{
+				return null;
+			}
+			
+			handle = new Handle<>(key, file);
+			// one reference for the cache, one for the caller
+			handle.retain();
+			stripe.handleByKey.putAndMoveToLast(key, handle);
+			
+			if (stripe.handleByKey.size() > stripe.capacity)
+			{
+				evictedHandle = stripe.handleByKey.removeFirst();
+				this.evictionCount.increment();
+			}
+		}
+		finally
+		{
+			stripe.lock.unlock();
+		}
+		
+		if (evictedHandle != null)
+		{
+			evictedHandle.release();
+		}
+		
+		return handle;
+	}
+	
+	private Stripe<T> getStripe(long key) { return this.stripes[(int) HashCommon.mix(key) & this.stripeMask]; }
+	
+	
+	
+	//==============//
+	// stat getters //
+	//==============//
+	
+	public long getHitCount() { return this.hitCount.sum(); }
+	public long getMissCount() { return this.missCount.sum(); }
+	public long getEvictionCount() { return this.evictionCount.sum(); }
+	
+	/** @return the number of handles currently held by the cache */
+	public int size()
+	{
+		int size = 0;
+		for (Stripe<T> stripe : this.stripes)
+		{
+			stripe.lock.lock();
+			try
+			{
+				size += stripe.handleByKey.size();
+			}
+			finally
+			{
+				stripe.lock.unlock();
+			}
+		}
+		return size;
+	}
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	/**
+	 * Releases the cache's reference to every handle.
+	 * Any handles still held by other threads will be closed once they're released.
+	 */
+	@Override
+	public void close()
+	{
+		ArrayList<Handle<T>> handlesToRelease = new ArrayList<>();
+		for (Stripe<T> stripe : this.stripes)
+		{
+			stripe.lock.lock();
+			try
+			{
+				handlesToRelease.addAll(stripe.handleByKey.values());
+				stripe.handleByKey.clear();
+			}
+			finally
+			{
+				stripe.lock.unlock();
+			}
+		}
+		
+		for (Handle<T> handle : handlesToRelease)
+		{
+			handle.release();
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "size: ["+this.size()+"/"+this.capacity+"], " +
+			"hits: ["+this.getHitCount()+"], " +
+			"misses: ["+this.getMissCount()+"], " +
+			"evictions: ["+this.getEvictionCount()+"]";
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	@FunctionalInterface
+	public interface IFileLoader<T>
+	{
+		@Nullable
+		T load() throws IOException;
+	}
+	
+	private static class Stripe<T extends AutoCloseable>
+	{
+		public final ReentrantLock lock = new ReentrantLock();
+		/** access ordered, the first entry is the least recently used */
+		public final Long2ObjectLinkedOpenHashMap<Handle<T>> handleByKey;
+		public final int capacity;
+		
+		public Stripe(int capacity)
+		{
+			this.capacity = capacity;
+			this.handleByKey = new Long2ObjectLinkedOpenHashMap<>(capacity + 1);
+		}
+		
+	}
+	
+	public static class Handle<T extends AutoCloseable>
+	{
+		public final long key;
+		public final T file;
+		
+		/** starts at 1 since the cache holds a reference */
+		private final AtomicInteger refCount = new AtomicInteger(1);
+		
+		
+		private Handle(long key, T file)
+		{
+			this.key = key;
+			this.file = file;
+		}
+		
+		private void retain() { this.refCount.incrementAndGet(); }
+		
+		/** Must be called once for each successful {@link RegionFileHandleCache#acquire}. */
+		public void release()
+		{
+			int newCount = this.refCount.decrementAndGet();
+			if (newCount == 0)
+			{
+				try
+				{
+					this.file.close();
+				}
+				catch (Exception e)
+				{
+					LOGGER.warn("Failed to close cached region file for key ["+this.key+"], error: ["+e.getMessage()+"].", e);
+				}
+			}
+			else if (newCount < 0)
+			{
+				LOGGER.warn("Region file handle for key ["+this.key+"] was released more times than it was acquired.");
+			}
+		}
+		
+	}
+	
+}
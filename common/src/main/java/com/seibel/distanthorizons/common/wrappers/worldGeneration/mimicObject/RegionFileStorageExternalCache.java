@@ -1,20 +1,22 @@
 package com.seibel.distanthorizons.common.wrappers.worldGeneration.mimicObject;
 
 import com.seibel.distanthorizons.common.wrappers.worldGeneration.chunkFileHandling.ChunkFileReader;
+import com.seibel.distanthorizons.common.wrappers.worldGeneration.chunkFileHandling.ChunkNbtStreamReader;
+import com.seibel.distanthorizons.common.wrappers.worldGeneration.chunkFileHandling.RegionFileChannelReader;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.NbtIo;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.chunk.storage.RegionFile;
 import net.minecraft.world.level.chunk.storage.RegionFileStorage;
+import net.minecraft.world.level.chunk.storage.RegionFileVersion;
 import com.seibel.distanthorizons.core.logging.DhLogger;
 
 import org.jetbrains.annotations.Nullable;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.ReentrantLock;
 
 #if MC_VER >= MC_1_20_6
@@ -34,7 +36,21 @@ public class RegionFileStorageExternalCache implements AutoCloseable
 	/** Can be null due to the C2ME mod */
 	@Nullable
 	public final RegionFileStorage storage;
-	public static final int MAX_CACHE_SIZE = 16;
+	/** 
+	 * Pregen jobs sweep regions in a spiral, so this should be large
+	 * enough to hold at least one full ring of regions. 
+	 */
+	public static final int DEFAULT_MAX_CACHE_SIZE = 32;
+	/** 
+	 * Channel readers are cheaper than MC's region files
+	 * (no cached header tables), so we can keep a few more of them open.
+	 */
+	public static final int MAX_CHANNEL_READER_CACHE_SIZE = 64;
+	/** 
+	 * Custom compression (added in MC 1.21) requires
+	 * MC's internal handling, so it can't be read by our channel reader.
+	 */
+	private static final int CUSTOM_COMPRESSION_ID = 127;
 	
 	public static boolean regionCacheNullPointerWarningSent = false;
 	
@@ -48,33 +64,38 @@ public class RegionFileStorageExternalCache implements AutoCloseable
 	
 	
 	
-	private final ConcurrentLinkedQueue<RegionFileCache> regionFileCache = new ConcurrentLinkedQueue<>();
+	/** Used if MC's region cache doesn't contain the requested region */
+	private final RegionFileHandleCache<RegionFile> regionFileCache;
+	/** 
+	 * Alternative to {@link RegionFileStorageExternalCache#regionFileCache}
+	 * that doesn't lock while reading, so multiple threads can read from the same region at once. <br>
+	 * Least recently used readers are closed once the cache is full.
+	 */
+	private final RegionFileHandleCache<RegionFileChannelReader> channelReaderCache = new RegionFileHandleCache<>(MAX_CHANNEL_READER_CACHE_SIZE);
+	
+	
+	
+	public RegionFileStorageExternalCache(RegionFileStorage storage) { this(storage, DEFAULT_MAX_CACHE_SIZE); }
+	public RegionFileStorageExternalCache(RegionFileStorage storage, int maxCacheSize)
+	{
+		this.storage = storage;
+		this.regionFileCache = new RegionFileHandleCache<>(maxCacheSize);
+	}
 	
 	
 	
-	public RegionFileStorageExternalCache(RegionFileStorage storage) { this.storage = storage; }
+	//==============//
+	// region files //
+	//==============//
 	
+	/** 
+	 * @return the region file from MC's cache if present.
+	 *          Files returned by this method are owned by MC and shouldn't be closed.
+	 */
 	@Nullable
-	public RegionFile getRegionFile(ChunkPos chunkPos) throws IOException
+	private RegionFile getMcCachedRegionFile(ChunkPos chunkPos) throws IOException
 	{
-		if (this.storage == null)
-		{
-			if (!regionCacheNullPointerWarningSent)
-			{
-				regionCacheNullPointerWarningSent = true;
-				LOGGER.warn("Unable to access Minecraft's chunk cache. This may be due to another mod changing said cache. DH will be unable to access any Minecraft chunk data until said mod is removed.");
-			}
-			
-			return null;
-		}
-		
-		
-		long chunkPosLong;
-		#if MC_VER <= MC_1_21_11
-		chunkPosLong = ChunkPos.asLong(chunkPos.getRegionX(), chunkPos.getRegionZ());
-		#else
-		chunkPosLong = ChunkPos.pack(chunkPos.getRegionX(), chunkPos.getRegionZ());
-		#endif
+		long chunkPosLong = getRegionPosLong(chunkPos);
 		
 		RegionFile regionFile = null;
 		
@@ -148,34 +169,30 @@ public class RegionFileStorageExternalCache implements AutoCloseable
 		}
 		
 		
-		if (regionFile != null)
-		{
-			return regionFile;
-		}
+		return regionFile;
+	}
+	
+	/** 
+	 * Used to populate {@link RegionFileStorageExternalCache#regionFileCache}.
+	 * @return null if the region file doesn't exist 
+	 */
+	@Nullable
+	private RegionFile openRegionFile(ChunkPos chunkPos) throws IOException
+	{
+		RegionFile regionFile;
 		
-		// Then check our custom cache
-		for (RegionFileCache cache : this.regionFileCache)
+		Path storageFolderPath = this.getStorageFolderPath();
+		if (!Files.exists(storageFolderPath))
 		{
-			if (cache.pos == chunkPosLong)
-			{
-				return cache.file;
-			}
+			return null;
 		}
 		
-		// Otherwise, check if file exist, and if so, add it to the cache
-		Path storageFolderPath;
-		#if MC_VER == MC_1_16_5 || MC_VER == MC_1_17_1
-		storageFolderPath = this.storage.folder.toPath();
-		#else
-		storageFolderPath = this.storage.folder;
-		#endif
-		
-		if (!Files.exists(storageFolderPath))
+		Path regionFilePath = getRegionFilePath(storageFolderPath, chunkPos);
+		if (!Files.exists(regionFilePath))
 		{
 			return null;
 		}
 		
-		Path regionFilePath = storageFolderPath.resolve("r." + chunkPos.getRegionX() + "." + chunkPos.getRegionZ() + ".mca");
 		#if MC_VER == MC_1_16_5 || MC_VER == MC_1_17_1
 		regionFile = new RegionFile(regionFilePath.toFile(), storageFolderPath.toFile(), false);
 		#elif MC_VER <= MC_1_20_4
@@ -184,26 +201,85 @@ public class RegionFileStorageExternalCache implements AutoCloseable
 		regionFile = new RegionFile(new RegionStorageInfo("level", null, "level type"), regionFilePath, storageFolderPath, false);
 		#endif
 		
-		this.regionFileCache.add(new RegionFileCache(chunkPosLong, regionFile));
-		while (this.regionFileCache.size() > MAX_CACHE_SIZE)
-		{
-			this.regionFileCache.poll().file.close();
-		}
-		
 		return regionFile;
 	}
 	
+	private Path getStorageFolderPath()
+	{
+		#if MC_VER == MC_1_16_5 || MC_VER == MC_1_17_1
+		return this.storage.folder.toPath();
+		#else
+		return this.storage.folder;
+		#endif
+	}
+	private static Path getRegionFilePath(Path storageFolderPath, ChunkPos chunkPos) { return storageFolderPath.resolve("r." + chunkPos.getRegionX() + "." + chunkPos.getRegionZ() + ".mca"); }
+	
+	private static long getRegionPosLong(ChunkPos chunkPos)
+	{
+		#if MC_VER <= MC_1_21_11
+		return ChunkPos.asLong(chunkPos.getRegionX(), chunkPos.getRegionZ());
+		#else
+		return ChunkPos.pack(chunkPos.getRegionX(), chunkPos.getRegionZ());
+		#endif
+	}
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
 	
 	@Nullable
 	public CompoundTag read(ChunkPos pos) throws IOException
 	{
-		RegionFile file = this.getRegionFile(pos);
-		if (file == null)
+		// try the lock free reader first
+		ChannelReadResult channelResult = this.tryReadViaChannel(pos);
+		if (channelResult.handled)
 		{
+			return channelResult.tag;
+		}
+		
+		
+		if (this.storage == null)
+		{
+			if (!regionCacheNullPointerWarningSent)
+			{
+				regionCacheNullPointerWarningSent = true;
+				LOGGER.warn("Unable to access Minecraft's chunk cache. This may be due to another mod changing said cache. DH will be unable to access any Minecraft chunk data until said mod is removed.");
+			}
+			
 			return null;
 		}
 		
 		
+		// fall back to MC's region file
+		RegionFile mcFile = this.getMcCachedRegionFile(pos);
+		if (mcFile != null)
+		{
+			return readFromRegionFile(mcFile, pos);
+		}
+		
+		// then our own cache
+		RegionFileHandleCache.Handle<RegionFile> handle = this.regionFileCache.acquire(getRegionPosLong(pos), () -> this.openRegionFile(pos));
+		if (handle == null)
+		{
+			return null;
+		}
+		
+		try
+		{
+			return readFromRegionFile(handle.file, pos);
+		}
+		finally
+		{
+			// the file may have been evicted while we were reading,
+			// if so this will close it
+			handle.release();
+		}
+	}
+	@Nullable
+	private static CompoundTag readFromRegionFile(RegionFile file, ChunkPos pos)
+	{
 		try (DataInputStream stream = file.getChunkDataInputStream(pos))
 		{
 			if (stream == null)
@@ -211,42 +287,127 @@ public class RegionFileStorageExternalCache implements AutoCloseable
 				return null;
 			}
 			
-			return NbtIo.read(stream);
+			return ChunkNbtStreamReader.readChunk(stream);
 		}
 		catch (Throwable e)
 		{
+			LOGGER.warn("Unable to read chunk ["+pos+"] from region file, error: ["+e.getMessage()+"].", e);
 			return null;
 		}
 	}
 	
 	
-	@Override
-	public void close() throws IOException
+	/** 
+	 * Reads the chunk directly from the region file using positional reads.
+	 * This doesn't touch MC's region cache or {@link RegionFileStorageExternalCache#getRegionFileLock}.
+	 */
+	private ChannelReadResult tryReadViaChannel(ChunkPos pos)
 	{
-		RegionFileCache cache;
-		while ((cache = this.regionFileCache.poll()) != null)
+		if (this.storage == null)
+		{
+			return ChannelReadResult.NOT_HANDLED;
+		}
+		
+		RegionFileHandleCache.Handle<RegionFileChannelReader> handle = null;
+		try
+		{
+			handle = this.channelReaderCache.acquire(getRegionPosLong(pos), () -> RegionFileChannelReader.tryOpen(getRegionFilePath(this.getStorageFolderPath(), pos)));
+			if (handle == null)
+			{
+				// region file doesn't exist (or is empty), 
+				// MC's reader will handle the rest
+				return ChannelReadResult.NOT_HANDLED;
+			}
+			
+			RegionFileChannelReader reader = handle.file;
+			if (!reader.isChunkPresent(pos))
+			{
+				// the chunk hasn't been generated yet
+				return ChannelReadResult.EMPTY;
+			}
+			
+			RegionFileChannelReader.ChunkPayload payload = reader.getChunkPayload(pos);
+			if (payload == null
+				|| payload.compressionType == CUSTOM_COMPRESSION_ID)
+			{
+				// stored externally, corrupt, being written, or custom compressed
+				return ChannelReadResult.NOT_HANDLED;
+			}
+			
+			RegionFileVersion version = RegionFileVersion.fromId(payload.compressionType);
+			if (version == null)
+			{
+				return ChannelReadResult.NOT_HANDLED;
+			}
+			
+			try (InputStream compressedStream = payload.createInputStream();
+				DataInputStream stream = new DataInputStream(version.wrap(compressedStream)))
+			{
+				return new ChannelReadResult(ChunkNbtStreamReader.readChunk(stream));
+			}
+		}
+		catch (Throwable e)
 		{
-			cache.file.close();
+			// let MC's reader try instead
+			LOGGER.warn("Unable to read chunk ["+pos+"] directly from its region file, falling back to Minecraft's reader. Error: ["+e.getMessage()+"].", e);
+			return ChannelReadResult.NOT_HANDLED;
+		}
+		finally
+		{
+			if (handle != null)
+			{
+				// the reader may have been evicted while we were reading,
+				// if so this will close it
+				handle.release();
+			}
 		}
 	}
 	
 	
+	@Override
+	public void close() throws IOException
+	{
+		// readers still in use by other threads are closed once they're released
+		this.channelReaderCache.close();
+		
+		ChunkFileReader.CHUNK_LOAD_LOGGER.debug("Closing region file cache, "+this.regionFileCache);
+		this.regionFileCache.close();
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** can be used to check the cache's hit/miss/eviction counts */
+	public RegionFileHandleCache<RegionFile> getRegionFileCache() { return this.regionFileCache; }
+	
+	
 	
 	//================//
 	// helper classes //
 	//================//
 	
-	private static class RegionFileCache
+	private static class ChannelReadResult
 	{
-		public final long pos;
-		public final RegionFile file;
+		/** MC's reader should be used instead */
+		public static final ChannelReadResult NOT_HANDLED = new ChannelReadResult(false, null);
+		/** the chunk doesn't exist */
+		public static final ChannelReadResult EMPTY = new ChannelReadResult(true, null);
+		
+		public final boolean handled;
+		@Nullable
+		public final CompoundTag tag;
 		
-		public RegionFileCache(long pos, RegionFile file)
+		public ChannelReadResult(@Nullable CompoundTag tag) { this(true, tag); }
+		private ChannelReadResult(boolean handled, @Nullable CompoundTag tag)
 		{
-			this.pos = pos;
-			this.file = file;
+			this.handled = handled;
+			this.tag = tag;
 		}
 		
 	}
 	
+	
 }
@@ -20,6 +20,7 @@
 package com.seibel.distanthorizons.fabric;
 
 import com.seibel.distanthorizons.common.AbstractModInitializer;
+import com.seibel.distanthorizons.common.util.ClientChunkUpdateCoalescer;
 import com.seibel.distanthorizons.common.AbstractPluginPacketSender;
 import com.seibel.distanthorizons.common.wrappers.McObjectConverter;
 import com.seibel.distanthorizons.common.wrappers.minecraft.MinecraftClientWrapper;
@@ -77,7 +78,6 @@ import com.mojang.blaze3d.platform.InputConstants;
 
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.world.InteractionResult;
-import net.minecraft.world.level.chunk.ChunkAccess;
 import net.minecraft.world.phys.HitResult;
 
 import org.lwjgl.glfw.GLFW;
@@ -130,10 +130,12 @@ public class FabricClientProxy implements AbstractModInitializer.IEventProxy
 				AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
 				if (executor != null)
 				{
+					// the snapshot is taken here since the chunk may be modified while the executor is reading it
+					IClientLevelWrapper wrappedLevel = ClientLevelWrapper.getWrapper(level);
+					ChunkWrapper chunkWrapper = ChunkWrapper.createSnapshot(chunk, wrappedLevel);
 					executor.execute(() ->
 					{
-						IClientLevelWrapper wrappedLevel = ClientLevelWrapper.getWrapper(level);
-						SharedApi.INSTANCE.applyChunkUpdate(new ChunkWrapper(chunk, wrappedLevel), wrappedLevel);
+						SharedApi.INSTANCE.applyChunkUpdate(chunkWrapper, wrappedLevel);
 					});
 				}
 			}
@@ -150,24 +152,8 @@ public class FabricClientProxy implements AbstractModInitializer.IEventProxy
 				
 				if (SharedApi.isChunkAtBlockPosAlreadyUpdating(wrappedLevel, blockPos.getX(), blockPos.getZ()))
 				{
-					// executor to prevent locking up the render/event thread
-					AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
-					if (executor != null)
-					{
-						executor.execute(() ->
-						{
-							ChunkAccess chunk = level.getChunk(blockPos);
-							if (chunk != null)
-							{
-								//LOGGER.trace("attack block at blockPos: " + blockPos);
-								
-								SharedApi.INSTANCE.applyChunkUpdate(
-										new ChunkWrapper(chunk, wrappedLevel),
-										wrappedLevel
-								);
-							}
-						});
-					}
+					// coalesced so breaking multiple blocks in the same chunk only causes one update
+					ClientChunkUpdateCoalescer.INSTANCE.queueUpdate(level, wrappedLevel, blockPos.getX(), blockPos.getZ());
 				}
 			}
 			
@@ -189,24 +175,8 @@ public class FabricClientProxy implements AbstractModInitializer.IEventProxy
 					
 					if (SharedApi.isChunkAtBlockPosAlreadyUpdating(wrappedLevel, hitResult.getBlockPos().getX(), hitResult.getBlockPos().getZ()))
 					{
-						// executor to prevent locking up the render/event thread
-						AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
-						if (executor != null)
-						{
-							executor.execute(() ->
-							{
-								ChunkAccess chunk = level.getChunk(hitResult.getBlockPos());
-								if (chunk != null)
-								{
-									//LOGGER.trace("use block at blockPos: " + hitResult.getBlockPos());
-									
-									SharedApi.INSTANCE.applyChunkUpdate(
-											new ChunkWrapper(chunk, wrappedLevel),
-											wrappedLevel
-									);
-								}
-							});
-						}
+						// coalesced so placing multiple blocks in the same chunk only causes one update
+						ClientChunkUpdateCoalescer.INSTANCE.queueUpdate(level, wrappedLevel, hitResult.getBlockPos().getX(), hitResult.getBlockPos().getZ());
 					}
 				}
 			}
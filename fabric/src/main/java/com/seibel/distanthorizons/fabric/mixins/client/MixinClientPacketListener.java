@@ -62,10 +62,12 @@ public class MixinClientPacketListener
 		}
 		
 		
+		// the snapshot is taken here since the chunk may be modified while the executor is reading it
+		IClientLevelWrapper clientLevel = ClientLevelWrapper.getWrapper((ClientLevel) this.level);
+		ChunkWrapper chunkWrapper = ChunkWrapper.createSnapshot(chunk, clientLevel);
 		executor.execute(() ->
 		{
-			IClientLevelWrapper clientLevel = ClientLevelWrapper.getWrapper((ClientLevel) this.level);
-			SharedApi.INSTANCE.applyChunkUpdate(new ChunkWrapper(chunk, clientLevel), clientLevel);
+			SharedApi.INSTANCE.applyChunkUpdate(chunkWrapper, clientLevel);
 		});
 	}
 
@@ -20,6 +20,7 @@
 package com.seibel.distanthorizons.forge;
 
 import com.seibel.distanthorizons.common.AbstractModInitializer;
+import com.seibel.distanthorizons.common.util.ClientChunkUpdateCoalescer;
 import com.seibel.distanthorizons.common.util.ProxyUtil;
 import com.seibel.distanthorizons.common.wrappers.minecraft.MinecraftRenderWrapper;
 import com.seibel.distanthorizons.common.wrappers.world.ClientLevelWrapper;
@@ -29,7 +30,6 @@ import com.seibel.distanthorizons.core.api.internal.SharedApi;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.network.messages.AbstractNetworkMessage;
-import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
 
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
@@ -52,7 +52,6 @@ import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.client.event.RenderLevelStageEvent;
 #endif
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
-import net.minecraft.world.level.chunk.ChunkAccess;
 
 import net.minecraftforge.common.MinecraftForge;
 import com.seibel.distanthorizons.core.logging.DhLogger;
@@ -67,7 +66,6 @@ import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import org.lwjgl.opengl.GL32;
 
-import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -181,15 +179,8 @@ public class ForgeClientProxy implements AbstractModInitializer.IEventProxy
 				return;
 			}
 			
-			AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
-			if (executor != null)
-			{
-				executor.execute(() ->
-				{
-					ChunkAccess chunk = level.getChunk(event.getPos());
-					SharedApi.INSTANCE.applyChunkUpdate(new ChunkWrapper(chunk, wrappedLevel), wrappedLevel);
-				});
-			}
+			// coalesced so editing multiple blocks in the same chunk only causes one update
+			ClientChunkUpdateCoalescer.INSTANCE.queueUpdate(level, wrappedLevel, event.getPos().getX(), event.getPos().getZ());
 		}
 	}
 	@SubscribeEvent
@@ -209,15 +200,8 @@ public class ForgeClientProxy implements AbstractModInitializer.IEventProxy
 				return;
 			}
 			
-			AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
-			if (executor != null)
-			{
-				executor.execute(() ->
-				{
-					ChunkAccess chunk = level.getChunk(event.getPos());
-					SharedApi.INSTANCE.applyChunkUpdate(new ChunkWrapper(chunk, wrappedLevel), wrappedLevel);
-				});
-			}
+			// coalesced so editing multiple blocks in the same chunk only causes one update
+			ClientChunkUpdateCoalescer.INSTANCE.queueUpdate(level, wrappedLevel, event.getPos().getX(), event.getPos().getZ());
 		}
 	}
 
@@ -227,7 +211,8 @@ public class ForgeClientProxy implements AbstractModInitializer.IEventProxy
 		if (MC.clientConnectedToDedicatedServer())
 		{
 			ILevelWrapper wrappedLevel = ProxyUtil.getLevelWrapper(GetEventLevel(event));
-			IChunkWrapper chunkWrapper = new ChunkWrapper(event.getChunk(), wrappedLevel);
+			// the update is handled on a DH thread, which may run while the chunk is being modified
+			IChunkWrapper chunkWrapper = ChunkWrapper.createSnapshot(event.getChunk(), wrappedLevel);
 			SharedApi.INSTANCE.applyChunkUpdate(chunkWrapper, wrappedLevel);
 		}
 	}
@@ -1,5 +1,6 @@
 package com.seibel.distanthorizons.forge.mixins.client;
 
+import com.seibel.distanthorizons.common.render.arena.LodBufferArenaAllocator;
 import com.seibel.distanthorizons.core.logging.f3.F3Screen;
 import net.minecraft.client.gui.components.DebugScreenOverlay;
 import org.spongepowered.asm.mixin.Mixin;
@@ -18,6 +19,7 @@ public class MixinDebugScreenOverlay
 	{
 		List<String> messages = cir.getReturnValue();
 		F3Screen.addStringToDisplay(messages);
+		LodBufferArenaAllocator.addStringsToDebugMenu(messages);
 	}
 	
 }
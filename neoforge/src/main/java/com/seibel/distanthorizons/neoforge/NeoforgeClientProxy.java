@@ -20,6 +20,7 @@
 package com.seibel.distanthorizons.neoforge;
 
 import com.seibel.distanthorizons.common.AbstractModInitializer;
+import com.seibel.distanthorizons.common.util.ClientChunkUpdateCoalescer;
 import com.seibel.distanthorizons.common.util.ProxyUtil;
 import com.seibel.distanthorizons.common.wrappers.minecraft.MinecraftRenderWrapper;
 import com.seibel.distanthorizons.common.wrappers.world.ClientLevelWrapper;
@@ -27,7 +28,6 @@ import com.seibel.distanthorizons.core.api.internal.ClientApi;
 import com.seibel.distanthorizons.core.api.internal.SharedApi;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
-import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
 
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.IClientLevelWrapper;
@@ -40,12 +40,10 @@ import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.event.level.LevelEvent;
 
 import net.neoforged.neoforge.event.entity.player.PlayerInteractEvent;
-import net.minecraft.world.level.chunk.ChunkAccess;
 
 import com.seibel.distanthorizons.core.logging.DhLogger;
 import org.lwjgl.glfw.GLFW;
 
-import com.seibel.distanthorizons.common.wrappers.chunk.ChunkWrapper;
 
 import net.minecraft.client.Minecraft;
 import net.neoforged.neoforge.client.event.InputEvent;
@@ -57,7 +55,6 @@ import net.neoforged.neoforge.event.TickEvent;
 #else
 import net.neoforged.neoforge.client.event.ClientTickEvent;
 
-import java.util.concurrent.AbstractExecutorService;
 #endif
 
 
@@ -127,18 +124,8 @@ public class NeoforgeClientProxy implements AbstractModInitializer.IEventProxy
 				return;
 			}
 			
-			// executor to prevent locking up the render/event thread
-			AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
-			if (executor != null)
-			{
-				executor.execute(() ->
-				{
-					//LOGGER.trace("interact or block place event at blockPos: " + event.getPos());
-					
-					ChunkAccess chunk = level.getChunk(event.getPos());
-					SharedApi.INSTANCE.applyChunkUpdate(new ChunkWrapper(chunk, wrappedLevel), wrappedLevel);
-				});
-			}
+			// coalesced so editing multiple blocks in the same chunk only causes one update
+			ClientChunkUpdateCoalescer.INSTANCE.queueUpdate(level, wrappedLevel, event.getPos().getX(), event.getPos().getZ());
 		}
 	}
 	@SubscribeEvent
@@ -154,18 +141,8 @@ public class NeoforgeClientProxy implements AbstractModInitializer.IEventProxy
 				return;
 			}
 			
-			// executor to prevent locking up the render/event thread
-			AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
-			if (executor != null)
-			{
-				executor.execute(() ->
-				{
-					//LOGGER.trace("break or block attack at blockPos: " + event.getPos());
-					
-					ChunkAccess chunk = level.getChunk(event.getPos());
-					SharedApi.INSTANCE.applyChunkUpdate(new ChunkWrapper(chunk, wrappedLevel), wrappedLevel);
-				});
-			}
+			// coalesced so editing multiple blocks in the same chunk only causes one update
+			ClientChunkUpdateCoalescer.INSTANCE.queueUpdate(level, wrappedLevel, event.getPos().getX(), event.getPos().getZ());
 		}
 	}
 	
@@ -1,6 +1,7 @@
 package com.seibel.distanthorizons.neoforge.mixins.client;
 
 #if MC_VER < MC_1_21_9
+import com.seibel.distanthorizons.common.render.arena.LodBufferArenaAllocator;
 import com.seibel.distanthorizons.core.logging.f3.F3Screen;
 import net.minecraft.client.gui.components.DebugScreenOverlay;
 import org.spongepowered.asm.mixin.Mixin;
@@ -24,6 +25,7 @@ public class MixinDebugScreenOverlay
 	{
 		List<String> messages = cir.getReturnValue();
 		F3Screen.addStringToDisplay(messages);
+		LodBufferArenaAllocator.addStringsToDebugMenu(messages);
 	}
 	#else
 	// handled by DhDebugScreenEntry for MC versions after 1.21.10